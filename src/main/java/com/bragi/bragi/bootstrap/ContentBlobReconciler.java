@@ -0,0 +1,176 @@
+package com.bragi.bragi.bootstrap;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.model.ContentBlob;
+import com.bragi.bragi.repository.ContentBlobRepository;
+import com.bragi.bragi.repository.SongContentRepository;
+import com.bragi.bragi.repository.SongRenditionRepository;
+import com.bragi.bragi.service.config.StorageConfig;
+import com.bragi.bragi.service.utils.ThreadFactories;
+import com.bragi.bragi.storage.ContentCache;
+import com.bragi.bragi.storage.SongContentStore;
+import com.bragi.bragi.storage.StoredContent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Recomputes the reference count of every blob in the {@link SongContentStore} from the song
+ * content and rendition rows pointing at it, one batch per transaction, and removes blobs no row
+ * points at. Saving a song only ever raises a count, so this is what lowers them. A blob is only
+ * removed once it has gone unreferenced and untouched for the grace period, as an upload stores
+ * its audio before the song pointing at it is saved.
+ */
+@Component
+@Slf4j
+public class ContentBlobReconciler implements CommandLineRunner {
+
+    static final String NAME = "content-reconciler";
+
+    private final SongContentStore songContentStore;
+    private final ContentCache contentCache;
+    private final ContentBlobRepository contentBlobRepository;
+    private final SongContentRepository songContentRepository;
+    private final SongRenditionRepository songRenditionRepository;
+    private final StorageConfig storageConfig;
+    private final ServiceMetrics serviceMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledThreadPoolExecutor executor;
+
+    public ContentBlobReconciler(SongContentStore songContentStore,
+                                 ContentCache contentCache,
+                                 ContentBlobRepository contentBlobRepository,
+                                 SongContentRepository songContentRepository,
+                                 SongRenditionRepository songRenditionRepository,
+                                 StorageConfig storageConfig,
+                                 ServiceMetrics serviceMetrics,
+                                 PlatformTransactionManager transactionManager) {
+        this.songContentStore = songContentStore;
+        this.contentCache = contentCache;
+        this.contentBlobRepository = contentBlobRepository;
+        this.songContentRepository = songContentRepository;
+        this.songRenditionRepository = songRenditionRepository;
+        this.storageConfig = storageConfig;
+        this.serviceMetrics = serviceMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = new ScheduledThreadPoolExecutor(1, ThreadFactories.named(NAME, false));
+    }
+
+    @Override
+    public void run(String... args) {
+        var reconciler = storageConfig.getReconciler();
+        if(!reconciler.isEnabled())
+            return;
+        executor.scheduleWithFixedDelay(()-> {
+            try{
+                reconcile();
+            }catch (Exception e){
+                log.error("Failed to reconcile stored content: {}", e.getMessage());
+                serviceMetrics.incrementErrorCount(NAME);
+            }
+        }, reconciler.getIntervalSeconds(), reconciler.getIntervalSeconds(), TimeUnit.SECONDS);
+    }
+
+    //returns the number of blobs removed
+    public long reconcile() throws IOException {
+        var batchSize = storageConfig.getReconciler().getBatchSize();
+        var cutoff = Instant.now().minus(Duration.ofSeconds(storageConfig.getReconciler().getGracePeriodSeconds()));
+        long reconciled = 0;
+        long removed = 0;
+        log.info("Starting stored content reconciliation with batch size: {}", batchSize);
+        try(var contents = songContentStore.list()){
+            var batch = new ArrayList<StoredContent>(batchSize);
+            for(var iterator = contents.iterator(); iterator.hasNext();){
+                batch.add(iterator.next());
+                if(batch.size() < batchSize && iterator.hasNext())
+                    continue;
+                reconciled += batch.size();
+                removed += reconcileBatch(List.copyOf(batch), cutoff);
+                batch.clear();
+            }
+        }
+        log.info("Finished stored content reconciliation, reconciled {} blobs and removed {}", reconciled, removed);
+        return removed;
+    }
+
+    private int reconcileBatch(List<StoredContent> batch, Instant cutoff){
+        var unreferenced = transactionTemplate.execute(status -> countReferences(batch, cutoff));
+        if(unreferenced == null)
+            return 0;
+        var removed = 0;
+        //after the commit, so a failed transaction never leaves a row without its blob
+        for(var hash : unreferenced){
+            try{
+                //kept when an upload has stored it again since it was counted
+                if(!songContentStore.deleteIfUnmodifiedSince(hash, cutoff))
+                    continue;
+                contentCache.invalidate(hash);
+                removed++;
+            }catch (IOException e){
+                log.error("Failed to remove unreferenced content {}: {}", hash, e.getMessage());
+                serviceMetrics.incrementErrorCount(NAME);
+            }
+        }
+        return removed;
+    }
+
+    //brings the rows in line with the references, returning the blobs that can be removed
+    private List<String> countReferences(List<StoredContent> batch, Instant cutoff){
+        var hashes = batch.stream().map(StoredContent::getHash).toList();
+        var references = new HashMap<String, Long>();
+        songContentRepository.countReferences(hashes)
+                .forEach(count-> references.merge(count.getHash(), count.getReferenceCount(), Long::sum));
+        songRenditionRepository.countReferences(hashes)
+                .forEach(count-> references.merge(count.getHash(), count.getReferenceCount(), Long::sum));
+        Map<String, ContentBlob> blobs = contentBlobRepository.findAllById(hashes)
+                .stream()
+                .collect(Collectors.toMap(ContentBlob::getHash, Function.identity()));
+
+        var unreferenced = new ArrayList<String>();
+        var updated = new ArrayList<ContentBlob>();
+        for(var storedContent : batch){
+            var hash = storedContent.getHash();
+            var count = references.getOrDefault(hash, 0L);
+            if(count == 0 && isPastGracePeriod(hash, cutoff)){
+                unreferenced.add(hash);
+                continue;
+            }
+            var blob = blobs.getOrDefault(hash, ContentBlob.builder().hash(hash).build());
+            blob.setSize(storedContent.getSize());
+            blob.setReferenceCount(count);
+            updated.add(blob);
+        }
+        contentBlobRepository.saveAll(updated);
+        contentBlobRepository.deleteAllById(unreferenced.stream().filter(blobs::containsKey).toList());
+        return unreferenced;
+    }
+
+    private boolean isPastGracePeriod(String hash, Instant cutoff){
+        try{
+            return songContentStore.lastModified(hash).isBefore(cutoff);
+        }catch (IOException e){
+            log.warn("Could not read when content {} was stored, keeping it: {}", hash, e.getMessage());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void teardown(){
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,92 @@
+package com.bragi.bragi.bootstrap;
+
+import com.bragi.bragi.repository.SongContentRepository;
+import com.bragi.bragi.service.config.StorageConfig;
+import com.bragi.bragi.storage.SongContentStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Moves audio still held in the legacy {@code song_content_bytes} LOB column into the
+ * {@link SongContentStore}, one batch per transaction, leaving only hash, size and codec
+ * on the row.
+ */
+@Component
+@Slf4j
+public class SongContentMigration implements CommandLineRunner {
+
+    private final SongContentRepository songContentRepository;
+    private final SongContentStore songContentStore;
+    private final StorageConfig storageConfig;
+    private final TransactionTemplate transactionTemplate;
+
+    public SongContentMigration(SongContentRepository songContentRepository,
+                                SongContentStore songContentStore,
+                                StorageConfig storageConfig,
+                                PlatformTransactionManager transactionManager) {
+        this.songContentRepository = songContentRepository;
+        this.songContentStore = songContentStore;
+        this.storageConfig = storageConfig;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(String... args) {
+        if(!storageConfig.getMigration().isEnabled())
+            return;
+        var thread = new Thread(this::migrate, "song-content-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public long migrate(){
+        long lastId = 0;
+        long migrated = 0;
+        log.info("Starting song content migration with batch size: {}", storageConfig.getMigration().getBatchSize());
+        while(true){
+            var cursor = lastId;
+            var batch = transactionTemplate.execute(status -> migrateBatch(cursor));
+            if(batch == null || batch.processed() == 0)
+                break;
+            lastId = batch.lastId();
+            migrated += batch.migrated();
+            log.info("Migrated {} song content rows so far", migrated);
+        }
+        log.info("Finished song content migration, migrated {} rows", migrated);
+        return migrated;
+    }
+
+    private Batch migrateBatch(long afterId){
+        var rows = songContentRepository.findByHashIsNullAndIdGreaterThanOrderByIdAsc(afterId,
+                PageRequest.ofSize(storageConfig.getMigration().getBatchSize()));
+        if(rows.isEmpty())
+            return new Batch(0, 0, afterId);
+        long lastId = afterId;
+        int migrated = 0;
+        for(var songContent : rows){
+            lastId = songContent.getId();
+            if(songContent.getContent() == null)
+                continue;
+            try{
+                var storedContent = songContentStore.put(new ByteArrayInputStream(songContent.getContent()));
+                songContent.setHash(storedContent.getHash());
+                songContent.setSize(storedContent.getSize());
+                songContent.setContent(null);
+                migrated++;
+            }catch (IOException e){
+                log.error("Failed to migrate song content {}: {}", songContent.getId(), e.getMessage());
+            }
+        }
+        songContentRepository.saveAll(rows);
+        return new Batch(rows.size(), migrated, lastId);
+    }
+
+    private record Batch(int processed, int migrated, long lastId){}
+}
@@ -1,5 +1,6 @@
 package com.bragi.bragi.error;
 
+import com.bragi.bragi.retry.CircuitOpenException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
@@ -7,6 +8,7 @@ import org.springframework.web.server.WebExceptionHandler;
 import reactor.core.publisher.Mono;
 
 import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
 
 @Component
 public class GlobalRestExceptionHandler implements WebExceptionHandler {
@@ -20,6 +22,9 @@ public class GlobalRestExceptionHandler implements WebExceptionHandler {
         }else if(ex instanceof ClientException){
             exchange.getResponse().setStatusCode(HttpStatus.BAD_REQUEST);
             exchange.getResponse().setComplete();
+        }else if(ex instanceof RejectedExecutionException || ex instanceof CircuitOpenException){
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            exchange.getResponse().setComplete();
         }else{
             exchange.getResponse().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
             exchange.getResponse().setComplete();
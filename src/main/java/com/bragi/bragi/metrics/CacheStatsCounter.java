@@ -0,0 +1,57 @@
+package com.bragi.bragi.metrics;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+
+import java.util.Locale;
+
+/**
+ * Publishes Caffeine cache statistics to the brgi_cache_* metrics as they happen, labelled by
+ * cache name, instead of keeping them in memory for {@link #snapshot()}.
+ */
+public class CacheStatsCounter implements StatsCounter {
+
+    private final String name;
+    private final ServiceMetrics serviceMetrics;
+
+    public CacheStatsCounter(String name, ServiceMetrics serviceMetrics){
+        this.name = name;
+        this.serviceMetrics = serviceMetrics;
+    }
+
+    @Override
+    public void recordHits(int count) {
+        serviceMetrics.incrementCacheHits(name, count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        serviceMetrics.incrementCacheMisses(name, count);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        serviceMetrics.recordCacheLoadLatency(name, loadTime / 1e9);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        serviceMetrics.recordCacheLoadLatency(name, loadTime / 1e9);
+    }
+
+    @Override
+    @Deprecated
+    public void recordEviction() {
+    }
+
+    @Override
+    public void recordEviction(int weight, RemovalCause cause) {
+        serviceMetrics.incrementCacheEvictions(name, cause.name().toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return CacheStats.empty();
+    }
+}
@@ -1,11 +1,15 @@
 package com.bragi.bragi.metrics;
 
 
+import io.prometheus.client.Gauge;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.concurrent.Callable;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
 
 @Component
 @RequiredArgsConstructor
@@ -49,4 +53,84 @@ public class ServiceMetrics {
                 .labels(method)
                 .inc();
     }
+
+    //gauges are read from the scheduler on every scrape rather than pushed on every task
+    public void registerBlockingScheduler(String scheduler, IntSupplier queueDepth, IntSupplier activeThreads) {
+        serviceMetricsBuilder.getBlockingQueueDepthGauge()
+                .setChild(new SupplierGaugeChild(queueDepth::getAsInt), scheduler);
+        serviceMetricsBuilder.getBlockingActiveThreadsGauge()
+                .setChild(new SupplierGaugeChild(activeThreads::getAsInt), scheduler);
+    }
+
+    public void registerCircuitBreaker(String operation, IntSupplier state) {
+        serviceMetricsBuilder.getCircuitBreakerStateGauge()
+                .setChild(new SupplierGaugeChild(state::getAsInt), operation);
+    }
+
+    public void incrementCircuitBreakerRejections(String operation) {
+        serviceMetricsBuilder.getCircuitBreakerRejectionCounter()
+                .labels(operation)
+                .inc();
+    }
+
+    public void incrementRetryBudgetExhausted(String operation) {
+        serviceMetricsBuilder.getRetryBudgetExhaustedCounter()
+                .labels(operation)
+                .inc();
+    }
+
+    public void incrementCacheHits(String cache, int count) {
+        serviceMetricsBuilder.getCacheHitCounter()
+                .labels(cache)
+                .inc(count);
+    }
+
+    public void incrementCacheMisses(String cache, int count) {
+        serviceMetricsBuilder.getCacheMissCounter()
+                .labels(cache)
+                .inc(count);
+    }
+
+    public void incrementCacheEvictions(String cache, String cause) {
+        serviceMetricsBuilder.getCacheEvictionCounter()
+                .labels(cache, cause)
+                .inc();
+    }
+
+    public void recordCacheLoadLatency(String cache, double seconds) {
+        serviceMetricsBuilder.getCacheLoadLatencyHistogram()
+                .labels(cache)
+                .observe(seconds);
+    }
+
+    public void registerCacheSize(String cache, LongSupplier sizeBytes) {
+        serviceMetricsBuilder.getCacheSizeBytesGauge()
+                .setChild(new SupplierGaugeChild(sizeBytes::getAsLong), cache);
+    }
+
+    public void incrementSingleFlightOriginating(String flight) {
+        serviceMetricsBuilder.getSingleFlightOriginatingCounter()
+                .labels(flight)
+                .inc();
+    }
+
+    public void incrementSingleFlightCoalesced(String flight) {
+        serviceMetricsBuilder.getSingleFlightCoalescedCounter()
+                .labels(flight)
+                .inc();
+    }
+
+    private static class SupplierGaugeChild extends Gauge.Child {
+
+        private final DoubleSupplier supplier;
+
+        SupplierGaugeChild(DoubleSupplier supplier){
+            this.supplier = supplier;
+        }
+
+        @Override
+        public double get() {
+            return supplier.getAsDouble();
+        }
+    }
 }
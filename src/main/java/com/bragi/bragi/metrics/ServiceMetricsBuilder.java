@@ -2,6 +2,7 @@ package com.bragi.bragi.metrics;
 
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
 import lombok.Getter;
 import lombok.Setter;
@@ -19,6 +20,29 @@ public class ServiceMetricsBuilder {
 
     private Counter restErrorCounter;
 
+    private Gauge blockingQueueDepthGauge;
+
+    private Gauge blockingActiveThreadsGauge;
+
+    private Gauge circuitBreakerStateGauge;
+
+    private Counter circuitBreakerRejectionCounter;
+
+    private Counter retryBudgetExhaustedCounter;
+
+    private Counter cacheHitCounter;
+
+    private Counter cacheMissCounter;
+
+    private Counter cacheEvictionCounter;
+
+    private Histogram cacheLoadLatencyHistogram;
+
+    private Gauge cacheSizeBytesGauge;
+
+    private Counter singleFlightOriginatingCounter;
+
+    private Counter singleFlightCoalescedCounter;
 
 
     public ServiceMetricsBuilder(CollectorRegistry collectorRegistry){
@@ -52,7 +76,100 @@ public class ServiceMetricsBuilder {
                 .create()
                 .register(collectorRegistry);
 
+        blockingQueueDepthGauge = Gauge
+                .build()
+                .name("brgi_blocking_queue_depth")
+                .help("Gauge for tasks waiting on a blocking scheduler")
+                .labelNames("scheduler")
+                .create()
+                .register(collectorRegistry);
+
+        blockingActiveThreadsGauge = Gauge
+                .build()
+                .name("brgi_blocking_active_threads")
+                .help("Gauge for threads running tasks on a blocking scheduler")
+                .labelNames("scheduler")
+                .create()
+                .register(collectorRegistry);
+
+        circuitBreakerStateGauge = Gauge
+                .build()
+                .name("brgi_circuit_breaker_state")
+                .help("Gauge for circuit breaker state, 0 closed, 1 open, 2 half open")
+                .labelNames("operation")
+                .create()
+                .register(collectorRegistry);
+
+        circuitBreakerRejectionCounter = Counter
+                .build()
+                .name("brgi_circuit_breaker_rejection_counter")
+                .help("Counter for calls rejected by an open circuit breaker")
+                .labelNames("operation")
+                .create()
+                .register(collectorRegistry);
+
+        retryBudgetExhaustedCounter = Counter
+                .build()
+                .name("brgi_retry_budget_exhausted_counter")
+                .help("Counter for retries skipped because the retry budget was exhausted")
+                .labelNames("operation")
+                .create()
+                .register(collectorRegistry);
+
+        cacheHitCounter = Counter
+                .build()
+                .name("brgi_cache_hit_counter")
+                .help("Counter for cache lookups served from memory")
+                .labelNames("cache")
+                .create()
+                .register(collectorRegistry);
+
+        cacheMissCounter = Counter
+                .build()
+                .name("brgi_cache_miss_counter")
+                .help("Counter for cache lookups that went to the database")
+                .labelNames("cache")
+                .create()
+                .register(collectorRegistry);
+
+        cacheEvictionCounter = Counter
+                .build()
+                .name("brgi_cache_eviction_counter")
+                .help("Counter for cache entries evicted by size or expiry")
+                .labelNames("cache", "cause")
+                .create()
+                .register(collectorRegistry);
+
+        cacheLoadLatencyHistogram = Histogram.build()
+                .name("brgi_cache_load_latency")
+                .help("Histogram for seconds spent loading cache misses")
+                .labelNames("cache")
+                .create()
+                .register(collectorRegistry);
+
+        cacheSizeBytesGauge = Gauge
+                .build()
+                .name("brgi_cache_size_bytes")
+                .help("Gauge for bytes held by a byte budgeted cache")
+                .labelNames("cache")
+                .create()
+                .register(collectorRegistry);
+
+        singleFlightOriginatingCounter = Counter
+                .build()
+                .name("brgi_single_flight_originating_counter")
+                .help("Counter for loads that went to storage")
+                .labelNames("flight")
+                .create()
+                .register(collectorRegistry);
 
+        singleFlightCoalescedCounter = Counter
+                .build()
+                .name("brgi_single_flight_coalesced_counter")
+                .help("Counter for loads that joined one already in flight")
+                .labelNames("flight")
+                .create()
+                .register(collectorRegistry);
 
     }
 
@@ -1,8 +1,10 @@
 package com.bragi.bragi.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.Cascade;
 
@@ -14,11 +16,14 @@ import java.util.*;
 @Getter
 @Setter
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 @Table(name = "album")
 public class Album {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "entity_sequence")
+    @SequenceGenerator(name = "entity_sequence", sequenceName = "hibernate_sequence", allocationSize = 50)
     @Column(name = "id", nullable = false, unique = true)
     private long id;
 
@@ -29,7 +34,7 @@ public class Album {
     @Column(name = "title", nullable = false, unique = true)
     private String title;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "album_artist",
             joinColumns = @JoinColumn(name = "album_id"),
             inverseJoinColumns = @JoinColumn(name = "artist_id"))
@@ -42,7 +47,7 @@ public class Album {
         return artists;
     }
 
-    @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<Song> songs = new HashSet<>();
 
     public Set<Song> getSongs(){
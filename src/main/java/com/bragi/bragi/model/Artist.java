@@ -1,8 +1,10 @@
 package com.bragi.bragi.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import javax.persistence.*;
@@ -16,11 +18,14 @@ import java.util.UUID;
 @Getter
 @Setter
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 @Table(name = "artist")
 public class Artist {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "entity_sequence")
+    @SequenceGenerator(name = "entity_sequence", sequenceName = "hibernate_sequence", allocationSize = 50)
     @Column(name = "id", unique = true, nullable = false)
     private long id;
 
@@ -31,7 +36,7 @@ public class Artist {
     @Column(name = "artist_name")
     private String name;
 
-    @ManyToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @ManyToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<Song> songs = new HashSet<>();
 
     public Set<Song> getSongs(){
@@ -44,7 +49,7 @@ public class Artist {
     @Column(name = "time_started", nullable = false)
     private Timestamp timeStarted;
 
-    @ManyToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @ManyToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<Album> albums = new HashSet<>();
 
     public Set<Album> getAlbums(){
@@ -0,0 +1,32 @@
+package com.bragi.bragi.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+//one stored copy of some audio, shared by every song content and rendition with the same hash
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "content_blob")
+public class ContentBlob {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String hash;
+
+    @Column(name = "content_size")
+    private Long size;
+
+    //rows pointing at the blob, raised on save and recomputed by the reconciler
+    @Column(name = "reference_count", nullable = false)
+    private long referenceCount;
+
+}
@@ -1,26 +1,56 @@
 package com.bragi.bragi.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
 @Getter
 @Setter
 @Builder
-@Table(name = "song_content")
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "song_content",
+        indexes = @Index(name = "idx_song_content_hash", columnList = "content_hash"))
 public class SongContent {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "entity_sequence")
+    @SequenceGenerator(name = "entity_sequence", sequenceName = "hibernate_sequence", allocationSize = 50)
     @Column(name = "id")
     private long id;
 
+    //sha-256 of the audio held in the song content store
+    @Column(name = "content_hash", length = 64)
+    private String hash;
+
+    @Column(name = "content_size")
+    private Long size;
+
+    @Column(name = "codec")
+    private String codec;
+
+    //legacy inline audio, null once the row has been migrated to the song content store
     @Lob
     @Column(name = "song_content_bytes")
     private byte[] content;
 
+    //only here so removing the content removes its renditions, they are loaded through SongRenditionRepository
+    @OneToMany(mappedBy = "songContent", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<SongRendition> renditions = new ArrayList<>();
+
+    public List<SongRendition> getRenditions(){
+        if(renditions == null){
+            renditions = new ArrayList<>();
+        }
+        return renditions;
+    }
+
 }
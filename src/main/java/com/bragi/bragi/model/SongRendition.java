@@ -0,0 +1,45 @@
+package com.bragi.bragi.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+//a lower bitrate copy of a song's audio, held in the song content store next to the original
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "song_rendition",
+        uniqueConstraints = @UniqueConstraint(name = "uk_song_rendition_bitrate", columnNames = {"song_content_id", "bitrate_kbps"}),
+        indexes = @Index(name = "idx_song_rendition_hash", columnList = "content_hash"))
+public class SongRendition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "entity_sequence")
+    @SequenceGenerator(name = "entity_sequence", sequenceName = "hibernate_sequence", allocationSize = 50)
+    @Column(name = "id")
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "song_content_id", referencedColumnName = "id", nullable = false)
+    private SongContent songContent;
+
+    @Column(name = "bitrate_kbps", nullable = false)
+    private int bitrateKbps;
+
+    @Column(name = "content_hash", length = 64, nullable = false)
+    private String hash;
+
+    @Column(name = "content_size")
+    private Long size;
+
+    @Column(name = "codec")
+    private String codec;
+
+}
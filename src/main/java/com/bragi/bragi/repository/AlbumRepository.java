@@ -1,11 +1,15 @@
 package com.bragi.bragi.repository;
 
 import com.bragi.bragi.model.Album;
-import com.bragi.bragi.model.Artist;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,6 +17,37 @@ public interface AlbumRepository extends JpaRepository<Album, Long> {
 
     Optional<Album> findByTitle(String title);
 
+    //album with artist and song ids
+    @EntityGraph(attributePaths = {"artists", "songs"})
     Optional<Album> findByExternalId(UUID externalId);
 
+    @EntityGraph(attributePaths = {"artists", "songs"})
+    @Override
+    Optional<Album> findById(Long id);
+
+    boolean existsByExternalId(UUID externalId);
+
+    //resolves the references of a whole ingestion batch with one in query
+    List<Album> findAllByExternalIdIn(Collection<UUID> externalIds);
+
+    @EntityGraph(attributePaths = {"artists", "songs"})
+    @Query("select a from Album a where a.id = " +
+            "(select s.album.id from Song s where s.externalId = :externalId)")
+    Optional<Album> findBySongExternalId(@Param("externalId") UUID externalId);
+
+    @EntityGraph(attributePaths = {"artists", "songs"})
+    @Query("select distinct a from Album a where a in " +
+            "(select ara from Artist ar join ar.albums ara where ar.externalId = :externalId)")
+    List<Album> findAllByArtistExternalId(@Param("externalId") UUID externalId);
+
+    //keyset pages over ids only, collection fetches cannot be paged in the database
+    @Query("select a.id from Album a where a.id > :lastId order by a.id asc")
+    List<Long> findIdsAfter(@Param("lastId") long lastId, Pageable limit);
+
+    @Query("select a.id from Album a where a.id < :lastId order by a.id desc")
+    List<Long> findIdsBefore(@Param("lastId") long lastId, Pageable limit);
+
+    @EntityGraph(attributePaths = {"artists", "songs"})
+    List<Album> findDistinctByIdIn(Collection<Long> ids, Sort sort);
+
 }
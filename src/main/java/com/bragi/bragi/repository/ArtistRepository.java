@@ -1,14 +1,51 @@
 package com.bragi.bragi.repository;
 
 import com.bragi.bragi.model.Artist;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface ArtistRepository extends JpaRepository<Artist, Long> {
     Optional<Artist> findByName(String name);
 
+    //artist with song and album ids
+    @EntityGraph(attributePaths = {"songs", "albums"})
     Optional<Artist> findByExternalId(UUID externalId);
+
+    @EntityGraph(attributePaths = {"songs", "albums"})
+    @Override
+    Optional<Artist> findById(Long id);
+
+    boolean existsByExternalId(UUID externalId);
+
+    //resolves the references of a whole ingestion batch with one in query
+    List<Artist> findAllByExternalIdIn(Collection<UUID> externalIds);
+
+    @EntityGraph(attributePaths = {"songs", "albums"})
+    @Query("select distinct a from Artist a where a in " +
+            "(select sa from Song s join s.artists sa where s.externalId = :externalId)")
+    List<Artist> findAllBySongExternalId(@Param("externalId") UUID externalId);
+
+    @EntityGraph(attributePaths = {"songs", "albums"})
+    @Query("select distinct a from Artist a where a in " +
+            "(select ala from Album al join al.artists ala where al.externalId = :externalId)")
+    List<Artist> findAllByAlbumExternalId(@Param("externalId") UUID externalId);
+
+    //keyset pages over ids only, collection fetches cannot be paged in the database
+    @Query("select a.id from Artist a where a.id > :lastId order by a.id asc")
+    List<Long> findIdsAfter(@Param("lastId") long lastId, Pageable limit);
+
+    @Query("select a.id from Artist a where a.id < :lastId order by a.id desc")
+    List<Long> findIdsBefore(@Param("lastId") long lastId, Pageable limit);
+
+    @EntityGraph(attributePaths = {"songs", "albums"})
+    List<Artist> findDistinctByIdIn(Collection<Long> ids, Sort sort);
 }
@@ -0,0 +1,20 @@
+package com.bragi.bragi.repository;
+
+import com.bragi.bragi.model.ContentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    //inserts the blob or adds to its count in one statement, so two first references cannot collide
+    @Modifying
+    @Transactional
+    @Query(value = "insert into content_blob (content_hash, content_size, reference_count) values (:hash, :size, :count) " +
+            "on conflict (content_hash) do update set reference_count = content_blob.reference_count + excluded.reference_count",
+            nativeQuery = true)
+    int retain(@Param("hash") String hash, @Param("size") Long size, @Param("count") long count);
+
+}
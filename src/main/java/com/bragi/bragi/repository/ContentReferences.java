@@ -0,0 +1,10 @@
+package com.bragi.bragi.repository;
+
+//how many rows of one kind point at a stored blob
+public interface ContentReferences {
+
+    String getHash();
+
+    long getReferenceCount();
+
+}
@@ -0,0 +1,62 @@
+package com.bragi.bragi.repository;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.retry.CircuitBreaker;
+import com.bragi.bragi.retry.RetryBudget;
+import com.bragi.bragi.service.config.ResilienceConfig;
+import com.bragi.bragi.service.utils.SingleFlight;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One circuit breaker and one retry budget per class of {@link DataAccessService} operation,
+ * so a failing write path cannot open the circuit for reads and the other way around. Also
+ * holds the single flight that coalesces concurrent loads of the same song's audio row.
+ */
+@Component
+public class DataAccessResilience {
+
+    public enum Operation {
+        READ, WRITE
+    }
+
+    private final Map<Operation, CircuitBreaker> circuitBreakers = new EnumMap<>(Operation.class);
+    private final Map<Operation, RetryBudget> retryBudgets = new EnumMap<>(Operation.class);
+    private final SingleFlight<UUID, SongContent> songContentFlight;
+
+    public DataAccessResilience(ResilienceConfig resilienceConfig, ServiceMetrics serviceMetrics){
+        var breakerConfig = resilienceConfig.getCircuitBreaker();
+        var budgetConfig = resilienceConfig.getRetryBudget();
+        for(var operation : Operation.values()){
+            var name = operation.name().toLowerCase(Locale.ROOT);
+            var circuitBreaker = new CircuitBreaker(breakerConfig.getFailureThreshold(),
+                    breakerConfig.getOpenDurationMillis(),
+                    breakerConfig.getHalfOpenMaxCalls(),
+                    System::currentTimeMillis,
+                    ()-> serviceMetrics.incrementCircuitBreakerRejections(name));
+            circuitBreakers.put(operation, circuitBreaker);
+            retryBudgets.put(operation, new RetryBudget(budgetConfig.getMaxTokens(),
+                    budgetConfig.getTokensPerCall(),
+                    ()-> serviceMetrics.incrementRetryBudgetExhausted(name)));
+            serviceMetrics.registerCircuitBreaker(name, ()-> circuitBreaker.getState().ordinal());
+        }
+        songContentFlight = new SingleFlight<>("song_content", serviceMetrics);
+    }
+
+    public CircuitBreaker circuitBreaker(Operation operation){
+        return circuitBreakers.get(operation);
+    }
+
+    public RetryBudget retryBudget(Operation operation){
+        return retryBudgets.get(operation);
+    }
+
+    public SingleFlight<UUID, SongContent> songContentFlight(){
+        return songContentFlight;
+    }
+}
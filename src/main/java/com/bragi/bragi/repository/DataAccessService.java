@@ -2,20 +2,31 @@ package com.bragi.bragi.repository;
 
 import com.bragi.bragi.model.Album;
 import com.bragi.bragi.model.Artist;
+import com.bragi.bragi.model.ContentBlob;
 import com.bragi.bragi.model.Song;
 import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.model.SongRendition;
 import com.bragi.bragi.service.ArtistService;
 import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.PageCursor;
 import com.bragi.bragi.service.utils.RetryUtils;
-import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,194 +39,267 @@ public class DataAccessService {
     private final AlbumRepository albumRepository;
     private final ArtistRepository artistRepository;
     private final SongRepository songRepository;
+    private final SongRenditionRepository songRenditionRepository;
+    private final ContentBlobRepository contentBlobRepository;
+
+    private final DataAccessResilience dataAccessResilience;
+
+    private final MetadataCache metadataCache;
 
     //region artist
     public Artist saveArtist(Artist artist){
-        return RetryUtils.getResultFromRetry(()-> artistRepository.save(artist),
+        var savedArtist = write(()-> artistRepository.save(artist),
                 "Starting a save operation on artists",
-                "Retrying save operation on artists",
-                retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Retrying save operation on artists");
+        metadataCache.evictArtist(savedArtist);
+        return savedArtist;
+    }
+
+    //one transaction and, with hibernate.jdbc.batch_size set, batched inserts for the whole list
+    public List<Artist> saveAllArtists(List<Artist> artists){
+        var savedArtists = write(()-> artistRepository.saveAll(artists),
+                "Starting a save all operation on artists",
+                "Retrying save all operation on artists");
+        metadataCache.evictArtists(savedArtists);
+        return savedArtists;
+    }
+
+    public Map<UUID, Artist> getArtistsByExternalIds(Collection<UUID> externalIds){
+        if(externalIds.isEmpty())
+            return Map.of();
+        return read(()-> artistRepository.findAllByExternalIdIn(externalIds),
+                "Starting get artists by external ids operation: {}",
+                "Running get artists by external ids operation number: {}")
+                .stream()
+                .collect(Collectors.toMap(Artist::getExternalId, Function.identity()));
     }
 
     public Artist getArtistById(long id){
-        return RetryUtils.getResultFromRetry(()->{
+        return read(()->{
                     return artistRepository.findById(id);
                 }, "Starting a get artist by id operation on artists",
-                "Retrying get artist by id operation on artists",
-                retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis()).orElseThrow();
+                "Retrying get artist by id operation on artists").orElseThrow();
     }
 
     public void deleteArtistById(long id){
-        RetryUtils.getResultFromRetry(()->{
+        write(()->{
                     artistRepository.deleteById(id);
                     return null;
                 }, "Starting delete operation: {}",
-                "Running delete by id operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running delete by id operation number: {}");
+        metadataCache.evictAll();
     }
 
     public Set<Album> getAllAlbumsFromArtistId(long id) {
-        return RetryUtils.getResultFromRetry(()-> artistRepository.findById(id)
+        return read(()-> artistRepository.findById(id)
                         .orElseThrow().getAlbums()
                 , "Starting get by id operation: {}",
-                "Running get id operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get id operation number: {}");
     }
 
     public Set<Song> getAllSongsFromArtistId(long id){
-        return RetryUtils.getResultFromRetry(()-> artistRepository.findById(id)
+        return read(()-> artistRepository.findById(id)
                         .orElseThrow()
                         .getSongs(), "Starting get by id operation: {}",
-                "Running get id operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get id operation number: {}");
     }
 
     public Artist getArtistByName(String name){
-        return RetryUtils.getResultFromRetry(()-> artistRepository.findByName(name)
+        return read(()-> artistRepository.findByName(name)
                         .orElseThrow(), "Starting get by name operation: {}",
-                "Running get name operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get name operation number: {}");
     }
 
     public Artist getArtistByExternalId(UUID externalId){
-        return RetryUtils.getResultFromRetry(()-> artistRepository.findByExternalId(externalId)
+        return metadataCache.getArtist(externalId, key-> read(()-> artistRepository.findByExternalId(key)
                         .orElseThrow(), "Starting get by externalId operation: {}",
-                "Running get externalId operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get externalId operation number: {}"));
+    }
+
+    public List<Artist> getArtistsBySongExternalId(UUID songExternalId){
+        var artists = read(()-> artistRepository.findAllBySongExternalId(songExternalId),
+                "Starting get artists by song operation: {}",
+                "Running get artists by song operation number: {}");
+        if(artists.isEmpty() && !songRepository.existsByExternalId(songExternalId))
+            throw new NoSuchElementException(String.format("No song with external id: %s", songExternalId));
+        return artists;
+    }
+
+    public List<Artist> getArtistsByAlbumExternalId(UUID albumExternalId){
+        var artists = read(()-> artistRepository.findAllByAlbumExternalId(albumExternalId),
+                "Starting get artists by album operation: {}",
+                "Running get artists by album operation number: {}");
+        if(artists.isEmpty() && !albumRepository.existsByExternalId(albumExternalId))
+            throw new NoSuchElementException(String.format("No album with external id: %s", albumExternalId));
+        return artists;
     }
 
     //endregion
 
     //region album
     public Album saveAlbum(Album album){
-        return RetryUtils.getResultFromRetry(()-> albumRepository.save(album), "Starting save operation: {}",
-                "Running save operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+        var savedAlbum = write(()-> albumRepository.save(album), "Starting save operation: {}",
+                "Running save operation number: {}");
+        metadataCache.evictAlbum(savedAlbum);
+        return savedAlbum;
+    }
+
+    public List<Album> saveAllAlbums(List<Album> albums){
+        var savedAlbums = write(()-> albumRepository.saveAll(albums), "Starting save all operation: {}",
+                "Running save all operation number: {}");
+        metadataCache.evictAlbums(savedAlbums);
+        return savedAlbums;
+    }
+
+    public Map<UUID, Album> getAlbumsByExternalIds(Collection<UUID> externalIds){
+        if(externalIds.isEmpty())
+            return Map.of();
+        return read(()-> albumRepository.findAllByExternalIdIn(externalIds),
+                "Starting get albums by external ids operation: {}",
+                "Running get albums by external ids operation number: {}")
+                .stream()
+                .collect(Collectors.toMap(Album::getExternalId, Function.identity()));
     }
 
     public Album getAlbumById(long id){
-        return RetryUtils.getResultFromRetry(()-> albumRepository.findById(id), "Starting get by id operation: {}",
-                        "Running get id operation number: {}", retryConfig.getMaxAttempts(),
-                        retryConfig.getMaxWaitBetweenMillis(),
-                        retryConfig.getMinWaitBetweenMillis())
+        return read(()-> albumRepository.findById(id), "Starting get by id operation: {}",
+                        "Running get id operation number: {}")
                 .orElseThrow();
     }
 
     public void deleteAlbumById(long id){
-        RetryUtils.getResultFromRetry(()->{
+        write(()->{
                     albumRepository.deleteById(id);
                     return null;
                 }, "Starting delete operation: {}",
-                "Running delete by id operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running delete by id operation number: {}");
+        metadataCache.evictAll();
     }
 
     public Set<Artist> getAllArtistsFromAlbumId(long id) {
-        return RetryUtils.getResultFromRetry(()-> albumRepository.findById(id)
+        return read(()-> albumRepository.findById(id)
                         .orElseThrow()
                         .getArtists(), "Starting get by id operation: {}",
-                "Running get id operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get id operation number: {}");
     }
 
     public Set<Song> getAllSongsFromAlbumId(long id){
-        return RetryUtils.getResultFromRetry(()-> albumRepository.findById(id)
+        return read(()-> albumRepository.findById(id)
                         .orElseThrow()
                         .getSongs(), "Starting get by id operation: {}",
-                "Running get id operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get id operation number: {}");
     }
 
     public Album getAlbumByName(String name){
-        return RetryUtils.getResultFromRetry(()-> albumRepository.findByTitle(name)
+        return read(()-> albumRepository.findByTitle(name)
                         .orElseThrow(), "Starting get by name operation: {}",
-                "Running get name operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get name operation number: {}");
     }
 
     public Album getAlbumByExternalId(UUID externalId){
-        return RetryUtils.getResultFromRetry(()-> albumRepository.findByExternalId(externalId)
+        return metadataCache.getAlbum(externalId, key-> read(()-> albumRepository.findByExternalId(key)
                         .orElseThrow(), "Starting get by externalId operation: {}",
-                "Running get externalId operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get externalId operation number: {}"));
+    }
+
+    public Album getAlbumBySongExternalId(UUID songExternalId){
+        return read(()-> albumRepository.findBySongExternalId(songExternalId),
+                        "Starting get album by song operation: {}",
+                        "Running get album by song operation number: {}")
+                .orElseThrow();
+    }
+
+    public List<Album> getAlbumsByArtistExternalId(UUID artistExternalId){
+        var albums = read(()-> albumRepository.findAllByArtistExternalId(artistExternalId),
+                "Starting get albums by artist operation: {}",
+                "Running get albums by artist operation number: {}");
+        if(albums.isEmpty() && !artistRepository.existsByExternalId(artistExternalId))
+            throw new NoSuchElementException(String.format("No artist with external id: %s", artistExternalId));
+        return albums;
     }
     //endregion
 
     //region song
     public Song saveSong(Song song){
-        return RetryUtils.getResultFromRetry(()-> songRepository.save(song),
+        var contentIds = contentIds(List.of(song));
+        var savedSong = write(()-> songRepository.save(song),
                 "Starting a save operation on artists",
-                "Retrying save operation on artists",
-                retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Retrying save operation on artists");
+        metadataCache.evictSong(savedSong);
+        retainContent(addedContent(contentIds, List.of(savedSong)));
+        return savedSong;
+    }
+
+    public List<Song> saveAllSongs(List<Song> songs){
+        var contentIds = contentIds(songs);
+        var savedSongs = write(()-> songRepository.saveAll(songs),
+                "Starting a save all operation on songs",
+                "Retrying save all operation on songs");
+        metadataCache.evictSongs(savedSongs);
+        retainContent(addedContent(contentIds, savedSongs));
+        return savedSongs;
     }
 
     public Song getSongById(long id){
-        return RetryUtils.getResultFromRetry(()-> songRepository.findById(id), "Starting a get song by id operation on artists",
-                "Retrying get song by id operation on artists",
-                retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis()).orElseThrow();
+        return read(()-> songRepository.findById(id), "Starting a get song by id operation on artists",
+                "Retrying get song by id operation on artists").orElseThrow();
     }
 
     public void deleteSongById(long id){
-        RetryUtils.getResultFromRetry(()->{
+        write(()->{
                     songRepository.deleteById(id);
                     return null;
                 }, "Starting delete operation: {}",
-                "Running delete by id operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running delete by id operation number: {}");
+        metadataCache.evictAll();
     }
 
     public Album getAlbumBySongId(long id) {
-        return RetryUtils.getResultFromRetry(()-> songRepository.findById(id)
+        return read(()-> songRepository.findById(id)
                         .orElseThrow().getAlbum()
                 , "Starting get by id operation: {}",
-                "Running get id operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get id operation number: {}");
     }
 
     public Set<Artist> getAllArtistsFromSongId(long id){
-        return RetryUtils.getResultFromRetry(()-> songRepository.findById(id)
+        return read(()-> songRepository.findById(id)
                         .orElseThrow()
                         .getArtists(), "Starting get by id operation: {}",
-                "Running get id operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get id operation number: {}");
     }
 
     public Song getSongByName(String name){
-        return RetryUtils.getResultFromRetry(()-> songRepository.findByTitle(name)
+        return read(()-> songRepository.findByTitle(name)
                         .orElseThrow(), "Starting get by title operation: {}",
-                "Running get title operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get title operation number: {}");
     }
 
     public Song getSongByExternalId(UUID externalId){
-        return RetryUtils.getResultFromRetry(()-> songRepository.findByExternalId(externalId)
+        return metadataCache.getSong(externalId, key-> read(()-> songRepository.findByExternalId(key)
                         .orElseThrow(), "Starting get by externalId operation: {}",
-                "Running get externalId operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running get externalId operation number: {}"));
+    }
+
+    public List<Song> getSongsByAlbumExternalId(UUID albumExternalId, boolean withContent){
+        var songs = read(()-> withContent ?
+                        songRepository.findAllWithContentByAlbumExternalId(albumExternalId) :
+                        songRepository.findAllByAlbumExternalId(albumExternalId),
+                "Starting get songs by album operation: {}",
+                "Running get songs by album operation number: {}");
+        if(songs.isEmpty() && !albumRepository.existsByExternalId(albumExternalId))
+            throw new NoSuchElementException(String.format("No album with external id: %s", albumExternalId));
+        return songs;
+    }
+
+    public List<Song> getSongsByArtistExternalId(UUID artistExternalId, boolean withContent){
+        var songs = read(()-> withContent ?
+                        songRepository.findAllWithContentByArtistExternalId(artistExternalId) :
+                        songRepository.findAllByArtistExternalId(artistExternalId),
+                "Starting get songs by artist operation: {}",
+                "Running get songs by artist operation number: {}");
+        if(songs.isEmpty() && !artistRepository.existsByExternalId(artistExternalId))
+            throw new NoSuchElementException(String.format("No artist with external id: %s", artistExternalId));
+        return songs;
     }
 
 
@@ -224,14 +308,86 @@ public class DataAccessService {
 
     //region load song content
 
-    //todo need to write unit tests
+    //a new release brings many concurrent requests for one song, they share a single load of its row
     public SongContent getSongContentByExternalId(UUID externalId){
-        return RetryUtils.getResultFromRetry(()-> songRepository.findByExternalId(externalId)
+        return dataAccessResilience.songContentFlight().execute(externalId,
+                ()-> read(()-> songRepository.findWithContentByExternalId(externalId)
                         .orElseThrow(), "Starting get by externalId operation: {}",
-                "Running get externalId operation number: {}", retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis())
-                .getSongContent();
+                "Running get externalId operation number: {}")
+                .getSongContent());
+    }
+
+    //lowest bitrate first
+    public List<SongRendition> getRenditions(long songContentId){
+        return read(()-> songRenditionRepository.findAllBySongContentIdOrderByBitrateKbpsAsc(songContentId),
+                "Starting get renditions operation: {}",
+                "Running get renditions operation number: {}");
+    }
+
+    //keyed by song content id, lowest bitrate first
+    public Map<Long, List<SongRendition>> getRenditions(Collection<Long> songContentIds){
+        if(songContentIds.isEmpty())
+            return Map.of();
+        return read(()-> songRenditionRepository.findAllBySongContentIdInOrderByBitrateKbpsAsc(songContentIds),
+                "Starting get renditions operation: {}",
+                "Running get renditions operation number: {}")
+                .stream()
+                .collect(Collectors.groupingBy(rendition-> rendition.getSongContent().getId()));
+    }
+
+    public List<SongRendition> saveAllRenditions(List<SongRendition> renditions){
+        if(renditions.isEmpty())
+            return List.of();
+        var added = renditions.stream()
+                .filter(rendition-> rendition.getId() == 0)
+                .map(rendition-> ContentBlob.builder().hash(rendition.getHash()).size(rendition.getSize()).build())
+                .toList();
+        var savedRenditions = write(()-> songRenditionRepository.saveAll(renditions),
+                "Starting a save all operation on renditions",
+                "Retrying save all operation on renditions");
+        retainContent(added);
+        return savedRenditions;
+    }
+
+    //null for songs without content
+    private static List<Long> contentIds(List<Song> songs){
+        return songs.stream()
+                .map(song-> song.getSongContent() == null ? null : song.getSongContent().getId())
+                .toList();
+    }
+
+    //blobs pointed at by song content rows the save inserted. A row is new when its id changed, not
+    //only when it had none, as a rolled back batch leaves ids behind that a later save merges away
+    private static List<ContentBlob> addedContent(List<Long> contentIdsBefore, List<Song> savedSongs){
+        var added = new ArrayList<ContentBlob>();
+        for(var i = 0; i < savedSongs.size(); i++){
+            var songContent = savedSongs.get(i).getSongContent();
+            var idBefore = contentIdsBefore.get(i);
+            if(songContent == null || songContent.getHash() == null)
+                continue;
+            if(idBefore == null || idBefore == 0 || idBefore != songContent.getId())
+                added.add(ContentBlob.builder().hash(songContent.getHash()).size(songContent.getSize()).build());
+        }
+        return added;
+    }
+
+    //counts a new reference to each blob. Not retried, as a retry could count twice; any count
+    //missed here is put right by the content blob reconciler, which also does all the lowering
+    private void retainContent(List<ContentBlob> added){
+        if(added.isEmpty())
+            return;
+        try{
+            var blobs = new HashMap<String, ContentBlob>();
+            var references = new HashMap<String, Long>();
+            for(var blob : added){
+                blobs.putIfAbsent(blob.getHash(), blob);
+                references.merge(blob.getHash(), 1L, Long::sum);
+            }
+            blobs.values().forEach(blob-> contentBlobRepository.retain(blob.getHash(), blob.getSize(),
+                    references.get(blob.getHash())));
+        }catch (Exception e){
+            log.warn("Failed to count references to stored content, leaving it to the reconciler: {}", e.getMessage());
+        }
     }
 
     public SongContent getSongContentFromSong(Song song){
@@ -245,9 +401,12 @@ public class DataAccessService {
                 .stream()
                 .map(artist -> artist.getExternalId().toString()).collect(Collectors.toSet());
 
-        return brgi.grpc.Song
-                .newBuilder()
-                .setContent(ByteString.copyFrom(songContent.getContent()))
+        var builder = brgi.grpc.Song.newBuilder();
+        //content held in the song content store is served by SongContentService
+        if(songContent.getContent() != null)
+            builder.setContent(UnsafeByteOperations.unsafeWrap(songContent.getContent()));
+
+        return builder
                 .setDuration(song.getDuration())
                 .setReleaseDate(com.google.protobuf.Timestamp.newBuilder()
                         .setNanos(song.getDateReleased().getNanos())
@@ -258,32 +417,61 @@ public class DataAccessService {
                 .build();
     }
 
-    public Page<Artist> findAllArtists(Pageable pageable) {
-        return RetryUtils.getResultFromRetry(()-> artistRepository.findAll(pageable),
+    public List<Artist> findAllArtists(PageCursor cursor, int limit) {
+        return read(()-> fetchPage(cursor.ascending() ?
+                                artistRepository.findIdsAfter(cursor.lastId(), PageRequest.ofSize(limit)) :
+                                artistRepository.findIdsBefore(cursor.lastId(), PageRequest.ofSize(limit)),
+                        ids-> artistRepository.findDistinctByIdIn(ids, idOrder(cursor))),
                 "Starting to page through artists: {}",
-                "Running page through artists: {}",
-                retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running page through artists: {}");
     }
 
-    public Page<Album> findAllAlbums(Pageable pageable) {
-        return RetryUtils.getResultFromRetry(()->albumRepository.findAll(pageable),
+    public List<Album> findAllAlbums(PageCursor cursor, int limit) {
+        return read(()-> fetchPage(cursor.ascending() ?
+                                albumRepository.findIdsAfter(cursor.lastId(), PageRequest.ofSize(limit)) :
+                                albumRepository.findIdsBefore(cursor.lastId(), PageRequest.ofSize(limit)),
+                        ids-> albumRepository.findDistinctByIdIn(ids, idOrder(cursor))),
                 "Starting to page through albums: {}",
-                "Running page through albums: {}",
-                retryConfig.getMaxAttempts(),
-                retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                "Running page through albums: {}");
     }
 
-    public Page<Song> findAllSongs(Pageable pageable) {
-        return RetryUtils.getResultFromRetry(()->songRepository.findAll(pageable),
+    public List<Song> findAllSongs(PageCursor cursor, int limit) {
+        return read(()-> fetchPage(cursor.ascending() ?
+                                songRepository.findIdsAfter(cursor.lastId(), PageRequest.ofSize(limit)) :
+                                songRepository.findIdsBefore(cursor.lastId(), PageRequest.ofSize(limit)),
+                        ids-> songRepository.findDistinctByIdIn(ids, idOrder(cursor))),
                 "Starting to page through songs: {}",
-                "Running page through songs: {}",
+                "Running page through songs: {}");
+    }
+
+    //endregion
+
+    private <R> R read(Callable<R> callable, String messageBefore, String messageDuring){
+        return withResilience(DataAccessResilience.Operation.READ, callable, messageBefore, messageDuring);
+    }
+
+    private <R> R write(Callable<R> callable, String messageBefore, String messageDuring){
+        return withResilience(DataAccessResilience.Operation.WRITE, callable, messageBefore, messageDuring);
+    }
+
+    private <R> R withResilience(DataAccessResilience.Operation operation, Callable<R> callable,
+                                 String messageBefore, String messageDuring){
+        return RetryUtils.getResultFromRetry(callable, messageBefore, messageDuring,
                 retryConfig.getMaxAttempts(),
                 retryConfig.getMaxWaitBetweenMillis(),
-                retryConfig.getMinWaitBetweenMillis());
+                retryConfig.getMinWaitBetweenMillis(),
+                dataAccessResilience.circuitBreaker(operation),
+                dataAccessResilience.retryBudget(operation));
     }
 
-    //endregion
+    //pages over ids, then loads the page with its fetch plan in a single query
+    private static <T> List<T> fetchPage(List<Long> ids, Function<List<Long>, List<T>> loader){
+        if(ids.isEmpty())
+            return List.of();
+        return loader.apply(ids);
+    }
+
+    private static Sort idOrder(PageCursor cursor){
+        return cursor.ascending() ? Sort.by("id").ascending() : Sort.by("id").descending();
+    }
 }
@@ -0,0 +1,190 @@
+package com.bragi.bragi.repository;
+
+import com.bragi.bragi.metrics.CacheStatsCounter;
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.model.Album;
+import com.bragi.bragi.model.Artist;
+import com.bragi.bragi.model.Song;
+import com.bragi.bragi.service.config.MetadataCacheConfig;
+import com.bragi.bragi.service.utils.SingleFlight;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Size and TTL bounded caches of artist, album and song metadata keyed by external id. Caffeine
+ * evicts with W-TinyLFU, so the small set of hot tracks stays resident while one-off lookups of
+ * the long tail do not push them out. Values are the entities loaded with their fetch plan, so
+ * callers see exactly what a database read would have returned.
+ */
+@Component
+public class MetadataCache {
+
+    private final EntityCache<Artist> artists;
+    private final EntityCache<Album> albums;
+    private final EntityCache<Song> songs;
+
+    public MetadataCache(MetadataCacheConfig metadataCacheConfig, ServiceMetrics serviceMetrics){
+        artists = new EntityCache<>("artist", metadataCacheConfig, serviceMetrics);
+        albums = new EntityCache<>("album", metadataCacheConfig, serviceMetrics);
+        songs = new EntityCache<>("song", metadataCacheConfig, serviceMetrics);
+    }
+
+    public Artist getArtist(UUID externalId, Function<UUID, Artist> loader){
+        return artists.get(externalId, loader);
+    }
+
+    public Album getAlbum(UUID externalId, Function<UUID, Album> loader){
+        return albums.get(externalId, loader);
+    }
+
+    public Song getSong(UUID externalId, Function<UUID, Song> loader){
+        return songs.get(externalId, loader);
+    }
+
+    //cached albums and songs embed the artist, so they go stale with it
+    public void evictArtist(Artist artist){
+        evictArtists(List.of(artist));
+    }
+
+    //one scan of the other caches per batch rather than per saved artist
+    public void evictArtists(Collection<Artist> saved){
+        var ids = ids(saved, Artist::getId);
+        artists.invalidateAll(saved, Artist::getExternalId);
+        albums.invalidateIf(album -> references(album.getArtists(), Artist::getId, ids));
+        songs.invalidateIf(song -> references(song.getArtists(), Artist::getId, ids));
+        saved.forEach(artist -> {
+            albums.invalidateAll(artist.getAlbums(), Album::getExternalId);
+            songs.invalidateAll(artist.getSongs(), Song::getExternalId);
+        });
+    }
+
+    public void evictAlbum(Album album){
+        evictAlbums(List.of(album));
+    }
+
+    public void evictAlbums(Collection<Album> saved){
+        var ids = ids(saved, Album::getId);
+        albums.invalidateAll(saved, Album::getExternalId);
+        artists.invalidateIf(artist -> references(artist.getAlbums(), Album::getId, ids));
+        songs.invalidateIf(song -> song.getAlbum() != null && ids.contains(song.getAlbum().getId()));
+        saved.forEach(album -> {
+            artists.invalidateAll(album.getArtists(), Artist::getExternalId);
+            songs.invalidateAll(album.getSongs(), Song::getExternalId);
+        });
+    }
+
+    public void evictSong(Song song){
+        evictSongs(List.of(song));
+    }
+
+    public void evictSongs(Collection<Song> saved){
+        var ids = ids(saved, Song::getId);
+        songs.invalidateAll(saved, Song::getExternalId);
+        artists.invalidateIf(artist -> references(artist.getSongs(), Song::getId, ids));
+        albums.invalidateIf(album -> references(album.getSongs(), Song::getId, ids));
+        saved.forEach(song -> {
+            artists.invalidateAll(song.getArtists(), Artist::getExternalId);
+            if(song.getAlbum() != null)
+                albums.invalidate(song.getAlbum().getExternalId());
+        });
+    }
+
+    //deletes cascade across the graph (album to songs, artist to songs, song to album), so drop everything
+    public void evictAll(){
+        artists.invalidateAll();
+        albums.invalidateAll();
+        songs.invalidateAll();
+    }
+
+    private static <T> Set<Long> ids(Collection<T> entities, Function<T, Long> id){
+        return entities.stream().map(id).collect(Collectors.toSet());
+    }
+
+    private static <T> boolean references(Collection<T> associations, Function<T, Long> id, Set<Long> targets){
+        if(!Hibernate.isInitialized(associations))
+            return true;
+        return associations.stream().anyMatch(association -> targets.contains(id.apply(association)));
+    }
+
+    private static class EntityCache<V> {
+
+        private final String name;
+        private final boolean enabled;
+        private final Cache<UUID, V> cache;
+        private final ServiceMetrics serviceMetrics;
+        private final SingleFlight<UUID, V> flight;
+
+        //bumped on every invalidation so a load that raced with a write does not cache the old row
+        private final AtomicLong generation = new AtomicLong();
+
+        EntityCache(String name, MetadataCacheConfig metadataCacheConfig, ServiceMetrics serviceMetrics){
+            this.name = name;
+            this.enabled = metadataCacheConfig.isEnabled();
+            this.serviceMetrics = serviceMetrics;
+            this.flight = new SingleFlight<>(name, serviceMetrics);
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(metadataCacheConfig.getMaximumSize())
+                    .expireAfterWrite(Duration.ofSeconds(metadataCacheConfig.getExpireAfterWriteSeconds()))
+                    .recordStats(()-> new CacheStatsCounter(name, serviceMetrics))
+                    .build();
+        }
+
+        //loads outside the cache so a slow, retrying database read never holds a cache lock, which
+        //also means Caffeine never sees the load and it is timed here. Concurrent misses for the
+        //same key share one load
+        V get(UUID key, Function<UUID, V> loader){
+            if(!enabled)
+                return flight.execute(key, ()-> loader.apply(key));
+            var cached = cache.getIfPresent(key);
+            if(cached != null)
+                return cached;
+            return flight.execute(key, ()-> load(key, loader));
+        }
+
+        private V load(UUID key, Function<UUID, V> loader){
+            var before = generation.get();
+            var start = System.nanoTime();
+            var value = loader.apply(key);
+            serviceMetrics.recordCacheLoadLatency(name, (System.nanoTime() - start) / 1e9);
+            if(value != null && generation.get() == before)
+                cache.put(key, value);
+            return value;
+        }
+
+        void invalidate(UUID key){
+            generation.incrementAndGet();
+            if(key != null)
+                cache.invalidate(key);
+        }
+
+        void invalidateIf(Predicate<V> predicate){
+            generation.incrementAndGet();
+            cache.asMap().values().removeIf(predicate);
+        }
+
+        <T> void invalidateAll(Collection<T> associations, Function<T, UUID> key){
+            if(!Hibernate.isInitialized(associations)){
+                invalidateAll();
+                return;
+            }
+            associations.forEach(association -> invalidate(key.apply(association)));
+        }
+
+        void invalidateAll(){
+            generation.incrementAndGet();
+            cache.invalidateAll();
+        }
+    }
+}
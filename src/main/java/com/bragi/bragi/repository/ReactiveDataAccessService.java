@@ -0,0 +1,271 @@
+package com.bragi.bragi.repository;
+
+import com.bragi.bragi.model.Album;
+import com.bragi.bragi.model.Artist;
+import com.bragi.bragi.model.Song;
+import com.bragi.bragi.retry.Backoff;
+import com.bragi.bragi.retry.Retry;
+import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.PageCursor;
+import com.bragi.bragi.service.utils.RetryUtils;
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking read access to the catalogue over R2DBC, used by the REST controllers.
+ * Rows are mapped onto the JPA model with their associations reduced to id and external id,
+ * which is all the REST dtos expose. Writes still go through {@link DataAccessService}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveDataAccessService {
+
+    private static final String SELECT_ARTISTS = "select a.id, a.external_id, a.artist_name, a.time_started from artist a";
+    private static final String SELECT_ALBUMS = "select a.id, a.external_id, a.title, a.release_date from album a";
+    private static final String SELECT_SONGS = "select s.id, s.external_id, s.title, s.duration, s.date_released, " +
+            "al.id as album_id, al.external_id as album_external_id from song s left join album al on al.id = s.album_id";
+
+    //an attempt only subscribes to its query, so reactor's bounded parallel workers start them
+    private static final Executor ATTEMPTS = runnable-> Schedulers.parallel().schedule(runnable);
+
+    private final RetryConfig retryConfig;
+    private final DatabaseClient databaseClient;
+
+    //region artist
+    public Mono<Artist> getArtistByExternalId(UUID externalId){
+        return withRetry(databaseClient.sql(SELECT_ARTISTS + " where a.external_id = :externalId")
+                        .bind("externalId", externalId)
+                        .map((row, metadata)-> mapArtist(row))
+                        .all()
+                        .collectList()
+                        .flatMap(this::withArtistAssociations)
+                        .flatMap(artists-> Mono.justOrEmpty(artists.stream().findFirst()))
+                        .switchIfEmpty(Mono.error(()-> new NoSuchElementException(
+                                String.format("No artist with external id: %s", externalId)))),
+                "get artist by external id");
+    }
+
+    public Flux<Artist> findAllArtists(PageCursor cursor, int limit){
+        return withRetry(databaseClient.sql(SELECT_ARTISTS + page(cursor, limit, "a"))
+                        .bind("lastId", cursor.lastId())
+                        .map((row, metadata)-> mapArtist(row))
+                        .all()
+                        .collectList()
+                        .flatMap(this::withArtistAssociations),
+                "page through artists")
+                .flatMapIterable(Function.identity());
+    }
+
+    private Mono<List<Artist>> withArtistAssociations(List<Artist> artists){
+        if(artists.isEmpty())
+            return Mono.just(artists);
+        var ids = artists.stream().map(Artist::getId).toList();
+        return Mono.zip(
+                associations("select j.artist_id as owner_id, s.id, s.external_id from artist_songs j " +
+                        "join song s on s.id = j.songs_id where j.artist_id in (:ids)", ids, this::songReference),
+                associations("select j.artist_id as owner_id, al.id, al.external_id from artist_albums j " +
+                        "join album al on al.id = j.albums_id where j.artist_id in (:ids)", ids, this::albumReference))
+                .map(tuple-> {
+                    artists.forEach(artist-> {
+                        artist.setSongs(tuple.getT1().getOrDefault(artist.getId(), new HashSet<>()));
+                        artist.setAlbums(tuple.getT2().getOrDefault(artist.getId(), new HashSet<>()));
+                    });
+                    return artists;
+                });
+    }
+    //endregion
+
+    //region album
+    public Mono<Album> getAlbumByExternalId(UUID externalId){
+        return withRetry(databaseClient.sql(SELECT_ALBUMS + " where a.external_id = :externalId")
+                        .bind("externalId", externalId)
+                        .map((row, metadata)-> mapAlbum(row))
+                        .all()
+                        .collectList()
+                        .flatMap(this::withAlbumAssociations)
+                        .flatMap(albums-> Mono.justOrEmpty(albums.stream().findFirst()))
+                        .switchIfEmpty(Mono.error(()-> new NoSuchElementException(
+                                String.format("No album with external id: %s", externalId)))),
+                "get album by external id");
+    }
+
+    public Flux<Album> findAllAlbums(PageCursor cursor, int limit){
+        return withRetry(databaseClient.sql(SELECT_ALBUMS + page(cursor, limit, "a"))
+                        .bind("lastId", cursor.lastId())
+                        .map((row, metadata)-> mapAlbum(row))
+                        .all()
+                        .collectList()
+                        .flatMap(this::withAlbumAssociations),
+                "page through albums")
+                .flatMapIterable(Function.identity());
+    }
+
+    private Mono<List<Album>> withAlbumAssociations(List<Album> albums){
+        if(albums.isEmpty())
+            return Mono.just(albums);
+        var ids = albums.stream().map(Album::getId).toList();
+        return Mono.zip(
+                associations("select j.album_id as owner_id, ar.id, ar.external_id from album_artist j " +
+                        "join artist ar on ar.id = j.artist_id where j.album_id in (:ids)", ids, this::artistReference),
+                associations("select j.album_id as owner_id, s.id, s.external_id from album_songs j " +
+                        "join song s on s.id = j.songs_id where j.album_id in (:ids)", ids, this::songReference))
+                .map(tuple-> {
+                    albums.forEach(album-> {
+                        album.setArtists(tuple.getT1().getOrDefault(album.getId(), new HashSet<>()));
+                        album.setSongs(tuple.getT2().getOrDefault(album.getId(), new HashSet<>()));
+                    });
+                    return albums;
+                });
+    }
+    //endregion
+
+    //region song
+    public Mono<Song> getSongByExternalId(UUID externalId){
+        return withRetry(databaseClient.sql(SELECT_SONGS + " where s.external_id = :externalId")
+                        .bind("externalId", externalId)
+                        .map((row, metadata)-> mapSong(row))
+                        .all()
+                        .collectList()
+                        .flatMap(this::withSongAssociations)
+                        .flatMap(songs-> Mono.justOrEmpty(songs.stream().findFirst()))
+                        .switchIfEmpty(Mono.error(()-> new NoSuchElementException(
+                                String.format("No song with external id: %s", externalId)))),
+                "get song by external id");
+    }
+
+    public Flux<Song> findAllSongs(PageCursor cursor, int limit){
+        return withRetry(databaseClient.sql(SELECT_SONGS + page(cursor, limit, "s"))
+                        .bind("lastId", cursor.lastId())
+                        .map((row, metadata)-> mapSong(row))
+                        .all()
+                        .collectList()
+                        .flatMap(this::withSongAssociations),
+                "page through songs")
+                .flatMapIterable(Function.identity());
+    }
+
+    private Mono<List<Song>> withSongAssociations(List<Song> songs){
+        if(songs.isEmpty())
+            return Mono.just(songs);
+        var ids = songs.stream().map(Song::getId).toList();
+        return associations("select j.song_id as owner_id, ar.id, ar.external_id from song_artist j " +
+                        "join artist ar on ar.id = j.artist_id where j.song_id in (:ids)", ids, this::artistReference)
+                .map(artists-> {
+                    songs.forEach(song-> song.setArtists(artists.getOrDefault(song.getId(), new HashSet<>())));
+                    return songs;
+                });
+    }
+    //endregion
+
+    //loads the (owner id, reference) pairs of a join table for a whole page in one query
+    private <T> Mono<Map<Long, Set<T>>> associations(String sql, List<Long> ownerIds, Function<Row, T> mapper){
+        return databaseClient.sql(sql)
+                .bind("ids", ownerIds)
+                .map((row, metadata)-> Map.entry(row.get("owner_id", Long.class), mapper.apply(row)))
+                .all()
+                .collect(Collectors.groupingBy(Map.Entry::getKey,
+                        Collectors.mapping(Map.Entry::getValue, Collectors.toCollection(HashSet::new))));
+    }
+
+    private <T> Mono<T> withRetry(Mono<T> query, String operation){
+        return Retry.fromCompletionStage(query::toFuture)
+                .setPredicate(RetryUtils::isRetryable)
+                .setRetryAttempts(retryConfig.getMaxAttempts())
+                .setBackoff(Backoff.exponentialFullJitter(retryConfig.getMinWaitBetweenMillis(),
+                        retryConfig.getMaxWaitBetweenMillis()))
+                .setOnCompleteFunction(RetryUtils::propagate)
+                .setExecutor(ATTEMPTS)
+                .setOnBefore(retry-> log.info("Starting {} operation", operation))
+                .setOnRetry(retry-> {
+                    if(retry.getAttemptNumber() > 1)
+                        log.info("Retrying {} operation number: {}", operation, retry.getAttemptNumber() - 1);
+                })
+                .build()
+                .toMono();
+    }
+
+    //keyset page, seeks past the last id instead of skipping rows with an offset
+    private static String page(PageCursor cursor, int limit, String alias){
+        return cursor.ascending() ?
+                String.format(" where %s.id > :lastId order by %s.id asc limit %d", alias, alias, limit) :
+                String.format(" where %s.id < :lastId order by %s.id desc limit %d", alias, alias, limit);
+    }
+
+    private Artist mapArtist(Row row){
+        return Artist.builder()
+                .id(row.get("id", Long.class))
+                .externalId(row.get("external_id", UUID.class))
+                .name(row.get("artist_name", String.class))
+                .timeStarted(timestamp(row.get("time_started", LocalDateTime.class)))
+                .build();
+    }
+
+    private Album mapAlbum(Row row){
+        return Album.builder()
+                .id(row.get("id", Long.class))
+                .externalId(row.get("external_id", UUID.class))
+                .title(row.get("title", String.class))
+                .date(timestamp(row.get("release_date", LocalDateTime.class)))
+                .build();
+    }
+
+    private Song mapSong(Row row){
+        var albumId = row.get("album_id", Long.class);
+        var duration = row.get("duration", Long.class);
+        return Song.builder()
+                .id(row.get("id", Long.class))
+                .externalId(row.get("external_id", UUID.class))
+                .title(row.get("title", String.class))
+                .duration(duration == null ? 0 : duration)
+                .dateReleased(timestamp(row.get("date_released", LocalDateTime.class)))
+                .album(albumId == null ? null : Album.builder()
+                        .id(albumId)
+                        .externalId(row.get("album_external_id", UUID.class))
+                        .build())
+                .build();
+    }
+
+    private Artist artistReference(Row row){
+        return Artist.builder()
+                .id(row.get("id", Long.class))
+                .externalId(row.get("external_id", UUID.class))
+                .build();
+    }
+
+    private Album albumReference(Row row){
+        return Album.builder()
+                .id(row.get("id", Long.class))
+                .externalId(row.get("external_id", UUID.class))
+                .build();
+    }
+
+    private Song songReference(Row row){
+        return Song.builder()
+                .id(row.get("id", Long.class))
+                .externalId(row.get("external_id", UUID.class))
+                .build();
+    }
+
+    private static Timestamp timestamp(LocalDateTime dateTime){
+        return dateTime == null ? null : Timestamp.valueOf(dateTime);
+    }
+}
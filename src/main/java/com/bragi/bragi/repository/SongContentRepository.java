@@ -1,9 +1,20 @@
 package com.bragi.bragi.repository;
 
 import com.bragi.bragi.model.SongContent;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface SongContentRepository extends JpaRepository<SongContent, Long> {
 
+    List<SongContent> findByHashIsNullAndIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    @Query("select c.hash as hash, count(c) as referenceCount from SongContent c where c.hash in :hashes group by c.hash")
+    List<ContentReferences> countReferences(@Param("hashes") Collection<String> hashes);
+
 }
@@ -0,0 +1,20 @@
+package com.bragi.bragi.repository;
+
+import com.bragi.bragi.model.SongRendition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface SongRenditionRepository extends JpaRepository<SongRendition, Long> {
+
+    List<SongRendition> findAllBySongContentIdOrderByBitrateKbpsAsc(long songContentId);
+
+    List<SongRendition> findAllBySongContentIdInOrderByBitrateKbpsAsc(Collection<Long> songContentIds);
+
+    @Query("select r.hash as hash, count(r) as referenceCount from SongRendition r where r.hash in :hashes group by r.hash")
+    List<ContentReferences> countReferences(@Param("hashes") Collection<String> hashes);
+
+}
@@ -1,13 +1,61 @@
 package com.bragi.bragi.repository;
 
 import com.bragi.bragi.model.Song;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface SongRepository extends JpaRepository<Song, Long> {
     Optional<Song> findByTitle(String name);
+
+    //song with album and artist ids
+    @EntityGraph(attributePaths = {"album", "artists"})
     Optional<Song> findByExternalId(UUID externalId);
+
+    @EntityGraph(attributePaths = {"album", "artists"})
+    @Override
+    Optional<Song> findById(Long id);
+
+    @EntityGraph(attributePaths = "songContent")
+    Optional<Song> findWithContentByExternalId(UUID externalId);
+
+    boolean existsByExternalId(UUID externalId);
+
+    @EntityGraph(attributePaths = {"album", "artists"})
+    @Query("select distinct s from Song s where s in " +
+            "(select als from Album al join al.songs als where al.externalId = :externalId)")
+    List<Song> findAllByAlbumExternalId(@Param("externalId") UUID externalId);
+
+    @EntityGraph(attributePaths = {"album", "artists", "songContent"})
+    @Query("select distinct s from Song s where s in " +
+            "(select als from Album al join al.songs als where al.externalId = :externalId)")
+    List<Song> findAllWithContentByAlbumExternalId(@Param("externalId") UUID externalId);
+
+    @EntityGraph(attributePaths = {"album", "artists"})
+    @Query("select distinct s from Song s where s in " +
+            "(select ars from Artist ar join ar.songs ars where ar.externalId = :externalId)")
+    List<Song> findAllByArtistExternalId(@Param("externalId") UUID externalId);
+
+    @EntityGraph(attributePaths = {"album", "artists", "songContent"})
+    @Query("select distinct s from Song s where s in " +
+            "(select ars from Artist ar join ar.songs ars where ar.externalId = :externalId)")
+    List<Song> findAllWithContentByArtistExternalId(@Param("externalId") UUID externalId);
+
+    //keyset pages over ids only, collection fetches cannot be paged in the database
+    @Query("select s.id from Song s where s.id > :lastId order by s.id asc")
+    List<Long> findIdsAfter(@Param("lastId") long lastId, Pageable limit);
+
+    @Query("select s.id from Song s where s.id < :lastId order by s.id desc")
+    List<Long> findIdsBefore(@Param("lastId") long lastId, Pageable limit);
+
+    @EntityGraph(attributePaths = {"album", "artists"})
+    List<Song> findDistinctByIdIn(Collection<Long> ids, Sort sort);
 }
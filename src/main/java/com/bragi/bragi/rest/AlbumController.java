@@ -8,6 +8,8 @@ import com.bragi.bragi.rest.dto.Artist;
 import com.bragi.bragi.service.AlbumService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -22,27 +24,34 @@ public class AlbumController {
 
     private final AlbumService albumService;
     private final ServiceMetrics serviceMetrics;
+    private final BlockingScheduler blockingScheduler;
 
+    //keyset paged, the next page is requested with the cursor returned in the X-Next-Cursor header
     @GetMapping("/page")
-    public Mono<List<Album>> getAlbums(@RequestParam("offset") int offset,
-                                         @RequestParam("size") int size,
-                                         @RequestParam("sort") String sort){
-        return Flux
-                .fromIterable(albumService.findAllAlbums(offset, size, sort))
-                .map(Album::convertToDto)
-                .collectList()
+    public Mono<ResponseEntity<List<Album>>> getAlbums(@RequestParam(value = "cursor", required = false) String cursor,
+                                                      @RequestParam(value = "size", defaultValue = "0") int size,
+                                                      @RequestParam(value = "sort", defaultValue = "asc") String sort){
+        return albumService.findAlbums(cursor, size, sort)
+                .map(page-> CursorPages.toResponse(page, Album::convertToDto))
                 .elapsed()
                 .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "get_albums", s.getT1()))
                 .flatMap(tuple-> Mono.just(tuple.getT2()))
                 .doOnSubscribe(next->{
                     log.info("Received request to get albums");
                 });
+    }
 
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Album> exportAlbums(@RequestParam(value = "sort", defaultValue = "asc") String sort){
+        return CursorPages.toExport(()-> albumService.exportAlbums(sort), Album::convertToDto, serviceMetrics, "export_albums")
+                .doOnSubscribe(next->{
+                    log.info("Received request to export albums");
+                });
     }
 
     @GetMapping("/{id}")
     public Mono<Album> getAlbum(@PathVariable("id") String id){
-        return Mono.just(albumService.getAlbum(id))
+        return albumService.findAlbum(id)
                 .map(Album::convertToDto)
                 .elapsed()
                 .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "get_album", s.getT1()))
@@ -55,7 +64,8 @@ public class AlbumController {
 
     @PostMapping
     public Mono<Album> createAlbum(@RequestBody Album album){
-        return Mono.just(albumService.store(album))
+        return Mono.fromCallable(()-> albumService.store(album))
+                .subscribeOn(blockingScheduler.getScheduler())
                 .map(Album::convertToDto)
                 .elapsed()
                 .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "create_album",
@@ -67,11 +77,11 @@ public class AlbumController {
 
     @DeleteMapping
     public Mono<Void> deleteAlbum(@PathVariable("id") String id){
-        return Mono.just(id)
-                .map(next->{
+        return Mono.fromCallable(()->{
                     albumService.deleteAlbum(id);
                     return id;
                 })
+                .subscribeOn(blockingScheduler.getScheduler())
                 .elapsed()
                 .doOnNext(s-> {
                     WebFluxMetrics.recordMetric(serviceMetrics, "delete_album", s.getT1());
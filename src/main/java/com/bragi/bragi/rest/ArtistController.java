@@ -7,6 +7,8 @@ import com.bragi.bragi.service.ArtistService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.actuate.autoconfigure.metrics.MetricsProperties;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -24,27 +26,34 @@ public class ArtistController {
 
     private final ArtistService artistService;
     private final ServiceMetrics serviceMetrics;
+    private final BlockingScheduler blockingScheduler;
 
+    //keyset paged, the next page is requested with the cursor returned in the X-Next-Cursor header
     @GetMapping("/page")
-    public Mono<List<Artist>> getArtists(@RequestParam("offset") int offset,
-                                         @RequestParam("size") int size,
-                                         @RequestParam("sort") String sort){
-        return Flux
-                .fromIterable(artistService.findAllArtists(offset, size, sort))
-                .map(Artist::convertToDto)
-                .collectList()
+    public Mono<ResponseEntity<List<Artist>>> getArtists(@RequestParam(value = "cursor", required = false) String cursor,
+                                                      @RequestParam(value = "size", defaultValue = "0") int size,
+                                                      @RequestParam(value = "sort", defaultValue = "asc") String sort){
+        return artistService.findArtists(cursor, size, sort)
+                .map(page-> CursorPages.toResponse(page, Artist::convertToDto))
                 .elapsed()
                 .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "get_artists", s.getT1()))
                 .flatMap(tuple-> Mono.just(tuple.getT2()))
                 .doOnSubscribe(next->{
                     log.info("Received request to get artists");
                 });
+    }
 
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Artist> exportArtists(@RequestParam(value = "sort", defaultValue = "asc") String sort){
+        return CursorPages.toExport(()-> artistService.exportArtists(sort), Artist::convertToDto, serviceMetrics, "export_artists")
+                .doOnSubscribe(next->{
+                    log.info("Received request to export artists");
+                });
     }
 
     @GetMapping("/{id}")
     public Mono<Artist> getArtist(@PathVariable("id") String id){
-        return Mono.just(artistService.getArtist(id))
+        return artistService.findArtist(id)
                 .map(Artist::convertToDto)
                 .elapsed()
                 .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "get_artist", s.getT1()))
@@ -57,7 +66,8 @@ public class ArtistController {
 
     @PostMapping
     public Mono<Artist> createArtist(@RequestBody Artist artist){
-        return Mono.just(artistService.store(artist))
+        return Mono.fromCallable(()-> artistService.store(artist))
+                .subscribeOn(blockingScheduler.getScheduler())
                 .map(Artist::convertToDto)
                 .elapsed()
                 .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "create_artist",
@@ -69,11 +79,11 @@ public class ArtistController {
 
     @DeleteMapping
     public Mono<Void> deleteArtist(@PathVariable("id") String id){
-        return Mono.just(id)
-                .map(next->{
+        return Mono.fromCallable(()->{
                     artistService.deleteArtist(id);
                     return id;
                 })
+                .subscribeOn(blockingScheduler.getScheduler())
                 .elapsed()
                 .doOnNext(s-> {
                     WebFluxMetrics.recordMetric(serviceMetrics, "delete_artist", s.getT1());
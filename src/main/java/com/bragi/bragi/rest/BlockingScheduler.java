@@ -0,0 +1,74 @@
+package com.bragi.bragi.rest;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.service.config.BlockingSchedulerConfig;
+import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.RetryUtils;
+import com.bragi.bragi.service.utils.ThreadFactories;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded scheduler for the blocking service calls made by the REST controllers, so JPA and file
+ * system work never runs on the Netty event loop. The pool and its queue are both bounded; once
+ * full, tasks are rejected rather than queued without limit. Reads retried through it hold no
+ * thread while they wait to be attempted again.
+ */
+@Component
+public class BlockingScheduler {
+
+    static final String NAME = "rest-blocking";
+
+    private final ThreadPoolExecutor executor;
+    private final RetryConfig retryConfig;
+
+    @Getter
+    private final Scheduler scheduler;
+
+    public BlockingScheduler(BlockingSchedulerConfig blockingSchedulerConfig, RetryConfig retryConfig,
+                             ServiceMetrics serviceMetrics){
+        this.retryConfig = retryConfig;
+        executor = new ThreadPoolExecutor(blockingSchedulerConfig.getMaxThreads(),
+                blockingSchedulerConfig.getMaxThreads(),
+                blockingSchedulerConfig.getKeepAliveSeconds(),
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(blockingSchedulerConfig.getQueueCapacity()),
+                ThreadFactories.named(NAME, blockingSchedulerConfig.isVirtualThreads()));
+        executor.allowCoreThreadTimeOut(true);
+        scheduler = Schedulers.fromExecutorService(executor, NAME);
+        serviceMetrics.registerBlockingScheduler(NAME, this::getQueueDepth, this::getActiveThreads);
+    }
+
+    //only for reads, a write is retried step by step inside its service as replaying it whole is not safe
+    public <T> Mono<T> retry(Callable<T> read, String operation){
+        return RetryUtils.toMono(read,
+                "Starting " + operation + " operation with attempts: {}",
+                "Running " + operation + " operation attempt: {}",
+                retryConfig.getMaxAttempts(),
+                retryConfig.getMaxWaitBetweenMillis(),
+                retryConfig.getMinWaitBetweenMillis(),
+                executor);
+    }
+
+    public int getQueueDepth(){
+        return executor.getQueue().size();
+    }
+
+    public int getActiveThreads(){
+        return executor.getActiveCount();
+    }
+
+    @PreDestroy
+    public void teardown(){
+        scheduler.dispose();
+    }
+}
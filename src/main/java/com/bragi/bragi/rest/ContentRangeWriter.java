@@ -0,0 +1,176 @@
+package com.bragi.bragi.rest;
+
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.storage.ContentSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a {@link ContentSource} to an HTTP response honouring {@code Range}, {@code If-Range}
+ * and conditional request headers. Only the requested slices are read, one chunk at a time.
+ * Whole and single range responses for content stored as a file are sent with the server's
+ * zero copy file transfer instead, so the bytes go from the page cache to the socket without
+ * passing through the JVM.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContentRangeWriter {
+
+    private static final String BYTES = "bytes";
+
+    private final StreamingConfig streamingConfig;
+
+    public Mono<Void> write(ServerWebExchange exchange, ContentSource content){
+        var request = exchange.getRequest();
+        var response = exchange.getResponse();
+        var headers = response.getHeaders();
+        var size = content.size();
+        var etag = content.hash() == null ? null : "\"" + content.hash() + "\"";
+        var lastModified = content.lastModified() == null ? Instant.MIN : content.lastModified();
+
+        headers.set(HttpHeaders.ACCEPT_RANGES, BYTES);
+        if(exchange.checkNotModified(etag, lastModified))
+            return response.setComplete();
+
+        var mediaType = mediaTypeOf(content.codec());
+        List<Region> regions;
+        try{
+            regions = rangeApplies(request, etag, lastModified) ? regionsOf(request.getHeaders().getRange(), size) : List.of();
+        }catch (IllegalArgumentException e){
+            log.info("Unsatisfiable range requested: {}", e.getMessage());
+            response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            headers.set(HttpHeaders.CONTENT_RANGE, BYTES + " */" + size);
+            return response.setComplete();
+        }
+
+        if(regions.isEmpty()){
+            response.setStatusCode(HttpStatus.OK);
+            headers.setContentType(mediaType);
+            headers.setContentLength(size);
+            return writeRegion(response, content, 0, size);
+        }
+
+        response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+        if(regions.size() == 1){
+            var region = regions.get(0);
+            headers.setContentType(mediaType);
+            headers.setContentLength(region.length());
+            headers.set(HttpHeaders.CONTENT_RANGE, region.contentRange(size));
+            return writeRegion(response, content, region.start(), region.length());
+        }
+
+        var bufferFactory = response.bufferFactory();
+        var boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        headers.set(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+        var body = Flux.fromIterable(regions)
+                .concatMap(region-> Flux.concat(
+                        Mono.fromSupplier(()-> text(bufferFactory, "\r\n--" + boundary + "\r\n" +
+                                HttpHeaders.CONTENT_TYPE + ": " + mediaType + "\r\n" +
+                                HttpHeaders.CONTENT_RANGE + ": " + region.contentRange(size) + "\r\n\r\n")),
+                        read(content, region.start(), region.length(), bufferFactory)))
+                .concatWith(Mono.fromSupplier(()-> text(bufferFactory, "\r\n--" + boundary + "--\r\n")));
+        return response.writeWith(body);
+    }
+
+    //multipart bodies interleave boundaries with the content, so only single regions go as a file
+    private Mono<Void> writeRegion(ServerHttpResponse response, ContentSource content, long start, long length){
+        if(content.file() != null && response instanceof ZeroCopyHttpOutputMessage zeroCopy)
+            return zeroCopy.writeWith(content.file(), content.fileOffset() + start, length);
+        return response.writeWith(read(content, start, length, response.bufferFactory()));
+    }
+
+    private Flux<DataBuffer> read(ContentSource content, long start, long length, DataBufferFactory bufferFactory){
+        var end = start + length;
+        var chunkSize = streamingConfig.getChunkSizeBytes();
+        return Flux.generate(()-> start, (offset, sink)-> {
+            if(offset >= end){
+                sink.complete();
+                return offset;
+            }
+            var chunk = (int) Math.min(chunkSize, end - offset);
+            try{
+                sink.next(bufferFactory.wrap(content.read(offset, chunk).asReadOnlyByteBuffer()));
+            }catch (IOException e){
+                sink.error(e);
+            }
+            return offset + chunk;
+        });
+    }
+
+    private static List<Region> regionsOf(List<HttpRange> ranges, long size){
+        var regions = new ArrayList<Region>(ranges.size());
+        long total = 0;
+        for(var range : ranges){
+            var start = range.getRangeStart(size);
+            var end = range.getRangeEnd(size);
+            if(start >= size || start > end)
+                throw new IllegalArgumentException(String.format("Range %s outside of content length: %d", range, size));
+            var region = new Region(start, end - start + 1);
+            total += region.length();
+            regions.add(region);
+        }
+        if(ranges.size() > 1 && total > size)
+            throw new IllegalArgumentException(String.format("Requested ranges exceed content length: %d", size));
+        return regions;
+    }
+
+    private static boolean rangeApplies(ServerHttpRequest request, String etag, Instant lastModified){
+        var ifRange = request.getHeaders().getFirst(HttpHeaders.IF_RANGE);
+        if(ifRange == null)
+            return true;
+        if(ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+            return ifRange.equals(etag);
+        try{
+            var date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return lastModified.isAfter(Instant.EPOCH) && !lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(date);
+        }catch (DateTimeParseException e){
+            return false;
+        }
+    }
+
+    private static MediaType mediaTypeOf(String codec){
+        if(codec == null || codec.isBlank())
+            return MediaType.APPLICATION_OCTET_STREAM;
+        try{
+            return MediaType.parseMediaType(codec);
+        }catch (InvalidMediaTypeException e){
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    private static DataBuffer text(DataBufferFactory bufferFactory, String text){
+        return bufferFactory.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private record Region(long start, long length){
+        String contentRange(long size){
+            return BYTES + " " + start + "-" + (start + length - 1) + "/" + size;
+        }
+    }
+}
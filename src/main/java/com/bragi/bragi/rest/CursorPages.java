@@ -0,0 +1,46 @@
+package com.bragi.bragi.rest;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.metrics.WebFluxMetrics;
+import com.bragi.bragi.service.utils.CursorPage;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Renders a keyset page as its items, with the cursor of the following page in a header so the
+ * body keeps the plain list shape the page endpoints always returned.
+ */
+final class CursorPages {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private CursorPages(){
+    }
+
+    static <T, D> ResponseEntity<List<D>> toResponse(CursorPage<T> page, Function<T, D> toDto){
+        var response = ResponseEntity.ok();
+        if(page.hasNext())
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        return response.body(page.items()
+                .stream()
+                .map(toDto)
+                .toList());
+    }
+
+    //a whole listing as newline delimited json, rows are sent as each page is read and the latency
+    //recorded is that of the full export
+    static <T, D> Flux<D> toExport(Supplier<Flux<T>> export, Function<T, D> toDto,
+                                   ServiceMetrics serviceMetrics, String method){
+        return Flux.defer(()-> {
+            var start = System.currentTimeMillis();
+            return export.get()
+                    .map(toDto)
+                    .doOnComplete(()-> WebFluxMetrics.recordMetric(serviceMetrics, method,
+                            System.currentTimeMillis() - start));
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package com.bragi.bragi.rest;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.metrics.WebFluxMetrics;
+import com.bragi.bragi.service.PlaylistService;
+import com.bragi.bragi.service.config.SegmentConfig;
+import com.bragi.bragi.service.utils.RenditionPreference;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * HLS delivery: playlists per song and per album, and the segments they point to. Segments
+ * are content addressed and sent as immutable, so CDNs and players keep them; playlists are
+ * only cached briefly.
+ */
+@RestController
+@RequestMapping("media")
+@RequiredArgsConstructor
+@Slf4j
+public class MediaController {
+
+    static final String PLAYLIST_CONTENT_TYPE = "application/vnd.apple.mpegurl";
+
+    private final PlaylistService playlistService;
+    private final SegmentConfig segmentConfig;
+    private final ServiceMetrics serviceMetrics;
+    private final BlockingScheduler blockingScheduler;
+    private final ContentRangeWriter contentRangeWriter;
+
+    @GetMapping("/songs/{id}/master.m3u8")
+    public Mono<ResponseEntity<String>> getSongMasterPlaylist(@PathVariable("id") String id){
+        return playlist(()-> playlistService.masterPlaylist(UUID.fromString(id)), "get_song_master_playlist");
+    }
+
+    //quality and maxBitrate pick the rendition as they do for downloads
+    @GetMapping("/songs/{id}/media.m3u8")
+    public Mono<ResponseEntity<String>> getSongPlaylist(@PathVariable("id") String id,
+                                                        @RequestParam(value = "quality", defaultValue = "original") String quality,
+                                                        @RequestParam(value = "maxBitrate", defaultValue = "0") int maxBitrate){
+        return playlist(()-> playlistService.mediaPlaylist(UUID.fromString(id), RenditionPreference.of(quality, maxBitrate)),
+                "get_song_playlist");
+    }
+
+    @GetMapping("/albums/{id}/media.m3u8")
+    public Mono<ResponseEntity<String>> getAlbumPlaylist(@PathVariable("id") String id,
+                                                         @RequestParam(value = "quality", defaultValue = "original") String quality,
+                                                         @RequestParam(value = "maxBitrate", defaultValue = "0") int maxBitrate){
+        return playlist(()-> playlistService.albumPlaylist(UUID.fromString(id), RenditionPreference.of(quality, maxBitrate)),
+                "get_album_playlist");
+    }
+
+    @GetMapping("/segments/{hash}/{segmentBytes}/{index}")
+    public Mono<Void> getSegment(@PathVariable("hash") String hash,
+                                 @PathVariable("segmentBytes") long segmentBytes,
+                                 @PathVariable("index") long index,
+                                 ServerWebExchange exchange){
+        return blockingScheduler.retry(()-> playlistService.getSegment(hash, segmentBytes, index), "get segment")
+                .flatMap(segment-> {
+                    exchange.getResponse().getHeaders().setCacheControl(CacheControl
+                            .maxAge(Duration.ofSeconds(segmentConfig.getSegmentMaxAgeSeconds()))
+                            .cachePublic()
+                            .getHeaderValue() + ", immutable");
+                    return contentRangeWriter.write(exchange, segment);
+                })
+                .thenReturn(hash)
+                .elapsed()
+                .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "get_segment", s.getT1()))
+                .doOnSubscribe(next->{
+                    log.debug("Received request to get segment");
+                })
+                .then();
+    }
+
+    private Mono<ResponseEntity<String>> playlist(Callable<String> playlist, String metric){
+        return blockingScheduler.retry(playlist, metric)
+                .map(body-> ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_TYPE, PLAYLIST_CONTENT_TYPE)
+                        .cacheControl(CacheControl.maxAge(Duration.ofSeconds(segmentConfig.getPlaylistMaxAgeSeconds())))
+                        .body(body))
+                .elapsed()
+                .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, metric, s.getT1()))
+                .map(tuple-> tuple.getT2())
+                .doOnSubscribe(next->{
+                    log.info("Received request for playlist: {}", metric);
+                });
+    }
+}
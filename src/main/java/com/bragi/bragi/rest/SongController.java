@@ -6,15 +6,22 @@ import com.bragi.bragi.metrics.WebFluxMetrics;
 import com.bragi.bragi.rest.dto.Artist;
 import com.bragi.bragi.rest.dto.Song;
 import com.bragi.bragi.service.SongService;
+import com.bragi.bragi.service.utils.RenditionPreference;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.netty.http.server.HttpServerResponse;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @RestController
@@ -23,29 +30,39 @@ import java.util.UUID;
 @Slf4j
 public class SongController {
 
+    private static final int UPLOAD_PREFETCH = 4;
+
     private final SongService songService;
     private final ServiceMetrics serviceMetrics;
+    private final BlockingScheduler blockingScheduler;
+    private final ContentRangeWriter contentRangeWriter;
 
+    //keyset paged, the next page is requested with the cursor returned in the X-Next-Cursor header
     @GetMapping("/page")
-    public Mono<List<Song>> getSongs(@RequestParam("offset") int offset,
-                                         @RequestParam("size") int size,
-                                         @RequestParam("sort") String sort){
-        return Flux
-                .fromIterable(songService.findAllSongs(offset, size, sort))
-                .map(Song::convertToDto)
-                .collectList()
+    public Mono<ResponseEntity<List<Song>>> getSongs(@RequestParam(value = "cursor", required = false) String cursor,
+                                                      @RequestParam(value = "size", defaultValue = "0") int size,
+                                                      @RequestParam(value = "sort", defaultValue = "asc") String sort){
+        return songService.findSongs(cursor, size, sort)
+                .map(page-> CursorPages.toResponse(page, Song::convertToDto))
                 .elapsed()
                 .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "get_songs", s.getT1()))
                 .flatMap(tuple-> Mono.just(tuple.getT2()))
                 .doOnSubscribe(next->{
                     log.info("Received request to get songs");
                 });
+    }
 
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Song> exportSongs(@RequestParam(value = "sort", defaultValue = "asc") String sort){
+        return CursorPages.toExport(()-> songService.exportSongs(sort), Song::convertToDto, serviceMetrics, "export_songs")
+                .doOnSubscribe(next->{
+                    log.info("Received request to export songs");
+                });
     }
 
     @GetMapping("/{id}")
     public Mono<Song> getSong(@PathVariable("id") String id){
-        return Mono.just(songService.getSong(UUID.fromString(id)))
+        return songService.findSong(UUID.fromString(id))
                 .map(Song::convertToDto)
                 .elapsed()
                 .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "get_song", s.getT1()))
@@ -55,9 +72,26 @@ public class SongController {
                 });
     }
 
-    @PostMapping
-    public Mono<Song> createSong(@RequestBody Song song, @RequestParam("file") MultipartFile file){
-        return Mono.just(songService.store(song, file))
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<Song> createSong(@RequestPart("song") Song song,
+                                 @RequestPart("file") FilePart file,
+                                 @RequestParam(value = "sha256", required = false) String sha256){
+        var codec = Optional.ofNullable(file.headers().getContentType()).map(MediaType::toString).orElse(null);
+        return Mono.fromCallable(()-> songService.startUpload(codec))
+                .subscribeOn(blockingScheduler.getScheduler())
+                .flatMap(upload-> file.content()
+                        //written in arrival order off the event loop, only a few buffers are held at a time
+                        .publishOn(blockingScheduler.getScheduler(), UPLOAD_PREFETCH)
+                        .doOnNext(buffer-> {
+                            try{
+                                upload.write(buffer.asByteBuffer());
+                            }finally {
+                                DataBufferUtils.release(buffer);
+                            }
+                        })
+                        .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                        .then(Mono.fromCallable(()-> songService.store(song, upload.complete(sha256))))
+                        .doFinally(signal-> upload.close()))
                 .map(Song::convertToDto)
                 .elapsed()
                 .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "create_song",
@@ -67,25 +101,31 @@ public class SongController {
                 });
     }
 
-    @GetMapping("/download")
-    public Mono<byte[]> downloadFile(@PathVariable("id") String id){
-        return Mono.just(songService.getSong(UUID.fromString(id)))
-                .map(song-> song.getSongContent().getContent())
+    //quality is one of original, low, medium or high, maxBitrate a bandwidth hint in kbps
+    @GetMapping("/{id}/download")
+    public Mono<Void> downloadFile(@PathVariable("id") String id,
+                                   @RequestParam(value = "quality", defaultValue = "original") String quality,
+                                   @RequestParam(value = "maxBitrate", defaultValue = "0") int maxBitrate,
+                                   ServerWebExchange exchange){
+        return blockingScheduler.retry(()-> songService.getSongContent(UUID.fromString(id),
+                        RenditionPreference.of(quality, maxBitrate)), "download song")
+                .flatMap(content-> contentRangeWriter.write(exchange, content))
+                .thenReturn(id)
                 .elapsed()
                 .doOnNext(s-> WebFluxMetrics.recordMetric(serviceMetrics, "download_song", s.getT1()))
-                .flatMap(tuple-> Mono.just(tuple.getT2()))
                 .doOnSubscribe(next->{
                     log.info("Received request to download song");
-                });
+                })
+                .then();
     }
 
     @DeleteMapping
     public Mono<Void> deleteSong(@PathVariable("id") String id){
-        return Mono.just(id)
-                .map(next->{
+        return Mono.fromCallable(()->{
                     songService.deleteSong(id);
                     return id;
                 })
+                .subscribeOn(blockingScheduler.getScheduler())
                 .elapsed()
                 .doOnNext(s-> {
                     WebFluxMetrics.recordMetric(serviceMetrics, "delete_song", s.getT1());
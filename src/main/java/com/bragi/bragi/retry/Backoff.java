@@ -0,0 +1,48 @@
+package com.bragi.bragi.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Computes the wait before the next attempt from the number of the attempt that just failed
+ * (starting at 1) and the previous wait (0 before the first retry).
+ */
+@FunctionalInterface
+public interface Backoff {
+
+    long nextDelay(int attemptNumber, long previousDelay);
+
+    /**
+     * Random wait in {@code [min, max)}, the behaviour retries always had.
+     */
+    static Backoff uniform(long min, long max){
+        return (attemptNumber, previousDelay)-> random(min, max);
+    }
+
+    /**
+     * Exponential backoff with full jitter: a random wait in {@code [0, min(cap, base * 2^(attempt - 1)))}.
+     */
+    static Backoff exponentialFullJitter(long base, long cap){
+        return (attemptNumber, previousDelay)-> {
+            var shift = Math.min(attemptNumber - 1, 62);
+            var ceiling = base > (cap >> shift) ? cap : base << shift;
+            return random(0, Math.min(cap, ceiling));
+        };
+    }
+
+    /**
+     * Decorrelated jitter: a random wait in {@code [base, previous * 3)}, capped, so consecutive
+     * waits spread out without every caller growing in lock step.
+     */
+    static Backoff decorrelatedJitter(long base, long cap){
+        return (attemptNumber, previousDelay)-> {
+            var upper = previousDelay > Long.MAX_VALUE / 3 ? Long.MAX_VALUE : previousDelay * 3;
+            return Math.min(cap, random(base, Math.max(base, upper)));
+        };
+    }
+
+    private static long random(long min, long max){
+        if(max <= min)
+            return Math.max(0, min);
+        return ThreadLocalRandom.current().nextLong(min, max);
+    }
+}
@@ -0,0 +1,99 @@
+package com.bragi.bragi.retry;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Consecutive failure circuit breaker. After {@code failureThreshold} failures in a row the
+ * circuit opens and calls are rejected for {@code openDurationMillis}; then up to
+ * {@code halfOpenMaxCalls} probes are let through, closing the circuit once they all succeed
+ * and re-opening it on the first failure.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationMillis;
+    private final int halfOpenMaxCalls;
+    private final LongSupplier clock;
+    private final Runnable onRejected;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(int failureThreshold, long openDurationMillis, int halfOpenMaxCalls){
+        this(failureThreshold, openDurationMillis, halfOpenMaxCalls, System::currentTimeMillis, ()->{});
+    }
+
+    public CircuitBreaker(int failureThreshold, long openDurationMillis, int halfOpenMaxCalls,
+                          LongSupplier clock, Runnable onRejected){
+        if(failureThreshold <= 0 || openDurationMillis < 0 || halfOpenMaxCalls <= 0)
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenMaxCalls = halfOpenMaxCalls;
+        this.clock = clock;
+        this.onRejected = onRejected;
+    }
+
+    /**
+     * Every granted permission must be followed by exactly one {@link #onSuccess()} or {@link #onFailure()}.
+     */
+    public synchronized boolean tryAcquirePermission(){
+        var permitted = switch (currentState()){
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if(halfOpenPermits >= halfOpenMaxCalls)
+                    yield false;
+                halfOpenPermits++;
+                yield true;
+            }
+        };
+        if(!permitted)
+            onRejected.run();
+        return permitted;
+    }
+
+    public synchronized void onSuccess(){
+        if(state == State.HALF_OPEN){
+            if(++halfOpenSuccesses >= halfOpenMaxCalls)
+                transitionTo(State.CLOSED);
+            return;
+        }
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void onFailure(){
+        if(state == State.HALF_OPEN){
+            transitionTo(State.OPEN);
+            return;
+        }
+        if(state == State.CLOSED && ++consecutiveFailures >= failureThreshold)
+            transitionTo(State.OPEN);
+    }
+
+    public synchronized State getState(){
+        return currentState();
+    }
+
+    private State currentState(){
+        if(state == State.OPEN && clock.getAsLong() - openedAt >= openDurationMillis)
+            transitionTo(State.HALF_OPEN);
+        return state;
+    }
+
+    private void transitionTo(State next){
+        state = next;
+        consecutiveFailures = 0;
+        halfOpenPermits = 0;
+        halfOpenSuccesses = 0;
+        if(next == State.OPEN)
+            openedAt = clock.getAsLong();
+    }
+}
@@ -0,0 +1,8 @@
+package com.bragi.bragi.retry;
+
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(){
+        super("Circuit breaker is open, call rejected");
+    }
+}
@@ -0,0 +1,55 @@
+package com.bragi.bragi.retry;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+public class CompletionStageRetry<V> extends Retry{
+
+    private Supplier<CompletionStage<V>> stage;
+    private V result;
+
+    public static class CompletionStageRetryBuilder<V> extends RetryBuilder{
+        private Supplier<CompletionStage<V>> stage;
+        protected CompletionStageRetryBuilder(Supplier<CompletionStage<V>> stage){
+            this.stage = stage;
+        }
+
+        @Override
+        public Retry build() {
+            return new CompletionStageRetry<>(this);
+        }
+    }
+
+    public CompletionStageRetry(CompletionStageRetryBuilder<V> builder) {
+        super(builder);
+        this.stage = builder.stage;
+    }
+
+    @Override
+    public Retry subscribe() {
+        return this.retryStrategy.executeAndRetry();
+    }
+
+    //waits for the stage, only used by subscribe
+    @Override
+    protected void retry() throws Exception {
+        try{
+            this.result = stage.get().toCompletableFuture().join();
+        }catch (CompletionException e){
+            if(e.getCause() instanceof Exception cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    @Override
+    protected CompletionStage<?> retryAsync() {
+        return stage.get().thenAccept(value-> this.result = value);
+    }
+
+    @Override
+    public V getResult() {
+       return this.result;
+    }
+}
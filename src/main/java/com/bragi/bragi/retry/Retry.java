@@ -3,11 +3,16 @@ package com.bragi.bragi.retry;
 import io.grpc.StatusRuntimeException;
 import lombok.Getter;
 import lombok.Setter;
+import reactor.core.publisher.Mono;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public abstract class Retry {
 
@@ -46,6 +51,18 @@ public abstract class Retry {
     @Getter
     private int attemptNumber;
 
+    @Getter
+    private Backoff backoff;
+
+    @Getter
+    private Executor executor;
+
+    @Getter
+    private CircuitBreaker circuitBreaker;
+
+    @Getter
+    private RetryBudget retryBudget;
+
 
     public abstract static class RetryBuilder {
         private Predicate<Throwable> predicate = (throwable -> true);
@@ -61,6 +78,14 @@ public abstract class Retry {
 
         private Consumer<Retry> onRetry = (r) ->{};
 
+        private Backoff backoff;
+
+        private Executor executor;
+
+        private CircuitBreaker circuitBreaker;
+
+        private RetryBudget retryBudget;
+
         protected RetryBuilder(){
         }
 
@@ -99,6 +124,30 @@ public abstract class Retry {
             this.onRetry = onRetry;
             return this;
         }
+
+        //defaults to a uniform wait between min and max wait
+        public RetryBuilder setBackoff(Backoff backoff){
+            this.backoff = backoff;
+            return this;
+        }
+
+        //runs the attempts of subscribeAsync and toMono, required for both so they never land on a shared pool
+        public RetryBuilder setExecutor(Executor executor){
+            this.executor = executor;
+            return this;
+        }
+
+        //guards every attempt, failures matching the predicate count against the circuit
+        public RetryBuilder setCircuitBreaker(CircuitBreaker circuitBreaker){
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        //every call deposits into the budget and every retry withdraws from it
+        public RetryBuilder setRetryBudget(RetryBudget retryBudget){
+            this.retryBudget = retryBudget;
+            return this;
+        }
         public abstract Retry build();
 
     }
@@ -112,6 +161,11 @@ public abstract class Retry {
         this.minWaitBetweenRetry = builder.minWaitBetweenRetry;
         this.onRetry = builder.onRetry;
         this.beforeRetry = builder.beforeRetry;
+        this.backoff = builder.backoff == null ?
+                Backoff.uniform(builder.minWaitBetweenRetry, builder.maxWaitBetweenRetry) : builder.backoff;
+        this.executor = builder.executor;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.retryBudget = builder.retryBudget;
         retryStrategy = new RetryStrategy(this);
 
     }
@@ -124,8 +178,38 @@ public abstract class Retry {
         return new RunnableRetry.RunnableRetryBuilder(runnable);
     }
 
+    //each attempt starts a new stage, for calls that are already asynchronous such as a reactive query
+    public static <V> CompletionStageRetry.CompletionStageRetryBuilder<V> fromCompletionStage(Supplier<CompletionStage<V>> stage){
+        return new CompletionStageRetry.CompletionStageRetryBuilder<>(stage);
+    }
+
     protected abstract void retry() throws Exception;
+
+    //the asynchronous attempt, by default the synchronous one run on the retry's executor
+    protected CompletionStage<?> retryAsync(){
+        try{
+            retry();
+            return CompletableFuture.completedFuture(null);
+        }catch (Exception e){
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public abstract Retry subscribe();
 
+    public <V> CompletableFuture<V> subscribeAsync(){
+        if(executor == null)
+            throw new IllegalStateException("An executor must be set to retry asynchronously");
+        return retryStrategy.executeAndRetryAsync(executor);
+    }
+
+    public <V> Mono<V> toMono(){
+        return Mono.defer(()-> {
+            CompletableFuture<V> future = subscribeAsync();
+            return Mono.fromFuture(future)
+                    .doOnCancel(()-> future.cancel(false));
+        });
+    }
+
     public abstract <V> V getResult();
 }
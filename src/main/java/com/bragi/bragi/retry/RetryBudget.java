@@ -0,0 +1,46 @@
+package com.bragi.bragi.retry;
+
+/**
+ * Token bucket bounding retries to a fraction of calls. Every call deposits
+ * {@code tokensPerCall} tokens, up to {@code maxTokens}, and every retry withdraws one. The
+ * bucket starts full, so a healthy service can absorb a short burst of failures, while a
+ * sustained outage settles at no more than one retry per {@code 1 / tokensPerCall} calls.
+ */
+public class RetryBudget {
+
+    private final double maxTokens;
+    private final double tokensPerCall;
+    private final Runnable onExhausted;
+
+    private double tokens;
+
+    public RetryBudget(int maxTokens, double tokensPerCall){
+        this(maxTokens, tokensPerCall, ()->{});
+    }
+
+    public RetryBudget(int maxTokens, double tokensPerCall, Runnable onExhausted){
+        if(maxTokens <= 0 || tokensPerCall < 0)
+            throw new IllegalArgumentException("Invalid retry budget settings");
+        this.maxTokens = maxTokens;
+        this.tokensPerCall = tokensPerCall;
+        this.onExhausted = onExhausted;
+        this.tokens = maxTokens;
+    }
+
+    public synchronized void deposit(){
+        tokens = Math.min(maxTokens, tokens + tokensPerCall);
+    }
+
+    public synchronized boolean tryWithdraw(){
+        if(tokens < 1){
+            onExhausted.run();
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    public synchronized double getTokens(){
+        return tokens;
+    }
+}
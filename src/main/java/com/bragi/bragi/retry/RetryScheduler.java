@@ -0,0 +1,49 @@
+package com.bragi.bragi.retry;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Single timer shared by every asynchronous retry. It only waits out backoff delays; attempts
+ * are handed to the retry's executor once the delay elapses, so a slow attempt never holds up
+ * the timer.
+ */
+final class RetryScheduler {
+
+    private static final ScheduledExecutorService TIMER = createTimer();
+
+    private RetryScheduler(){
+    }
+
+    static void schedule(Runnable attempt, long delayMillis, Executor executor, Consumer<Throwable> onRejected){
+        try{
+            if(delayMillis <= 0){
+                executor.execute(attempt);
+                return;
+            }
+            TIMER.schedule(()-> {
+                try{
+                    executor.execute(attempt);
+                }catch (RejectedExecutionException e){
+                    onRejected.accept(e);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }catch (RejectedExecutionException e){
+            onRejected.accept(e);
+        }
+    }
+
+    private static ScheduledExecutorService createTimer(){
+        var timer = new ScheduledThreadPoolExecutor(1, runnable-> {
+            var thread = new Thread(runnable, "retry-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
@@ -1,6 +1,9 @@
 package com.bragi.bragi.retry;
 
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 class RetryStrategy {
 
@@ -10,31 +13,137 @@ class RetryStrategy {
         this.retry = retry;
     }
 
+    /**
+     * Runs the attempts on the calling thread, sleeping between them. No threads are created.
+     */
     public Retry executeAndRetry() {
-        var retryAttempts = retry.getRetryAttempts();
-        Throwable error;
-        retry.getBeforeRetry().accept(retry);
-        do {
-            retry.setAttemptNumber(retry.getAttemptNumber() + 1);
-            retryAttempts--;
-            try{
-                retry.getOnRetry().accept(retry);
-                retry.retry();
+        start();
+        long delay = 0;
+        for(var attempt = 1; ; attempt++){
+            var error = attempt();
+            if(error == null)
                 return retry;
-            }catch (Exception e){
-                error = e;
-            }
-            var boundedTime = ThreadLocalRandom.current().nextLong(retry.getMinWaitBetweenRetry(),
-                    retry.getMaxWaitBetweenRetry());
-            var scheduler = Executors.newSingleThreadScheduledExecutor();
-            try {
-                scheduler.schedule(()->{
-                        }, boundedTime, TimeUnit.MILLISECONDS)
-                        .get();
-            } catch (InterruptedException | ExecutionException e) {
+            if(error instanceof CircuitOpenException circuitOpenException)
+                throw circuitOpenException;
+            if(!shouldRetry(attempt, error))
+                throw retry.getOnErrorMapper().apply(error);
+            delay = retry.getBackoff().nextDelay(attempt, delay);
+            try{
+                Thread.sleep(delay);
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
                 throw new RuntimeException(e);
             }
-        }while(retryAttempts != 0 && retry.getPredicate().test(error));
-        throw retry.getOnErrorMapper().apply(error);
+        }
+    }
+
+    /**
+     * Starts the attempts on the given executor and waits out backoff delays on the shared
+     * {@link RetryScheduler}, so the calling thread is never parked. An asynchronous attempt holds
+     * no thread while it runs. Cancelling the returned future stops any further attempts.
+     */
+    public <V> CompletableFuture<V> executeAndRetryAsync(Executor executor) {
+        var result = new CompletableFuture<V>();
+        start();
+        RetryScheduler.schedule(()-> attemptAsync(result, executor, 1, 0), 0, executor,
+                result::completeExceptionally);
+        return result;
+    }
+
+    private <V> void attemptAsync(CompletableFuture<V> result, Executor executor, int attempt, long previousDelay){
+        if(result.isDone())
+            return;
+        var rejected = acquire();
+        if(rejected != null){
+            onAttempt(result, executor, attempt, previousDelay, rejected);
+            return;
+        }
+        CompletionStage<?> stage;
+        try{
+            retry.getOnRetry().accept(retry);
+            stage = retry.retryAsync();
+        }catch (Exception e){
+            stage = CompletableFuture.failedFuture(e);
+        }
+        stage.whenComplete((value, error)->
+                onAttempt(result, executor, attempt, previousDelay, completed(unwrap(error))));
+    }
+
+    private <V> void onAttempt(CompletableFuture<V> result, Executor executor, int attempt, long previousDelay,
+                               Throwable error){
+        if(error == null){
+            result.complete(retry.getResult());
+            return;
+        }
+        if(error instanceof CircuitOpenException){
+            result.completeExceptionally(error);
+            return;
+        }
+        if(!shouldRetry(attempt, error)){
+            result.completeExceptionally(retry.getOnErrorMapper().apply(error));
+            return;
+        }
+        var delay = retry.getBackoff().nextDelay(attempt, previousDelay);
+        RetryScheduler.schedule(()-> attemptAsync(result, executor, attempt + 1, delay), delay, executor,
+                result::completeExceptionally);
+    }
+
+    private void start(){
+        retry.getBeforeRetry().accept(retry);
+        if(retry.getRetryBudget() != null)
+            retry.getRetryBudget().deposit();
+    }
+
+    private Throwable attempt(){
+        var rejected = acquire();
+        if(rejected != null)
+            return rejected;
+        try{
+            retry.getOnRetry().accept(retry);
+            retry.retry();
+            return completed(null);
+        }catch (Exception e){
+            return completed(e);
+        }
+    }
+
+    //returns the error to fail the attempt with when the circuit is open
+    private Throwable acquire(){
+        var circuitBreaker = retry.getCircuitBreaker();
+        if(circuitBreaker != null && !circuitBreaker.tryAcquirePermission()){
+            var error = new CircuitOpenException();
+            retry.setError(error);
+            return error;
+        }
+        retry.setAttemptNumber(retry.getAttemptNumber() + 1);
+        return null;
+    }
+
+    private Throwable completed(Throwable error){
+        var circuitBreaker = retry.getCircuitBreaker();
+        if(error == null){
+            if(circuitBreaker != null)
+                circuitBreaker.onSuccess();
+            return null;
+        }
+        retry.setError(error);
+        if(circuitBreaker != null){
+            //errors the predicate does not retry, such as a missing row, mean the dependency answered
+            if(retry.getPredicate().test(error))
+                circuitBreaker.onFailure();
+            else
+                circuitBreaker.onSuccess();
+        }
+        return error;
+    }
+
+    private static Throwable unwrap(Throwable error){
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private boolean shouldRetry(int attempt, Throwable error){
+        return attempt < retry.getRetryAttempts()
+                && retry.getPredicate().test(error)
+                && (retry.getRetryBudget() == null || retry.getRetryBudget().tryWithdraw());
     }
 }
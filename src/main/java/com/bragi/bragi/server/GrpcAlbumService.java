@@ -52,4 +52,14 @@ public class GrpcAlbumService extends brgi.grpc.BrgiAlbumServiceGrpc.BrgiAlbumSe
     public void deleteAlbum(brgi.grpc.DeleteAlbumRequest request, StreamObserver<brgi.grpc.DeleteAlbumResponse> responseObserver) {
         serviceMetrics.recordLatency("delete_album", ()-> albumHandler.deleteAlbum(request, responseObserver));
     }
+
+    @Override
+    public StreamObserver<brgi.grpc.AddAlbumRequest> bulkAddAlbums(StreamObserver<brgi.grpc.BulkAddResponse> responseObserver) {
+        return albumHandler.bulkAddAlbums(responseObserver);
+    }
+
+    @Override
+    public void listAlbums(brgi.grpc.ListAlbumsRequest request, StreamObserver<brgi.grpc.ListAlbumsResponse> responseObserver) {
+        serviceMetrics.recordLatency("list_albums", ()-> albumHandler.listAlbums(request, responseObserver));
+    }
 }
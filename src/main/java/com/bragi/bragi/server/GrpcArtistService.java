@@ -48,4 +48,14 @@ public class GrpcArtistService extends BrgiArtistServiceGrpc.BrgiArtistServiceIm
     public void deleteArtist(brgi.grpc.DeleteArtistRequest request, StreamObserver<brgi.grpc.DeleteArtistResponse> responseObserver) {
         serviceMetrics.recordLatency("delete_artist", ()->artistHandler.deleteArtist(request, responseObserver));
     }
+
+    @Override
+    public StreamObserver<brgi.grpc.AddArtistRequest> bulkAddArtists(StreamObserver<brgi.grpc.BulkAddResponse> responseObserver) {
+        return artistHandler.bulkAddArtists(responseObserver);
+    }
+
+    @Override
+    public void listArtists(brgi.grpc.ListArtistsRequest request, StreamObserver<brgi.grpc.ListArtistsResponse> responseObserver) {
+        serviceMetrics.recordLatency("list_artists", ()-> artistHandler.listArtists(request, responseObserver));
+    }
 }
@@ -0,0 +1,32 @@
+package com.bragi.bragi.server;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the gRPC server as part of readiness, so traffic is routed away as soon as it starts
+ * draining rather than when it has stopped.
+ */
+@Component
+@RequiredArgsConstructor
+public class GrpcServerHealthIndicator implements HealthIndicator {
+
+    private final MusicServer musicServer;
+
+    @Override
+    public Health health() {
+        var state = musicServer.getState();
+        var health = switch (state){
+            case RUNNING -> Health.up();
+            case DRAINING -> Health.outOfService();
+            case STOPPED -> Health.down();
+        };
+        return health
+                .withDetail("state", state)
+                .withDetail("port", musicServer.getPort())
+                .withDetail("inFlightCalls", musicServer.getInFlightCalls())
+                .build();
+    }
+}
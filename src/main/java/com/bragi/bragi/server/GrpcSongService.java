@@ -57,4 +57,24 @@ public class GrpcSongService extends BrgiSongServiceGrpc.BrgiSongServiceImplBase
     public void deleteSong(brgi.grpc.DeleteSongRequest request, StreamObserver<brgi.grpc.DeleteSongResponse> responseObserver) {
         serviceMetrics.recordLatency("delete_song", ()->songHandler.deleteSong(request, responseObserver));
     }
+
+    @Override
+    public StreamObserver<brgi.grpc.AddSongRequest> bulkAddSongs(StreamObserver<brgi.grpc.BulkAddResponse> responseObserver) {
+        return songHandler.bulkAddSongs(responseObserver);
+    }
+
+    @Override
+    public StreamObserver<brgi.grpc.UploadSongRequest> uploadSong(StreamObserver<brgi.grpc.AddSongResponse> responseObserver) {
+        return songHandler.uploadSong(responseObserver);
+    }
+
+    @Override
+    public void listSongs(brgi.grpc.ListSongsRequest request, StreamObserver<brgi.grpc.ListSongsResponse> responseObserver) {
+        serviceMetrics.recordLatency("list_songs", ()-> songHandler.listSongs(request, responseObserver));
+    }
+
+    @Override
+    public void exportSongs(brgi.grpc.ExportSongsRequest request, StreamObserver<brgi.grpc.ExportSongsResponse> responseObserver) {
+        serviceMetrics.recordLatency("export_songs", ()-> songHandler.exportSongs(request, responseObserver));
+    }
 }
@@ -0,0 +1,52 @@
+package com.bragi.bragi.server;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts calls that have started and not yet completed or been cancelled, so a drain can
+ * report how many streams it is waiting on.
+ */
+class InFlightCallsInterceptor implements ServerInterceptor {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Override
+    public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                                                        ServerCallHandler<Q, R> next) {
+        inFlight.incrementAndGet();
+        var done = new AtomicBoolean();
+        Runnable release = ()-> {
+            if(done.compareAndSet(false, true))
+                inFlight.decrementAndGet();
+        };
+        try{
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+                @Override
+                public void onComplete() {
+                    release.run();
+                    super.onComplete();
+                }
+
+                @Override
+                public void onCancel() {
+                    release.run();
+                    super.onCancel();
+                }
+            };
+        }catch (RuntimeException e){
+            release.run();
+            throw e;
+        }
+    }
+
+    int getInFlight(){
+        return inFlight.get();
+    }
+}
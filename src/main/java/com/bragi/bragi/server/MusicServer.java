@@ -1,50 +1,200 @@
 package com.bragi.bragi.server;
 
+import com.bragi.bragi.service.config.GrpcServerConfig;
+import com.bragi.bragi.service.utils.ThreadFactories;
 import com.google.common.util.concurrent.UncaughtExceptionHandlers;
 import io.grpc.Server;
-import io.grpc.ServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Runs the gRPC server as part of the application context lifecycle. It starts once the
+ * context is refreshed without holding up startup, and on shutdown stops taking new calls and
+ * lets in-flight calls, such as a song being streamed, finish for up to the drain timeout
+ * before the remaining ones are cancelled.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class MusicServer implements CommandLineRunner {
+public class MusicServer implements SmartLifecycle {
 
+    static final String EXECUTOR_NAME = "grpc-server";
+
+    public enum State {
+        STOPPED, RUNNING, DRAINING
+    }
+
+    private volatile State state = State.STOPPED;
     private Server server;
+    private Executor executor;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private final InFlightCallsInterceptor inFlightCallsInterceptor = new InFlightCallsInterceptor();
+
+    private final GrpcServerConfig grpcServerConfig;
     private final GrpcArtistService grpcArtistService;
+    private final GrpcAlbumService grpcAlbumService;
+    private final GrpcSongService grpcSongService;
 
     @Override
-    public void run(String... args) throws Exception {
+    public synchronized void start() {
+        try{
+            server = buildServer().start();
+        }catch (IOException e){
+            release();
+            throw new UncheckedIOException("Cannot start gRPC server", e);
+        }
+        state = State.RUNNING;
+        log.info("gRPC server listening on port: {}", server.getPort());
+    }
 
-        server = ServerBuilder
-                .forPort(9999)
-                .addService(grpcArtistService)
-                .build();
-        server.start()
-                .awaitTermination();
+    @Override
+    public void stop() {
+        drain();
+    }
+
+    //drains off the caller's thread so other lifecycles can stop alongside it
+    @Override
+    public void stop(Runnable callback) {
+        var thread = new Thread(()-> {
+            try{
+                drain();
+            }finally {
+                callback.run();
+            }
+        }, "grpc-drain");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return state != State.STOPPED;
+    }
+
+    public State getState(){
+        return state;
+    }
+
+    public int getPort(){
+        var current = server;
+        return current == null ? -1 : current.getPort();
+    }
+
+    public int getInFlightCalls(){
+        return inFlightCallsInterceptor.getInFlight();
     }
 
-    @PreDestroy
-    public void teardown(){
-        if(server != null){
-            server.shutdown();
-            if(!server.isShutdown())
+    synchronized void drain(){
+        if(server == null){
+            release();
+            return;
+        }
+        state = State.DRAINING;
+        var drainTimeoutSeconds = grpcServerConfig.getDrainTimeoutSeconds();
+        log.info("Draining gRPC server, waiting up to {}s for {} in-flight calls",
+                drainTimeoutSeconds, getInFlightCalls());
+        server.shutdown();
+        try{
+            if(!server.awaitTermination(drainTimeoutSeconds, TimeUnit.SECONDS)){
+                log.warn("Drain timed out, cancelling {} in-flight calls", getInFlightCalls());
                 server.shutdownNow();
+                server.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            server.shutdownNow();
+        }finally {
+            release();
+            server = null;
+            state = State.STOPPED;
         }
+    }
+
+    Server buildServer(){
+        executor = getServerExecutor(grpcServerConfig);
+        //the boss threads are not daemons, so the server keeps the jvm up until it is stopped
+        bossGroup = new NioEventLoopGroup(grpcServerConfig.getBossThreads(),
+                new DefaultThreadFactory("grpc-boss", false));
+        workerGroup = new NioEventLoopGroup(grpcServerConfig.getWorkerThreads(),
+                new DefaultThreadFactory("grpc-worker", true));
+        return NettyServerBuilder
+                .forPort(grpcServerConfig.getPort())
+                .channelType(NioServerSocketChannel.class)
+                .bossEventLoopGroup(bossGroup)
+                .workerEventLoopGroup(workerGroup)
+                .executor(executor)
+                .maxConcurrentCallsPerConnection(grpcServerConfig.getMaxConcurrentCallsPerConnection())
+                .maxInboundMessageSize(grpcServerConfig.getMaxInboundMessageSizeBytes())
+                .keepAliveTime(grpcServerConfig.getKeepAliveTimeSeconds(), TimeUnit.SECONDS)
+                .keepAliveTimeout(grpcServerConfig.getKeepAliveTimeoutSeconds(), TimeUnit.SECONDS)
+                .permitKeepAliveTime(grpcServerConfig.getPermitKeepAliveTimeSeconds(), TimeUnit.SECONDS)
+                .permitKeepAliveWithoutCalls(grpcServerConfig.isPermitKeepAliveWithoutCalls())
+                .addService(grpcArtistService)
+                .addService(grpcAlbumService)
+                .addService(grpcSongService)
+                .intercept(inFlightCallsInterceptor)
+                .build();
+    }
+
+    private void release(){
+        if(executor instanceof ExecutorService executorService)
+            executorService.shutdown();
+        if(bossGroup != null)
+            bossGroup.shutdownGracefully();
+        if(workerGroup != null)
+            workerGroup.shutdownGracefully();
+        executor = null;
+        bossGroup = null;
+        workerGroup = null;
+    }
+
+    private static Executor getServerExecutor(GrpcServerConfig grpcServerConfig){
+        return getServerExecutor(grpcServerConfig, grpcServerConfig.getExecutorType() == GrpcServerConfig.ExecutorType.VIRTUAL ?
+                ThreadFactories.virtual(EXECUTOR_NAME) : Optional.empty());
+    }
 
+    static Executor getServerExecutor(GrpcServerConfig grpcServerConfig, Optional<ThreadFactory> virtualThreads){
+        var numOfThreads = grpcServerConfig.getExecutorThreads();
+        log.info("Running gRPC calls on a {} executor", grpcServerConfig.getExecutorType());
+        return switch (grpcServerConfig.getExecutorType()){
+            case FIXED -> getFixedExecutor(numOfThreads);
+            case FORK_JOIN -> getForkJoinExecutor(numOfThreads);
+            //a thread per call, virtual threads are cheap enough that pooling them buys nothing
+            case VIRTUAL -> virtualThreads.<Executor>map(threadFactory-> runnable-> threadFactory.newThread(runnable).start())
+                    .orElseGet(()-> {
+                        //a platform thread per call would be unbounded, so the fixed pool is used instead
+                        log.warn("Virtual threads are not supported by this jdk, running gRPC calls on a {} executor",
+                                GrpcServerConfig.ExecutorType.FIXED);
+                        return getFixedExecutor(numOfThreads);
+                    });
+        };
+    }
 
+    private static Executor getFixedExecutor(int numOfThreads){
+        return Executors.newFixedThreadPool(numOfThreads, ThreadFactories.named(EXECUTOR_NAME, false));
     }
 
-    private Executor getServerExecuter(int numOfThreads){
+    private static Executor getForkJoinExecutor(int numOfThreads){
         return new ForkJoinPool(numOfThreads,
                 new ForkJoinPool.ForkJoinWorkerThreadFactory() {
                     final AtomicInteger integer = new AtomicInteger();
@@ -53,7 +203,7 @@ public class MusicServer implements CommandLineRunner {
                         var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
                                 .newThread(pool);
                         thread.setDaemon(true);
-                        thread.setName("grpc-server");
+                        thread.setName(EXECUTOR_NAME + "-" + integer.getAndIncrement());
                         return thread;
                     }
                 } , UncaughtExceptionHandlers.systemExit(), true);
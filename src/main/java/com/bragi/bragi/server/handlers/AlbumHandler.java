@@ -6,14 +6,20 @@ import brgi.grpc.AddAlbumResponse;
 import brgi.grpc.GetAlbumRequest;
 import brgi.grpc.GetAlbumResponse;
 import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.server.streaming.BulkAddObserver;
+import com.bragi.bragi.server.streaming.TrackPrefetcher;
+import com.bragi.bragi.server.streaming.TrackStreamWriter;
 import com.bragi.bragi.service.AlbumService;
-import com.google.protobuf.ByteString;
+import com.bragi.bragi.service.SongService;
+import com.bragi.bragi.service.config.BulkConfig;
+import com.bragi.bragi.service.config.StreamingConfig;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.UUID;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -21,6 +27,10 @@ import java.util.UUID;
 public class AlbumHandler {
     
     private final AlbumService albumService;
+    private final SongService songService;
+    private final TrackPrefetcher trackPrefetcher;
+    private final StreamingConfig streamingConfig;
+    private final BulkConfig bulkConfig;
     private final ServiceMetrics serviceMetrics;
 
     public void addAlbum(AddAlbumRequest request, StreamObserver<AddAlbumResponse> responseObserver) {
@@ -47,16 +57,36 @@ public class AlbumHandler {
     
     public void streamAlbum(brgi.grpc.StreamAlbumRequest request, StreamObserver<brgi.grpc.StreamAlbumResponse> responseObserver) {
         try{
-            albumService.getSongs(UUID.fromString(request.getAlbumId()))
-                    .forEach(song-> responseObserver.onNext(brgi.grpc.StreamAlbumResponse.newBuilder()
-                            .setContent(ByteString.copyFrom(song.getSongContent().getContent())).build()));
+            var songs = albumService.getSongs(UUID.fromString(request.getAlbumId()));
+            var chunkSize = request.hasChunkSize() ?
+                    streamingConfig.resolveChunkSize(request.getChunkSize()) : streamingConfig.getChunkSizeBytes();
+            new TrackStreamWriter<>(responseObserver,
+                    songs.size(),
+                    index-> songService.getSongContent(songs.get(index).getExternalId()),
+                    chunkSize,
+                    streamingConfig.getPrefetchTracks(),
+                    trackPrefetcher.getExecutor(),
+                    (chunk, trackIndex, offset, trackSize)-> brgi.grpc.StreamAlbumResponse.newBuilder()
+                            .setContent(chunk)
+                            .setHeader(brgi.grpc.TrackHeader.newBuilder()
+                                    .setSongId(String.valueOf(songs.get(trackIndex).getExternalId()))
+                                    .setTrackIndex(trackIndex)
+                                    .setSize(trackSize))
+                            .setOffset(offset)
+                            .build(),
+                    e-> onStreamAlbumError(e, responseObserver))
+                    .start();
         }catch(Exception e){
-            log.error("Error occurred while trying to stream album: {}", e.getMessage());
-            serviceMetrics.incrementErrorCount("stream_album");
-            responseObserver.onError(e);
+            onStreamAlbumError(e, responseObserver);
         }
     }
 
+    private void onStreamAlbumError(Throwable e, StreamObserver<brgi.grpc.StreamAlbumResponse> responseObserver){
+        log.error("Error occurred while trying to stream album: {}", e.getMessage());
+        serviceMetrics.incrementErrorCount("stream_album");
+        responseObserver.onError(e);
+    }
+
     
     public void getAllSongs(brgi.grpc.GetAllSongsRequest request, StreamObserver<brgi.grpc.GetAllSongsResponse> responseObserver) {
         try{
@@ -89,5 +119,27 @@ public class AlbumHandler {
             responseObserver.onError(e);
         }
     }
-    
+
+    public StreamObserver<brgi.grpc.AddAlbumRequest> bulkAddAlbums(StreamObserver<brgi.grpc.BulkAddResponse> responseObserver) {
+        return new BulkAddObserver<>(responseObserver,
+                bulkConfig.getBatchSize(),
+                Function.identity(),
+                albumService::storeAll,
+                e-> {
+                    log.error("Error occurred while trying to bulk add albums: {}", e.getMessage());
+                    serviceMetrics.incrementErrorCount("bulk_add_albums");
+                    responseObserver.onError(e);
+                });
+    }
+
+    public void listAlbums(brgi.grpc.ListAlbumsRequest request, StreamObserver<brgi.grpc.ListAlbumsResponse> responseObserver) {
+        try{
+            responseObserver.onNext(albumService.listAlbums(request));
+            responseObserver.onCompleted();
+        }catch (Exception e){
+            log.error("Error occurred while trying to list albums: {}", e.getMessage());
+            serviceMetrics.incrementErrorCount("list_albums");
+            responseObserver.onError(e);
+        }
+    }
 }
@@ -5,14 +5,20 @@ import brgi.grpc.AddArtistRequest;
 import brgi.grpc.AddArtistResponse;
 import brgi.grpc.GetArtistRequest;
 import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.server.streaming.BulkAddObserver;
+import com.bragi.bragi.server.streaming.TrackPrefetcher;
+import com.bragi.bragi.server.streaming.TrackStreamWriter;
 import com.bragi.bragi.service.ArtistService;
-import com.google.protobuf.ByteString;
+import com.bragi.bragi.service.SongService;
+import com.bragi.bragi.service.config.BulkConfig;
+import com.bragi.bragi.service.config.StreamingConfig;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.UUID;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -20,6 +26,10 @@ import java.util.UUID;
 public class ArtistHandler {
 
     private final ArtistService artistService;
+    private final SongService songService;
+    private final TrackPrefetcher trackPrefetcher;
+    private final StreamingConfig streamingConfig;
+    private final BulkConfig bulkConfig;
     private final ServiceMetrics serviceMetrics;
 
     public void addArtist(AddArtistRequest request, StreamObserver<AddArtistResponse> responseObserver) {
@@ -45,21 +55,36 @@ public class ArtistHandler {
 
     public void streamArtist(brgi.grpc.StreamArtistRequest request, StreamObserver<brgi.grpc.StreamArtistResponse> responseObserver) {
         try{
-            artistService.getSongs(UUID.fromString(request.getArtistId()))
-                    .forEach(song -> {
-                        responseObserver.onNext(brgi.grpc.StreamArtistResponse.newBuilder()
-                                .setContent(ByteString.copyFrom(song.getSongContent().getContent()))
-                                .build());
-                    });
+            var songs = artistService.getSongs(UUID.fromString(request.getArtistId()));
+            var chunkSize = request.hasChunkSize() ?
+                    streamingConfig.resolveChunkSize(request.getChunkSize()) : streamingConfig.getChunkSizeBytes();
+            new TrackStreamWriter<>(responseObserver,
+                    songs.size(),
+                    index-> songService.getSongContent(songs.get(index).getExternalId()),
+                    chunkSize,
+                    streamingConfig.getPrefetchTracks(),
+                    trackPrefetcher.getExecutor(),
+                    (chunk, trackIndex, offset, trackSize)-> brgi.grpc.StreamArtistResponse.newBuilder()
+                            .setContent(chunk)
+                            .setHeader(brgi.grpc.TrackHeader.newBuilder()
+                                    .setSongId(String.valueOf(songs.get(trackIndex).getExternalId()))
+                                    .setTrackIndex(trackIndex)
+                                    .setSize(trackSize))
+                            .setOffset(offset)
+                            .build(),
+                    e-> onStreamArtistError(e, responseObserver))
+                    .start();
         }catch (Exception e){
-            log.error("Failed to stream artist with: {}", e.getMessage());
-            serviceMetrics.incrementErrorCount("stream_artist");
-            responseObserver.onError(new RuntimeException("Cannot stream artist", e));
-        }finally {
-            responseObserver.onCompleted();
+            onStreamArtistError(e, responseObserver);
         }
     }
 
+    private void onStreamArtistError(Throwable e, StreamObserver<brgi.grpc.StreamArtistResponse> responseObserver){
+        log.error("Failed to stream artist with: {}", e.getMessage());
+        serviceMetrics.incrementErrorCount("stream_artist");
+        responseObserver.onError(new RuntimeException("Cannot stream artist", e));
+    }
+
     public void getAllSongs(brgi.grpc.GetAllSongsRequest request, StreamObserver<brgi.grpc.GetAllSongsResponse> responseObserver) {
         try{
             responseObserver.onNext(artistService.getAllSongs(request));
@@ -89,4 +114,27 @@ public class ArtistHandler {
             responseObserver.onError(new RuntimeException("Cannot stream artist", e));
         }
     }
+
+    public StreamObserver<brgi.grpc.AddArtistRequest> bulkAddArtists(StreamObserver<brgi.grpc.BulkAddResponse> responseObserver) {
+        return new BulkAddObserver<>(responseObserver,
+                bulkConfig.getBatchSize(),
+                Function.identity(),
+                artistService::storeAll,
+                e-> {
+                    log.error("Failed to bulk add artists with: {}", e.getMessage());
+                    serviceMetrics.incrementErrorCount("bulk_add_artists");
+                    responseObserver.onError(new RuntimeException("Cannot bulk add artists", e));
+                });
+    }
+
+    public void listArtists(brgi.grpc.ListArtistsRequest request, StreamObserver<brgi.grpc.ListArtistsResponse> responseObserver) {
+        try{
+            responseObserver.onNext(artistService.listArtists(request));
+            responseObserver.onCompleted();
+        }catch (Exception e){
+            log.error("Failed to list artists with: {}", e.getMessage());
+            serviceMetrics.incrementErrorCount("list_artists");
+            responseObserver.onError(new RuntimeException("Cannot list artists", e));
+        }
+    }
 }
@@ -4,9 +4,16 @@ package com.bragi.bragi.server.handlers;
 import brgi.grpc.AddSongRequest;
 import brgi.grpc.AddSongResponse;
 import brgi.grpc.GetSongRequest;
+import com.bragi.bragi.error.ClientException;
 import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.server.streaming.BulkAddObserver;
+import com.bragi.bragi.server.streaming.ChunkedResponseWriter;
+import com.bragi.bragi.server.streaming.ItemStreamWriter;
+import com.bragi.bragi.server.streaming.SongUploadObserver;
 import com.bragi.bragi.service.SongService;
-import com.google.protobuf.ByteString;
+import com.bragi.bragi.service.config.BulkConfig;
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.service.utils.RenditionPreference;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +29,8 @@ public class SongHandler {
 
     private final SongService songService;
     private final ServiceMetrics serviceMetrics;
+    private final StreamingConfig streamingConfig;
+    private final BulkConfig bulkConfig;
 
     public void addSong(AddSongRequest request, StreamObserver<AddSongResponse> responseObserver) {
         try{
@@ -45,18 +54,39 @@ public class SongHandler {
 
     public void streamSong(brgi.grpc.StreamSongRequest request, StreamObserver<brgi.grpc.StreamSongResponse> responseObserver) {
         try{
-            var song = songService.getSong(UUID.fromString(request.getSongId()));
-            var songContent = song.getSongContent();
-            responseObserver.onNext(brgi.grpc.StreamSongResponse.newBuilder()
-                    .setContent(ByteString.copyFrom(songContent.getContent())).build());
-
+            var songContent = songService.getSongContent(UUID.fromString(request.getSongId()),
+                    RenditionPreference.of(request));
+            var size = songContent.size();
+            if(request.getOffset() < 0 || request.getLength() < 0 || request.getOffset() > size)
+                throw new ClientException(String.format("Invalid stream window offset %d, length %d for song of size %d",
+                        request.getOffset(), request.getLength(), size));
+            var length = request.getLength() == 0 ? size - request.getOffset() : request.getLength();
+            var chunkSize = request.hasChunkSize() ?
+                    streamingConfig.resolveChunkSize(request.getChunkSize()) : streamingConfig.getChunkSizeBytes();
+            new ChunkedResponseWriter<>(responseObserver,
+                    songContent,
+                    request.getOffset(),
+                    length,
+                    chunkSize,
+                    (chunk, offset, sequenceNumber, totalSize)-> brgi.grpc.StreamSongResponse.newBuilder()
+                            .setContent(chunk)
+                            .setOffset(offset)
+                            .setSequenceNumber(sequenceNumber)
+                            .setTotalSize(totalSize)
+                            .build(),
+                    e-> onStreamSongError(e, responseObserver))
+                    .start();
         }catch(Exception e){
-            log.error("Error received from streaming song: {}", e.getMessage());
-            serviceMetrics.incrementErrorCount("stream_song");
-            responseObserver.onError(e);
+            onStreamSongError(e, responseObserver);
         }
     }
 
+    private void onStreamSongError(Throwable e, StreamObserver<brgi.grpc.StreamSongResponse> responseObserver){
+        log.error("Error received from streaming song: {}", e.getMessage());
+        serviceMetrics.incrementErrorCount("stream_song");
+        responseObserver.onError(e);
+    }
+
     public void getSongAlbum(brgi.grpc.GetSongAlbumRequest request, StreamObserver<brgi.grpc.GetSongAlbumResponse> responseObserver) {
         try{
             responseObserver.onNext(songService.getSongAlbum(request));
@@ -86,4 +116,56 @@ public class SongHandler {
             responseObserver.onError(e);
         }
     }
+
+    public StreamObserver<brgi.grpc.AddSongRequest> bulkAddSongs(StreamObserver<brgi.grpc.BulkAddResponse> responseObserver) {
+        return new BulkAddObserver<>(responseObserver,
+                bulkConfig.getBatchSize(),
+                songService::prepareBulk,
+                songService::storeAll,
+                e-> {
+                    log.error("Error received from bulk adding songs: {}", e.getMessage());
+                    serviceMetrics.incrementErrorCount("bulk_add_songs");
+                    responseObserver.onError(e);
+                });
+    }
+
+    public StreamObserver<brgi.grpc.UploadSongRequest> uploadSong(StreamObserver<brgi.grpc.AddSongResponse> responseObserver) {
+        return new SongUploadObserver(responseObserver,
+                song-> songService.startUpload(song.getCodec()),
+                songService::store,
+                e-> {
+                    log.error("Error received from uploading song: {}", e.getMessage());
+                    serviceMetrics.incrementErrorCount("upload_song");
+                    responseObserver.onError(e);
+                });
+    }
+
+    public void listSongs(brgi.grpc.ListSongsRequest request, StreamObserver<brgi.grpc.ListSongsResponse> responseObserver) {
+        try{
+            responseObserver.onNext(songService.listSongs(request));
+            responseObserver.onCompleted();
+        }catch (Exception e){
+            log.error("Error received from listing songs: {}", e.getMessage());
+            serviceMetrics.incrementErrorCount("list_songs");
+            responseObserver.onError(e);
+        }
+    }
+
+    public void exportSongs(brgi.grpc.ExportSongsRequest request, StreamObserver<brgi.grpc.ExportSongsResponse> responseObserver) {
+        try{
+            new ItemStreamWriter<>(responseObserver,
+                    songService.exportSongs(request)
+                            .map(song-> brgi.grpc.ExportSongsResponse.newBuilder().setSong(song).build()),
+                    e-> onExportSongsError(e, responseObserver))
+                    .start();
+        }catch (Exception e){
+            onExportSongsError(e, responseObserver);
+        }
+    }
+
+    private void onExportSongsError(Throwable e, StreamObserver<brgi.grpc.ExportSongsResponse> responseObserver){
+        log.error("Error received from exporting songs: {}", e.getMessage());
+        serviceMetrics.incrementErrorCount("export_songs");
+        responseObserver.onError(e);
+    }
 }
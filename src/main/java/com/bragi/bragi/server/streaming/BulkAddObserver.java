@@ -0,0 +1,107 @@
+package com.bragi.bragi.server.streaming;
+
+import brgi.grpc.BulkAddResponse;
+import brgi.grpc.BulkAddResult;
+import com.bragi.bragi.service.utils.BulkWrite;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Receives the items of a client streaming bulk add and writes them in batches of
+ * {@code batchSize}. Each item is first prepared as it arrives, which is where anything large it
+ * carries, such as audio, is written out, so a pending batch only holds what goes into the
+ * database. Writing happens on the calling thread and grpc only asks the client for more items
+ * once {@link #onNext} returns, so a slow database slows the client down instead of items
+ * piling up in memory. The response holds one result per item in stream order.
+ */
+@Slf4j
+public class BulkAddObserver<T, P> implements StreamObserver<T> {
+
+    private final StreamObserver<BulkAddResponse> responseObserver;
+    private final int batchSize;
+    private final Function<T, P> prepare;
+    private final Function<List<P>, List<BulkAddResult>> storeBatch;
+    private final Consumer<Throwable> onError;
+
+    private final List<P> batch = new ArrayList<>();
+    private final List<Integer> batchIndexes = new ArrayList<>();
+    private final List<BulkAddResult> results = new ArrayList<>();
+    private int received;
+    private boolean done;
+
+    public BulkAddObserver(StreamObserver<BulkAddResponse> responseObserver,
+                           int batchSize,
+                           Function<T, P> prepare,
+                           Function<List<P>, List<BulkAddResult>> storeBatch,
+                           Consumer<Throwable> onError){
+        if(batchSize <= 0)
+            throw new IllegalArgumentException(String.format("Invalid batch size provided: %d", batchSize));
+        this.responseObserver = responseObserver;
+        this.batchSize = batchSize;
+        this.prepare = prepare;
+        this.storeBatch = storeBatch;
+        this.onError = onError;
+    }
+
+    @Override
+    public void onNext(T item) {
+        if(done)
+            return;
+        var index = received++;
+        try{
+            batch.add(prepare.apply(item));
+            batchIndexes.add(index);
+        }catch (Exception e){
+            results.add(BulkWrite.failure(index, e));
+        }
+        if(batch.size() >= batchSize)
+            flush();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.warn("Bulk add cancelled by client after {} items: {}", received, t.getMessage());
+        done = true;
+        batch.clear();
+        batchIndexes.clear();
+    }
+
+    @Override
+    public void onCompleted() {
+        if(done)
+            return;
+        flush();
+        if(done)
+            return;
+        done = true;
+        results.sort(Comparator.comparingInt(BulkAddResult::getIndex));
+        var succeeded = (int) results.stream().filter(BulkAddResult::getSuccess).count();
+        responseObserver.onNext(BulkAddResponse.newBuilder()
+                .addAllResult(results)
+                .setSucceeded(succeeded)
+                .setFailed(results.size() - succeeded)
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    private void flush(){
+        if(batch.isEmpty())
+            return;
+        try{
+            for(var result : storeBatch.apply(List.copyOf(batch)))
+                results.add(result.toBuilder().setIndex(batchIndexes.get(result.getIndex())).build());
+        }catch (Exception e){
+            done = true;
+            onError.accept(e);
+        }finally {
+            batch.clear();
+            batchIndexes.clear();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.bragi.bragi.server.streaming;
+
+import com.bragi.bragi.storage.ContentSource;
+import com.google.protobuf.ByteString;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.Consumer;
+
+/**
+ * Writes a {@link ContentSource} to a server streaming call as fixed size chunks.
+ * When the observer supports flow control, chunks are only produced while the
+ * transport reports it is ready, so at most one chunk per call is held in memory
+ * waiting to be sent.
+ */
+@Slf4j
+public class ChunkedResponseWriter<T> {
+
+    @FunctionalInterface
+    public interface ChunkMapper<T> {
+        T map(ByteString chunk, long offset, int sequenceNumber, long totalSize);
+    }
+
+    private final StreamObserver<T> responseObserver;
+    private final ContentSource contentSource;
+    private final long end;
+    private final int chunkSize;
+    private final ChunkMapper<T> chunkMapper;
+    private final Consumer<Throwable> onError;
+
+    private long offset;
+    private int sequenceNumber;
+    private volatile boolean cancelled;
+    private boolean done;
+
+    public ChunkedResponseWriter(StreamObserver<T> responseObserver,
+                                 ContentSource contentSource,
+                                 int chunkSize,
+                                 ChunkMapper<T> chunkMapper,
+                                 Consumer<Throwable> onError){
+        this(responseObserver, contentSource, 0, contentSource.size(), chunkSize, chunkMapper, onError);
+    }
+
+    /**
+     * Streams only the window {@code [offset, offset + length)} of the content, clamped to its size.
+     */
+    public ChunkedResponseWriter(StreamObserver<T> responseObserver,
+                                 ContentSource contentSource,
+                                 long offset,
+                                 long length,
+                                 int chunkSize,
+                                 ChunkMapper<T> chunkMapper,
+                                 Consumer<Throwable> onError){
+        if(chunkSize <= 0)
+            throw new IllegalArgumentException(String.format("Invalid chunk size provided: %d", chunkSize));
+        if(offset < 0 || length < 0)
+            throw new IllegalArgumentException(String.format("Invalid window provided: offset %d, length %d", offset, length));
+        this.responseObserver = responseObserver;
+        this.contentSource = contentSource;
+        this.offset = offset;
+        this.end = offset + Math.max(0, Math.min(length, contentSource.size() - offset));
+        this.chunkSize = chunkSize;
+        this.chunkMapper = chunkMapper;
+        this.onError = onError;
+    }
+
+    public void start(){
+        if(responseObserver instanceof ServerCallStreamObserver<T> serverCallStreamObserver){
+            serverCallStreamObserver.setOnCancelHandler(()-> {
+                log.info("Stream cancelled by client after {} chunks", sequenceNumber);
+                cancelled = true;
+            });
+            //grpc invokes the handler once the call is ready, including after the service method returns
+            serverCallStreamObserver.setOnReadyHandler(this::drain);
+        }else{
+            drain();
+        }
+    }
+
+    private synchronized void drain(){
+        try{
+            var totalSize = contentSource.size();
+            while(!done && !cancelled && isReady()){
+                if(offset >= end){
+                    done = true;
+                    responseObserver.onCompleted();
+                    return;
+                }
+                var length = (int) Math.min(chunkSize, end - offset);
+                var chunk = contentSource.read(offset, length);
+                responseObserver.onNext(chunkMapper.map(chunk, offset, sequenceNumber, totalSize));
+                offset += length;
+                sequenceNumber++;
+            }
+        }catch (Exception e){
+            done = true;
+            onError.accept(e);
+        }
+    }
+
+    private boolean isReady(){
+        if(responseObserver instanceof ServerCallStreamObserver<T> serverCallStreamObserver)
+            return serverCallStreamObserver.isReady();
+        return true;
+    }
+}
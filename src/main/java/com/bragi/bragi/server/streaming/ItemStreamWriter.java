@@ -0,0 +1,80 @@
+package com.bragi.bragi.server.streaming;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Writes a lazily produced {@link Stream} to a server streaming call one item at a time. Like
+ * {@link ChunkedResponseWriter}, items are only pulled from the stream while the transport reports
+ * it is ready, so a slow client holds back the source, such as a database read in batches, instead
+ * of items queueing up in memory. The stream is closed once it is drained, fails or the client
+ * cancels.
+ */
+@Slf4j
+public class ItemStreamWriter<T> {
+
+    private final StreamObserver<T> responseObserver;
+    private final Stream<T> items;
+    private final Iterator<T> iterator;
+    private final Consumer<Throwable> onError;
+
+    private volatile boolean cancelled;
+    private boolean done;
+    private long written;
+
+    public ItemStreamWriter(StreamObserver<T> responseObserver, Stream<T> items, Consumer<Throwable> onError){
+        this.responseObserver = responseObserver;
+        this.items = items;
+        this.iterator = items.iterator();
+        this.onError = onError;
+    }
+
+    public void start(){
+        if(responseObserver instanceof ServerCallStreamObserver<T> serverCallStreamObserver){
+            serverCallStreamObserver.setOnCancelHandler(this::cancel);
+            //grpc invokes the handler once the call is ready, including after the service method returns
+            serverCallStreamObserver.setOnReadyHandler(this::drain);
+        }else{
+            drain();
+        }
+    }
+
+    private synchronized void drain(){
+        try{
+            while(!done && !cancelled && isReady()){
+                if(!iterator.hasNext()){
+                    done = true;
+                    items.close();
+                    responseObserver.onCompleted();
+                    return;
+                }
+                responseObserver.onNext(iterator.next());
+                written++;
+            }
+        }catch (Exception e){
+            done = true;
+            items.close();
+            onError.accept(e);
+        }
+    }
+
+    private synchronized void cancel(){
+        log.info("Stream cancelled by client after {} items", written);
+        cancelled = true;
+        if(!done){
+            done = true;
+            items.close();
+        }
+    }
+
+    private boolean isReady(){
+        if(responseObserver instanceof ServerCallStreamObserver<T> serverCallStreamObserver)
+            return serverCallStreamObserver.isReady();
+        return true;
+    }
+}
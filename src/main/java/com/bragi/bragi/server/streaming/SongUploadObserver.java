@@ -0,0 +1,105 @@
+package com.bragi.bragi.server.streaming;
+
+import brgi.grpc.AddSongResponse;
+import brgi.grpc.UploadSongRequest;
+import com.bragi.bragi.error.ClientException;
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.service.SongContentService;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Receives a client streaming song upload. The first message carries the song, each following one
+ * a piece of its audio, which is written to the song content store as it arrives so the track is
+ * never held in memory. The song is only saved once the client completes the upload and its audio
+ * is committed; if the client cancels, or anything fails, the partial audio is discarded. Like
+ * {@link BulkAddObserver}, grpc only asks for the next piece once {@link #onNext} returns, so a
+ * slow disk slows the client down.
+ */
+@Slf4j
+public class SongUploadObserver implements StreamObserver<UploadSongRequest> {
+
+    private final StreamObserver<AddSongResponse> responseObserver;
+    private final Function<brgi.grpc.Song, SongContentService.Upload> startUpload;
+    private final BiFunction<brgi.grpc.Song, SongContent, AddSongResponse> store;
+    private final Consumer<Throwable> onError;
+
+    private brgi.grpc.Song song;
+    private String sha256;
+    private SongContentService.Upload upload;
+    private boolean done;
+
+    public SongUploadObserver(StreamObserver<AddSongResponse> responseObserver,
+                              Function<brgi.grpc.Song, SongContentService.Upload> startUpload,
+                              BiFunction<brgi.grpc.Song, SongContent, AddSongResponse> store,
+                              Consumer<Throwable> onError){
+        this.responseObserver = responseObserver;
+        this.startUpload = startUpload;
+        this.store = store;
+        this.onError = onError;
+    }
+
+    @Override
+    public void onNext(UploadSongRequest request) {
+        if(done)
+            return;
+        try{
+            switch (request.getPartCase()){
+                case SONG -> {
+                    if(upload != null)
+                        throw new ClientException("Song must only be sent once per upload");
+                    upload = startUpload.apply(request.getSong());
+                    upload.write(request.getSong().getContent());
+                    song = request.getSong().toBuilder().clearContent().build();
+                    sha256 = request.getSha256();
+                }
+                case CHUNK -> {
+                    if(upload == null)
+                        throw new ClientException("Song must be sent before its audio");
+                    upload.write(request.getChunk());
+                }
+                default -> throw new ClientException("Upload message has neither song nor audio");
+            }
+        }catch (Exception e){
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.warn("Song upload cancelled by client after {} bytes: {}", upload == null ? 0 : upload.size(), t.getMessage());
+        done = true;
+        discard();
+    }
+
+    @Override
+    public void onCompleted() {
+        if(done)
+            return;
+        try{
+            if(upload == null)
+                throw new ClientException("Upload completed before a song was sent");
+            var response = store.apply(song, upload.complete(sha256));
+            done = true;
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        }catch (Exception e){
+            fail(e);
+        }
+    }
+
+    private void fail(Throwable e){
+        done = true;
+        discard();
+        onError.accept(e);
+    }
+
+    private void discard(){
+        if(upload != null)
+            upload.close();
+    }
+}
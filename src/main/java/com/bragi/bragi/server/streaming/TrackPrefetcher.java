@@ -0,0 +1,46 @@
+package com.bragi.bragi.server.streaming;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.service.utils.ThreadFactories;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool that opens the upcoming tracks of album and artist streams, so the database and
+ * file system reads for the next track overlap with sending the current one instead of running
+ * on the gRPC executor. Once the pool and its queue are full, prefetches are rejected and the
+ * stream fails rather than queueing without limit.
+ */
+@Component
+public class TrackPrefetcher {
+
+    static final String NAME = "track-prefetch";
+
+    private final ThreadPoolExecutor executor;
+
+    public TrackPrefetcher(StreamingConfig streamingConfig, ServiceMetrics serviceMetrics){
+        executor = new ThreadPoolExecutor(streamingConfig.getPrefetchThreads(),
+                streamingConfig.getPrefetchThreads(),
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(streamingConfig.getPrefetchQueueCapacity()),
+                ThreadFactories.named(NAME, false));
+        executor.allowCoreThreadTimeOut(true);
+        serviceMetrics.registerBlockingScheduler(NAME, ()-> executor.getQueue().size(), executor::getActiveCount);
+    }
+
+    public Executor getExecutor(){
+        return executor;
+    }
+
+    @PreDestroy
+    public void teardown(){
+        executor.shutdownNow();
+    }
+}
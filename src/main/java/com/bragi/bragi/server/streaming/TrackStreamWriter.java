@@ -0,0 +1,154 @@
+package com.bragi.bragi.server.streaming;
+
+import com.bragi.bragi.storage.ContentSource;
+import com.google.protobuf.ByteString;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Writes a sequence of tracks to a server streaming call, one track after another, each as
+ * fixed size chunks. Like {@link ChunkedResponseWriter}, chunks are only produced while the
+ * transport reports it is ready. While a track is being sent, up to {@code prefetchTracks} of
+ * the following ones are opened on the given executor, so at most that many tracks plus the
+ * current one are held open however long the stream is, and tracks are always sent in order
+ * whichever prefetch finishes first.
+ */
+@Slf4j
+public class TrackStreamWriter<T> {
+
+    @FunctionalInterface
+    public interface TrackChunkMapper<T> {
+        T map(ByteString chunk, int trackIndex, long offset, long trackSize);
+    }
+
+    private final StreamObserver<T> responseObserver;
+    private final int trackCount;
+    private final IntFunction<ContentSource> trackOpener;
+    private final int chunkSize;
+    private final int prefetchTracks;
+    private final Executor executor;
+    private final TrackChunkMapper<T> chunkMapper;
+    private final Consumer<Throwable> onError;
+
+    private final Deque<CompletableFuture<ContentSource>> opening = new ArrayDeque<>();
+    private int nextToOpen;
+    private int trackIndex;
+    private ContentSource track;
+    private long offset;
+    private boolean waiting;
+    private volatile boolean cancelled;
+    private boolean done;
+
+    public TrackStreamWriter(StreamObserver<T> responseObserver,
+                             int trackCount,
+                             IntFunction<ContentSource> trackOpener,
+                             int chunkSize,
+                             int prefetchTracks,
+                             Executor executor,
+                             TrackChunkMapper<T> chunkMapper,
+                             Consumer<Throwable> onError){
+        if(chunkSize <= 0)
+            throw new IllegalArgumentException(String.format("Invalid chunk size provided: %d", chunkSize));
+        if(prefetchTracks < 0)
+            throw new IllegalArgumentException(String.format("Invalid prefetch provided: %d", prefetchTracks));
+        this.responseObserver = responseObserver;
+        this.trackCount = trackCount;
+        this.trackOpener = trackOpener;
+        this.chunkSize = chunkSize;
+        this.prefetchTracks = prefetchTracks;
+        this.executor = executor;
+        this.chunkMapper = chunkMapper;
+        this.onError = onError;
+    }
+
+    public void start(){
+        if(responseObserver instanceof ServerCallStreamObserver<T> serverCallStreamObserver){
+            serverCallStreamObserver.setOnCancelHandler(()-> {
+                log.info("Stream cancelled by client at track {}", trackIndex);
+                cancelled = true;
+                cancelPrefetches();
+            });
+            //grpc invokes the handler once the call is ready, including after the service method returns
+            serverCallStreamObserver.setOnReadyHandler(this::drain);
+        }else{
+            drain();
+        }
+    }
+
+    private synchronized void drain(){
+        try{
+            while(!done && !cancelled && isReady()){
+                if(track == null && !nextTrack())
+                    return;
+                var length = (int) Math.min(chunkSize, track.size() - offset);
+                var chunk = length == 0 ? ByteString.EMPTY : track.read(offset, length);
+                responseObserver.onNext(chunkMapper.map(chunk, trackIndex, offset, track.size()));
+                offset += length;
+                if(offset >= track.size()){
+                    track = null;
+                    trackIndex++;
+                }
+            }
+        }catch (Exception e){
+            done = true;
+            cancelPrefetches();
+            onError.accept(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    //moves on to the next track once it is open, returning false while it is still being opened
+    private boolean nextTrack(){
+        if(trackIndex >= trackCount){
+            done = true;
+            responseObserver.onCompleted();
+            return false;
+        }
+        //nothing is being sent yet, so the track about to be sent counts as one of the open ones
+        prefetch(prefetchTracks + 1);
+        var next = opening.peekFirst();
+        if(!next.isDone()){
+            if(!waiting){
+                waiting = true;
+                next.whenComplete((source, error)-> resume());
+            }
+            return false;
+        }
+        opening.pollFirst();
+        track = next.join();
+        offset = 0;
+        prefetch(prefetchTracks);
+        return true;
+    }
+
+    private synchronized void resume(){
+        waiting = false;
+        drain();
+    }
+
+    private void prefetch(int limit){
+        while(nextToOpen < trackCount && opening.size() < limit){
+            var index = nextToOpen++;
+            opening.addLast(CompletableFuture.supplyAsync(()-> trackOpener.apply(index), executor));
+        }
+    }
+
+    private synchronized void cancelPrefetches(){
+        opening.forEach(future-> future.cancel(false));
+        opening.clear();
+    }
+
+    private boolean isReady(){
+        if(responseObserver instanceof ServerCallStreamObserver<T> serverCallStreamObserver)
+            return serverCallStreamObserver.isReady();
+        return true;
+    }
+}
@@ -8,17 +8,20 @@ import com.bragi.bragi.model.Song;
 import com.bragi.bragi.model.SongContent;
 import com.bragi.bragi.repository.AlbumRepository;
 import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.repository.ReactiveDataAccessService;
 import com.bragi.bragi.retry.Retry;
+import com.bragi.bragi.service.config.PagingConfig;
 import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.BulkWrite;
+import com.bragi.bragi.service.utils.CursorPage;
 import com.bragi.bragi.service.utils.GrpcObjectMapper;
+import com.bragi.bragi.service.utils.PageCursor;
 import com.bragi.bragi.service.utils.RetryUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.sql.Timestamp;
 import java.util.*;
@@ -31,12 +34,12 @@ import java.util.stream.Collectors;
 public class AlbumService {
 
     private final DataAccessService dataAccessService;
+    private final ReactiveDataAccessService reactiveDataAccessService;
+    private final SongContentService songContentService;
+    private final PagingConfig pagingConfig;
 
     public brgi.grpc.AddAlbumResponse store(brgi.grpc.AddAlbumRequest albumRequest){
-       var albumBuilder = Album.builder()
-                .title(albumRequest.getAlbum().getTitle())
-                .date(new Timestamp(albumRequest.getAlbum().getReleaseDate().getSeconds() * 1_000 +
-                        albumRequest.getAlbum().getReleaseDate().getNanos() / 1_000_000));
+       var albumBuilder = albumBuilder(albumRequest.getAlbum());
 
                 var artists = albumRequest.getAlbum()
                         .getArtistIdList()
@@ -54,9 +57,39 @@ public class AlbumService {
 
     }
 
-    public Set<Song> getSongs(UUID externalId){
-        var albumFromDb = dataAccessService.getAlbumByExternalId(externalId);
-        return albumFromDb.getSongs();
+    //resolves the artists of the whole batch with one query and inserts it in one transaction
+    public List<brgi.grpc.BulkAddResult> storeAll(List<brgi.grpc.AddAlbumRequest> requests){
+        var artists = dataAccessService.getArtistsByExternalIds(BulkWrite.externalIds(requests.stream()
+                .flatMap(request-> request.getAlbum().getArtistIdList().stream())));
+
+        var bulkWrite = new BulkWrite<Album>(requests.size());
+        for(var i = 0; i < requests.size(); i++){
+            var album = requests.get(i).getAlbum();
+            try{
+                bulkWrite.add(i, albumBuilder(album)
+                        .artists(album.getArtistIdList()
+                                .stream()
+                                .map(artistId-> BulkWrite.resolve(artists, artistId, "artist"))
+                                .collect(Collectors.toSet()))
+                        .build());
+            }catch (Exception e){
+                bulkWrite.fail(i, e);
+            }
+        }
+        return bulkWrite.save(dataAccessService::saveAllAlbums, dataAccessService::saveAlbum, Album::getExternalId);
+    }
+
+    private static Album.AlbumBuilder albumBuilder(brgi.grpc.Album album){
+        return Album.builder()
+                .externalId(UUID.randomUUID())
+                .title(album.getTitle())
+                .date(new Timestamp(album.getReleaseDate().getSeconds() * 1_000 +
+                        album.getReleaseDate().getNanos() / 1_000_000));
+    }
+
+    //metadata only, streams open each track's content when they reach it
+    public List<Song> getSongs(UUID externalId){
+        return dataAccessService.getSongsByAlbumExternalId(externalId, false);
     }
 
 
@@ -79,9 +112,7 @@ public class AlbumService {
     public brgi.grpc.GetArtistsResponse getArtists(brgi.grpc.GetArtistsRequest request){
         if(!request.hasAlbumId())
             throw new RuntimeException("Album id is not supplied");
-        var albumFromDb = dataAccessService.getAlbumByExternalId(UUID.fromString(request.getAlbumId()));
-
-        var artists = albumFromDb.getArtists()
+        var artists = dataAccessService.getArtistsByAlbumExternalId(UUID.fromString(request.getAlbumId()))
                 .stream()
                 .map(GrpcObjectMapper::mapArtist)
                 .toList();
@@ -94,11 +125,12 @@ public class AlbumService {
     public brgi.grpc.GetAllSongsResponse getAllSongs(brgi.grpc.GetAllSongsRequest request){
         if(!request.hasAlbumId())
             throw new RuntimeException("Album id is not supplied");
-        var albumFromDb = dataAccessService.getAlbumByExternalId(UUID.fromString(request.getAlbumId()));
-
-        var songs = albumFromDb.getSongs()
+        var songs = dataAccessService.getSongsByAlbumExternalId(UUID.fromString(request.getAlbumId()),
+                        request.getIncludeContent())
                 .stream()
-                .map(GrpcObjectMapper::mapSong)
+                .map(song-> request.getIncludeContent() ?
+                        GrpcObjectMapper.mapSong(song, songContentService.readAll(song.getSongContent())) :
+                        GrpcObjectMapper.mapSongMetadata(song))
                 .toList();
         return brgi.grpc.GetAllSongsResponse.newBuilder()
                 .addAllSong(songs)
@@ -106,27 +138,46 @@ public class AlbumService {
 
     }
 
-    public List<Album> findAllAlbums(int offset, int size, String sort) {
-        Sort sortDirection;
-        if(sort.equals("asc")){
-            sortDirection = Sort.by("id").ascending();
-        }else if(sort.equals("desc")){
-            sortDirection = Sort.by("id").descending();
-        }else{
-            throw new RuntimeException("Invalid sort order must be desc or asc");
-        }
-        if(size > 10000 || size < 0)
-            throw new RuntimeException(String.format("Invalid size provided: %d", size));
+    public CursorPage<Album> findAllAlbums(String cursor, int size, String sort) {
+        var pageCursor = PageCursor.resolve(cursor, sort);
+        var pageSize = pagingConfig.resolvePageSize(size);
+        return CursorPage.of(dataAccessService.findAllAlbums(pageCursor, pageSize + 1), pageSize, pageCursor, Album::getId);
+    }
 
-        Pageable pageable = PageRequest.of(offset, size, sortDirection);
-        Page<Album> albumPage = dataAccessService.findAllAlbums(pageable);
-        return albumPage.getContent();
+    public Mono<CursorPage<Album>> findAlbums(String cursor, int size, String sort) {
+        return Mono.defer(()-> {
+            var pageCursor = PageCursor.resolve(cursor, sort);
+            var pageSize = pagingConfig.resolvePageSize(size);
+            return reactiveDataAccessService.findAllAlbums(pageCursor, pageSize + 1)
+                    .collectList()
+                    .map(albums-> CursorPage.of(albums, pageSize, pageCursor, Album::getId));
+        });
+    }
+
+    public Flux<Album> exportAlbums(String sort) {
+        return CursorPage.walk(cursor-> findAlbums(cursor, pagingConfig.getExportBatchSize(), sort));
+    }
+
+    public brgi.grpc.ListAlbumsResponse listAlbums(brgi.grpc.ListAlbumsRequest request){
+        var page = findAllAlbums(request.getPageToken(), request.getPageSize(), request.getDescending() ? "desc" : "asc");
+        var response = brgi.grpc.ListAlbumsResponse.newBuilder()
+                .addAllAlbum(page.items()
+                        .stream()
+                        .map(GrpcObjectMapper::mapAlbum)
+                        .toList());
+        if(page.hasNext())
+            response.setNextPageToken(page.nextCursor());
+        return response.build();
     }
 
     public Album getAlbum(String id) {
         return dataAccessService.getAlbumByExternalId(UUID.fromString(id));
     }
 
+    public Mono<Album> findAlbum(String id) {
+        return Mono.defer(()-> reactiveDataAccessService.getAlbumByExternalId(UUID.fromString(id)));
+    }
+
     public Album store(com.bragi.bragi.rest.dto.Album album) {
         var albumEntity = com.bragi.bragi.model.Album.builder()
                 .title(album.getTitle())
@@ -3,19 +3,21 @@ package com.bragi.bragi.service;
 import com.bragi.bragi.model.Artist;
 import com.bragi.bragi.model.Song;
 import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.repository.ReactiveDataAccessService;
+import com.bragi.bragi.service.config.PagingConfig;
+import com.bragi.bragi.service.utils.BulkWrite;
+import com.bragi.bragi.service.utils.CursorPage;
 import com.bragi.bragi.service.utils.GrpcObjectMapper;
+import com.bragi.bragi.service.utils.PageCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.sql.Timestamp;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -25,13 +27,12 @@ import java.util.stream.Collectors;
 public class ArtistService {
 
     private final DataAccessService dataAccessService;
+    private final ReactiveDataAccessService reactiveDataAccessService;
+    private final SongContentService songContentService;
+    private final PagingConfig pagingConfig;
 
     public brgi.grpc.AddArtistResponse store(brgi.grpc.AddArtistRequest request){
-        var artist = Artist.builder()
-                .name(request.getArtist().getName())
-                .timeStarted(new Timestamp(request.getArtist().getTimeFormed().getSeconds() * 1_000 +
-                        request.getArtist().getTimeFormed().getNanos() / 1_000_000))
-                .build();
+        var artist = toArtist(request.getArtist());
 
         var artistFromDb = dataAccessService.saveArtist(artist);
 
@@ -41,6 +42,22 @@ public class ArtistService {
                 .build();
     }
 
+    public List<brgi.grpc.BulkAddResult> storeAll(List<brgi.grpc.AddArtistRequest> requests){
+        var bulkWrite = new BulkWrite<Artist>(requests.size());
+        for(var i = 0; i < requests.size(); i++)
+            bulkWrite.add(i, toArtist(requests.get(i).getArtist()));
+        return bulkWrite.save(dataAccessService::saveAllArtists, dataAccessService::saveArtist, Artist::getExternalId);
+    }
+
+    private static Artist toArtist(brgi.grpc.Artist artist){
+        return Artist.builder()
+                .externalId(UUID.randomUUID())
+                .name(artist.getName())
+                .timeStarted(new Timestamp(artist.getTimeFormed().getSeconds() * 1_000 +
+                        artist.getTimeFormed().getNanos() / 1_000_000))
+                .build();
+    }
+
     public brgi.grpc.GetArtistResponse getArtist(brgi.grpc.GetArtistRequest request){
         var artistId = UUID.fromString(request.getArtistId());
         var artistFromDb = dataAccessService.getArtistByExternalId(artistId);
@@ -53,16 +70,14 @@ public class ArtistService {
 
     }
 
-    public Set<Song> getSongs(UUID externalId){
-        var artist = dataAccessService.getArtistByExternalId(externalId);
-        return artist.getSongs();
+    //metadata only, streams open each track's content when they reach it
+    public List<Song> getSongs(UUID externalId){
+        return dataAccessService.getSongsByArtistExternalId(externalId, false);
     }
 
 
     public brgi.grpc.GetAllAlbumsResponse getAllAlbums(brgi.grpc.GetAllAlbumsRequest request){
-        var artist = dataAccessService.getArtistByExternalId(UUID.fromString(request.getArtistId()));
-
-        var albums = artist.getAlbums()
+        var albums = dataAccessService.getAlbumsByArtistExternalId(UUID.fromString(request.getArtistId()))
                 .stream()
                 .map(GrpcObjectMapper::mapAlbum)
                 .collect(Collectors.toSet());
@@ -77,11 +92,12 @@ public class ArtistService {
         if(!request.hasArtistId())
             throw new RuntimeException("Artist id needs to be set");
 
-        var artist = dataAccessService.getArtistByExternalId(UUID.fromString(request.getArtistId()));
-
-        var songs = artist.getSongs()
+        var songs = dataAccessService.getSongsByArtistExternalId(UUID.fromString(request.getArtistId()),
+                        request.getIncludeContent())
                 .stream()
-                .map(GrpcObjectMapper::mapSong)
+                .map(song-> request.getIncludeContent() ?
+                        GrpcObjectMapper.mapSong(song, songContentService.readAll(song.getSongContent())) :
+                        GrpcObjectMapper.mapSongMetadata(song))
                 .collect(Collectors.toSet());
 
         return brgi.grpc.GetAllSongsResponse.newBuilder()
@@ -100,22 +116,36 @@ public class ArtistService {
         return brgi.grpc.DeleteArtistResponse.getDefaultInstance();
     }
 
-    public List<Artist> findAllArtists(int offset, int size, String sort) {
-        Sort sortDirection;
-        if(sort.equals("asc")){
-            sortDirection = Sort.by("id").ascending();
-        }else if(sort.equals("desc")){
-            sortDirection = Sort.by("id").descending();
-        }else{
-            throw new RuntimeException("Invalid sort order must be desc or asc");
-        }
-        if(size > 10000 || size < 0)
-            throw new RuntimeException(String.format("Invalid size provided: %d", size));
+    public CursorPage<Artist> findAllArtists(String cursor, int size, String sort) {
+        var pageCursor = PageCursor.resolve(cursor, sort);
+        var pageSize = pagingConfig.resolvePageSize(size);
+        return CursorPage.of(dataAccessService.findAllArtists(pageCursor, pageSize + 1), pageSize, pageCursor, Artist::getId);
+    }
 
-        Pageable pageable = PageRequest.of(offset, size, sortDirection);
-        Page<Artist> artistPage = dataAccessService.findAllArtists(pageable);
-        return artistPage.getContent();
+    public Mono<CursorPage<Artist>> findArtists(String cursor, int size, String sort) {
+        return Mono.defer(()-> {
+            var pageCursor = PageCursor.resolve(cursor, sort);
+            var pageSize = pagingConfig.resolvePageSize(size);
+            return reactiveDataAccessService.findAllArtists(pageCursor, pageSize + 1)
+                    .collectList()
+                    .map(artists-> CursorPage.of(artists, pageSize, pageCursor, Artist::getId));
+        });
+    }
 
+    public Flux<Artist> exportArtists(String sort) {
+        return CursorPage.walk(cursor-> findArtists(cursor, pagingConfig.getExportBatchSize(), sort));
+    }
+
+    public brgi.grpc.ListArtistsResponse listArtists(brgi.grpc.ListArtistsRequest request){
+        var page = findAllArtists(request.getPageToken(), request.getPageSize(), request.getDescending() ? "desc" : "asc");
+        var response = brgi.grpc.ListArtistsResponse.newBuilder()
+                .addAllArtist(page.items()
+                        .stream()
+                        .map(GrpcObjectMapper::mapArtist)
+                        .toList());
+        if(page.hasNext())
+            response.setNextPageToken(page.nextCursor());
+        return response.build();
     }
 
 
@@ -123,6 +153,10 @@ public class ArtistService {
         return dataAccessService.getArtistByExternalId(UUID.fromString(id));
     }
 
+    public Mono<Artist> findArtist(String id) {
+        return Mono.defer(()-> reactiveDataAccessService.getArtistByExternalId(UUID.fromString(id)));
+    }
+
     public Artist store(com.bragi.bragi.rest.dto.Artist artist) {
         return dataAccessService.saveArtist(Artist.builder()
                         .timeStarted(artist.getTimeStarted())
@@ -0,0 +1,143 @@
+package com.bragi.bragi.service;
+
+import com.bragi.bragi.error.ClientException;
+import com.bragi.bragi.model.Song;
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.model.SongRendition;
+import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.service.config.SegmentConfig;
+import com.bragi.bragi.service.utils.RenditionPreference;
+import com.bragi.bragi.storage.ContentSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * HLS playlists over the song content store. Audio is cut into segments by byte count, sized so a
+ * segment plays for about the target duration at its rendition's bitrate, rather than at frame
+ * boundaries, as the service does not parse audio. A segment is named by the hash of the content
+ * it is cut from, its size and its index, so its url always returns the same bytes and can be
+ * cached indefinitely; only playlists change, as renditions are added.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlaylistService {
+
+    public static final String SEGMENT_PATH = "/media/segments";
+
+    static final long MIN_SEGMENT_BYTES = 1024;
+    static final long MAX_SEGMENT_BYTES = 16L * 1024 * 1024;
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final DataAccessService dataAccessService;
+    private final SongContentService songContentService;
+    private final SegmentConfig segmentConfig;
+
+    private record Track(String hash, long size, int bitrateKbps){}
+
+    //one variant per rendition plus the original, players switch between them segment by segment
+    public String masterPlaylist(UUID songId){
+        var songContent = segmentable(dataAccessService.getSongContentByExternalId(songId), songId);
+        var playlist = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n");
+        for(var rendition : dataAccessService.getRenditions(songContent.getId()))
+            variant(playlist, rendition.getBitrateKbps(), "media.m3u8?quality=high&maxBitrate=" + rendition.getBitrateKbps());
+        variant(playlist, segmentConfig.getOriginalBitrateKbps(), "media.m3u8");
+        return playlist.toString();
+    }
+
+    public String mediaPlaylist(UUID songId, RenditionPreference preference){
+        var songContent = segmentable(dataAccessService.getSongContentByExternalId(songId), songId);
+        var renditions = preference.isOriginal() ? List.<SongRendition>of() : dataAccessService.getRenditions(songContent.getId());
+        return mediaPlaylist(List.of(track(songContent, renditions, preference)));
+    }
+
+    //tracks in the order they were added, separated by discontinuities so they play back to back
+    public String albumPlaylist(UUID albumId, RenditionPreference preference){
+        var songContents = dataAccessService.getSongsByAlbumExternalId(albumId, true)
+                .stream()
+                .sorted(Comparator.comparingLong(Song::getId))
+                .map(Song::getSongContent)
+                .filter(songContent-> {
+                    if(songContent != null && songContent.getHash() != null)
+                        return true;
+                    log.info("Leaving song content {} out of album {} playlist until it is migrated",
+                            songContent == null ? null : songContent.getId(), albumId);
+                    return false;
+                })
+                .toList();
+        var renditions = preference.isOriginal() ? Map.<Long, List<SongRendition>>of() :
+                dataAccessService.getRenditions(songContents.stream().map(SongContent::getId).toList());
+        return mediaPlaylist(songContents.stream()
+                .map(songContent-> track(songContent, renditions.getOrDefault(songContent.getId(), List.of()), preference))
+                .toList());
+    }
+
+    public ContentSource getSegment(String hash, long segmentBytes, long index){
+        if(!HASH.matcher(hash).matches())
+            throw new ClientException(String.format("Invalid content hash provided: %s", hash));
+        if(segmentBytes < MIN_SEGMENT_BYTES || segmentBytes > MAX_SEGMENT_BYTES || index < 0)
+            throw new ClientException(String.format("Invalid segment %d of %d bytes requested", index, segmentBytes));
+        if(!songContentService.exists(hash))
+            throw new NoSuchElementException(String.format("No content stored for hash: %s", hash));
+        var contentSource = songContentService.open(hash, null);
+        var offset = index * segmentBytes;
+        if(offset >= contentSource.size())
+            throw new NoSuchElementException(String.format("Segment %d is past the end of content: %s", index, hash));
+        return ContentSource.slice(contentSource, offset, Math.min(segmentBytes, contentSource.size() - offset));
+    }
+
+    private SongContent segmentable(SongContent songContent, UUID songId){
+        if(songContent == null || songContent.getHash() == null)
+            throw new ClientException(String.format("Song %s cannot be segmented until its content is migrated", songId));
+        return songContent;
+    }
+
+    private Track track(SongContent songContent, List<SongRendition> renditions, RenditionPreference preference){
+        return preference.select(renditions)
+                .map(rendition-> new Track(rendition.getHash(), rendition.getSize(), rendition.getBitrateKbps()))
+                .orElseGet(()-> new Track(songContent.getHash(), songContent.getSize(), segmentConfig.getOriginalBitrateKbps()));
+    }
+
+    private String mediaPlaylist(List<Track> tracks){
+        var targetDuration = segmentConfig.getTargetDurationSeconds();
+        var playlist = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n")
+                .append("#EXT-X-TARGETDURATION:").append(targetDuration).append('\n')
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n");
+        var first = true;
+        for(var track : tracks){
+            if(!first)
+                playlist.append("#EXT-X-DISCONTINUITY\n");
+            first = false;
+            var segmentBytes = segmentBytes(track.bitrateKbps());
+            for(long offset = 0, index = 0; offset < track.size(); offset += segmentBytes, index++){
+                var bytes = Math.min(segmentBytes, track.size() - offset);
+                playlist.append(String.format(Locale.ROOT, "#EXTINF:%.3f,\n", bytes * 8.0 / (track.bitrateKbps() * 1000.0)))
+                        .append(SEGMENT_PATH).append('/').append(track.hash())
+                        .append('/').append(segmentBytes)
+                        .append('/').append(index).append('\n');
+            }
+        }
+        return playlist.append("#EXT-X-ENDLIST\n").toString();
+    }
+
+    private long segmentBytes(int bitrateKbps){
+        var segmentBytes = bitrateKbps * 125L * segmentConfig.getTargetDurationSeconds();
+        return Math.max(MIN_SEGMENT_BYTES, Math.min(segmentBytes, MAX_SEGMENT_BYTES));
+    }
+
+    private static void variant(StringBuilder playlist, int bitrateKbps, String uri){
+        playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(bitrateKbps * 1000L).append('\n')
+                .append(uri).append('\n');
+    }
+}
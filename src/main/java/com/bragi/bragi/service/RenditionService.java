@@ -0,0 +1,117 @@
+package com.bragi.bragi.service;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.model.SongRendition;
+import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.service.config.RenditionConfig;
+import com.bragi.bragi.service.utils.ThreadFactories;
+import com.bragi.bragi.storage.ContentSource;
+import com.bragi.bragi.storage.SongContentStore;
+import com.bragi.bragi.transcode.Transcoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Produces the configured bitrate renditions of newly stored songs in the background, so adding
+ * a song never waits on encoding. Each rendition is written to the song content store like any
+ * other audio and recorded against the original once all of them are done. Until then, or when
+ * rendering fails, the song is served at its original bitrate. The queue is bounded; songs that
+ * do not fit are logged and left without renditions.
+ */
+@Service
+@Slf4j
+public class RenditionService {
+
+    static final String NAME = "rendition";
+
+    private final RenditionConfig renditionConfig;
+    private final List<Transcoder> transcoders;
+    private final SongContentStore songContentStore;
+    private final DataAccessService dataAccessService;
+    private final ServiceMetrics serviceMetrics;
+    private final ThreadPoolExecutor executor;
+
+    public RenditionService(RenditionConfig renditionConfig,
+                            List<Transcoder> transcoders,
+                            SongContentStore songContentStore,
+                            DataAccessService dataAccessService,
+                            ServiceMetrics serviceMetrics){
+        this.renditionConfig = renditionConfig;
+        this.transcoders = transcoders;
+        this.songContentStore = songContentStore;
+        this.dataAccessService = dataAccessService;
+        this.serviceMetrics = serviceMetrics;
+        this.executor = new ThreadPoolExecutor(renditionConfig.getThreads(),
+                renditionConfig.getThreads(),
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(renditionConfig.getQueueCapacity()),
+                ThreadFactories.named(NAME, false));
+        executor.allowCoreThreadTimeOut(true);
+        serviceMetrics.registerBlockingScheduler(NAME, ()-> executor.getQueue().size(), executor::getActiveCount);
+    }
+
+    //content still held in the database is left alone until it has been migrated
+    public void schedule(SongContent songContent){
+        if(!renditionConfig.isEnabled() || songContent == null || songContent.getHash() == null)
+            return;
+        try{
+            executor.execute(()-> render(songContent));
+        }catch (RejectedExecutionException e){
+            log.warn("Rendition queue full, song content {} is only served at its original bitrate", songContent.getId());
+            serviceMetrics.incrementErrorCount(NAME);
+        }
+    }
+
+    List<SongRendition> render(SongContent songContent){
+        var transcoder = transcoders.stream()
+                .filter(candidate-> candidate.supports(songContent.getCodec()))
+                .findFirst();
+        if(transcoder.isEmpty()){
+            log.info("No transcoder supports codec {}, song content {} has no renditions",
+                    songContent.getCodec(), songContent.getId());
+            return List.of();
+        }
+        var renditions = new ArrayList<SongRendition>();
+        for(var bitrateKbps : renditionConfig.getBitratesKbps()){
+            try(var writer = songContentStore.newWriter()){
+                var source = ContentSource.withCodec(songContentStore.open(songContent.getHash()), songContent.getCodec());
+                var codec = transcoder.get().transcode(source, bitrateKbps, writer);
+                var storedContent = writer.commit(null);
+                renditions.add(SongRendition.builder()
+                        .songContent(songContent)
+                        .bitrateKbps(bitrateKbps)
+                        .hash(storedContent.getHash())
+                        .size(storedContent.getSize())
+                        .codec(codec)
+                        .build());
+            }catch (Exception e){
+                log.error("Failed to render song content {} at {} kbps: {}", songContent.getId(), bitrateKbps, e.getMessage());
+                serviceMetrics.incrementErrorCount(NAME);
+            }
+        }
+        try{
+            var saved = dataAccessService.saveAllRenditions(renditions);
+            log.info("Stored {} renditions of song content {}", saved.size(), songContent.getId());
+            return saved;
+        }catch (Exception e){
+            log.error("Failed to save renditions of song content {}: {}", songContent.getId(), e.getMessage());
+            serviceMetrics.incrementErrorCount(NAME);
+            return List.of();
+        }
+    }
+
+    @PreDestroy
+    public void teardown(){
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,136 @@
+package com.bragi.bragi.service;
+
+import com.bragi.bragi.error.ClientException;
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.model.SongRendition;
+import com.bragi.bragi.storage.ContentCache;
+import com.bragi.bragi.storage.ContentSource;
+import com.bragi.bragi.storage.ContentWriter;
+import com.bragi.bragi.storage.SongContentStore;
+import com.google.protobuf.ByteString;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SongContentService {
+
+    private final SongContentStore songContentStore;
+    private final ContentCache contentCache;
+
+    public SongContent store(InputStream content, String codec){
+        try{
+            var storedContent = songContentStore.put(content);
+            log.info("Stored song content: {}", storedContent);
+            return SongContent.builder()
+                    .hash(storedContent.getHash())
+                    .size(storedContent.getSize())
+                    .codec(codec)
+                    .build();
+        }catch (IOException e){
+            throw new RuntimeException("Cannot store song content", e);
+        }
+    }
+
+    public Upload startUpload(String codec){
+        try{
+            return new Upload(songContentStore.newWriter(), codec);
+        }catch (IOException e){
+            throw new RuntimeException("Cannot start song content upload", e);
+        }
+    }
+
+    /**
+     * Song content received in pieces, written to the store as it arrives. Nothing is stored until
+     * {@link #complete}, and closing an upload that was not completed discards it.
+     */
+    @RequiredArgsConstructor
+    public static class Upload implements Closeable {
+
+        private final ContentWriter contentWriter;
+        private final String codec;
+
+        public void write(ByteBuffer content){
+            try{
+                contentWriter.write(content);
+            }catch (IOException e){
+                throw new RuntimeException("Cannot write song content", e);
+            }
+        }
+
+        public void write(ByteString content){
+            for(var buffer : content.asReadOnlyByteBufferList())
+                write(buffer);
+        }
+
+        public long size(){
+            return contentWriter.size();
+        }
+
+        //an empty expected hash skips the check
+        public SongContent complete(String expectedHash){
+            try{
+                var storedContent = contentWriter.commit(expectedHash == null || expectedHash.isEmpty() ? null : expectedHash);
+                log.info("Stored uploaded song content: {}", storedContent);
+                return SongContent.builder()
+                        .hash(storedContent.getHash())
+                        .size(storedContent.getSize())
+                        .codec(codec)
+                        .build();
+            }catch (IllegalArgumentException e){
+                throw new ClientException(e.getMessage());
+            }catch (IOException e){
+                throw new RuntimeException("Cannot store song content", e);
+            }
+        }
+
+        @Override
+        public void close(){
+            try{
+                contentWriter.close();
+            }catch (IOException e){
+                log.warn("Cannot discard song content upload: {}", e.getMessage());
+            }
+        }
+    }
+
+    public ContentSource open(SongContent songContent){
+        if(songContent == null)
+            return ContentSource.of(null);
+        if(songContent.getHash() == null)
+            return ContentSource.withCodec(ContentSource.of(songContent.getContent()), songContent.getCodec());
+        return open(songContent.getHash(), songContent.getCodec());
+    }
+
+    public ContentSource open(SongRendition songRendition){
+        return open(songRendition.getHash(), songRendition.getCodec());
+    }
+
+    public boolean exists(String hash){
+        return songContentStore.exists(hash);
+    }
+
+    public ContentSource open(String hash, String codec){
+        try{
+            return ContentSource.withCodec(contentCache.get(hash, songContentStore::open), codec);
+        }catch (IOException e){
+            throw new RuntimeException(String.format("Cannot open song content: %s", hash), e);
+        }
+    }
+
+    public ByteString readAll(SongContent songContent){
+        var contentSource = open(songContent);
+        try{
+            return contentSource.read(0, Math.toIntExact(contentSource.size()));
+        }catch (IOException e){
+            throw new RuntimeException("Cannot read song content", e);
+        }
+    }
+}
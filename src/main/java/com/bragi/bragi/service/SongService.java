@@ -3,22 +3,26 @@ package com.bragi.bragi.service;
 import com.bragi.bragi.model.Song;
 import com.bragi.bragi.model.SongContent;
 import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.repository.ReactiveDataAccessService;
+import com.bragi.bragi.service.config.PagingConfig;
+import com.bragi.bragi.service.utils.BulkWrite;
+import com.bragi.bragi.service.utils.CursorPage;
 import com.bragi.bragi.service.utils.GrpcObjectMapper;
+import com.bragi.bragi.service.utils.PageCursor;
+import com.bragi.bragi.service.utils.RenditionPreference;
+import com.bragi.bragi.storage.ContentSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -26,18 +30,35 @@ import java.util.stream.Collectors;
 public class SongService {
 
     private final DataAccessService dataAccessService;
+    private final ReactiveDataAccessService reactiveDataAccessService;
+    private final SongContentService songContentService;
+    private final RenditionService renditionService;
+    private final PagingConfig pagingConfig;
+
+    //a bulk added song once its audio is in the song content store, so only metadata waits for the batch
+    public record BulkSong(brgi.grpc.Song song, SongContent songContent) {
+    }
 
     public brgi.grpc.AddSongResponse store(brgi.grpc.AddSongRequest request){
         var song = request.getSong();
-        var songBuilder = Song.builder()
-                .songContent(SongContent.builder()
-                        .content(song.getContent().toByteArray())
-                        .build())
-                .title(song.getTitle())
-                .duration(song.getDuration())
-                .dateReleased(new Timestamp(song.getReleaseDate().getSeconds() * 1_000 +
-                        song.getReleaseDate().getNanos() / 1_000_000));
+        var songBuilder = resolveSong(song);
+        return saveSong(song, songBuilder
+                .songContent(songContentService.store(song.getContent().newInput(), song.getCodec()))
+                .build());
+    }
+
+    //commits the metadata of an uploaded song once all of its audio is in the song content store
+    public brgi.grpc.AddSongResponse store(brgi.grpc.Song song, SongContent songContent){
+        return saveSong(song, resolveSong(song)
+                .songContent(songContent)
+                .build());
+    }
 
+    public SongContentService.Upload startUpload(String codec){
+        return songContentService.startUpload(codec);
+    }
+
+    private Song.SongBuilder resolveSong(brgi.grpc.Song song){
         var artists = song.getArtistIdList()
                 .stream()
                 .map(artistId->
@@ -46,11 +67,14 @@ public class SongService {
 
         var album = dataAccessService.getAlbumByExternalId(UUID.fromString(song.getAlbumId()));
 
-        var songToDb = songBuilder.album(album)
-                .artists(artists)
-                .build();
+        return songBuilder(song)
+                .album(album)
+                .artists(artists);
+    }
 
+    private brgi.grpc.AddSongResponse saveSong(brgi.grpc.Song song, Song songToDb){
         var songFromDb = dataAccessService.saveSong(songToDb);
+        renditionService.schedule(songFromDb.getSongContent());
         song = song.toBuilder()
                 .setSongId(songFromDb.getExternalId().toString())
                 .build();
@@ -61,9 +85,58 @@ public class SongService {
                 .build();
     }
 
+    public BulkSong prepareBulk(brgi.grpc.AddSongRequest request){
+        var song = request.getSong();
+        var songContent = songContentService.store(song.getContent().newInput(), song.getCodec());
+        return new BulkSong(song.toBuilder().clearContent().build(), songContent);
+    }
+
+    //resolves the albums and artists of the whole batch with one query each and inserts it in one transaction
+    public List<brgi.grpc.BulkAddResult> storeAll(List<BulkSong> songs){
+        var artists = dataAccessService.getArtistsByExternalIds(BulkWrite.externalIds(songs.stream()
+                .flatMap(bulkSong-> bulkSong.song().getArtistIdList().stream())));
+        var albums = dataAccessService.getAlbumsByExternalIds(BulkWrite.externalIds(songs.stream()
+                .map(bulkSong-> bulkSong.song().getAlbumId())));
+
+        var bulkWrite = new BulkWrite<Song>(songs.size());
+        for(var i = 0; i < songs.size(); i++){
+            var song = songs.get(i).song();
+            try{
+                bulkWrite.add(i, songBuilder(song)
+                        .album(BulkWrite.resolve(albums, song.getAlbumId(), "album"))
+                        .artists(song.getArtistIdList()
+                                .stream()
+                                .map(artistId-> BulkWrite.resolve(artists, artistId, "artist"))
+                                .collect(Collectors.toSet()))
+                        .songContent(songs.get(i).songContent())
+                        .build());
+            }catch (Exception e){
+                bulkWrite.fail(i, e);
+            }
+        }
+        var results = bulkWrite.save(dataAccessService::saveAllSongs, dataAccessService::saveSong, Song::getExternalId);
+        results.stream()
+                .filter(brgi.grpc.BulkAddResult::getSuccess)
+                .forEach(result-> renditionService.schedule(bulkWrite.saved(result.getIndex()).getSongContent()));
+        return results;
+    }
+
+    private static Song.SongBuilder songBuilder(brgi.grpc.Song song){
+        return Song.builder()
+                .externalId(UUID.randomUUID())
+                .title(song.getTitle())
+                .duration(song.getDuration())
+                .dateReleased(new Timestamp(song.getReleaseDate().getSeconds() * 1_000 +
+                        song.getReleaseDate().getNanos() / 1_000_000));
+    }
+
     public brgi.grpc.GetSongResponse getSong(brgi.grpc.GetSongRequest request){
-        var songFromDb = dataAccessService.getSongByExternalId(UUID.fromString(request.getSongId()));
-        var song = GrpcObjectMapper.mapSong(songFromDb);
+        var songId = UUID.fromString(request.getSongId());
+        var songFromDb = dataAccessService.getSongByExternalId(songId);
+        var song = request.getIncludeContent() ?
+                GrpcObjectMapper.mapSong(songFromDb,
+                        songContentService.readAll(dataAccessService.getSongContentByExternalId(songId))) :
+                GrpcObjectMapper.mapSongMetadata(songFromDb);
 
         return brgi.grpc.GetSongResponse
                 .newBuilder()
@@ -75,9 +148,25 @@ public class SongService {
         return dataAccessService.getSongByExternalId(externalId);
     }
 
+    public Mono<Song> findSong(UUID externalId) {
+        return Mono.defer(()-> reactiveDataAccessService.getSongByExternalId(externalId));
+    }
+
+    public ContentSource getSongContent(UUID externalId){
+        return songContentService.open(dataAccessService.getSongContentByExternalId(externalId));
+    }
+
+    public ContentSource getSongContent(UUID externalId, RenditionPreference preference){
+        var songContent = dataAccessService.getSongContentByExternalId(externalId);
+        if(songContent == null || preference.isOriginal())
+            return songContentService.open(songContent);
+        return preference.select(dataAccessService.getRenditions(songContent.getId()))
+                .map(songContentService::open)
+                .orElseGet(()-> songContentService.open(songContent));
+    }
+
     public brgi.grpc.GetSongAlbumResponse getSongAlbum(brgi.grpc.GetSongAlbumRequest request){
-        var songFromDb = dataAccessService.getSongByExternalId(UUID.fromString(request.getSongId()));
-        var albumFromDb = songFromDb.getAlbum();
+        var albumFromDb = dataAccessService.getAlbumBySongExternalId(UUID.fromString(request.getSongId()));
         var album = GrpcObjectMapper.mapAlbum(albumFromDb);
 
 
@@ -91,9 +180,7 @@ public class SongService {
         if(!request.hasSongId())
             throw new RuntimeException("Request must have song id");
 
-        var songFromDb = dataAccessService.getSongByExternalId(UUID.fromString(request.getSongId()));
-
-        var artists = songFromDb.getArtists()
+        var artists = dataAccessService.getArtistsBySongExternalId(UUID.fromString(request.getSongId()))
                 .stream()
                 .map(GrpcObjectMapper::mapArtist)
                 .toList();
@@ -111,47 +198,60 @@ public class SongService {
     }
 
 
-    public List<Song> findAllSongs(int offset, int size, String sort) {
-        Sort sortDirection;
-        if(sort.equals("asc")){
-            sortDirection = Sort.by("id").ascending();
-        }else if(sort.equals("desc")){
-            sortDirection = Sort.by("id").descending();
-        }else{
-            throw new RuntimeException("Invalid sort order must be desc or asc");
-        }
-        if(size > 10000 || size < 0)
-            throw new RuntimeException(String.format("Invalid size provided: %d", size));
+    public CursorPage<Song> findAllSongs(String cursor, int size, String sort) {
+        var pageCursor = PageCursor.resolve(cursor, sort);
+        var pageSize = pagingConfig.resolvePageSize(size);
+        return CursorPage.of(dataAccessService.findAllSongs(pageCursor, pageSize + 1), pageSize, pageCursor, Song::getId);
+    }
 
-        Pageable pageable = PageRequest.of(offset, size, sortDirection);
-        Page<Song> songPage = dataAccessService.findAllSongs(pageable);
-        return songPage.getContent();
+    public Mono<CursorPage<Song>> findSongs(String cursor, int size, String sort) {
+        return Mono.defer(()-> {
+            var pageCursor = PageCursor.resolve(cursor, sort);
+            var pageSize = pagingConfig.resolvePageSize(size);
+            return reactiveDataAccessService.findAllSongs(pageCursor, pageSize + 1)
+                    .collectList()
+                    .map(songs-> CursorPage.of(songs, pageSize, pageCursor, Song::getId));
+        });
+    }
 
+    public Flux<Song> exportSongs(String sort) {
+        return CursorPage.walk(cursor-> findSongs(cursor, pagingConfig.getExportBatchSize(), sort));
     }
 
-    public Song store(com.bragi.bragi.rest.dto.Song song, MultipartFile file) {
-        try{
-            var songModel = com.bragi.bragi.model.Song.builder()
-                    .duration(song.getDuration())
-                    .dateReleased(song.getDateReleased())
-                    .externalId(song.getExternalId())
-                    .id(song.getId())
-                    .title(song.getTitle())
-                    .artists(song.getArtists()
-                            .stream()
-                            .map(dataAccessService::getArtistByExternalId).collect(Collectors.toSet()))
-                    .songContent(
-                            SongContent.builder()
-                                    .content(file.getBytes())
-                                    .build()
-                    )
-                    .album(dataAccessService.getAlbumByExternalId(song.getAlbum()))
-                    .build();
-            return dataAccessService.saveSong(songModel);
-        }catch (IOException e){
-            throw new RuntimeException("Cannot access file: " + file.getName());
-        }
+    public Stream<brgi.grpc.Song> exportSongs(brgi.grpc.ExportSongsRequest request) {
+        var sort = request.getDescending() ? "desc" : "asc";
+        return CursorPage.walkBlocking(cursor-> findAllSongs(cursor, pagingConfig.getExportBatchSize(), sort))
+                .map(GrpcObjectMapper::mapSongMetadata);
+    }
 
+    public brgi.grpc.ListSongsResponse listSongs(brgi.grpc.ListSongsRequest request){
+        var page = findAllSongs(request.getPageToken(), request.getPageSize(), request.getDescending() ? "desc" : "asc");
+        var response = brgi.grpc.ListSongsResponse.newBuilder()
+                .addAllSong(page.items()
+                        .stream()
+                        .map(GrpcObjectMapper::mapSongMetadata)
+                        .toList());
+        if(page.hasNext())
+            response.setNextPageToken(page.nextCursor());
+        return response.build();
+    }
+
+    public Song store(com.bragi.bragi.rest.dto.Song song, SongContent songContent) {
+        var songModel = com.bragi.bragi.model.Song.builder()
+                .duration(song.getDuration())
+                .dateReleased(song.getDateReleased())
+                .externalId(song.getExternalId())
+                .id(song.getId())
+                .title(song.getTitle())
+                .artists(song.getArtists()
+                        .stream()
+                        .map(dataAccessService::getArtistByExternalId).collect(Collectors.toSet()))
+                .album(dataAccessService.getAlbumByExternalId(song.getAlbum()))
+                .songContent(songContent)
+                .build();
+        var songFromDb = dataAccessService.saveSong(songModel);
+        renditionService.schedule(songFromDb.getSongContent());
+        return songFromDb;
     }
 
     public void deleteSong(String id) {
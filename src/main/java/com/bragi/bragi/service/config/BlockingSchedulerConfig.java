@@ -0,0 +1,33 @@
+package com.bragi.bragi.service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@ConfigurationProperties(prefix = "blocking-scheduler")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class BlockingSchedulerConfig {
+
+    @Min(1)
+    @Max(1024)
+    int maxThreads = 64;
+
+    @Min(1)
+    @Max(100000)
+    int queueCapacity = 10000;
+
+    @Min(1)
+    @Max(3600)
+    long keepAliveSeconds = 60;
+
+    //falls back to platform threads on a jdk without virtual threads
+    boolean virtualThreads = false;
+}
@@ -0,0 +1,23 @@
+package com.bragi.bragi.service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@ConfigurationProperties(prefix = "bulk")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class BulkConfig {
+
+    //items of a bulk add stream written per transaction
+    @Min(1)
+    @Max(10000)
+    int batchSize = 500;
+}
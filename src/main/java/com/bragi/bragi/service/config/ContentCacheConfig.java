@@ -0,0 +1,40 @@
+package com.bragi.bragi.service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@ConfigurationProperties(prefix = "content-cache")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class ContentCacheConfig {
+
+    boolean enabled = true;
+
+    //off-heap bytes held across all cached tracks, keep below -XX:MaxDirectMemorySize
+    @Min(1024 * 1024)
+    @Max(64L * 1024 * 1024 * 1024)
+    long maximumBytes = 256L * 1024 * 1024;
+
+    //tracks larger than this are never admitted, so one long recording cannot flush the hot set
+    @Min(1024)
+    @Max(Integer.MAX_VALUE)
+    long maximumEntryBytes = 32L * 1024 * 1024;
+
+    //tracks whose last miss is remembered, a track is only copied off-heap when it misses again
+    @Min(1)
+    @Max(10_000_000)
+    int missHistorySize = 100_000;
+
+    //tracks waiting to be copied off-heap, further ones are copied on a later miss
+    @Min(1)
+    @Max(100_000)
+    int promotionQueueCapacity = 100;
+}
@@ -0,0 +1,75 @@
+package com.bragi.bragi.service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@ConfigurationProperties(prefix = "grpc-server")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class GrpcServerConfig {
+
+    public enum ExecutorType {
+        FIXED, FORK_JOIN, VIRTUAL
+    }
+
+    //0 binds to a free port
+    @Min(0)
+    @Max(65535)
+    int port = 9999;
+
+    //virtual falls back to the fixed pool on a jdk without virtual threads
+    @NotNull
+    ExecutorType executorType = ExecutorType.FIXED;
+
+    //ignored by the virtual thread executor, which starts a thread per call, unless it falls back
+    @Min(1)
+    @Max(1024)
+    int executorThreads = 64;
+
+    @Min(1)
+    @Max(16)
+    int bossThreads = 1;
+
+    //0 leaves the count to netty, twice the number of cores
+    @Min(0)
+    @Max(1024)
+    int workerThreads = 0;
+
+    @Min(1)
+    @Max(Integer.MAX_VALUE)
+    int maxConcurrentCallsPerConnection = 100;
+
+    //songs are sent whole on add song, so this bounds the largest track that can be uploaded
+    @Min(1024)
+    @Max(Integer.MAX_VALUE)
+    int maxInboundMessageSizeBytes = 64 * 1024 * 1024;
+
+    @Min(1)
+    @Max(86400)
+    long keepAliveTimeSeconds = 60;
+
+    @Min(1)
+    @Max(3600)
+    long keepAliveTimeoutSeconds = 20;
+
+    //clients pinging more often than this are disconnected
+    @Min(1)
+    @Max(86400)
+    long permitKeepAliveTimeSeconds = 30;
+
+    boolean permitKeepAliveWithoutCalls = false;
+
+    //keep below spring.lifecycle.timeout-per-shutdown-phase, or the context stops waiting first
+    @Min(0)
+    @Max(600)
+    long drainTimeoutSeconds = 20;
+}
@@ -0,0 +1,28 @@
+package com.bragi.bragi.service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@ConfigurationProperties(prefix = "metadata-cache")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class MetadataCacheConfig {
+
+    boolean enabled = true;
+
+    @Min(1)
+    @Max(10_000_000)
+    long maximumSize = 10000;
+
+    @Min(1)
+    @Max(86400)
+    long expireAfterWriteSeconds = 300;
+}
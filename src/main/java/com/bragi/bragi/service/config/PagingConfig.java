@@ -0,0 +1,41 @@
+package com.bragi.bragi.service.config;
+
+import com.bragi.bragi.error.ClientException;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@ConfigurationProperties(prefix = "paging")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class PagingConfig {
+
+    //used when a request leaves the page size unset
+    @Min(1)
+    @Max(10000)
+    int defaultPageSize = 100;
+
+    @Min(1)
+    @Max(10000)
+    int maxPageSize = 1000;
+
+    //rows loaded per query while exporting the whole catalogue
+    @Min(1)
+    @Max(10000)
+    int exportBatchSize = 500;
+
+    public int resolvePageSize(int requestedPageSize){
+        if(requestedPageSize < 0)
+            throw new ClientException(String.format("Invalid size provided: %d", requestedPageSize));
+        if(requestedPageSize == 0)
+            return defaultPageSize;
+        return Math.min(requestedPageSize, maxPageSize);
+    }
+}
@@ -0,0 +1,34 @@
+package com.bragi.bragi.service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "renditions")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class RenditionConfig {
+
+    //off until a transcoder that actually re-encodes is registered
+    boolean enabled = false;
+
+    @NotEmpty
+    List<@Min(8) @Max(4096) Integer> bitratesKbps = List.of(64, 128, 256);
+
+    @Min(1)
+    @Max(64)
+    int threads = 2;
+
+    @Min(1)
+    @Max(100000)
+    int queueCapacity = 1000;
+}
@@ -0,0 +1,57 @@
+package com.bragi.bragi.service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@ConfigurationProperties(prefix = "resilience")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class ResilienceConfig {
+
+    @Valid
+    Breaker circuitBreaker = new Breaker();
+
+    @Valid
+    Budget retryBudget = new Budget();
+
+    @Getter
+    @Setter
+    public static class Breaker {
+
+        @Min(1)
+        @Max(1000)
+        int failureThreshold = 5;
+
+        @Min(100)
+        @Max(600000)
+        long openDurationMillis = 10000;
+
+        @Min(1)
+        @Max(100)
+        int halfOpenMaxCalls = 1;
+    }
+
+    @Getter
+    @Setter
+    public static class Budget {
+
+        @Min(1)
+        @Max(10000)
+        int maxTokens = 10;
+
+        @DecimalMin("0.0")
+        @DecimalMax("1.0")
+        double tokensPerCall = 0.1;
+    }
+}
@@ -0,0 +1,35 @@
+package com.bragi.bragi.service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@ConfigurationProperties(prefix = "segments")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class SegmentConfig {
+
+    @Min(1)
+    @Max(60)
+    int targetDurationSeconds = 6;
+
+    //the original's bitrate is not recorded, its segments are sized and advertised as if it were this
+    @Min(8)
+    @Max(9216)
+    int originalBitrateKbps = 320;
+
+    //segment urls name immutable content so they can be cached for as long as clients allow
+    @Min(0)
+    long segmentMaxAgeSeconds = 365L * 24 * 60 * 60;
+
+    //playlists change as renditions are added
+    @Min(0)
+    long playlistMaxAgeSeconds = 60;
+}
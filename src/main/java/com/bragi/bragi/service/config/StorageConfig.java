@@ -0,0 +1,63 @@
+package com.bragi.bragi.service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+
+@ConfigurationProperties(prefix = "storage")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class StorageConfig {
+
+    @NotBlank
+    String rootDirectory = "data/song-content";
+
+    @Min(0)
+    @Max(4)
+    int shardDepth = 2;
+
+    @Valid
+    Migration migration = new Migration();
+
+    @Valid
+    Reconciler reconciler = new Reconciler();
+
+    @Getter
+    @Setter
+    public static class Migration {
+
+        boolean enabled = true;
+
+        @Min(1)
+        @Max(1000)
+        int batchSize = 50;
+    }
+
+    @Getter
+    @Setter
+    public static class Reconciler {
+
+        //on by default, saving a song only ever raises a count so this is what lowers them
+        boolean enabled = true;
+
+        @Min(60)
+        long intervalSeconds = 3600;
+
+        @Min(1)
+        @Max(1000)
+        int batchSize = 500;
+
+        //how long an unreferenced blob is kept, long enough for an upload to save the song pointing at it
+        @Min(0)
+        long gracePeriodSeconds = 86400;
+    }
+}
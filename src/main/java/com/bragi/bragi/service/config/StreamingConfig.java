@@ -0,0 +1,43 @@
+package com.bragi.bragi.service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@ConfigurationProperties(prefix = "streaming")
+@Configuration
+@Getter
+@Setter
+@Validated
+public class StreamingConfig {
+
+    @Min(1024)
+    @Max(4 * 1024 * 1024)
+    int chunkSizeBytes = 64 * 1024;
+
+    @Min(1024)
+    @Max(4 * 1024 * 1024)
+    int maxChunkSizeBytes = 1024 * 1024;
+
+    //tracks opened ahead of the one being sent when streaming an album or artist
+    @Min(0)
+    @Max(8)
+    int prefetchTracks = 1;
+
+    @Min(1)
+    @Max(256)
+    int prefetchThreads = 16;
+
+    @Min(1)
+    @Max(100000)
+    int prefetchQueueCapacity = 1000;
+
+    public int resolveChunkSize(int requestedChunkSize){
+        return Math.max(1024, Math.min(requestedChunkSize, maxChunkSizeBytes));
+    }
+}
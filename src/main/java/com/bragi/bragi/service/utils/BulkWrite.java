@@ -0,0 +1,117 @@
+package com.bragi.bragi.service.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Collects the entities of one bulk add batch and writes them together, producing one result per
+ * item indexed by its position in the batch. When the batch write fails, for example on a unique
+ * constraint, the entities are written one at a time so only the offending items are reported as
+ * failed.
+ */
+@Slf4j
+public class BulkWrite<E> {
+
+    private final brgi.grpc.BulkAddResult[] results;
+    private final List<E> saved;
+    private final List<Integer> indexes = new ArrayList<>();
+    private final List<E> entities = new ArrayList<>();
+
+    public BulkWrite(int size){
+        results = new brgi.grpc.BulkAddResult[size];
+        saved = new ArrayList<>(Collections.nCopies(size, null));
+    }
+
+    public void add(int index, E entity){
+        indexes.add(index);
+        entities.add(entity);
+    }
+
+    public void fail(int index, Throwable error){
+        results[index] = failure(index, error);
+    }
+
+    public List<brgi.grpc.BulkAddResult> save(UnaryOperator<List<E>> saveAll,
+                                              UnaryOperator<E> save,
+                                              Function<E, UUID> externalId){
+        if(!entities.isEmpty()){
+            try{
+                var savedAll = saveAll.apply(entities);
+                for(var i = 0; i < savedAll.size(); i++)
+                    succeeded(indexes.get(i), savedAll.get(i), externalId);
+            }catch (Exception e){
+                log.warn("Bulk write of {} items failed, writing them one at a time: {}", entities.size(), e.getMessage());
+                for(var i = 0; i < entities.size(); i++){
+                    try{
+                        succeeded(indexes.get(i), save.apply(entities.get(i)), externalId);
+                    }catch (Exception itemError){
+                        results[indexes.get(i)] = failure(indexes.get(i), itemError);
+                    }
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    //the entity as written for the item at index, null unless it was saved. Not the one that was
+    //added, as writing one at a time after a failed batch may merge it into a copy
+    public E saved(int index){
+        return saved.get(index);
+    }
+
+    private void succeeded(int index, E entity, Function<E, UUID> externalId){
+        saved.set(index, entity);
+        results[index] = success(index, externalId.apply(entity));
+    }
+
+    //ids that do not parse are left out here and rejected per item by resolve
+    public static Set<UUID> externalIds(Stream<String> ids){
+        return ids.map(BulkWrite::parse)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    public static <V> V resolve(Map<UUID, V> resolved, String id, String type){
+        var value = resolved.get(UUID.fromString(id));
+        if(value == null)
+            throw new NoSuchElementException(String.format("No %s with external id: %s", type, id));
+        return value;
+    }
+
+    public static brgi.grpc.BulkAddResult failure(int index, Throwable error){
+        return brgi.grpc.BulkAddResult.newBuilder()
+                .setIndex(index)
+                .setSuccess(false)
+                .setError(String.valueOf(error.getMessage()))
+                .build();
+    }
+
+    private static brgi.grpc.BulkAddResult success(int index, UUID externalId){
+        return brgi.grpc.BulkAddResult.newBuilder()
+                .setIndex(index)
+                .setSuccess(true)
+                .setId(externalId.toString())
+                .build();
+    }
+
+    private static UUID parse(String id){
+        try{
+            return UUID.fromString(id);
+        }catch (IllegalArgumentException e){
+            return null;
+        }
+    }
+}
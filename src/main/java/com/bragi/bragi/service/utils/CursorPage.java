@@ -0,0 +1,44 @@
+package com.bragi.bragi.service.utils;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * One page of a keyset paged listing with the cursor of the page after it, which is null on the
+ * last page.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    //rows are fetched one past the page size, the extra row only tells whether another page follows
+    public static <T> CursorPage<T> of(List<T> rows, int pageSize, PageCursor cursor, ToLongFunction<T> id){
+        if(rows.size() <= pageSize)
+            return new CursorPage<>(rows, null);
+        var items = List.copyOf(rows.subList(0, pageSize));
+        return new CursorPage<>(items, cursor.after(id.applyAsLong(items.get(pageSize - 1))).encode());
+    }
+
+    public boolean hasNext(){
+        return nextCursor != null;
+    }
+
+    //walks a whole listing one page at a time, the next page is only loaded once the last has been
+    //consumed, so only the page being emitted is held in memory. fetch is given null for the first page
+    public static <T> Flux<T> walk(Function<String, Mono<CursorPage<T>>> fetch){
+        return fetch.apply(null)
+                .expand(page-> page.hasNext() ? fetch.apply(page.nextCursor()) : Mono.empty())
+                .concatMapIterable(CursorPage::items, 1);
+    }
+
+    public static <T> Stream<T> walkBlocking(Function<String, CursorPage<T>> fetch){
+        return Stream.iterate(fetch.apply(null),
+                        Objects::nonNull,
+                        page-> page.hasNext() ? fetch.apply(page.nextCursor()) : null)
+                .flatMap(page-> page.items().stream());
+    }
+}
@@ -34,15 +34,19 @@ public class GrpcObjectMapper {
 
     }
 
-    public static brgi.grpc.Song mapSong(Song song){
+    public static brgi.grpc.Song mapSong(Song song, ByteString content){
+        return mapSongMetadata(song).toBuilder()
+                .setContent(content)
+                .build();
+    }
+
+    //does not touch the lazy song content, so the audio row is never loaded
+    public static brgi.grpc.Song mapSongMetadata(Song song){
         var artistIds = song.getArtists()
                 .stream()
                 .map(artist-> artist.getExternalId().toString()).collect(Collectors.toSet());
 
-        var content = song.getSongContent().getContent();
-
         return brgi.grpc.Song.newBuilder()
-                .setContent(ByteString.copyFrom(content))
                 .setDuration(song.getDuration())
                 .setTitle(song.getTitle())
                 .setSongId(song.getExternalId().toString())
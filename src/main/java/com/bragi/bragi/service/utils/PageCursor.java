@@ -0,0 +1,54 @@
+package com.bragi.bragi.service.utils;
+
+import com.bragi.bragi.error.ClientException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a keyset paged listing: the id of the last row handed out and the direction rows
+ * are ordered in. The next page starts with an index seek past that id, so it costs the same
+ * however deep into the catalogue it is and no rows are counted or skipped. Clients only see the
+ * cursor as an opaque url safe token.
+ */
+public record PageCursor(long lastId, boolean ascending) {
+
+    private static final String VERSION = "v1";
+    private static final String ASC = "asc";
+    private static final String DESC = "desc";
+
+    public static PageCursor first(boolean ascending){
+        return new PageCursor(ascending ? 0 : Long.MAX_VALUE, ascending);
+    }
+
+    //a cursor carries its own direction, sort only applies to the first page
+    public static PageCursor resolve(String token, String sort){
+        if(token != null && !token.isEmpty())
+            return decode(token);
+        if(ASC.equals(sort))
+            return first(true);
+        if(DESC.equals(sort))
+            return first(false);
+        throw new ClientException("Invalid sort order must be desc or asc");
+    }
+
+    public static PageCursor decode(String token){
+        try{
+            var parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if(parts.length != 3 || !VERSION.equals(parts[0]) || !(ASC.equals(parts[1]) || DESC.equals(parts[1])))
+                throw new IllegalArgumentException("Unknown cursor format");
+            return new PageCursor(Long.parseLong(parts[2]), ASC.equals(parts[1]));
+        }catch (IllegalArgumentException e){
+            throw new ClientException(String.format("Invalid page cursor: %s", token));
+        }
+    }
+
+    public String encode(){
+        var cursor = String.join(":", VERSION, ascending ? ASC : DESC, Long.toString(lastId));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public PageCursor after(long id){
+        return new PageCursor(id, ascending);
+    }
+}
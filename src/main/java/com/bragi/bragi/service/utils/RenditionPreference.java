@@ -0,0 +1,61 @@
+package com.bragi.bragi.service.utils;
+
+import com.bragi.bragi.error.ClientException;
+import com.bragi.bragi.model.SongRendition;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * What a client asked to be streamed: a quality, a bandwidth hint in kbps, or both. A hint
+ * limits the choice to renditions at or below it, falling back to the lowest when none fit, and
+ * the quality then picks among those. Without a hint, {@link Quality#ORIGINAL} is the stored
+ * original and the other qualities pick from all renditions. Songs without renditions are
+ * always served as the original.
+ */
+public record RenditionPreference(Quality quality, int maxBitrateKbps) {
+
+    public enum Quality {
+        ORIGINAL, LOW, MEDIUM, HIGH
+    }
+
+    public static final RenditionPreference ORIGINAL = new RenditionPreference(Quality.ORIGINAL, 0);
+
+    public RenditionPreference {
+        if(maxBitrateKbps < 0)
+            throw new ClientException(String.format("Invalid max bitrate provided: %d", maxBitrateKbps));
+    }
+
+    public static RenditionPreference of(String quality, int maxBitrateKbps){
+        try{
+            return new RenditionPreference(Quality.valueOf(quality.toUpperCase(Locale.ROOT)), maxBitrateKbps);
+        }catch (IllegalArgumentException e){
+            throw new ClientException(String.format("Invalid quality provided: %s", quality));
+        }
+    }
+
+    public static RenditionPreference of(brgi.grpc.StreamSongRequest request){
+        return of(request.getQuality().name(), request.getMaxBitrateKbps());
+    }
+
+    public boolean isOriginal(){
+        return quality == Quality.ORIGINAL && maxBitrateKbps == 0;
+    }
+
+    //renditions lowest bitrate first, empty means the original
+    public Optional<SongRendition> select(List<SongRendition> renditions){
+        if(isOriginal() || renditions.isEmpty())
+            return Optional.empty();
+        var candidates = maxBitrateKbps == 0 ? renditions : renditions.stream()
+                .filter(rendition-> rendition.getBitrateKbps() <= maxBitrateKbps)
+                .toList();
+        if(candidates.isEmpty())
+            return Optional.of(renditions.get(0));
+        return Optional.of(switch (quality){
+            case LOW -> candidates.get(0);
+            case MEDIUM -> candidates.get((candidates.size() - 1) / 2);
+            case HIGH, ORIGINAL -> candidates.get(candidates.size() - 1);
+        });
+    }
+}
@@ -1,32 +1,110 @@
 package com.bragi.bragi.service.utils;
 
 
+import com.bragi.bragi.error.ClientException;
+import com.bragi.bragi.retry.CircuitBreaker;
+import com.bragi.bragi.retry.CircuitOpenException;
 import com.bragi.bragi.retry.Retry;
-import com.bragi.bragi.service.config.RetryConfig;
-import lombok.RequiredArgsConstructor;
+import com.bragi.bragi.retry.RetryBudget;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Service;
+import org.springframework.dao.DataIntegrityViolationException;
+import reactor.core.publisher.Mono;
 
+import javax.persistence.EntityNotFoundException;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 @Slf4j
 public class RetryUtils {
 
-    //todo add error for nosuchelementexception
+    //errors that will fail the same way on every attempt, retrying them only adds load
+    private static final List<Class<? extends Throwable>> NON_RETRYABLE = List.of(
+            NoSuchElementException.class,
+            EntityNotFoundException.class,
+            IllegalArgumentException.class,
+            DataIntegrityViolationException.class,
+            ClientException.class,
+            CircuitOpenException.class);
+
+    //set while an attempt of an outer retry runs, so the calls it makes are not retried again inside it
+    private static final ThreadLocal<Boolean> RETRYING = ThreadLocal.withInitial(()-> false);
+
+    public static boolean isRetryable(Throwable throwable){
+        return NON_RETRYABLE.stream().noneMatch(type -> type.isInstance(throwable));
+    }
+
     public static <R> R getResultFromRetry(Callable<R> callable, String messageBefore, String messageDuring,
                                     int maxAttempts,
                                     long maxWaitBetween,
                                     long minWaitBetween){
+        return getResultFromRetry(callable, messageBefore, messageDuring, maxAttempts, maxWaitBetween,
+                minWaitBetween, null, null);
+    }
+
+    public static <R> R getResultFromRetry(Callable<R> callable, String messageBefore, String messageDuring,
+                                    int maxAttempts,
+                                    long maxWaitBetween,
+                                    long minWaitBetween,
+                                    CircuitBreaker circuitBreaker,
+                                    RetryBudget retryBudget){
         return Retry.fromCallable(callable)
-                .setPredicate((t)-> true)
-                .setRetryAttempts(maxAttempts)
-                .setOnCompleteFunction((t)-> new RuntimeException())
+                .setPredicate(RetryUtils::isRetryable)
+                .setRetryAttempts(RETRYING.get() ? 1 : maxAttempts)
+                .setOnCompleteFunction(RetryUtils::mapError)
                 .setMaxWait(maxWaitBetween)
                 .setMinWait(minWaitBetween)
+                .setCircuitBreaker(circuitBreaker)
+                .setRetryBudget(retryBudget)
                 .setOnBefore(retry -> log.info(messageBefore, retry.getRetryAttempts()))
                 .setOnRetry(retry -> log.info(messageDuring, retry.getAttemptNumber()))
                 .build()
                 .subscribe()
                 .getResult();
     }
+
+    /**
+     * Retries a blocking call with its attempts run on the given executor and the waits between
+     * them on a timer, so no thread is parked during a backoff. Retries the call makes itself are
+     * left to this one, each of its attempts makes a single try.
+     */
+    public static <R> Mono<R> toMono(Callable<R> callable, String messageBefore, String messageDuring,
+                                     int maxAttempts,
+                                     long maxWaitBetween,
+                                     long minWaitBetween,
+                                     Executor executor){
+        return Retry.fromCallable(()-> {
+                    RETRYING.set(true);
+                    try{
+                        return callable.call();
+                    }finally {
+                        RETRYING.remove();
+                    }
+                })
+                .setPredicate(RetryUtils::isRetryable)
+                .setRetryAttempts(maxAttempts)
+                .setOnCompleteFunction(RetryUtils::propagate)
+                .setMaxWait(maxWaitBetween)
+                .setMinWait(minWaitBetween)
+                .setExecutor(executor)
+                .setOnBefore(retry -> log.info(messageBefore, retry.getRetryAttempts()))
+                .setOnRetry(retry -> log.info(messageDuring, retry.getAttemptNumber()))
+                .build()
+                .toMono();
+    }
+
+    //the error of the last attempt, already mapped when it came from a nested retry
+    public static RuntimeException propagate(Throwable throwable){
+        if(throwable instanceof RuntimeException runtimeException)
+            return runtimeException;
+        return new RuntimeException(throwable);
+    }
+
+    //non-retryable errors keep their type so callers can still map them, e.g. a missing row to a 404
+    private static RuntimeException mapError(Throwable throwable){
+        if(!isRetryable(throwable) && throwable instanceof RuntimeException runtimeException)
+            return runtimeException;
+        return new RuntimeException(throwable);
+    }
 }
@@ -0,0 +1,63 @@
+package com.bragi.bragi.service.utils;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key. The first caller for a key runs the load and
+ * every caller that arrives while it is in flight waits for and shares its result, or its
+ * error, instead of issuing its own. Nothing is kept once the load completes, so this bounds
+ * concurrent work per key without caching anything.
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final ServiceMetrics serviceMetrics;
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public SingleFlight(String name, ServiceMetrics serviceMetrics){
+        this.name = name;
+        this.serviceMetrics = serviceMetrics;
+    }
+
+    public V execute(K key, Supplier<V> loader){
+        var flight = new CompletableFuture<V>();
+        var existing = inFlight.putIfAbsent(key, flight);
+        if(existing != null){
+            serviceMetrics.incrementSingleFlightCoalesced(name);
+            return await(existing);
+        }
+        serviceMetrics.incrementSingleFlightOriginating(name);
+        try{
+            var value = loader.get();
+            flight.complete(value);
+            return value;
+        }catch (RuntimeException | Error e){
+            flight.completeExceptionally(e);
+            throw e;
+        }finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    int inFlight(){
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> flight){
+        try{
+            return flight.join();
+        }catch (CompletionException e){
+            if(e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if(e.getCause() instanceof Error error)
+                throw error;
+            throw e;
+        }
+    }
+}
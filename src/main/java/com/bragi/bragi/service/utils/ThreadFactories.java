@@ -0,0 +1,45 @@
+package com.bragi.bragi.service.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+public class ThreadFactories {
+
+    /**
+     * Daemon threads named {@code name-0}, {@code name-1}, ... or, when asked for and the jdk
+     * supports them, virtual threads with the same names.
+     */
+    public static ThreadFactory named(String name, boolean virtualThreads){
+        if(virtualThreads){
+            var factory = virtual(name);
+            if(factory.isPresent())
+                return factory.get();
+            log.warn("Virtual threads are not supported by this jdk, running {} on platform threads", name);
+        }
+        var count = new AtomicInteger();
+        return runnable-> {
+            var thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    //empty when the jdk has no virtual threads
+    public static Optional<ThreadFactory> virtual(String name){
+        try{
+            //Thread.ofVirtual() is only present from jdk 21 onwards
+            var builderType = Class.forName("java.lang.Thread$Builder");
+            var builder = builderType.getMethod("name", String.class, long.class)
+                    .invoke(Thread.class.getMethod("ofVirtual").invoke(null), name + "-", 0L);
+            var factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            log.info("Running {} on virtual threads", name);
+            return Optional.of(factory);
+        }catch (ReflectiveOperationException e){
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.bragi.bragi.storage;
+
+import com.bragi.bragi.metrics.CacheStatsCounter;
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.service.config.ContentCacheConfig;
+import com.bragi.bragi.service.utils.SingleFlight;
+import com.bragi.bragi.service.utils.ThreadFactories;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Byte budgeted cache of song audio held in direct buffers, keyed by content hash. Hot tracks
+ * are served from memory outside the Java heap, so streaming them neither re-reads storage nor
+ * allocates on the heap. A miss is served from the stored file as loaded, and a track is only
+ * copied off-heap, in the background, when it is missed again while its first miss is still
+ * remembered, so one-off plays never take direct memory and no play waits on a copy. Caffeine's
+ * TinyLFU admission then keeps a burst of those repeat plays from displacing tracks that are
+ * played all the time, and tracks over the entry limit are never admitted. Content is addressed
+ * by hash and never changes, so entries are only evicted, or invalidated once the content is
+ * removed from the store. An evicted buffer is released once the last stream reading it lets go.
+ */
+@Component
+@Slf4j
+public class ContentCache {
+
+    static final String NAME = "content";
+
+    private final boolean enabled;
+    private final long maximumEntryBytes;
+    private final Cache<String, CachedContent> cache;
+    private final Cache<String, Boolean> missed;
+    private final ServiceMetrics serviceMetrics;
+    private final SingleFlight<String, ContentSource> flight;
+    private final Executor promoter;
+    private final Set<String> promoting = ConcurrentHashMap.newKeySet();
+
+    @FunctionalInterface
+    public interface Loader {
+        ContentSource open(String hash) throws IOException;
+    }
+
+    public ContentCache(ContentCacheConfig contentCacheConfig, ServiceMetrics serviceMetrics){
+        this(contentCacheConfig, serviceMetrics, newPromoter(contentCacheConfig, serviceMetrics));
+    }
+
+    ContentCache(ContentCacheConfig contentCacheConfig, ServiceMetrics serviceMetrics, Executor promoter){
+        this.enabled = contentCacheConfig.isEnabled();
+        this.maximumEntryBytes = contentCacheConfig.getMaximumEntryBytes();
+        this.serviceMetrics = serviceMetrics;
+        this.promoter = promoter;
+        this.flight = new SingleFlight<>(NAME, serviceMetrics);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(contentCacheConfig.getMaximumBytes())
+                .weigher((String hash, CachedContent content)-> content.buffer().capacity())
+                .recordStats(()-> new CacheStatsCounter(NAME, serviceMetrics))
+                .build();
+        this.missed = Caffeine.newBuilder()
+                .maximumSize(contentCacheConfig.getMissHistorySize())
+                .build();
+        serviceMetrics.registerCacheSize(NAME, this::getSizeBytes);
+    }
+
+    private static ThreadPoolExecutor newPromoter(ContentCacheConfig contentCacheConfig,
+                                                  ServiceMetrics serviceMetrics){
+        var executor = new ThreadPoolExecutor(1,
+                1,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(contentCacheConfig.getPromotionQueueCapacity()),
+                ThreadFactories.named(NAME + "-promotion", false));
+        executor.allowCoreThreadTimeOut(true);
+        serviceMetrics.registerBlockingScheduler(NAME + "-promotion", ()-> executor.getQueue().size(),
+                executor::getActiveCount);
+        return executor;
+    }
+
+    public ContentSource get(String hash, Loader loader) throws IOException {
+        if(!enabled)
+            return loader.open(hash);
+        var cached = cache.getIfPresent(hash);
+        if(cached != null)
+            return cached.open(hash);
+        var contentSource = open(hash, loader);
+        if(contentSource.size() <= maximumEntryBytes && missedBefore(hash))
+            promote(hash, contentSource);
+        return contentSource;
+    }
+
+    //concurrent misses for a track share one open, each then streams from it straight away
+    private ContentSource open(String hash, Loader loader) throws IOException {
+        try{
+            return flight.execute(hash, ()-> {
+                try{
+                    return loader.open(hash);
+                }catch (IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }catch (UncheckedIOException e){
+            throw e.getCause();
+        }
+    }
+
+    private boolean missedBefore(String hash){
+        return missed.asMap().putIfAbsent(hash, Boolean.TRUE) != null;
+    }
+
+    //a full queue only means the track is copied on a later miss
+    private void promote(String hash, ContentSource contentSource){
+        if(!promoting.add(hash))
+            return;
+        try{
+            promoter.execute(()-> {
+                try{
+                    var start = System.nanoTime();
+                    cache.put(hash, new CachedContent(copyOffHeap(contentSource), contentSource.lastModified(),
+                            contentSource.file()));
+                    serviceMetrics.recordCacheLoadLatency(NAME, (System.nanoTime() - start) / 1e9);
+                }catch (Exception e){
+                    log.warn("Failed to copy content {} off-heap: {}", hash, e.getMessage());
+                    serviceMetrics.incrementErrorCount(NAME);
+                }finally {
+                    promoting.remove(hash);
+                }
+            });
+        }catch (RejectedExecutionException e){
+            promoting.remove(hash);
+        }
+    }
+
+    public void invalidate(String hash){
+        cache.invalidate(hash);
+    }
+
+    //settled by Caffeine's maintenance, so it may briefly lag the latest writes
+    public long getSizeBytes(){
+        return cache.policy()
+                .eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    @PreDestroy
+    public void teardown(){
+        if(promoter instanceof ExecutorService executorService)
+            executorService.shutdownNow();
+    }
+
+    private static ByteBuffer copyOffHeap(ContentSource contentSource) throws IOException {
+        var size = Math.toIntExact(contentSource.size());
+        var buffer = ByteBuffer.allocateDirect(size);
+        if(size > 0)
+            contentSource.read(0, size).copyTo(buffer);
+        return buffer.flip();
+    }
+
+    //keeps the stored file, so a cached track can still be sent without being read
+    private record CachedContent(ByteBuffer buffer, Instant lastModified, Path file) {
+
+        ContentSource open(String hash){
+            return new MappedContentSource(buffer, hash, lastModified, file);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.bragi.bragi.storage;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Random access view over the bytes of a single piece of song content, so callers
+ * can read it a slice at a time instead of materialising the whole track.
+ */
+public interface ContentSource {
+
+    long size();
+
+    ByteString read(long offset, int length) throws IOException;
+
+    //hash of the content when it is content addressed, used as a strong entity tag
+    default String hash(){
+        return null;
+    }
+
+    default String codec(){
+        return null;
+    }
+
+    default Instant lastModified(){
+        return null;
+    }
+
+    //file holding this content, when there is one it can be sent without being read
+    default Path file(){
+        return null;
+    }
+
+    //where this content starts within file()
+    default long fileOffset(){
+        return 0;
+    }
+
+    //slices wrap the array instead of copying it, it must not be changed once handed over
+    static ContentSource of(byte[] content){
+        var bytes = content == null ? new byte[0] : content;
+        return new ContentSource() {
+            @Override
+            public long size() {
+                return bytes.length;
+            }
+
+            @Override
+            public ByteString read(long offset, int length) {
+                return UnsafeByteOperations.unsafeWrap(bytes, Math.toIntExact(offset), length);
+            }
+        };
+    }
+
+    static ContentSource withCodec(ContentSource contentSource, String codec){
+        return new ContentSource() {
+            @Override
+            public long size() {
+                return contentSource.size();
+            }
+
+            @Override
+            public ByteString read(long offset, int length) throws IOException {
+                return contentSource.read(offset, length);
+            }
+
+            @Override
+            public String hash() {
+                return contentSource.hash();
+            }
+
+            @Override
+            public String codec() {
+                return codec;
+            }
+
+            @Override
+            public Instant lastModified() {
+                return contentSource.lastModified();
+            }
+
+            @Override
+            public Path file() {
+                return contentSource.file();
+            }
+
+            @Override
+            public long fileOffset() {
+                return contentSource.fileOffset();
+            }
+        };
+    }
+
+    //a window of the content, tagged with its own hash so it is cached apart from the whole
+    static ContentSource slice(ContentSource contentSource, long offset, long length){
+        if(offset < 0 || length < 0 || offset + length > contentSource.size())
+            throw new IllegalArgumentException(String.format("Slice %d+%d outside of content of size %d",
+                    offset, length, contentSource.size()));
+        return new ContentSource() {
+            @Override
+            public long size() {
+                return length;
+            }
+
+            @Override
+            public ByteString read(long sliceOffset, int sliceLength) throws IOException {
+                return contentSource.read(offset + sliceOffset, sliceLength);
+            }
+
+            @Override
+            public String hash() {
+                return contentSource.hash() == null ? null : contentSource.hash() + "-" + offset + "-" + length;
+            }
+
+            @Override
+            public String codec() {
+                return contentSource.codec();
+            }
+
+            @Override
+            public Instant lastModified() {
+                return contentSource.lastModified();
+            }
+
+            @Override
+            public Path file() {
+                return contentSource.file();
+            }
+
+            @Override
+            public long fileOffset() {
+                return contentSource.fileOffset() + offset;
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package com.bragi.bragi.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes content into a {@link SongContentStore} a piece at a time, hashing it as it goes so
+ * nothing has to be held in memory. Content only becomes visible in the store on
+ * {@link #commit}; closing a writer that was not committed discards everything written.
+ */
+public interface ContentWriter extends Closeable {
+
+    void write(ByteBuffer content) throws IOException;
+
+    long size();
+
+    /**
+     * Stores what was written under its hash. When {@code expectedHash} is given and does not
+     * match, nothing is stored and an {@link IllegalArgumentException} is thrown.
+     */
+    StoredContent commit(String expectedHash) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
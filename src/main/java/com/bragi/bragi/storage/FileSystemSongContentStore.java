@@ -0,0 +1,226 @@
+package com.bragi.bragi.storage;
+
+import com.bragi.bragi.service.config.StorageConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Stores song content on the local file system under {@code root/ab/cd/abcd...}, sharded
+ * by the leading bytes of the content hash so no single directory grows unbounded.
+ */
+@Component
+@Slf4j
+public class FileSystemSongContentStore implements SongContentStore {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final Path temp;
+    private final int shardDepth;
+
+    public FileSystemSongContentStore(StorageConfig storageConfig) throws IOException {
+        this.root = Path.of(storageConfig.getRootDirectory()).toAbsolutePath();
+        this.temp = root.resolve("tmp");
+        this.shardDepth = storageConfig.getShardDepth();
+        Files.createDirectories(temp);
+        log.info("Storing song content under: {}", root);
+    }
+
+    @Override
+    public StoredContent put(InputStream content) throws IOException {
+        try(var writer = newWriter()){
+            var buffer = new byte[BUFFER_SIZE];
+            int read;
+            while((read = content.read(buffer)) != -1)
+                writer.write(ByteBuffer.wrap(buffer, 0, read));
+            return writer.commit(null);
+        }
+    }
+
+    @Override
+    public ContentWriter newWriter() throws IOException {
+        return new FileContentWriter(Files.createTempFile(temp, "upload-", ".part"));
+    }
+
+    @Override
+    public ContentSource open(String hash) throws IOException {
+        var path = pathFor(hash);
+        try(var channel = FileChannel.open(path, StandardOpenOption.READ)){
+            var size = channel.size();
+            var lastModified = Files.getLastModifiedTime(path).toInstant();
+            var buffer = size == 0 ? ByteBuffer.allocate(0) : channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedContentSource(buffer, hash, lastModified, path);
+        }catch (NoSuchFileException e){
+            throw new IOException(String.format("No content stored for hash: %s", hash), e);
+        }
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.exists(pathFor(hash));
+    }
+
+    @Override
+    public Instant lastModified(String hash) throws IOException {
+        return Files.getLastModifiedTime(pathFor(hash)).toInstant();
+    }
+
+    @Override
+    public Stream<StoredContent> list() throws IOException {
+        return Files.walk(root)
+                .filter(path-> !path.startsWith(temp))
+                .filter(path-> HASH_PATTERN.matcher(path.getFileName().toString()).matches())
+                .filter(Files::isRegularFile)
+                .map(path-> {
+                    try{
+                        return new StoredContent(path.getFileName().toString(), Files.size(path));
+                    }catch (IOException e){
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        Files.deleteIfExists(pathFor(hash));
+    }
+
+    @Override
+    public boolean deleteIfUnmodifiedSince(String hash, Instant cutoff) throws IOException {
+        var target = pathFor(hash);
+        //moved aside before the time is checked, so a commit either touched it already or finds it
+        //gone and stores its own copy
+        var removing = temp.resolve(hash + ".removing");
+        try{
+            Files.move(target, removing, StandardCopyOption.ATOMIC_MOVE);
+        }catch (NoSuchFileException e){
+            return false;
+        }
+        if(Files.getLastModifiedTime(removing).toInstant().isBefore(cutoff)){
+            Files.delete(removing);
+            return true;
+        }
+        try{
+            Files.move(removing, target, StandardCopyOption.ATOMIC_MOVE);
+        }catch (FileAlreadyExistsException e){
+            //a commit stored the same content again meanwhile
+            Files.delete(removing);
+        }
+        return false;
+    }
+
+    Path pathFor(String hash){
+        if(hash == null || !HASH_PATTERN.matcher(hash).matches())
+            throw new IllegalArgumentException(String.format("Invalid content hash: %s", hash));
+        var directory = root;
+        for(int i = 0; i < shardDepth; i++)
+            directory = directory.resolve(hash.substring(i * 2, i * 2 + 2));
+        return directory.resolve(hash);
+    }
+
+    //writes into a temp file and only moves it under its hash once committed, so readers never see partial content
+    private class FileContentWriter implements ContentWriter {
+
+        private final Path tempFile;
+        private final FileChannel channel;
+        private final MessageDigest digest = newDigest();
+        private long size;
+        private boolean closed;
+
+        private FileContentWriter(Path tempFile) throws IOException {
+            this.tempFile = tempFile;
+            this.channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public void write(ByteBuffer content) throws IOException {
+            if(closed)
+                throw new IOException("Content writer is already closed");
+            digest.update(content.duplicate());
+            size += content.remaining();
+            while(content.hasRemaining())
+                channel.write(content);
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public StoredContent commit(String expectedHash) throws IOException {
+            if(closed)
+                throw new IOException("Content writer is already closed");
+            try{
+                channel.close();
+                var hash = HexFormat.of().formatHex(digest.digest());
+                //checked before the move, the blob under the hash may already be shared by other songs
+                if(expectedHash != null && !expectedHash.equalsIgnoreCase(hash))
+                    throw new IllegalArgumentException(String.format("Content hash %s does not match expected hash %s",
+                            hash, expectedHash));
+                var target = pathFor(hash);
+                //already stored for another song, touched so the reconciler leaves it alone until this one is saved
+                if(touch(target)){
+                    log.debug("Content {} is already stored, sharing it", hash);
+                    return new StoredContent(hash, size);
+                }
+                Files.createDirectories(target.getParent());
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return new StoredContent(hash, size);
+            }finally {
+                close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(closed)
+                return;
+            closed = true;
+            try{
+                channel.close();
+            }finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    //false when there is nothing to touch, including when the reconciler has just moved it aside
+    private static boolean touch(Path target) throws IOException {
+        try{
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            return true;
+        }catch (NoSuchFileException e){
+            return false;
+        }
+    }
+
+    private static MessageDigest newDigest(){
+        try{
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        }catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException(HASH_ALGORITHM + " is not available", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.bragi.bragi.storage;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * {@link ContentSource} over a read-only memory mapped file or off-heap cached copy. Slices
+ * are wrapped rather than copied, so bytes reach the transport without a heap copy.
+ */
+public class MappedContentSource implements ContentSource {
+
+    private final ByteBuffer buffer;
+    private final String hash;
+    private final Instant lastModified;
+    private final Path file;
+
+    public MappedContentSource(ByteBuffer buffer, String hash, Instant lastModified) {
+        this(buffer, hash, lastModified, null);
+    }
+
+    public MappedContentSource(ByteBuffer buffer, String hash, Instant lastModified, Path file) {
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.hash = hash;
+        this.lastModified = lastModified;
+        this.file = file;
+    }
+
+    @Override
+    public long size() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public ByteString read(long offset, int length) {
+        return UnsafeByteOperations.unsafeWrap(buffer.slice(Math.toIntExact(offset), length));
+    }
+
+    @Override
+    public String hash() {
+        return hash;
+    }
+
+    @Override
+    public Instant lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public Path file() {
+        return file;
+    }
+}
@@ -0,0 +1,33 @@
+package com.bragi.bragi.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+/**
+ * Blob storage for song audio. Content is addressed by the hex encoded SHA-256 of its
+ * bytes, so storing the same audio twice resolves to the same blob.
+ */
+public interface SongContentStore {
+
+    StoredContent put(InputStream content) throws IOException;
+
+    ContentWriter newWriter() throws IOException;
+
+    ContentSource open(String hash) throws IOException;
+
+    boolean exists(String hash);
+
+    //last time the content was stored, storing content that is already there counts
+    Instant lastModified(String hash) throws IOException;
+
+    //everything held in the store, the stream has to be closed
+    Stream<StoredContent> list() throws IOException;
+
+    void delete(String hash) throws IOException;
+
+    //removes the content unless it was stored again at or after the cutoff, without racing a
+    //writer that commits the same content meanwhile; false when it was kept or already gone
+    boolean deleteIfUnmodifiedSince(String hash, Instant cutoff) throws IOException;
+}
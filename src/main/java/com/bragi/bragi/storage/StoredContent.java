@@ -0,0 +1,16 @@
+package com.bragi.bragi.storage;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+@Getter
+@RequiredArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class StoredContent {
+
+    private final String hash;
+    private final long size;
+}
@@ -0,0 +1,40 @@
+package com.bragi.bragi.transcode;
+
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.storage.ContentSource;
+import com.bragi.bragi.storage.ContentWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Fallback {@link Transcoder} that copies the original audio unchanged, so the rendition
+ * pipeline runs without any external encoder. As content is stored by hash, its renditions
+ * share the original's file rather than taking up more space.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class PassThroughTranscoder implements Transcoder {
+
+    private final StreamingConfig streamingConfig;
+
+    @Override
+    public boolean supports(String codec) {
+        return true;
+    }
+
+    @Override
+    public String transcode(ContentSource source, int bitrateKbps, ContentWriter target) throws IOException {
+        var size = source.size();
+        for(long offset = 0; offset < size; offset += streamingConfig.getChunkSizeBytes()){
+            var chunk = (int) Math.min(streamingConfig.getChunkSizeBytes(), size - offset);
+            for(var buffer : source.read(offset, chunk).asReadOnlyByteBufferList())
+                target.write(buffer);
+        }
+        return source.codec();
+    }
+}
@@ -0,0 +1,23 @@
+package com.bragi.bragi.transcode;
+
+import com.bragi.bragi.storage.ContentSource;
+import com.bragi.bragi.storage.ContentWriter;
+
+import java.io.IOException;
+
+/**
+ * Re-encodes song audio at a target bitrate. Every transcoder bean is offered each song in
+ * {@link org.springframework.core.annotation.Order} order and the first that supports its codec
+ * renders it, so an encoder for particular codecs is added by registering it ahead of
+ * {@link PassThroughTranscoder}.
+ */
+public interface Transcoder {
+
+    boolean supports(String codec);
+
+    /**
+     * Writes {@code source} encoded at {@code bitrateKbps} to {@code target} and returns the codec
+     * of what was written. The target is committed by the caller.
+     */
+    String transcode(ContentSource source, int bitrateKbps, ContentWriter target) throws IOException;
+}
@@ -0,0 +1,141 @@
+package com.bragi.bragi.bootstrap;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.model.ContentBlob;
+import com.bragi.bragi.repository.ContentBlobRepository;
+import com.bragi.bragi.repository.ContentReferences;
+import com.bragi.bragi.repository.SongContentRepository;
+import com.bragi.bragi.repository.SongRenditionRepository;
+import com.bragi.bragi.service.config.StorageConfig;
+import com.bragi.bragi.storage.ContentCache;
+import com.bragi.bragi.storage.SongContentStore;
+import com.bragi.bragi.storage.StoredContent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ContentBlobReconcilerTest {
+
+    @Mock
+    private SongContentStore songContentStore;
+
+    @Mock
+    private ContentCache contentCache;
+
+    @Mock
+    private ContentBlobRepository contentBlobRepository;
+
+    @Mock
+    private SongContentRepository songContentRepository;
+
+    @Mock
+    private SongRenditionRepository songRenditionRepository;
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ContentBlobReconciler contentBlobReconciler;
+
+    @BeforeEach
+    void setUp() {
+        var storageConfig = new StorageConfig();
+        storageConfig.getReconciler().setBatchSize(2);
+        contentBlobReconciler = new ContentBlobReconciler(songContentStore, contentCache, contentBlobRepository, songContentRepository,
+                songRenditionRepository, storageConfig, serviceMetrics, transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        contentBlobReconciler.teardown();
+    }
+
+    @Test
+    void when_reconcile_thenCountsReferencesInBatches() throws IOException {
+        when(songContentStore.list()).thenReturn(Stream.of(new StoredContent("a", 1),
+                new StoredContent("b", 2), new StoredContent("c", 3)));
+        when(songContentRepository.countReferences(anyList())).thenReturn(List.of(references("a", 2), references("c", 1)));
+        when(songRenditionRepository.countReferences(anyList())).thenReturn(List.of(references("a", 1), references("b", 1)));
+        when(contentBlobRepository.findAllById(anyList()))
+                .thenReturn(List.of(ContentBlob.builder().hash("a").referenceCount(7).build()));
+
+        var removed = contentBlobReconciler.reconcile();
+
+        assertEquals(0, removed);
+        var saved = ArgumentCaptor.forClass(List.class);
+        verify(contentBlobRepository, times(2)).saveAll(saved.capture());
+        var counts = saved.getAllValues()
+                .stream()
+                .flatMap(List<ContentBlob>::stream)
+                .collect(Collectors.toMap(ContentBlob::getHash, ContentBlob::getReferenceCount));
+        assertEquals(Map.of("a", 3L, "b", 1L, "c", 1L), counts);
+        verify(transactionManager, times(2)).commit(any());
+        verify(songContentStore, never()).deleteIfUnmodifiedSince(any(), any());
+    }
+
+    @Test
+    void when_reconcile_unreferenced_thenRemovesOnlyPastGracePeriod() throws IOException {
+        when(songContentStore.list()).thenReturn(Stream.of(new StoredContent("old", 1), new StoredContent("new", 2)));
+        when(songContentStore.lastModified("old")).thenReturn(Instant.now().minus(2, ChronoUnit.DAYS));
+        when(songContentStore.lastModified("new")).thenReturn(Instant.now());
+        when(songContentStore.deleteIfUnmodifiedSince(eq("old"), any())).thenReturn(true);
+        when(contentBlobRepository.findAllById(anyList()))
+                .thenReturn(List.of(ContentBlob.builder().hash("old").referenceCount(1).build()));
+
+        var removed = contentBlobReconciler.reconcile();
+
+        assertEquals(1, removed);
+        verify(songContentStore).deleteIfUnmodifiedSince(eq("old"), any());
+        verify(songContentStore, never()).deleteIfUnmodifiedSince(eq("new"), any());
+        verify(contentCache).invalidate("old");
+        verify(contentBlobRepository).deleteAllById(List.of("old"));
+    }
+
+    @Test
+    void when_reconcile_touchedSinceCounted_thenKeepsBlob() throws IOException {
+        when(songContentStore.list()).thenReturn(Stream.of(new StoredContent("old", 1)));
+        when(songContentStore.lastModified("old")).thenReturn(Instant.now().minus(2, ChronoUnit.DAYS));
+        when(songContentStore.deleteIfUnmodifiedSince(eq("old"), any())).thenReturn(false);
+
+        var removed = contentBlobReconciler.reconcile();
+
+        assertEquals(0, removed);
+        verify(contentCache, never()).invalidate(any());
+    }
+
+    private static ContentReferences references(String hash, long count){
+        return new ContentReferences() {
+            @Override
+            public String getHash() {
+                return hash;
+            }
+
+            @Override
+            public long getReferenceCount() {
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.bragi.bragi.bootstrap;
+
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.repository.SongContentRepository;
+import com.bragi.bragi.service.config.StorageConfig;
+import com.bragi.bragi.storage.SongContentStore;
+import com.bragi.bragi.storage.StoredContent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SongContentMigrationTest {
+
+    @Mock
+    private SongContentRepository songContentRepository;
+
+    @Mock
+    private SongContentStore songContentStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SongContentMigration songContentMigration;
+
+    @BeforeEach
+    void setUp() {
+        var storageConfig = new StorageConfig();
+        storageConfig.getMigration().setBatchSize(2);
+        songContentMigration = new SongContentMigration(songContentRepository, songContentStore,
+                storageConfig, transactionManager);
+    }
+
+    @Test
+    void when_migrate_thenMovesContentInBatches() throws IOException {
+        var first = SongContent.builder().id(1L).content(new byte[]{1}).build();
+        var second = SongContent.builder().id(2L).content(new byte[]{2}).build();
+        var third = SongContent.builder().id(3L).content(new byte[]{3}).build();
+        when(songContentRepository.findByHashIsNullAndIdGreaterThanOrderByIdAsc(eq(0L), any()))
+                .thenReturn(List.of(first, second));
+        when(songContentRepository.findByHashIsNullAndIdGreaterThanOrderByIdAsc(eq(2L), any()))
+                .thenReturn(List.of(third));
+        when(songContentRepository.findByHashIsNullAndIdGreaterThanOrderByIdAsc(eq(3L), any()))
+                .thenReturn(List.of());
+        when(songContentStore.put(any())).thenReturn(new StoredContent("hash", 1));
+
+        var migrated = songContentMigration.migrate();
+
+        assertEquals(3, migrated);
+        assertEquals("hash", first.getHash());
+        assertEquals(1L, third.getSize());
+        assertNull(second.getContent());
+        verify(songContentRepository, times(2)).saveAll(any());
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void when_migrate_storeFails_thenSkipsRow() throws IOException {
+        var first = SongContent.builder().id(1L).content(new byte[]{1}).build();
+        when(songContentRepository.findByHashIsNullAndIdGreaterThanOrderByIdAsc(eq(0L), any()))
+                .thenReturn(List.of(first));
+        when(songContentRepository.findByHashIsNullAndIdGreaterThanOrderByIdAsc(eq(1L), any()))
+                .thenReturn(List.of());
+        when(songContentStore.put(any())).thenThrow(new IOException());
+
+        var migrated = songContentMigration.migrate();
+
+        assertEquals(0, migrated);
+        assertNotNull(first.getContent());
+        assertNull(first.getHash());
+    }
+}
@@ -1,5 +1,6 @@
 package com.bragi.bragi.error;
 
+import com.bragi.bragi.retry.CircuitOpenException;
 import org.hibernate.StaleObjectStateException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,6 +13,7 @@ import org.springframework.web.server.ServerWebExchange;
 import reactor.test.StepVerifier;
 
 import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -52,6 +54,32 @@ class GlobalRestExceptionHandlerTest {
         verify(response).setStatusCode(eq(HttpStatus.BAD_REQUEST));
     }
 
+    @Test
+    void when_handleRejectedExecution_returnsExpected(){
+        ServerWebExchange serverWebExchange = mock(ServerWebExchange.class);
+        ServerHttpResponse response = mock(ServerHttpResponse.class);
+
+        when(serverWebExchange.getResponse()).thenReturn(response);
+
+        StepVerifier.create(globalRestExceptionHandler.handle(serverWebExchange, new RejectedExecutionException()))
+                .verifyComplete();
+
+        verify(response).setStatusCode(eq(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
+    @Test
+    void when_handleCircuitOpen_returnsExpected(){
+        ServerWebExchange serverWebExchange = mock(ServerWebExchange.class);
+        ServerHttpResponse response = mock(ServerHttpResponse.class);
+
+        when(serverWebExchange.getResponse()).thenReturn(response);
+
+        StepVerifier.create(globalRestExceptionHandler.handle(serverWebExchange, new CircuitOpenException()))
+                .verifyComplete();
+
+        verify(response).setStatusCode(eq(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
     @Test
     void when_handleInternal_returnsExpected(){
         ServerWebExchange serverWebExchange = mock(ServerWebExchange.class);
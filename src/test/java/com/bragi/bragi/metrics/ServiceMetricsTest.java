@@ -1,6 +1,7 @@
 package com.bragi.bragi.metrics;
 
 import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -123,4 +124,45 @@ class ServiceMetricsTest {
         verify(child).inc();
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void when_registerBlockingScheduler_success_thenGaugesReadSuppliers(){
+        Gauge queueDepth = Gauge.build().name("queue_depth").help("queue depth").labelNames("scheduler").create();
+        Gauge activeThreads = Gauge.build().name("active_threads").help("active threads").labelNames("scheduler").create();
+        AtomicInteger depth = new AtomicInteger(3);
+
+        when(serviceMetricsBuilder.getBlockingQueueDepthGauge()).thenReturn(queueDepth);
+        when(serviceMetricsBuilder.getBlockingActiveThreadsGauge()).thenReturn(activeThreads);
+
+        serviceMetrics.registerBlockingScheduler("hello", depth::get, ()-> 2);
+
+        assertEquals(3, queueDepth.labels("hello").get());
+        depth.set(5);
+        assertEquals(5, queueDepth.labels("hello").get());
+        assertEquals(2, activeThreads.labels("hello").get());
+    }
+
+    @Test
+    void when_registerCircuitBreaker_success_thenGaugeReadsState(){
+        Gauge state = Gauge.build().name("breaker_state").help("breaker state").labelNames("operation").create();
+        AtomicInteger ordinal = new AtomicInteger();
+
+        when(serviceMetricsBuilder.getCircuitBreakerStateGauge()).thenReturn(state);
+
+        serviceMetrics.registerCircuitBreaker("read", ordinal::get);
+        ordinal.set(1);
+
+        assertEquals(1, state.labels("read").get());
+    }
+
+    @Test
+    void when_incrementCircuitBreakerRejections_success_thenIncrements(){
+        Counter counter = Counter.build().name("rejections").help("rejections").labelNames("operation").create();
+
+        when(serviceMetricsBuilder.getCircuitBreakerRejectionCounter()).thenReturn(counter);
+
+        serviceMetrics.incrementCircuitBreakerRejections("write");
+
+        assertEquals(1, counter.labels("write").get());
+    }
+}
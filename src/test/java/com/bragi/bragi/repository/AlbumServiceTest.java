@@ -1,5 +1,6 @@
 package com.bragi.bragi.repository;
 
+import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Album;
 import com.bragi.bragi.model.Artist;
 import com.bragi.bragi.model.Song;
@@ -7,7 +8,10 @@ import com.bragi.bragi.repository.AlbumRepository;
 import com.bragi.bragi.repository.ArtistRepository;
 import com.bragi.bragi.repository.DataAccessService;
 import com.bragi.bragi.repository.SongRepository;
+import com.bragi.bragi.service.config.MetadataCacheConfig;
+import com.bragi.bragi.service.config.ResilienceConfig;
 import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.PageCursor;
 import org.hibernate.hql.internal.QueryExecutionRequestException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,13 +19,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 import javax.swing.text.html.Option;
 import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -29,6 +34,7 @@ import java.util.concurrent.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -54,7 +60,11 @@ class AlbumServiceTest {
         when(retryConfig.getMinWaitBetweenMillis()).thenReturn(100L);
         when(retryConfig.getMaxWaitBetweenMillis()).thenReturn(200L);
 
-        albumService = new DataAccessService(retryConfig, albumRepository, artistRepository, songRepository);
+        albumService = new DataAccessService(retryConfig, albumRepository, artistRepository, songRepository,
+                Mockito.mock(SongRenditionRepository.class),
+                Mockito.mock(ContentBlobRepository.class),
+                new DataAccessResilience(new ResilienceConfig(), Mockito.mock(ServiceMetrics.class)),
+                new MetadataCache(new MetadataCacheConfig(), Mockito.mock(ServiceMetrics.class)));
 
     }
 
@@ -426,25 +436,69 @@ class AlbumServiceTest {
 
     @Test
     void when_findAllAlbums_success_thenReturns(){
-        when(albumRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        when(albumRepository.findIdsAfter(anyLong(), any(Pageable.class))).thenReturn(List.of());
 
-        var page = albumService.findAllAlbums(PageRequest.of(1, 2));
+        var page = albumService.findAllAlbums(PageCursor.first(true), 2);
 
         assertTrue(page.isEmpty());
 
-        verify(albumRepository).findAll(any(Pageable.class));
+        verify(albumRepository).findIdsAfter(anyLong(), any(Pageable.class));
     }
 
     @Test
     void when_findAllAlbums_fails_thenThrows(){
-        when(albumRepository.findAll(any(Pageable.class))).thenThrow(new RuntimeException());
+        when(albumRepository.findIdsAfter(anyLong(), any(Pageable.class))).thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
-            var page = albumService.findAllAlbums(PageRequest.of(1, 2));
+            var page = albumService.findAllAlbums(PageCursor.first(true), 2);
         });
 
 
-        verify(albumRepository, times(3)).findAll(any(Pageable.class));
+        verify(albumRepository, times(3)).findIdsAfter(anyLong(), any(Pageable.class));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void when_getSongsByAlbumExternalId_success_thenReturns(){
+        when(songRepository.findAllByAlbumExternalId(any())).thenReturn(List.of(Song.builder().build()));
+
+        var songs = albumService.getSongsByAlbumExternalId(UUID.randomUUID(), false);
+
+        assertEquals(1, songs.size());
+        verify(songRepository, never()).findAllWithContentByAlbumExternalId(any());
+        verify(albumRepository, never()).existsByExternalId(any());
+    }
+
+    @Test
+    void when_getSongsByAlbumExternalId_withContent_thenUsesContentFetchPlan(){
+        when(songRepository.findAllWithContentByAlbumExternalId(any())).thenReturn(List.of(Song.builder().build()));
+
+        var songs = albumService.getSongsByAlbumExternalId(UUID.randomUUID(), true);
+
+        assertEquals(1, songs.size());
+        verify(songRepository, never()).findAllByAlbumExternalId(any());
+    }
+
+    @Test
+    void when_getSongsByAlbumExternalId_albumMissing_thenThrows(){
+        when(songRepository.findAllByAlbumExternalId(any())).thenReturn(List.of());
+        when(albumRepository.existsByExternalId(any())).thenReturn(false);
+
+        assertThrows(NoSuchElementException.class, ()-> albumService.getSongsByAlbumExternalId(UUID.randomUUID(), false));
+    }
+
+    @Test
+    void when_getSongsByAlbumExternalId_albumEmpty_thenReturnsEmpty(){
+        when(songRepository.findAllByAlbumExternalId(any())).thenReturn(List.of());
+        when(albumRepository.existsByExternalId(any())).thenReturn(true);
+
+        assertTrue(albumService.getSongsByAlbumExternalId(UUID.randomUUID(), false).isEmpty());
+    }
+
+    @Test
+    void when_getAlbumBySongExternalId_missing_thenThrows(){
+        when(albumRepository.findBySongExternalId(any())).thenReturn(Optional.empty());
+
+        assertThrows(NoSuchElementException.class, ()-> albumService.getAlbumBySongExternalId(UUID.randomUUID()));
+    }
+}
@@ -1,5 +1,6 @@
 package com.bragi.bragi.repository;
 
+import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Album;
 import com.bragi.bragi.model.Artist;
 import com.bragi.bragi.model.Song;
@@ -7,14 +8,17 @@ import com.bragi.bragi.repository.AlbumRepository;
 import com.bragi.bragi.repository.ArtistRepository;
 import com.bragi.bragi.repository.DataAccessService;
 import com.bragi.bragi.repository.SongRepository;
+import com.bragi.bragi.retry.CircuitOpenException;
+import com.bragi.bragi.service.config.MetadataCacheConfig;
+import com.bragi.bragi.service.config.ResilienceConfig;
 import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.PageCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 import java.util.*;
@@ -47,7 +51,11 @@ class ArtistServiceTest {
         when(retryConfig.getMinWaitBetweenMillis()).thenReturn(100L);
         when(retryConfig.getMaxWaitBetweenMillis()).thenReturn(200L);
 
-        artistService = new DataAccessService(retryConfig, albumRepository, artistRepository, songRepository);
+        artistService = new DataAccessService(retryConfig, albumRepository, artistRepository, songRepository,
+                Mockito.mock(SongRenditionRepository.class),
+                Mockito.mock(ContentBlobRepository.class),
+                new DataAccessResilience(new ResilienceConfig(), Mockito.mock(ServiceMetrics.class)),
+                new MetadataCache(new MetadataCacheConfig(), Mockito.mock(ServiceMetrics.class)));
     }
 
     @Test
@@ -360,6 +368,67 @@ class ArtistServiceTest {
 
     }
 
+    @Test
+    void when_getArtistByName_notFound_thenDoesNotRetry() {
+        when(artistRepository.findByName(anyString())).thenReturn(Optional.empty());
+
+        assertThrows(NoSuchElementException.class, ()->{
+            var artist1 = artistService.getArtistByName("hello");
+        });
+
+        verify(artistRepository, times(1)).findByName(anyString());
+    }
+
+    @Test
+    void when_getArtistByName_circuitOpen_thenRejectsWithoutCalling() {
+        when(artistRepository.findByName(anyString()))
+                .thenThrow(new RuntimeException());
+
+        //the second call makes the fifth failure, which opens the read circuit with the default settings
+        for(var i = 0; i < 2; i++)
+            assertThrows(RuntimeException.class, ()-> artistService.getArtistByName("hello"));
+        assertThrows(CircuitOpenException.class, ()-> artistService.getArtistByName("hello"));
+
+        verify(artistRepository, times(5)).findByName(anyString());
+    }
+
+    @Test
+    void when_getByExternalId_twice_thenServedFromCache() {
+        var artist = Artist.builder()
+                .name("hello")
+                .externalId(UUID.randomUUID())
+                .songs(new HashSet<>())
+                .albums(new HashSet<>())
+                .build();
+
+        when(artistRepository.findByExternalId(any())).thenReturn(Optional.of(artist));
+
+        artistService.getArtistByExternalId(artist.getExternalId());
+        var artist1 = artistService.getArtistByExternalId(artist.getExternalId());
+
+        assertEquals(artist, artist1);
+        verify(artistRepository, times(1)).findByExternalId(any());
+    }
+
+    @Test
+    void when_saveArtist_thenCachedEntryEvicted() {
+        var artist = Artist.builder()
+                .name("hello")
+                .externalId(UUID.randomUUID())
+                .songs(new HashSet<>())
+                .albums(new HashSet<>())
+                .build();
+
+        when(artistRepository.findByExternalId(any())).thenReturn(Optional.of(artist));
+        when(artistRepository.save(any())).thenReturn(artist);
+
+        artistService.getArtistByExternalId(artist.getExternalId());
+        artistService.saveArtist(artist);
+        artistService.getArtistByExternalId(artist.getExternalId());
+
+        verify(artistRepository, times(2)).findByExternalId(any());
+    }
+
     @Test
     void when_getByExternalId_success_thenReturns() {
         var artist = Artist.builder()
@@ -420,25 +489,25 @@ class ArtistServiceTest {
 
     @Test
     void when_findAllArtists_success_thenReturns(){
-        when(artistRepository.findAll(any(Pageable.class))).thenReturn(Page.empty());
+        when(artistRepository.findIdsAfter(anyLong(), any(Pageable.class))).thenReturn(List.of());
 
-        var page = artistService.findAllArtists(PageRequest.of(1, 2));
+        var page = artistService.findAllArtists(PageCursor.first(true), 2);
 
         assertTrue(page.isEmpty());
 
-        verify(artistRepository).findAll(any(Pageable.class));
+        verify(artistRepository).findIdsAfter(anyLong(), any(Pageable.class));
     }
 
     @Test
     void when_findAllArtist_fails_thenThrows(){
-        when(artistRepository.findAll(any(Pageable.class))).thenThrow(new RuntimeException());
+        when(artistRepository.findIdsAfter(anyLong(), any(Pageable.class))).thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
-            var page = artistService.findAllArtists(PageRequest.of(1, 2));
+            var page = artistService.findAllArtists(PageCursor.first(true), 2);
         });
 
 
-        verify(artistRepository, times(3)).findAll(any(Pageable.class));
+        verify(artistRepository, times(3)).findIdsAfter(anyLong(), any(Pageable.class));
 
     }
 
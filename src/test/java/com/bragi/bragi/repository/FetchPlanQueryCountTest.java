@@ -0,0 +1,309 @@
+package com.bragi.bragi.repository;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.model.Album;
+import com.bragi.bragi.model.Artist;
+import com.bragi.bragi.model.Song;
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.service.AlbumService;
+import com.bragi.bragi.service.ArtistService;
+import com.bragi.bragi.service.RenditionService;
+import com.bragi.bragi.service.SongContentService;
+import com.bragi.bragi.service.SongService;
+import com.bragi.bragi.service.config.ContentCacheConfig;
+import com.bragi.bragi.service.config.MetadataCacheConfig;
+import com.bragi.bragi.service.config.PagingConfig;
+import com.bragi.bragi.service.config.ResilienceConfig;
+import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.storage.ContentCache;
+import com.bragi.bragi.storage.SongContentStore;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Guards the number of SQL statements issued per gRPC and REST use case. No transaction is open
+ * around the calls, as in production, so any association missing from a fetch plan fails the test.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=com.bragi.bragi.repository.H2UuidDialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FetchPlanQueryCountTest {
+
+    private static final int SONGS_PER_ALBUM = 3;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private ArtistRepository artistRepository;
+
+    @Autowired
+    private SongRepository songRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    private SongService songService;
+    private AlbumService albumService;
+    private ArtistService artistService;
+
+    private Artist artist;
+    private Album album;
+    private List<Song> songs;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+
+        var dataAccessService = new DataAccessService(new RetryConfig(), albumRepository, artistRepository, songRepository,
+                Mockito.mock(SongRenditionRepository.class),
+                Mockito.mock(ContentBlobRepository.class),
+                new DataAccessResilience(new ResilienceConfig(), Mockito.mock(ServiceMetrics.class)),
+                new MetadataCache(new MetadataCacheConfig(), Mockito.mock(ServiceMetrics.class)));
+        var reactiveDataAccessService = Mockito.mock(ReactiveDataAccessService.class);
+        var songContentService = new SongContentService(Mockito.mock(SongContentStore.class),
+                new ContentCache(new ContentCacheConfig(), Mockito.mock(ServiceMetrics.class)));
+        songService = new SongService(dataAccessService, reactiveDataAccessService, songContentService,
+                Mockito.mock(RenditionService.class), new PagingConfig());
+        albumService = new AlbumService(dataAccessService, reactiveDataAccessService, songContentService, new PagingConfig());
+        artistService = new ArtistService(dataAccessService, reactiveDataAccessService, songContentService, new PagingConfig());
+
+        transactionTemplate.executeWithoutResult(status-> {
+            artist = Artist.builder()
+                    .externalId(UUID.randomUUID())
+                    .name("artist")
+                    .timeStarted(Timestamp.from(Instant.now()))
+                    .build();
+            entityManager.persist(artist);
+            album = Album.builder()
+                    .externalId(UUID.randomUUID())
+                    .title("album " + UUID.randomUUID())
+                    .date(Timestamp.from(Instant.now()))
+                    .artists(new HashSet<>(Set.of(artist)))
+                    .build();
+            entityManager.persist(album);
+            artist.getAlbums().add(album);
+            songs = new ArrayList<>();
+            for(int i = 0; i < SONGS_PER_ALBUM; i++){
+                var song = Song.builder()
+                        .externalId(UUID.randomUUID())
+                        .title("song " + i)
+                        .dateReleased(Timestamp.from(Instant.now()))
+                        .album(album)
+                        .artists(new HashSet<>(Set.of(artist)))
+                        .songContent(SongContent.builder().content(new byte[]{1, 2, 3}).build())
+                        .build();
+                entityManager.persist(song);
+                album.getSongs().add(song);
+                artist.getSongs().add(song);
+                songs.add(song);
+            }
+        });
+    }
+
+    @Test
+    void when_getSong_thenOneStatement() {
+        var response = assertStatements(1, ()-> songService.getSong(brgi.grpc.GetSongRequest.newBuilder()
+                .setSongId(songs.get(0).getExternalId().toString()).build()));
+
+        assertEquals(album.getExternalId().toString(), response.getSong().getAlbumId());
+        assertEquals(1, response.getSong().getArtistIdCount());
+    }
+
+    @Test
+    void when_getSong_withContent_thenTwoStatements() {
+        var response = assertStatements(2, ()-> songService.getSong(brgi.grpc.GetSongRequest.newBuilder()
+                .setSongId(songs.get(0).getExternalId().toString())
+                .setIncludeContent(true).build()));
+
+        assertEquals(3, response.getSong().getContent().size());
+    }
+
+    @Test
+    void when_getSongAlbum_thenOneStatement() {
+        var response = assertStatements(1, ()-> songService.getSongAlbum(brgi.grpc.GetSongAlbumRequest.newBuilder()
+                .setSongId(songs.get(0).getExternalId().toString()).build()));
+
+        assertEquals(SONGS_PER_ALBUM, response.getAlbum().getSongIdCount());
+    }
+
+    @Test
+    void when_getSongArtists_thenOneStatement() {
+        var response = assertStatements(1, ()-> songService.getSongsArtists(brgi.grpc.GetArtistsRequest.newBuilder()
+                .setSongId(songs.get(0).getExternalId().toString()).build()));
+
+        assertEquals(SONGS_PER_ALBUM, response.getArtist(0).getSongIdCount());
+    }
+
+    @Test
+    void when_getAlbum_thenOneStatement() {
+        var response = assertStatements(1, ()-> albumService.getAlbum(brgi.grpc.GetAlbumRequest.newBuilder()
+                .setAlbumId(album.getExternalId().toString()).build()));
+
+        assertEquals(SONGS_PER_ALBUM, response.getAlbum().getSongIdCount());
+        assertEquals(1, response.getAlbum().getArtistIdCount());
+    }
+
+    @Test
+    void when_getAlbumSongs_thenOneStatement() {
+        var response = assertStatements(1, ()-> albumService.getAllSongs(brgi.grpc.GetAllSongsRequest.newBuilder()
+                .setAlbumId(album.getExternalId().toString()).build()));
+
+        assertEquals(SONGS_PER_ALBUM, response.getSongCount());
+    }
+
+    @Test
+    void when_getAlbumArtists_thenOneStatement() {
+        var response = assertStatements(1, ()-> albumService.getArtists(brgi.grpc.GetArtistsRequest.newBuilder()
+                .setAlbumId(album.getExternalId().toString()).build()));
+
+        assertEquals(1, response.getArtistCount());
+    }
+
+    @Test
+    void when_streamAlbumSongs_thenOneStatement() {
+        var albumSongs = assertStatements(1, ()-> albumService.getSongs(album.getExternalId()));
+
+        assertEquals(SONGS_PER_ALBUM, albumSongs.size());
+        albumSongs.forEach(song-> assertEquals(3, songService.getSongContent(song.getExternalId()).size()));
+    }
+
+    @Test
+    void when_getArtist_thenOneStatement() {
+        var response = assertStatements(1, ()-> artistService.getArtist(brgi.grpc.GetArtistRequest.newBuilder()
+                .setArtistId(artist.getExternalId().toString()).build()));
+
+        assertEquals(SONGS_PER_ALBUM, response.getArtist().getSongIdCount());
+        assertEquals(1, response.getArtist().getAlbumIdCount());
+    }
+
+    @Test
+    void when_getArtistAlbums_thenOneStatement() {
+        var response = assertStatements(1, ()-> artistService.getAllAlbums(brgi.grpc.GetAllAlbumsRequest.newBuilder()
+                .setArtistId(artist.getExternalId().toString()).build()));
+
+        assertEquals(SONGS_PER_ALBUM, response.getAlbum(0).getSongIdCount());
+    }
+
+    @Test
+    void when_getArtistSongs_thenOneStatement() {
+        var response = assertStatements(1, ()-> artistService.getAllSongs(brgi.grpc.GetAllSongsRequest.newBuilder()
+                .setArtistId(artist.getExternalId().toString()).build()));
+
+        assertEquals(SONGS_PER_ALBUM, response.getSongCount());
+    }
+
+    @Test
+    void when_restGetSong_thenOneStatement() {
+        var song = assertStatements(1, ()-> com.bragi.bragi.rest.dto.Song
+                .convertToDto(songService.getSong(songs.get(0).getExternalId())));
+
+        assertEquals(album.getExternalId(), song.getAlbum());
+    }
+
+    @Test
+    void when_restFindAllSongs_thenTwoStatements() {
+        var page = assertStatements(2, ()-> songService.findAllSongs(null, 100, "asc")
+                .items()
+                .stream()
+                .map(com.bragi.bragi.rest.dto.Song::convertToDto)
+                .toList());
+
+        assertEquals(songRepository.count(), page.size());
+    }
+
+    @Test
+    void when_restFindAllAlbums_thenTwoStatements() {
+        var page = assertStatements(2, ()-> albumService.findAllAlbums(null, 100, "asc")
+                .items()
+                .stream()
+                .map(com.bragi.bragi.rest.dto.Album::convertToDto)
+                .toList());
+
+        assertEquals(albumRepository.count(), page.size());
+    }
+
+    @Test
+    void when_restFindAllArtists_thenTwoStatements() {
+        var page = assertStatements(2, ()-> artistService.findAllArtists(null, 100, "asc")
+                .items()
+                .stream()
+                .map(com.bragi.bragi.rest.dto.Artist::convertToDto)
+                .toList());
+
+        assertEquals(artistRepository.count(), page.size());
+    }
+
+    @Test
+    void when_restFindAllSongs_byCursor_thenTwoStatementsPerPage() {
+        var seen = new ArrayList<UUID>();
+        String cursor = null;
+        do{
+            var nextCursor = cursor;
+            var page = assertStatements(2, ()-> songService.findAllSongs(nextCursor, 1, "desc"));
+            page.items().forEach(song-> seen.add(song.getExternalId()));
+            cursor = page.nextCursor();
+        }while(cursor != null);
+
+        assertEquals(songRepository.count(), seen.size());
+        assertEquals(songs.get(songs.size() - 1).getExternalId(), seen.get(0));
+        assertEquals(seen.size(), Set.copyOf(seen).size());
+    }
+
+    @Test
+    void when_bulkAddAlbums_thenBatchesStatements() {
+        var requests = IntStream.range(0, 10)
+                .mapToObj(i-> brgi.grpc.AddAlbumRequest.newBuilder()
+                        .setAlbum(brgi.grpc.Album.newBuilder()
+                                .setTitle("bulk album " + UUID.randomUUID())
+                                .addArtistId(artist.getExternalId().toString()))
+                        .build())
+                .toList();
+
+        //artists in one query, then one batched insert per table, ids come from the pooled sequence
+        var results = assertStatements(3, ()-> albumService.storeAll(requests));
+
+        assertEquals(10, results.stream().filter(brgi.grpc.BulkAddResult::getSuccess).count());
+    }
+
+    private <T> T assertStatements(long expected, Supplier<T> call){
+        statistics.clear();
+        var result = call.get();
+        assertEquals(expected, statistics.getPrepareStatementCount(), "Unexpected number of SQL statements");
+        return result;
+    }
+}
@@ -0,0 +1,25 @@
+package com.bragi.bragi.repository;
+
+import org.hibernate.boot.model.TypeContributions;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.PostgresUUIDType;
+
+import java.sql.Types;
+
+/**
+ * Maps {@link java.util.UUID} to the native H2 uuid type, as the PostgreSQL dialect does in production.
+ * The default binary(255) mapping is zero padded by H2, so lookups by external id never match.
+ */
+public class H2UuidDialect extends H2Dialect {
+
+    public H2UuidDialect() {
+        registerColumnType(Types.OTHER, "uuid");
+    }
+
+    @Override
+    public void contributeTypes(TypeContributions typeContributions, ServiceRegistry serviceRegistry) {
+        super.contributeTypes(typeContributions, serviceRegistry);
+        typeContributions.contributeType(PostgresUUIDType.INSTANCE);
+    }
+}
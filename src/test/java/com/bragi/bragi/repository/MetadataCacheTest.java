@@ -0,0 +1,125 @@
+package com.bragi.bragi.repository;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.model.Album;
+import com.bragi.bragi.model.Artist;
+import com.bragi.bragi.model.Song;
+import com.bragi.bragi.service.config.MetadataCacheConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MetadataCacheTest {
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    private MetadataCache metadataCache;
+
+    @BeforeEach
+    void setUp() {
+        metadataCache = new MetadataCache(new MetadataCacheConfig(), serviceMetrics);
+    }
+
+    @Test
+    void when_getTwice_thenLoadsOnce() {
+        var song = Song.builder().id(1).externalId(UUID.randomUUID()).build();
+        var loads = new AtomicInteger();
+
+        metadataCache.getSong(song.getExternalId(), key-> { loads.incrementAndGet(); return song; });
+        var cached = metadataCache.getSong(song.getExternalId(), key-> { loads.incrementAndGet(); return song; });
+
+        assertEquals(song, cached);
+        assertEquals(1, loads.get());
+        verify(serviceMetrics).incrementCacheMisses("song", 1);
+        verify(serviceMetrics).incrementCacheHits("song", 1);
+        verify(serviceMetrics).recordCacheLoadLatency(eq("song"), anyDouble());
+    }
+
+    @Test
+    void when_loaderThrows_thenNothingCached() {
+        var externalId = UUID.randomUUID();
+        var loads = new AtomicInteger();
+
+        assertThrows(NoSuchElementException.class, ()-> metadataCache.getArtist(externalId, key-> {
+            loads.incrementAndGet();
+            throw new NoSuchElementException();
+        }));
+        metadataCache.getArtist(externalId, key-> { loads.incrementAndGet(); return new Artist(); });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void when_songSaved_thenSongAndLinkedEntitiesEvicted() {
+        var artist = Artist.builder().id(1).externalId(UUID.randomUUID()).build();
+        var album = Album.builder().id(2).externalId(UUID.randomUUID()).artists(Set.of(artist)).build();
+        var song = Song.builder().id(3).externalId(UUID.randomUUID()).album(album).artists(Set.of(artist)).build();
+        var otherAlbum = Album.builder().id(4).externalId(UUID.randomUUID()).build();
+        metadataCache.getArtist(artist.getExternalId(), key-> artist);
+        metadataCache.getAlbum(album.getExternalId(), key-> album);
+        metadataCache.getAlbum(otherAlbum.getExternalId(), key-> otherAlbum);
+        metadataCache.getSong(song.getExternalId(), key-> song);
+
+        metadataCache.evictSong(song);
+
+        assertNull(metadataCache.getArtist(artist.getExternalId(), key-> null));
+        assertNull(metadataCache.getAlbum(album.getExternalId(), key-> null));
+        assertNull(metadataCache.getSong(song.getExternalId(), key-> null));
+        assertEquals(otherAlbum, metadataCache.getAlbum(otherAlbum.getExternalId(), key-> null));
+    }
+
+    @Test
+    void when_artistSaved_thenEntriesReferencingItEvicted() {
+        var artist = Artist.builder().id(1).externalId(UUID.randomUUID()).build();
+        var song = Song.builder().id(3).externalId(UUID.randomUUID()).artists(Set.of(artist)).build();
+        metadataCache.getSong(song.getExternalId(), key-> song);
+
+        metadataCache.evictArtist(artist);
+
+        assertNull(metadataCache.getSong(song.getExternalId(), key-> null));
+    }
+
+    @Test
+    void when_evictedDuringLoad_thenStaleValueNotCached() {
+        var externalId = UUID.randomUUID();
+        var stale = Artist.builder().id(1).externalId(externalId).name("old").build();
+
+        metadataCache.getArtist(externalId, key-> {
+            metadataCache.evictAll();
+            return stale;
+        });
+
+        assertNull(metadataCache.getArtist(externalId, key-> null));
+    }
+
+    @Test
+    void when_disabled_thenAlwaysLoads() {
+        var config = new MetadataCacheConfig();
+        config.setEnabled(false);
+        metadataCache = new MetadataCache(config, serviceMetrics);
+        var loads = new AtomicInteger();
+
+        metadataCache.getAlbum(UUID.randomUUID(), key-> { loads.incrementAndGet(); return new Album(); });
+        metadataCache.getAlbum(UUID.randomUUID(), key-> { loads.incrementAndGet(); return new Album(); });
+
+        assertEquals(2, loads.get());
+        verify(serviceMetrics, never()).incrementCacheMisses(any(), anyInt());
+        verify(serviceMetrics, times(2)).incrementSingleFlightOriginating("album");
+    }
+}
@@ -0,0 +1,187 @@
+package com.bragi.bragi.repository;
+
+import com.bragi.bragi.model.Album;
+import com.bragi.bragi.model.Artist;
+import com.bragi.bragi.model.Song;
+import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.PageCursor;
+import io.r2dbc.h2.H2ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs the R2DBC queries against an in-memory H2 database laid out like the schema hibernate generates.
+ */
+class ReactiveDataAccessServiceTest {
+
+    private static final String[] SCHEMA = {
+            "create table artist (id bigint primary key, external_id uuid not null unique, artist_name varchar(255), time_started timestamp not null)",
+            "create table album (id bigint primary key, external_id uuid not null unique, title varchar(255) not null unique, release_date timestamp not null)",
+            "create table song (id bigint primary key, external_id uuid not null unique, title varchar(255), album_id bigint, duration bigint, song_content_id bigint, date_released timestamp not null)",
+            "create table song_artist (song_id bigint not null, artist_id bigint not null)",
+            "create table album_artist (album_id bigint not null, artist_id bigint not null)",
+            "create table album_songs (album_id bigint not null, songs_id bigint not null)",
+            "create table artist_songs (artist_id bigint not null, songs_id bigint not null)",
+            "create table artist_albums (artist_id bigint not null, albums_id bigint not null)"
+    };
+
+    private DatabaseClient databaseClient;
+    private ReactiveDataAccessService reactiveDataAccessService;
+
+    private final UUID artistId = UUID.randomUUID();
+    private final UUID albumId = UUID.randomUUID();
+    private final UUID firstSongId = UUID.randomUUID();
+    private final UUID secondSongId = UUID.randomUUID();
+    private final LocalDateTime released = LocalDateTime.of(2020, 1, 1, 12, 0);
+
+    @BeforeEach
+    void setUp() {
+        databaseClient = DatabaseClient.create(H2ConnectionFactory.inMemory(UUID.randomUUID().toString()));
+        var retryConfig = new RetryConfig();
+        retryConfig.setMaxAttempts(1);
+        reactiveDataAccessService = new ReactiveDataAccessService(retryConfig, databaseClient);
+
+        Flux.fromArray(SCHEMA)
+                .concatMap(statement-> databaseClient.sql(statement).then())
+                .then(insert("insert into artist values (1, :externalId, 'artist', :date)", artistId))
+                .then(insert("insert into album values (1, :externalId, 'album', :date)", albumId))
+                .then(insert("insert into song values (1, :externalId, 'first', 1, 120, null, :date)", firstSongId))
+                .then(insert("insert into song values (2, :externalId, 'second', null, 60, null, :date)", secondSongId))
+                .thenMany(Flux.just(
+                        "insert into song_artist values (1, 1)",
+                        "insert into song_artist values (2, 1)",
+                        "insert into album_artist values (1, 1)",
+                        "insert into album_songs values (1, 1)",
+                        "insert into artist_songs values (1, 1)",
+                        "insert into artist_songs values (1, 2)",
+                        "insert into artist_albums values (1, 1)"))
+                .concatMap(statement-> databaseClient.sql(statement).then())
+                .blockLast();
+    }
+
+    @Test
+    void when_getSongByExternalId_success_thenReturnsWithReferences() {
+        StepVerifier.create(reactiveDataAccessService.getSongByExternalId(firstSongId))
+                .consumeNextWith(song-> {
+                    assertEquals(1L, song.getId());
+                    assertEquals("first", song.getTitle());
+                    assertEquals(120L, song.getDuration());
+                    assertEquals(released, song.getDateReleased().toLocalDateTime());
+                    assertEquals(albumId, song.getAlbum().getExternalId());
+                    assertEquals(Set.of(artistId), externalIds(song.getArtists().stream().map(Artist::getExternalId)));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void when_getSongByExternalId_withoutAlbum_thenReturnsNoAlbum() {
+        StepVerifier.create(reactiveDataAccessService.getSongByExternalId(secondSongId))
+                .consumeNextWith(song-> assertNull(song.getAlbum()))
+                .verifyComplete();
+    }
+
+    @Test
+    void when_getSongByExternalId_notFound_thenErrors() {
+        StepVerifier.create(reactiveDataAccessService.getSongByExternalId(UUID.randomUUID()))
+                .expectError(NoSuchElementException.class)
+                .verify();
+    }
+
+    @Test
+    void when_getAlbumByExternalId_success_thenReturnsWithReferences() {
+        StepVerifier.create(reactiveDataAccessService.getAlbumByExternalId(albumId))
+                .consumeNextWith(album-> {
+                    assertEquals("album", album.getTitle());
+                    assertEquals(Set.of(firstSongId), externalIds(album.getSongs().stream().map(Song::getExternalId)));
+                    assertEquals(Set.of(artistId), externalIds(album.getArtists().stream().map(Artist::getExternalId)));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void when_getAlbumByExternalId_notFound_thenErrors() {
+        StepVerifier.create(reactiveDataAccessService.getAlbumByExternalId(UUID.randomUUID()))
+                .expectError(NoSuchElementException.class)
+                .verify();
+    }
+
+    @Test
+    void when_getArtistByExternalId_success_thenReturnsWithReferences() {
+        StepVerifier.create(reactiveDataAccessService.getArtistByExternalId(artistId))
+                .consumeNextWith(artist-> {
+                    assertEquals("artist", artist.getName());
+                    assertEquals(Set.of(firstSongId, secondSongId), externalIds(artist.getSongs().stream().map(Song::getExternalId)));
+                    assertEquals(Set.of(albumId), externalIds(artist.getAlbums().stream().map(Album::getExternalId)));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void when_getArtistByExternalId_notFound_thenErrors() {
+        StepVerifier.create(reactiveDataAccessService.getArtistByExternalId(UUID.randomUUID()))
+                .expectError(NoSuchElementException.class)
+                .verify();
+    }
+
+    @Test
+    void when_findAllSongs_desc_thenReturnsPageInOrder() {
+        StepVerifier.create(reactiveDataAccessService.findAllSongs(PageCursor.first(false), 1))
+                .consumeNextWith(song-> {
+                    assertEquals(2L, song.getId());
+                    assertEquals(Set.of(artistId), externalIds(song.getArtists().stream().map(Artist::getExternalId)));
+                })
+                .verifyComplete();
+
+        StepVerifier.create(reactiveDataAccessService.findAllSongs(new PageCursor(2L, false), 1))
+                .consumeNextWith(song-> assertEquals(1L, song.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void when_findAllSongs_pastLastPage_thenEmpty() {
+        StepVerifier.create(reactiveDataAccessService.findAllSongs(new PageCursor(2L, true), 10))
+                .verifyComplete();
+    }
+
+    @Test
+    void when_findAllAlbums_success_thenReturns() {
+        StepVerifier.create(reactiveDataAccessService.findAllAlbums(PageCursor.first(true), 10))
+                .consumeNextWith(album-> assertEquals(1, album.getSongs().size()))
+                .verifyComplete();
+    }
+
+    @Test
+    void when_findAllArtists_success_thenReturns() {
+        StepVerifier.create(reactiveDataAccessService.findAllArtists(PageCursor.first(true), 10))
+                .consumeNextWith(artist-> {
+                    assertEquals(2, artist.getSongs().size());
+                    assertEquals(1, artist.getAlbums().size());
+                })
+                .verifyComplete();
+    }
+
+    private Mono<Void> insert(String sql, UUID externalId){
+        return databaseClient.sql(sql)
+                .bind("externalId", externalId)
+                .bind("date", released)
+                .then();
+    }
+
+    private static Set<UUID> externalIds(Stream<UUID> ids){
+        return ids.collect(Collectors.toSet());
+    }
+}
@@ -1,12 +1,16 @@
 package com.bragi.bragi.repository;
 
+import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Song;
 import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.service.config.MetadataCacheConfig;
+import com.bragi.bragi.service.config.ResilienceConfig;
 import com.bragi.bragi.service.config.RetryConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
@@ -44,13 +48,17 @@ public class SongContentTest {
         when(retryConfig.getMinWaitBetweenMillis()).thenReturn(100L);
         when(retryConfig.getMaxWaitBetweenMillis()).thenReturn(200L);
 
-        dataAccessService = new DataAccessService(retryConfig, albumRepository, artistRepository, songRepository);
+        dataAccessService = new DataAccessService(retryConfig, albumRepository, artistRepository, songRepository,
+                Mockito.mock(SongRenditionRepository.class),
+                Mockito.mock(ContentBlobRepository.class),
+                new DataAccessResilience(new ResilienceConfig(), Mockito.mock(ServiceMetrics.class)),
+                new MetadataCache(new MetadataCacheConfig(), Mockito.mock(ServiceMetrics.class)));
 
     }
 
     @Test
     void when_getSongContentByExternalId_thenSuccess(){
-        when(songRepository.findByExternalId(any())).thenReturn(Optional.of(Song.builder()
+        when(songRepository.findWithContentByExternalId(any())).thenReturn(Optional.of(Song.builder()
                 .songContent(SongContent.builder()
                         .id(1L)
                         .content(new byte[]{1, 2, 3})
@@ -58,7 +66,7 @@ public class SongContentTest {
 
         var songContent= dataAccessService.getSongContentByExternalId(UUID.randomUUID());
 
-        verify(songRepository).findByExternalId(any());
+        verify(songRepository).findWithContentByExternalId(any());
 
         assertEquals(1L, songContent.getId());
 
@@ -67,7 +75,7 @@ public class SongContentTest {
 
     @Test
     void when_getSongContentByExternalId_retries_thenSuccess(){
-        when(songRepository.findByExternalId(any()))
+        when(songRepository.findWithContentByExternalId(any()))
                 .thenThrow(new RuntimeException())
                 .thenReturn(Optional.of(Song.builder()
                 .songContent(SongContent.builder()
@@ -77,14 +85,14 @@ public class SongContentTest {
 
         var songContent= dataAccessService.getSongContentByExternalId(UUID.randomUUID());
 
-        verify(songRepository, times(2)).findByExternalId(any());
+        verify(songRepository, times(2)).findWithContentByExternalId(any());
         assertEquals(1L, songContent.getId());
 
     }
 
     @Test
     void when_getSongContentByExternalId_fails_thenThrows(){
-        when(songRepository.findByExternalId(any()))
+        when(songRepository.findWithContentByExternalId(any()))
                 .thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
@@ -93,7 +101,7 @@ public class SongContentTest {
         });
 
 
-        verify(songRepository, times(3)).findByExternalId(any());
+        verify(songRepository, times(3)).findWithContentByExternalId(any());
     }
 
     @Test
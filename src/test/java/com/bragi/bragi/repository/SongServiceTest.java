@@ -1,26 +1,31 @@
 package com.bragi.bragi.repository;
 
+import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Album;
 import com.bragi.bragi.model.Artist;
 import com.bragi.bragi.model.Song;
+import com.bragi.bragi.model.SongContent;
 import com.bragi.bragi.repository.AlbumRepository;
 import com.bragi.bragi.repository.ArtistRepository;
 import com.bragi.bragi.repository.DataAccessService;
 import com.bragi.bragi.repository.SongRepository;
+import com.bragi.bragi.service.config.MetadataCacheConfig;
+import com.bragi.bragi.service.config.ResilienceConfig;
 import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.PageCursor;
 import lombok.Data;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -46,6 +51,9 @@ class SongServiceTest {
     @Mock
     private RetryConfig retryConfig;
 
+    @Mock
+    private ContentBlobRepository contentBlobRepository;
+
     private DataAccessService songService;
 
     @BeforeEach
@@ -54,7 +62,11 @@ class SongServiceTest {
         when(retryConfig.getMinWaitBetweenMillis()).thenReturn(100L);
         when(retryConfig.getMaxWaitBetweenMillis()).thenReturn(200L);
 
-        songService = new DataAccessService(retryConfig, albumRepository, artistRepository, songRepository);
+        songService = new DataAccessService(retryConfig, albumRepository, artistRepository, songRepository,
+                Mockito.mock(SongRenditionRepository.class),
+                contentBlobRepository,
+                new DataAccessResilience(new ResilienceConfig(), Mockito.mock(ServiceMetrics.class)),
+                new MetadataCache(new MetadataCacheConfig(), Mockito.mock(ServiceMetrics.class)));
     }
 
     @Test
@@ -71,6 +83,51 @@ class SongServiceTest {
         verify(songRepository).save(any());
     }
 
+    @Test
+    void when_store_contentMergedIntoNewRow_thenCountsReference() {
+        var song = Song.builder()
+                .artists(new HashSet<>())
+                .songContent(SongContent.builder().id(7L).hash("hash").size(3L).build())
+                .build();
+        var saved = Song.builder()
+                .artists(new HashSet<>())
+                .songContent(SongContent.builder().id(8L).hash("hash").size(3L).build())
+                .build();
+        when(songRepository.save(any())).thenReturn(saved);
+
+        songService.saveSong(song);
+
+        verify(contentBlobRepository).retain("hash", 3L, 1L);
+    }
+
+    @Test
+    void when_saveAllSongs_sharedContent_thenCountsEachReferenceInOneUpsert() {
+        var songs = List.of(
+                Song.builder().artists(new HashSet<>()).songContent(SongContent.builder().hash("hash").size(3L).build()).build(),
+                Song.builder().artists(new HashSet<>()).songContent(SongContent.builder().hash("hash").size(3L).build()).build());
+        when(songRepository.saveAll(any())).thenReturn(List.of(
+                Song.builder().artists(new HashSet<>()).songContent(SongContent.builder().id(1L).hash("hash").size(3L).build()).build(),
+                Song.builder().artists(new HashSet<>()).songContent(SongContent.builder().id(2L).hash("hash").size(3L).build()).build()));
+
+        songService.saveAllSongs(songs);
+
+        verify(contentBlobRepository).retain("hash", 3L, 2L);
+        verifyNoMoreInteractions(contentBlobRepository);
+    }
+
+    @Test
+    void when_store_existingContent_thenDoesNotCountReference() {
+        var song = Song.builder()
+                .artists(new HashSet<>())
+                .songContent(SongContent.builder().id(7L).hash("hash").build())
+                .build();
+        when(songRepository.save(any())).thenReturn(song);
+
+        songService.saveSong(song);
+
+        verifyNoInteractions(contentBlobRepository);
+    }
+
     @Test
     void when_store_failsThenRetries_thenReturns() {
         var song = Song.builder()
@@ -450,14 +507,16 @@ class SongServiceTest {
         var songs = Set.of(Song.builder()
                 .title("jason").build(), Song.builder().title("hello").build());
 
-        when(songRepository.findAll(any(Pageable.class)))
-                .thenReturn(new PageImpl<Song>(songs.stream().toList()));
+        when(songRepository.findIdsAfter(anyLong(), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L));
+        when(songRepository.findDistinctByIdIn(eq(List.of(1L, 2L)), any(Sort.class)))
+                .thenReturn(songs.stream().toList());
 
-        var songPage = songService.findAllSongs(PageRequest.of(1, 2));
+        var songPage = songService.findAllSongs(PageCursor.first(true), 2);
 
-        assertEquals(songs.stream().toList(), songPage.getContent());
+        assertEquals(songs.stream().toList(), songPage);
 
-        verify(songRepository).findAll(any(Pageable.class));
+        verify(songRepository).findIdsAfter(anyLong(), any(Pageable.class));
 
     }
 
@@ -466,15 +525,17 @@ class SongServiceTest {
         var songs = Set.of(Song.builder()
                 .title("jason").build(), Song.builder().title("hello").build());
 
-        when(songRepository.findAll(any(Pageable.class)))
+        when(songRepository.findIdsAfter(anyLong(), any(Pageable.class)))
                 .thenThrow(new RuntimeException())
-                .thenReturn(new PageImpl<Song>(songs.stream().toList()));
+                .thenReturn(List.of(1L, 2L));
+        when(songRepository.findDistinctByIdIn(eq(List.of(1L, 2L)), any(Sort.class)))
+                .thenReturn(songs.stream().toList());
 
-        var songPage = songService.findAllSongs(PageRequest.of(1, 2));
+        var songPage = songService.findAllSongs(PageCursor.first(true), 2);
 
-        assertEquals(songs.stream().toList(), songPage.getContent());
+        assertEquals(songs.stream().toList(), songPage);
 
-        verify(songRepository, times(2)).findAll(any(Pageable.class));
+        verify(songRepository, times(2)).findIdsAfter(anyLong(), any(Pageable.class));
     }
 
     @Test
@@ -482,11 +543,11 @@ class SongServiceTest {
         var songs = Set.of(Song.builder()
                 .title("jason").build(), Song.builder().title("hello").build());
 
-        when(songRepository.findAll(any(Pageable.class)))
+        when(songRepository.findIdsAfter(anyLong(), any(Pageable.class)))
                 .thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
-            var songPage = songService.findAllSongs(PageRequest.of(1, 2));
+            var songPage = songService.findAllSongs(PageCursor.first(true), 2);
         });
     }
 
@@ -4,11 +4,16 @@ import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Artist;
 import com.bragi.bragi.rest.dto.Album;
 import com.bragi.bragi.service.AlbumService;
+import com.bragi.bragi.service.config.BlockingSchedulerConfig;
+import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.CursorPage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.sql.Timestamp;
@@ -36,7 +41,7 @@ class AlbumControllerTest {
 
     @BeforeEach
     public void setUp(){
-        albumController = new AlbumController(albumService, serviceMetrics);
+        albumController = new AlbumController(albumService, serviceMetrics, new BlockingScheduler(new BlockingSchedulerConfig(), new RetryConfig(), serviceMetrics));
     }
 
     @Test
@@ -49,11 +54,12 @@ class AlbumControllerTest {
                 .songs(Set.of())
                 .artists(Set.of())
                 .build());
-        when(albumService.findAllAlbums(anyInt(), anyInt(), anyString())).thenReturn(albums);
+        when(albumService.findAlbums(any(), anyInt(), anyString())).thenReturn(Mono.just(new CursorPage<>(albums, "next")));
 
-        StepVerifier.create(albumController.getAlbums(1, 1, "desc"))
+        StepVerifier.create(albumController.getAlbums(null, 1, "desc"))
                 .consumeNextWith(next->{
-                    assertEquals(1, next.size());
+                    assertEquals(1, next.getBody().size());
+                    assertEquals("next", next.getHeaders().getFirst(CursorPages.NEXT_CURSOR_HEADER));
                 }).verifyComplete();
 
         verify(serviceMetrics).recordRestLatency(eq("get_albums"), anyLong());
@@ -70,8 +76,8 @@ class AlbumControllerTest {
                 .artists(Set.of())
                 .build();
 
-        when(albumService.getAlbum(anyString()))
-                .thenReturn(album);
+        when(albumService.findAlbum(anyString()))
+                .thenReturn(Mono.just(album));
 
         StepVerifier.create(albumController.getAlbum(UUID.randomUUID().toString()))
                 .consumeNextWith(next->{
@@ -3,6 +3,9 @@ package com.bragi.bragi.rest;
 import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Artist;
 import com.bragi.bragi.service.ArtistService;
+import com.bragi.bragi.service.config.BlockingSchedulerConfig;
+import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.CursorPage;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +14,8 @@ import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.sql.Timestamp;
@@ -36,7 +41,7 @@ class ArtistControllerTest {
 
     @BeforeEach
     void setUp() {
-        artistController = new ArtistController(artistService, serviceMetrics);
+        artistController = new ArtistController(artistService, serviceMetrics, new BlockingScheduler(new BlockingSchedulerConfig(), new RetryConfig(), serviceMetrics));
     }
 
 
@@ -50,11 +55,12 @@ class ArtistControllerTest {
                 .songs(Set.of())
                 .albums(Set.of())
                 .build());
-        when(artistService.findAllArtists(anyInt(), anyInt(), anyString())).thenReturn(artists);
+        when(artistService.findArtists(any(), anyInt(), anyString())).thenReturn(Mono.just(new CursorPage<>(artists, "next")));
 
-        StepVerifier.create(artistController.getArtists(1, 1, "desc"))
+        StepVerifier.create(artistController.getArtists(null, 1, "desc"))
                 .consumeNextWith(next->{
-                    assertEquals(1, next.size());
+                    assertEquals(1, next.getBody().size());
+                    assertEquals("next", next.getHeaders().getFirst(CursorPages.NEXT_CURSOR_HEADER));
                 }).verifyComplete();
 
         verify(serviceMetrics).recordRestLatency(eq("get_artists"), anyLong());
@@ -70,8 +76,8 @@ class ArtistControllerTest {
                 .songs(Set.of())
                 .albums(Set.of())
                 .build();
-        when(artistService.getArtist(anyString()))
-                .thenReturn(artist);
+        when(artistService.findArtist(anyString()))
+                .thenReturn(Mono.just(artist));
 
         StepVerifier.create(artistController.getArtist(UUID.randomUUID().toString()))
                 .consumeNextWith(next->{
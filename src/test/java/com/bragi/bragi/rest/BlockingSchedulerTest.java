@@ -0,0 +1,125 @@
+package com.bragi.bragi.rest;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.service.config.BlockingSchedulerConfig;
+import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.utils.RetryUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BlockingSchedulerTest {
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    private BlockingScheduler blockingScheduler;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        var config = new BlockingSchedulerConfig();
+        config.setMaxThreads(1);
+        config.setQueueCapacity(1);
+        var retryConfig = new RetryConfig();
+        retryConfig.setMinWaitBetweenMillis(1);
+        retryConfig.setMaxWaitBetweenMillis(1);
+        blockingScheduler = new BlockingScheduler(config, retryConfig, serviceMetrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        blockingScheduler.teardown();
+    }
+
+    @Test
+    void when_created_thenRegistersGauges() {
+        verify(serviceMetrics).registerBlockingScheduler(eq(BlockingScheduler.NAME), any(), any());
+    }
+
+    @Test
+    void when_callableSubscribed_thenRunsOffCallerThread() {
+        StepVerifier.create(Mono.fromCallable(()-> Thread.currentThread().getName())
+                        .subscribeOn(blockingScheduler.getScheduler()))
+                .consumeNextWith(name-> assertTrue(name.startsWith(BlockingScheduler.NAME)))
+                .verifyComplete();
+    }
+
+    @Test
+    void when_poolBusy_thenGaugesReportActiveAndQueued() throws InterruptedException {
+        var started = new CountDownLatch(1);
+        blocking(started).subscribe();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        blocking(new CountDownLatch(1)).subscribe();
+
+        assertEquals(1, blockingScheduler.getActiveThreads());
+        assertEquals(1, blockingScheduler.getQueueDepth());
+    }
+
+    @Test
+    void when_poolAndQueueFull_thenRejects() throws InterruptedException {
+        var started = new CountDownLatch(1);
+        blocking(started).subscribe();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        blocking(new CountDownLatch(1)).subscribe();
+
+        StepVerifier.create(blocking(new CountDownLatch(1)))
+                .expectError(RejectedExecutionException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void when_retry_nestedRetryFails_thenEachAttemptTriesOnce() {
+        var calls = new AtomicInteger();
+
+        StepVerifier.create(blockingScheduler.retry(()-> RetryUtils.getResultFromRetry(()-> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException();
+                }, "before {}", "during {}", 3, 1, 1), "read"))
+                .expectError(RuntimeException.class)
+                .verify(Duration.ofSeconds(5));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void when_retry_notRetryable_thenPropagatesOnce() {
+        var calls = new AtomicInteger();
+
+        StepVerifier.create(blockingScheduler.retry(()-> {
+                    calls.incrementAndGet();
+                    throw new NoSuchElementException();
+                }, "read"))
+                .expectError(NoSuchElementException.class)
+                .verify(Duration.ofSeconds(5));
+        assertEquals(1, calls.get());
+    }
+
+    private Mono<Boolean> blocking(CountDownLatch started){
+        return Mono.fromCallable(()-> {
+                    started.countDown();
+                    return release.await(5, TimeUnit.SECONDS);
+                })
+                .subscribeOn(blockingScheduler.getScheduler());
+    }
+}
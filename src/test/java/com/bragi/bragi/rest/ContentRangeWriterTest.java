@@ -0,0 +1,262 @@
+package com.bragi.bragi.rest;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.service.SongContentService;
+import com.bragi.bragi.service.config.ContentCacheConfig;
+import com.bragi.bragi.service.config.StorageConfig;
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.storage.ContentCache;
+import com.bragi.bragi.storage.ContentSource;
+import com.bragi.bragi.storage.FileSystemSongContentStore;
+import com.bragi.bragi.storage.MappedContentSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentRangeWriterTest {
+
+    private static final String HASH = "a".repeat(64);
+
+    private ContentRangeWriter contentRangeWriter;
+
+    private ContentSource content;
+
+    @BeforeEach
+    void setUp() {
+        var streamingConfig = new StreamingConfig();
+        streamingConfig.setChunkSizeBytes(1024);
+        contentRangeWriter = new ContentRangeWriter(streamingConfig);
+        content = ContentSource.withCodec(new MappedContentSource(
+                ByteBuffer.wrap("0123456789".getBytes(StandardCharsets.US_ASCII)),
+                HASH,
+                Instant.parse("2022-01-01T00:00:00Z")), "audio/mpeg");
+    }
+
+    //records what would have been handed to sendfile
+    private static class ZeroCopyResponse extends ServerHttpResponseDecorator implements ZeroCopyHttpOutputMessage {
+
+        private Path file;
+        private long position;
+        private long count;
+
+        ZeroCopyResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Path file, long position, long count) {
+            this.file = file;
+            this.position = position;
+            this.count = count;
+            return setComplete();
+        }
+    }
+
+    private ZeroCopyResponse writeZeroCopy(MockServerHttpRequest.BaseBuilder<?> request){
+        var exchange = MockServerWebExchange.from(request);
+        var response = new ZeroCopyResponse(exchange.getResponse());
+        StepVerifier.create(contentRangeWriter.write(exchange.mutate().response(response).build(), content)).verifyComplete();
+        return response;
+    }
+
+    private static ContentSource fileContent(){
+        return new MappedContentSource(ByteBuffer.wrap("0123456789".getBytes(StandardCharsets.US_ASCII)),
+                HASH, Instant.parse("2022-01-01T00:00:00Z"), Path.of("content", HASH));
+    }
+
+    private MockServerWebExchange write(MockServerHttpRequest.BaseBuilder<?> request){
+        var exchange = MockServerWebExchange.from(request);
+        StepVerifier.create(contentRangeWriter.write(exchange, content)).verifyComplete();
+        return exchange;
+    }
+
+    @Test
+    void when_write_noRange_thenReturnsFullContent() {
+        var exchange = write(MockServerHttpRequest.get("/"));
+
+        var response = exchange.getResponse();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("\"" + HASH + "\"", response.getHeaders().getETag());
+        assertEquals(Instant.parse("2022-01-01T00:00:00Z").toEpochMilli(), response.getHeaders().getLastModified());
+        assertEquals(MediaType.parseMediaType("audio/mpeg"), response.getHeaders().getContentType());
+        assertEquals(10, response.getHeaders().getContentLength());
+        assertEquals("0123456789", response.getBodyAsString().block());
+    }
+
+    @Test
+    void when_write_singleRange_thenReturnsPartialContent() {
+        var exchange = write(MockServerHttpRequest.get("/").header(HttpHeaders.RANGE, "bytes=2-5"));
+
+        var response = exchange.getResponse();
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 2-5/10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getHeaders().getContentLength());
+        assertEquals("2345", response.getBodyAsString().block());
+    }
+
+    @Test
+    void when_write_suffixRange_thenReturnsTail() {
+        var exchange = write(MockServerHttpRequest.get("/").header(HttpHeaders.RANGE, "bytes=-3"));
+
+        assertEquals("bytes 7-9/10", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("789", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void when_write_multipleRanges_thenReturnsMultipart() {
+        var exchange = write(MockServerHttpRequest.get("/").header(HttpHeaders.RANGE, "bytes=0-1,8-9"));
+
+        var response = exchange.getResponse();
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        var contentType = response.getHeaders().getContentType();
+        assertEquals("multipart", contentType.getType());
+        assertEquals("byteranges", contentType.getSubtype());
+
+        var boundary = contentType.getParameter("boundary");
+        var body = response.getBodyAsString().block();
+        assertTrue(body.contains("--" + boundary + "\r\nContent-Type: audio/mpeg\r\nContent-Range: bytes 0-1/10\r\n\r\n01"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89"));
+        assertTrue(body.endsWith("\r\n--" + boundary + "--\r\n"));
+    }
+
+    @Test
+    void when_write_unsatisfiableRange_thenReturns416() {
+        var exchange = write(MockServerHttpRequest.get("/").header(HttpHeaders.RANGE, "bytes=20-30"));
+
+        var response = exchange.getResponse();
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void when_write_ifRangeMismatch_thenReturnsFullContent() {
+        var exchange = write(MockServerHttpRequest.get("/")
+                .header(HttpHeaders.RANGE, "bytes=2-5")
+                .header(HttpHeaders.IF_RANGE, "\"other\""));
+
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals("0123456789", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void when_write_ifNoneMatch_thenReturnsNotModified() {
+        var exchange = write(MockServerHttpRequest.get("/").ifNoneMatch("\"" + HASH + "\""));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void when_write_legacyContent_thenOmitsEtag() {
+        content = ContentSource.of(new byte[]{1, 2, 3});
+
+        var exchange = write(MockServerHttpRequest.get("/"));
+
+        assertNull(exchange.getResponse().getHeaders().getETag());
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, exchange.getResponse().getHeaders().getContentType());
+    }
+
+    @Test
+    void when_write_fileContent_thenSendsFile() {
+        content = fileContent();
+
+        var response = writeZeroCopy(MockServerHttpRequest.get("/"));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(10, response.getHeaders().getContentLength());
+        assertEquals(Path.of("content", HASH), response.file);
+        assertEquals(0, response.position);
+        assertEquals(10, response.count);
+    }
+
+    @Test
+    void when_write_fileContentSingleRange_thenSendsFileRegion() {
+        content = fileContent();
+
+        var response = writeZeroCopy(MockServerHttpRequest.get("/").header(HttpHeaders.RANGE, "bytes=2-5"));
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 2-5/10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(2, response.position);
+        assertEquals(4, response.count);
+    }
+
+    @Test
+    void when_write_cachedStoreContent_thenSendsFile(@TempDir Path root) throws IOException {
+        var storageConfig = new StorageConfig();
+        storageConfig.setRootDirectory(root.toString());
+        var songContentStore = new FileSystemSongContentStore(storageConfig);
+        var songContentService = new SongContentService(songContentStore,
+                new ContentCache(new ContentCacheConfig(), Mockito.mock(ServiceMetrics.class)));
+        var hash = songContentStore.put(new ByteArrayInputStream("0123456789".getBytes(StandardCharsets.US_ASCII))).getHash();
+
+        //served from the file on the first miss, copied off-heap on the second and from the cache after
+        for(var i = 0; i < 3; i++){
+            content = songContentService.open(hash, "audio/mpeg");
+            var response = writeZeroCopy(MockServerHttpRequest.get("/").header(HttpHeaders.RANGE, "bytes=2-5"));
+
+            assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+            assertEquals(root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash), response.file);
+            assertEquals(2, response.position);
+            assertEquals(4, response.count);
+        }
+    }
+
+    @Test
+    void when_write_fileContentMultipleRanges_thenStreams() {
+        content = fileContent();
+
+        var response = writeZeroCopy(MockServerHttpRequest.get("/").header(HttpHeaders.RANGE, "bytes=0-1,8-9"));
+
+        assertNull(response.file);
+        assertEquals("multipart", response.getHeaders().getContentType().getType());
+    }
+
+    @Test
+    void when_write_contentWithoutFile_thenStreams() {
+        var response = writeZeroCopy(MockServerHttpRequest.get("/"));
+
+        assertNull(response.file);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    @Test
+    void when_write_fileContentWithoutZeroCopy_thenStreams() {
+        content = fileContent();
+
+        var exchange = write(MockServerHttpRequest.get("/"));
+
+        assertEquals("0123456789", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void when_write_fileContentSlice_thenSendsFileRegionAtSliceOffset() {
+        content = ContentSource.slice(fileContent(), 4, 6);
+
+        var response = writeZeroCopy(MockServerHttpRequest.get("/").header(HttpHeaders.RANGE, "bytes=1-2"));
+
+        assertEquals("bytes 1-2/6", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(5, response.position);
+        assertEquals(2, response.count);
+    }
+}
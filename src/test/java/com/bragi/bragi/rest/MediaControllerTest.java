@@ -0,0 +1,156 @@
+package com.bragi.bragi.rest;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.service.PlaylistService;
+import com.bragi.bragi.service.SongContentService;
+import com.bragi.bragi.service.config.BlockingSchedulerConfig;
+import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.config.ContentCacheConfig;
+import com.bragi.bragi.service.config.SegmentConfig;
+import com.bragi.bragi.service.config.StorageConfig;
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.service.utils.RenditionPreference;
+import com.bragi.bragi.storage.ContentCache;
+import com.bragi.bragi.storage.ContentSource;
+import com.bragi.bragi.storage.FileSystemSongContentStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MediaControllerTest {
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    @Mock
+    private PlaylistService playlistService;
+
+    private MediaController mediaController;
+
+    @BeforeEach
+    void setUp() {
+        mediaController = new MediaController(playlistService, new SegmentConfig(), serviceMetrics,
+                new BlockingScheduler(new BlockingSchedulerConfig(), new RetryConfig(), serviceMetrics),
+                new ContentRangeWriter(new StreamingConfig()));
+    }
+
+    @Test
+    void when_getSongPlaylist_thenReturnsPlaylist() {
+        var songId = UUID.randomUUID();
+        when(playlistService.mediaPlaylist(songId, RenditionPreference.of("low", 0))).thenReturn("#EXTM3U\n");
+
+        StepVerifier.create(mediaController.getSongPlaylist(songId.toString(), "low", 0))
+                .consumeNextWith(response-> {
+                    assertEquals("#EXTM3U\n", response.getBody());
+                    assertEquals(MediaController.PLAYLIST_CONTENT_TYPE, response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+                    assertEquals("max-age=60", response.getHeaders().getCacheControl());
+                })
+                .verifyComplete();
+
+        verify(serviceMetrics).recordRestLatency(eq("get_song_playlist"), anyLong());
+    }
+
+    @Test
+    void when_getAlbumPlaylist_invalidQuality_thenThrows() {
+        StepVerifier.create(mediaController.getAlbumPlaylist(UUID.randomUUID().toString(), "lossless", 0))
+                .verifyError(com.bragi.bragi.error.ClientException.class);
+    }
+
+    @Test
+    void when_getSegment_thenReturnsImmutableSegment() {
+        when(playlistService.getSegment("hash", 1024, 2)).thenReturn(ContentSource.of(new byte[]{1, 2, 3}));
+
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/media/segments/hash/1024/2"));
+        StepVerifier.create(mediaController.getSegment("hash", 1024, 2, exchange))
+                .verifyComplete();
+
+        var response = exchange.getResponse();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("max-age=31536000, public, immutable", response.getHeaders().getCacheControl());
+        assertEquals(3, response.getHeaders().getContentLength());
+        verify(serviceMetrics).recordRestLatency(eq("get_segment"), anyLong());
+    }
+
+    @Test
+    void when_getSegment_storedContent_thenSendsFileRegionAtSegmentOffset(@TempDir Path root) throws IOException {
+        var storageConfig = new StorageConfig();
+        storageConfig.setRootDirectory(root.toString());
+        var songContentStore = new FileSystemSongContentStore(storageConfig);
+        var playlistService = new PlaylistService(Mockito.mock(DataAccessService.class),
+                new SongContentService(songContentStore, new ContentCache(new ContentCacheConfig(), serviceMetrics)),
+                new SegmentConfig());
+        mediaController = new MediaController(playlistService, new SegmentConfig(), serviceMetrics,
+                new BlockingScheduler(new BlockingSchedulerConfig(), new RetryConfig(), serviceMetrics),
+                new ContentRangeWriter(new StreamingConfig()));
+        var hash = songContentStore.put(new ByteArrayInputStream(new byte[2500])).getHash();
+
+        //the same region whether the track is read from the store, being copied off-heap or cached
+        for(var i = 0; i < 3; i++){
+            var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/media/segments/" + hash + "/1024/1"));
+            var response = new ZeroCopyResponse(exchange.getResponse());
+            StepVerifier.create(mediaController.getSegment(hash, 1024, 1, exchange.mutate().response(response).build()))
+                    .verifyComplete();
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals(root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash), response.file);
+            assertEquals(1024, response.position);
+            assertEquals(1024, response.count);
+        }
+    }
+
+    @Test
+    void when_getSegment_missing_thenThrows() {
+        when(playlistService.getSegment(any(), anyLong(), anyLong())).thenThrow(new NoSuchElementException());
+
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/media/segments/hash/1024/9"));
+        StepVerifier.create(mediaController.getSegment("hash", 1024, 9, exchange))
+                .verifyError(NoSuchElementException.class);
+    }
+
+    private static class ZeroCopyResponse extends ServerHttpResponseDecorator implements ZeroCopyHttpOutputMessage {
+
+        private Path file;
+        private long position;
+        private long count;
+
+        ZeroCopyResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Path file, long position, long count) {
+            this.file = file;
+            this.position = position;
+            this.count = count;
+            return setComplete();
+        }
+    }
+}
@@ -1,24 +1,42 @@
 package com.bragi.bragi.rest;
 
+import com.bragi.bragi.error.ClientException;
 import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Album;
 import com.bragi.bragi.model.Artist;
 import com.bragi.bragi.model.Song;
 import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.service.SongContentService;
 import com.bragi.bragi.service.SongService;
+import com.bragi.bragi.service.config.BlockingSchedulerConfig;
+import com.bragi.bragi.service.config.RetryConfig;
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.service.utils.CursorPage;
+import com.bragi.bragi.service.utils.RenditionPreference;
+import com.bragi.bragi.storage.ContentSource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.nio.ByteBuffer;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -38,7 +56,7 @@ class SongControllerTest {
 
     @BeforeEach
     public void setUp(){
-        songController = new SongController(songService, serviceMetrics);
+        songController = new SongController(songService, serviceMetrics, new BlockingScheduler(new BlockingSchedulerConfig(), new RetryConfig(), serviceMetrics), new ContentRangeWriter(new StreamingConfig()));
     }
 
 
@@ -55,17 +73,37 @@ class SongControllerTest {
                 .externalId(UUID.randomUUID())
                 .build();
 
-        when(songService.findAllSongs(anyInt(), anyInt(), anyString())).thenReturn(List.of(song));
+        when(songService.findSongs(any(), anyInt(), anyString())).thenReturn(Mono.just(new CursorPage<>(List.of(song), "next")));
 
-        StepVerifier.create(songController.getSongs(1, 1, "desc"))
-                .consumeNextWith((next)->{
-                    assertEquals(1, next.size());
+        StepVerifier.create(songController.getSongs(null, 1, "desc"))
+                .consumeNextWith(next->{
+                    assertEquals(1, next.getBody().size());
+                    assertEquals("next", next.getHeaders().getFirst(CursorPages.NEXT_CURSOR_HEADER));
                 }).verifyComplete();
 
         verify(serviceMetrics).recordRestLatency(eq("get_songs"), anyLong());
 
     }
 
+    @Test
+    void when_exportSongs_thenStreamsDtos() {
+        var song = Song.builder()
+                .album(Album.builder().externalId(UUID.randomUUID()).build())
+                .artists(Set.of())
+                .title("title")
+                .dateReleased(Timestamp.from(Instant.now()))
+                .externalId(UUID.randomUUID())
+                .build();
+
+        when(songService.exportSongs("asc")).thenReturn(Flux.just(song, song));
+
+        StepVerifier.create(songController.exportSongs("asc"))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        verify(serviceMetrics).recordRestLatency(eq("export_songs"), anyLong());
+    }
+
     @Test
     void when_getSong_success_thenReturns() {
         var song = Song.builder()
@@ -78,7 +116,7 @@ class SongControllerTest {
                 .externalId(UUID.randomUUID())
                 .build();
 
-        when(songService.getSong(any(UUID.class))).thenReturn(song);
+        when(songService.findSong(any(UUID.class))).thenReturn(Mono.just(song));
 
         StepVerifier.create(songController.getSong(UUID.randomUUID().toString()))
                 .consumeNextWith((next)->{
@@ -88,6 +126,15 @@ class SongControllerTest {
         verify(serviceMetrics).recordRestLatency(eq("get_song"), anyLong());
     }
 
+    private static FilePart filePart(byte[]... chunks){
+        var file = mock(FilePart.class);
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("audio/flac"));
+        when(file.headers()).thenReturn(headers);
+        when(file.content()).thenReturn(Flux.fromArray(chunks).map(DefaultDataBufferFactory.sharedInstance::wrap));
+        return file;
+    }
+
     @Test
     void when_createSong_success_thenReturns() {
         var song = Song.builder()
@@ -99,21 +146,70 @@ class SongControllerTest {
                 .id(1L)
                 .externalId(UUID.randomUUID())
                 .build();
+        var upload = mock(SongContentService.Upload.class);
+        var songContent = SongContent.builder().hash("hash").size(3L).build();
 
-        when(songService.store(any(), any())).thenReturn(song);
+        when(songService.startUpload("audio/flac")).thenReturn(upload);
+        when(upload.complete(null)).thenReturn(songContent);
+        when(songService.store(any(com.bragi.bragi.rest.dto.Song.class), eq(songContent))).thenReturn(song);
 
         var songRequest = com.bragi.bragi.rest.dto.Song.convertToDto(song);
-        var file = mock(MultipartFile.class);
 
-        StepVerifier.create(songController.createSong(songRequest, file))
+        StepVerifier.create(songController.createSong(songRequest, filePart(new byte[]{1, 2}, new byte[]{3}), null))
                 .consumeNextWith(next->{
                    assertEquals(song.getTitle(), next.getTitle());
                 }).verifyComplete();
 
+        verify(upload, times(2)).write(any(ByteBuffer.class));
+        verify(upload).close();
         verify(serviceMetrics).recordRestLatency(eq("create_song"), anyLong());
 
     }
 
+    @Test
+    void when_createSong_thenRunsOnBlockingScheduler() {
+        var song = Song.builder()
+                .album(Album.builder().externalId(UUID.randomUUID()).build())
+                .title("title")
+                .dateReleased(Timestamp.from(Instant.now()))
+                .externalId(UUID.randomUUID())
+                .build();
+        var upload = mock(SongContentService.Upload.class);
+        var writeThread = new AtomicReference<String>();
+        var thread = new AtomicReference<String>();
+
+        when(songService.startUpload(any())).thenReturn(upload);
+        doAnswer(invocation-> {
+            writeThread.set(Thread.currentThread().getName());
+            return null;
+        }).when(upload).write(any(ByteBuffer.class));
+        when(songService.store(any(com.bragi.bragi.rest.dto.Song.class), any())).thenAnswer(invocation-> {
+            thread.set(Thread.currentThread().getName());
+            return song;
+        });
+
+        StepVerifier.create(songController.createSong(com.bragi.bragi.rest.dto.Song.convertToDto(song), filePart(new byte[]{1}), null))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertTrue(writeThread.get().startsWith(BlockingScheduler.NAME));
+        assertTrue(thread.get().startsWith(BlockingScheduler.NAME));
+    }
+
+    @Test
+    void when_createSong_uploadFails_thenDiscardsUpload() {
+        var upload = mock(SongContentService.Upload.class);
+        when(songService.startUpload(any())).thenReturn(upload);
+        when(upload.complete("bad")).thenThrow(new ClientException("Content hash does not match"));
+
+        StepVerifier.create(songController.createSong(com.bragi.bragi.rest.dto.Song.builder().build(), filePart(new byte[]{1}), "bad"))
+                .expectError(ClientException.class)
+                .verify();
+
+        verify(upload).close();
+        verify(songService, never()).store(any(com.bragi.bragi.rest.dto.Song.class), any());
+    }
+
     @Test
     void when_downloadFile_success_thenReturns() {
         var song = Song.builder()
@@ -128,12 +224,15 @@ class SongControllerTest {
                 .externalId(UUID.randomUUID())
                 .build();
 
-        when(songService.getSong(any(UUID.class))).thenReturn(song);
+        when(songService.getSongContent(any(UUID.class), any(RenditionPreference.class)))
+                .thenReturn(ContentSource.of(song.getSongContent().getContent()));
 
-        StepVerifier.create(songController.downloadFile(UUID.randomUUID().toString()))
-                .consumeNextWith((next)->{
-                    assertEquals(3, next.length);
-                }).verifyComplete();
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/songs/id/download"));
+        StepVerifier.create(songController.downloadFile(UUID.randomUUID().toString(), "original", 0, exchange))
+                .verifyComplete();
+
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals(3, exchange.getResponse().getHeaders().getContentLength());
 
         verify(serviceMetrics).recordRestLatency(eq("download_song"), anyLong());
     }
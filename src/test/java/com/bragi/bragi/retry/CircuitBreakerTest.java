@@ -0,0 +1,98 @@
+package com.bragi.bragi.retry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger rejections = new AtomicInteger();
+
+    private CircuitBreaker circuitBreaker(int failureThreshold, int halfOpenMaxCalls){
+        return new CircuitBreaker(failureThreshold, 1000, halfOpenMaxCalls, clock::get, rejections::incrementAndGet);
+    }
+
+    @Test
+    void when_failuresReachThreshold_thenOpensAndRejects() {
+        var circuitBreaker = circuitBreaker(2, 1);
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        assertEquals(1, rejections.get());
+    }
+
+    @Test
+    void when_successBetweenFailures_thenStaysClosed() {
+        var circuitBreaker = circuitBreaker(2, 1);
+
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void when_openDurationElapses_thenHalfOpenLimitsProbes() {
+        var circuitBreaker = circuitBreaker(1, 1);
+        circuitBreaker.onFailure();
+
+        clock.set(1000);
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void when_halfOpenProbeSucceeds_thenCloses() {
+        var circuitBreaker = circuitBreaker(1, 1);
+        circuitBreaker.onFailure();
+        clock.set(1000);
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void when_halfOpenProbeFails_thenReopens() {
+        var circuitBreaker = circuitBreaker(1, 1);
+        circuitBreaker.onFailure();
+        clock.set(1000);
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        clock.set(1999);
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void when_retryAgainstOpenCircuit_thenThrowsCircuitOpen() {
+        var circuitBreaker = circuitBreaker(1, 1);
+        var calls = new AtomicInteger();
+        var builder = Retry.fromRunnable(()-> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException();
+                })
+                .setRetryAttempts(3)
+                .setBackoff((attempt, previous)-> 1)
+                .setCircuitBreaker(circuitBreaker);
+
+        assertThrows(CircuitOpenException.class, ()-> builder.build().subscribe());
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,51 @@
+package com.bragi.bragi.retry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryBudgetTest {
+
+    @Test
+    void when_withdrawBeyondTokens_thenExhausted() {
+        var exhausted = new AtomicInteger();
+        var retryBudget = new RetryBudget(2, 0.5, exhausted::incrementAndGet);
+
+        assertTrue(retryBudget.tryWithdraw());
+        assertTrue(retryBudget.tryWithdraw());
+        assertFalse(retryBudget.tryWithdraw());
+        assertEquals(1, exhausted.get());
+
+        retryBudget.deposit();
+        retryBudget.deposit();
+        assertTrue(retryBudget.tryWithdraw());
+    }
+
+    @Test
+    void when_deposit_thenCappedAtMaxTokens() {
+        var retryBudget = new RetryBudget(2, 1);
+
+        retryBudget.deposit();
+
+        assertEquals(2, retryBudget.getTokens());
+    }
+
+    @Test
+    void when_retryWithEmptyBudget_thenFailsWithoutRetrying() {
+        var retryBudget = new RetryBudget(1, 0);
+        retryBudget.tryWithdraw();
+        var calls = new AtomicInteger();
+        var builder = Retry.fromRunnable(()-> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException();
+                })
+                .setRetryAttempts(3)
+                .setBackoff((attempt, previous)-> 1)
+                .setRetryBudget(retryBudget);
+
+        assertThrows(RuntimeException.class, ()-> builder.build().subscribe());
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,207 @@
+package com.bragi.bragi.retry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void when_subscribe_failsThenSucceeds_thenReturnsResult() {
+        var calls = new AtomicInteger();
+        var retry = Retry.fromCallable(()-> {
+                    if(calls.incrementAndGet() < 3)
+                        throw new IllegalStateException();
+                    return "done";
+                })
+                .setRetryAttempts(3)
+                .setBackoff((attempt, previous)-> 1)
+                .build()
+                .subscribe();
+
+        assertEquals("done", retry.getResult());
+        assertEquals(3, retry.getAttemptNumber());
+    }
+
+    @Test
+    void when_subscribe_exhausted_thenThrowsMappedError() {
+        var calls = new AtomicInteger();
+        var builder = Retry.fromRunnable(()-> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException();
+                })
+                .setRetryAttempts(2)
+                .setBackoff((attempt, previous)-> 1)
+                .setOnCompleteFunction(IllegalArgumentException::new);
+
+        assertThrows(IllegalArgumentException.class, ()-> builder.build().subscribe());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void when_subscribe_predicateRejects_thenDoesNotRetry() {
+        var calls = new AtomicInteger();
+        var builder = Retry.fromRunnable(()-> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException();
+                })
+                .setRetryAttempts(3)
+                .setPredicate(throwable-> false);
+
+        assertThrows(RuntimeException.class, ()-> builder.build().subscribe());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void when_subscribeAsync_failsThenSucceeds_thenCompletesWithoutBlockingCaller() throws Exception {
+        var calls = new AtomicInteger();
+        var caller = Thread.currentThread();
+        var attemptThread = new AtomicReference<Thread>();
+        CompletableFuture<String> future = Retry.fromCallable(()-> {
+                    attemptThread.set(Thread.currentThread());
+                    if(calls.incrementAndGet() < 3)
+                        throw new IllegalStateException();
+                    return "done";
+                })
+                .setRetryAttempts(3)
+                .setBackoff(Backoff.exponentialFullJitter(5, 20))
+                .setExecutor(executor)
+                .build()
+                .subscribeAsync();
+
+        assertEquals("done", future.get(5, TimeUnit.SECONDS));
+        assertEquals(3, calls.get());
+        assertNotSame(caller, attemptThread.get());
+    }
+
+    @Test
+    void when_subscribeAsync_exhausted_thenCompletesExceptionally() {
+        CompletableFuture<Object> future = Retry.fromRunnable(()-> {
+                    throw new IllegalStateException();
+                })
+                .setRetryAttempts(2)
+                .setBackoff((attempt, previous)-> 1)
+                .setOnCompleteFunction(IllegalArgumentException::new)
+                .setExecutor(Runnable::run)
+                .build()
+                .subscribeAsync();
+
+        var error = assertThrows(ExecutionException.class, ()-> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+    }
+
+    @Test
+    void when_subscribeAsync_cancelled_thenStopsRetrying() throws InterruptedException {
+        var calls = new AtomicInteger();
+        CompletableFuture<Object> future = Retry.fromRunnable(()-> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException();
+                })
+                .setRetryAttempts(5)
+                .setBackoff((attempt, previous)-> 100)
+                .setExecutor(executor)
+                .build()
+                .subscribeAsync();
+
+        future.cancel(false);
+        Thread.sleep(300);
+
+        assertTrue(calls.get() <= 1);
+    }
+
+    @Test
+    void when_toMono_failsThenSucceeds_thenEmitsResult() {
+        var calls = new AtomicInteger();
+        StepVerifier.create(Retry.fromCallable(()-> {
+                            if(calls.incrementAndGet() < 2)
+                                throw new IllegalStateException();
+                            return 42;
+                        })
+                        .setRetryAttempts(2)
+                        .setBackoff(Backoff.decorrelatedJitter(1, 10))
+                        .setExecutor(executor)
+                        .build()
+                        .<Integer>toMono())
+                .expectNext(42)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void when_subscribeAsync_withoutExecutor_thenThrows() {
+        var retry = Retry.fromRunnable(()-> {}).build();
+
+        assertThrows(IllegalStateException.class, retry::subscribeAsync);
+    }
+
+    @Test
+    void when_toMono_stageFailsThenSucceeds_thenRetriesStage() {
+        var calls = new AtomicInteger();
+        StepVerifier.create(Retry.fromCompletionStage(()-> calls.incrementAndGet() < 3 ?
+                                CompletableFuture.<String>failedFuture(new IllegalStateException()) :
+                                CompletableFuture.completedFuture("done"))
+                        .setRetryAttempts(3)
+                        .setBackoff((attempt, previous)-> 1)
+                        .setExecutor(Runnable::run)
+                        .build()
+                        .<String>toMono())
+                .expectNext("done")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void when_subscribe_stagePredicateRejects_thenThrowsMappedError() {
+        var retry = Retry.fromCompletionStage(()-> CompletableFuture.failedFuture(new IllegalStateException()))
+                .setPredicate(throwable-> !(throwable instanceof IllegalStateException))
+                .setOnCompleteFunction(IllegalArgumentException::new)
+                .build();
+
+        assertThrows(IllegalArgumentException.class, retry::subscribe);
+        assertEquals(1, retry.getAttemptNumber());
+    }
+
+    @Test
+    void when_exponentialFullJitter_thenBoundedByCap() {
+        var backoff = Backoff.exponentialFullJitter(10, 100);
+        for(var attempt = 1; attempt < 100; attempt++){
+            var delay = backoff.nextDelay(attempt, 0);
+            assertTrue(delay >= 0 && delay < 100);
+            assertTrue(delay < 10L << Math.min(attempt - 1, 20));
+        }
+    }
+
+    @Test
+    void when_decorrelatedJitter_thenBetweenBaseAndCap() {
+        var backoff = Backoff.decorrelatedJitter(10, 100);
+        long delay = 0;
+        for(var attempt = 1; attempt < 100; attempt++){
+            delay = backoff.nextDelay(attempt, delay);
+            assertTrue(delay >= 10 && delay <= 100);
+        }
+    }
+
+    @Test
+    void when_uniform_minEqualsMax_thenReturnsMin() {
+        assertEquals(50, Backoff.uniform(50, 50).nextDelay(1, 0));
+    }
+}
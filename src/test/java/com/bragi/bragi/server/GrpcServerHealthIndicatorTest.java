@@ -0,0 +1,50 @@
+package com.bragi.bragi.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GrpcServerHealthIndicatorTest {
+
+    @Mock
+    private MusicServer musicServer;
+
+    private GrpcServerHealthIndicator grpcServerHealthIndicator;
+
+    @BeforeEach
+    void setUp() {
+        grpcServerHealthIndicator = new GrpcServerHealthIndicator(musicServer);
+    }
+
+    @Test
+    void when_running_thenUp() {
+        when(musicServer.getState()).thenReturn(MusicServer.State.RUNNING);
+        when(musicServer.getInFlightCalls()).thenReturn(2);
+
+        var health = grpcServerHealthIndicator.health();
+
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(2, health.getDetails().get("inFlightCalls"));
+    }
+
+    @Test
+    void when_draining_thenOutOfService() {
+        when(musicServer.getState()).thenReturn(MusicServer.State.DRAINING);
+
+        assertEquals(Status.OUT_OF_SERVICE, grpcServerHealthIndicator.health().getStatus());
+    }
+
+    @Test
+    void when_stopped_thenDown() {
+        when(musicServer.getState()).thenReturn(MusicServer.State.STOPPED);
+
+        assertEquals(Status.DOWN, grpcServerHealthIndicator.health().getStatus());
+    }
+}
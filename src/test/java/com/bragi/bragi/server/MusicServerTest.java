@@ -0,0 +1,232 @@
+package com.bragi.bragi.server;
+
+import brgi.grpc.BrgiAlbumServiceGrpc;
+import brgi.grpc.BrgiArtistServiceGrpc;
+import brgi.grpc.BrgiSongServiceGrpc;
+import brgi.grpc.GetSongRequest;
+import brgi.grpc.GetSongResponse;
+import brgi.grpc.StreamSongRequest;
+import brgi.grpc.StreamSongResponse;
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.metrics.ServiceMetricsBuilder;
+import com.bragi.bragi.server.handlers.AlbumHandler;
+import com.bragi.bragi.server.handlers.ArtistHandler;
+import com.bragi.bragi.server.handlers.SongHandler;
+import com.bragi.bragi.service.config.GrpcServerConfig;
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class MusicServerTest {
+
+    @Mock
+    private ArtistHandler artistHandler;
+
+    @Mock
+    private AlbumHandler albumHandler;
+
+    @Mock
+    private SongHandler songHandler;
+
+    private GrpcServerConfig grpcServerConfig;
+
+    private MusicServer musicServer;
+
+    private ManagedChannel channel;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        grpcServerConfig = new GrpcServerConfig();
+        grpcServerConfig.setPort(0);
+        grpcServerConfig.setExecutorThreads(2);
+        var serviceMetrics = new ServiceMetrics(new ServiceMetricsBuilder(new CollectorRegistry()));
+        musicServer = new MusicServer(grpcServerConfig,
+                new GrpcArtistService(artistHandler, serviceMetrics),
+                new GrpcAlbumService(albumHandler, serviceMetrics),
+                new GrpcSongService(songHandler, serviceMetrics));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if(channel != null)
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        musicServer.stop();
+    }
+
+    @Test
+    void when_built_thenRegistersAllServices() {
+        var server = musicServer.buildServer();
+
+        var services = server.getServices()
+                .stream()
+                .map(ServerServiceDefinition::getServiceDescriptor)
+                .map(descriptor -> descriptor.getName())
+                .collect(Collectors.toSet());
+
+        assertEquals(3, services.size());
+        assertTrue(services.contains(BrgiArtistServiceGrpc.SERVICE_NAME));
+        assertTrue(services.contains(BrgiAlbumServiceGrpc.SERVICE_NAME));
+        assertTrue(services.contains(BrgiSongServiceGrpc.SERVICE_NAME));
+    }
+
+    @ParameterizedTest
+    @EnumSource(GrpcServerConfig.ExecutorType.class)
+    void when_called_thenRunsOnConfiguredExecutor(GrpcServerConfig.ExecutorType executorType) {
+        grpcServerConfig.setExecutorType(executorType);
+        var threadName = new AtomicReference<String>();
+        doAnswer(invocation -> {
+            StreamObserver<GetSongResponse> responseObserver = invocation.getArgument(1);
+            threadName.set(Thread.currentThread().getName());
+            responseObserver.onNext(GetSongResponse.getDefaultInstance());
+            responseObserver.onCompleted();
+            return null;
+        }).when(songHandler).getSong(any(), any());
+
+        musicServer.start();
+        BrgiSongServiceGrpc.newBlockingStub(channel())
+                .withDeadlineAfter(5, TimeUnit.SECONDS)
+                .getSong(GetSongRequest.getDefaultInstance());
+
+        assertTrue(musicServer.isRunning());
+        assertTrue(threadName.get().startsWith(MusicServer.EXECUTOR_NAME), threadName.get());
+    }
+
+    @Test
+    void when_virtualThreadsUnsupported_thenFallsBackToFixedPool() {
+        grpcServerConfig.setExecutorType(GrpcServerConfig.ExecutorType.VIRTUAL);
+
+        var executor = MusicServer.getServerExecutor(grpcServerConfig, Optional.empty());
+
+        try{
+            var pool = assertInstanceOf(ThreadPoolExecutor.class, executor);
+            assertEquals(grpcServerConfig.getExecutorThreads(), pool.getMaximumPoolSize());
+        }finally {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    @Test
+    void when_stopped_thenInFlightCallFinishesAndNewCallsRefused() throws Exception {
+        blockStreamSongUntilReleased();
+        musicServer.start();
+        var inFlight = streamSong();
+        awaitTrue(()-> musicServer.getInFlightCalls() == 1);
+
+        var stopped = new CountDownLatch(1);
+        musicServer.stop(stopped::countDown);
+        awaitTrue(()-> musicServer.getState() == MusicServer.State.DRAINING);
+
+        var port = musicServer.getPort();
+        var newChannel = ManagedChannelBuilder.forAddress("localhost", port).usePlaintext().build();
+        try{
+            var refused = assertThrows(StatusRuntimeException.class, ()-> BrgiSongServiceGrpc.newBlockingStub(newChannel)
+                    .withDeadlineAfter(5, TimeUnit.SECONDS)
+                    .getSong(GetSongRequest.getDefaultInstance()));
+            assertEquals(Status.Code.UNAVAILABLE, refused.getStatus().getCode());
+        }finally {
+            newChannel.shutdownNow();
+        }
+
+        release.countDown();
+        assertEquals(1, inFlight.get(5, TimeUnit.SECONDS).getContent().size());
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertEquals(MusicServer.State.STOPPED, musicServer.getState());
+        assertFalse(musicServer.isRunning());
+    }
+
+    @Test
+    void when_drainTimesOut_thenInFlightCallCancelled() throws Exception {
+        grpcServerConfig.setDrainTimeoutSeconds(0);
+        blockStreamSongUntilReleased();
+        musicServer.start();
+        var inFlight = streamSong();
+        awaitTrue(()-> musicServer.getInFlightCalls() == 1);
+
+        musicServer.stop();
+
+        assertThrows(ExecutionException.class, ()-> inFlight.get(5, TimeUnit.SECONDS));
+        assertEquals(MusicServer.State.STOPPED, musicServer.getState());
+    }
+
+    private void blockStreamSongUntilReleased(){
+        doAnswer(invocation -> {
+            StreamObserver<StreamSongResponse> responseObserver = invocation.getArgument(1);
+            release.await();
+            responseObserver.onNext(StreamSongResponse.newBuilder()
+                    .setContent(ByteString.copyFrom(new byte[]{1}))
+                    .build());
+            responseObserver.onCompleted();
+            return null;
+        }).when(songHandler).streamSong(any(), any());
+    }
+
+    private CompletableFuture<StreamSongResponse> streamSong(){
+        var result = new CompletableFuture<StreamSongResponse>();
+        BrgiSongServiceGrpc.newStub(channel())
+                .streamSong(StreamSongRequest.getDefaultInstance(), new StreamObserver<>() {
+                    @Override
+                    public void onNext(StreamSongResponse value) {
+                        result.complete(value);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+        return result;
+    }
+
+    private ManagedChannel channel(){
+        if(channel == null)
+            channel = ManagedChannelBuilder.forAddress("localhost", musicServer.getPort())
+                    .usePlaintext()
+                    .build();
+        return channel;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(!condition.getAsBoolean()){
+            if(System.nanoTime() > deadline)
+                fail("condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
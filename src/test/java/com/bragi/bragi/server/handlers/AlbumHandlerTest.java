@@ -6,17 +6,23 @@ import brgi.grpc.GetAlbumRequest;
 import brgi.grpc.GetArtistRequest;
 import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Song;
-import com.bragi.bragi.model.SongContent;
 import com.bragi.bragi.server.GrpcAlbumService;
+import com.bragi.bragi.server.streaming.TrackPrefetcher;
 import com.bragi.bragi.service.AlbumService;
+import com.bragi.bragi.service.SongService;
+import com.bragi.bragi.service.config.BulkConfig;
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.storage.ContentSource;
 import io.grpc.internal.testing.StreamRecorder;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -39,9 +45,13 @@ public class AlbumHandlerTest {
     @Mock
     private ServiceMetrics serviceMetrics;
 
+    @Mock
+    private SongService songService;
+
     @BeforeEach
     void setUp() {
-        albumHandler = new AlbumHandler(albumService, serviceMetrics);
+        albumHandler = new AlbumHandler(albumService, songService,
+                new TrackPrefetcher(new StreamingConfig(), Mockito.mock(ServiceMetrics.class)), new StreamingConfig(), new BulkConfig(), serviceMetrics);
     }
 
     @AfterEach
@@ -119,11 +129,13 @@ public class AlbumHandlerTest {
 
     @Test
     void when_streamAlbum_success_thenReturns() throws Exception {
+        var first = UUID.randomUUID();
+        var second = UUID.randomUUID();
         when(albumService.getSongs(any()))
-                .thenReturn(Set.of(Song.builder()
-                        .songContent(SongContent.builder()
-                                .content(new byte[]{1, 2, 3})
-                                .build()).build()));
+                .thenReturn(List.of(Song.builder().externalId(first).build(),
+                        Song.builder().externalId(second).build()));
+        when(songService.getSongContent(first)).thenReturn(ContentSource.of(new byte[]{1, 2, 3}));
+        when(songService.getSongContent(second)).thenReturn(ContentSource.of(new byte[]{4, 5}));
 
         StreamRecorder<brgi.grpc.StreamAlbumResponse> responseObserver = StreamRecorder.create();
 
@@ -131,10 +143,33 @@ public class AlbumHandlerTest {
                 .setAlbumId(UUID.randomUUID().toString())
                 .build(), responseObserver);
 
-        responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS);
+        assertTrue(responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS));
         var actual = responseObserver.getValues();
+        assertEquals(2, actual.size());
         assertEquals((byte)1, actual.get(0).getContent().toByteArray()[0]);
+        assertEquals(first.toString(), actual.get(0).getHeader().getSongId());
+        assertEquals(0, actual.get(0).getHeader().getTrackIndex());
+        assertEquals(3, actual.get(0).getHeader().getSize());
+        assertEquals((byte)4, actual.get(1).getContent().toByteArray()[0]);
+        assertEquals(second.toString(), actual.get(1).getHeader().getSongId());
+        assertEquals(1, actual.get(1).getHeader().getTrackIndex());
+    }
 
+    @Test
+    void when_streamAlbum_openFails_thenThrows() throws Exception {
+        when(albumService.getSongs(any()))
+                .thenReturn(List.of(Song.builder().externalId(UUID.randomUUID()).build()));
+        when(songService.getSongContent(any())).thenThrow(new RuntimeException());
+
+        StreamRecorder<brgi.grpc.StreamAlbumResponse> responseObserver = StreamRecorder.create();
+
+        albumHandler.streamAlbum(brgi.grpc.StreamAlbumRequest.newBuilder()
+                .setAlbumId(UUID.randomUUID().toString())
+                .build(), responseObserver);
+
+        responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS);
+        verify(serviceMetrics).incrementErrorCount("stream_album");
+        assertTrue(responseObserver.getError() instanceof RuntimeException);
     }
 
     @Test
@@ -7,13 +7,18 @@ import brgi.grpc.GetArtistRequest;
 import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.metrics.ServiceMetricsBuilder;
 import com.bragi.bragi.model.Song;
-import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.server.streaming.TrackPrefetcher;
 import com.bragi.bragi.service.ArtistService;
+import com.bragi.bragi.service.SongService;
+import com.bragi.bragi.service.config.BulkConfig;
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.storage.ContentSource;
 import io.grpc.internal.testing.StreamRecorder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.List;
@@ -38,12 +43,16 @@ public class ArtistHandlerTest {
     @Mock
     private ServiceMetrics serviceMetrics;
 
+    @Mock
+    private SongService songService;
+
     @Mock
     private ServiceMetricsBuilder serviceMetricsBuilder;
 
     @BeforeEach
     void setUp(){
-        artistHandler = new ArtistHandler(artistService, serviceMetrics);
+        artistHandler = new ArtistHandler(artistService, songService,
+                new TrackPrefetcher(new StreamingConfig(), Mockito.mock(ServiceMetrics.class)), new StreamingConfig(), new BulkConfig(), serviceMetrics);
     }
 
     @Test
@@ -111,10 +120,11 @@ public class ArtistHandlerTest {
     @Test
     void when_streamArtist_success_thenReturns() throws Exception {
         var content = new byte[]{1, 2, 3};
+        var songId = UUID.randomUUID();
 
         when(artistService.getSongs(any()))
-                .thenReturn(Set.of(Song.builder().songContent(SongContent.builder().content(content)
-                        .build()).build()));
+                .thenReturn(List.of(Song.builder().externalId(songId).build()));
+        when(songService.getSongContent(songId)).thenReturn(ContentSource.of(content));
 
         StreamRecorder<brgi.grpc.StreamArtistResponse> responseObserver = StreamRecorder.create();
 
@@ -122,14 +132,17 @@ public class ArtistHandlerTest {
                 .setArtistId(UUID.randomUUID().toString())
                 .build(), responseObserver);
 
-        responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS);
+        assertTrue(responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS));
 
-        var response = responseObserver.getValues().get(0).getContent().toByteArray();
+        var actual = responseObserver.getValues().get(0);
+        var response = actual.getContent().toByteArray();
         assertEquals(content[0], response[0]);
         assertEquals(content[1], response[1]);
         assertEquals(content[2], response[2]);
-
-
+        assertEquals(songId.toString(), actual.getHeader().getSongId());
+        assertEquals(content.length, actual.getHeader().getSize());
+        assertEquals(0, actual.getOffset());
+        assertEquals(1, responseObserver.getValues().size());
     }
 
     @Test
@@ -1,17 +1,24 @@
 package com.bragi.bragi.server.handlers;
 
 import brgi.grpc.AddSongResponse;
+import com.bragi.bragi.error.ClientException;
 import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Song;
 import com.bragi.bragi.model.SongContent;
 import com.bragi.bragi.server.GrpcSongService;
+import com.bragi.bragi.service.SongContentService;
 import com.bragi.bragi.service.SongService;
+import com.bragi.bragi.service.config.BulkConfig;
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.service.utils.RenditionPreference;
+import com.bragi.bragi.storage.ContentSource;
 import com.google.protobuf.ByteString;
 import io.grpc.internal.testing.StreamRecorder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.UUID;
@@ -32,11 +39,14 @@ public class SongHandlerTest {
     @Mock
     private ServiceMetrics serviceMetrics;
 
+    private StreamingConfig streamingConfig;
+
     private SongHandler songHandler;
 
     @BeforeEach
     void setUp() {
-        songHandler = new SongHandler(songService, serviceMetrics);
+        streamingConfig = new StreamingConfig();
+        songHandler = new SongHandler(songService, serviceMetrics, streamingConfig, new BulkConfig());
     }
 
     @Test
@@ -99,12 +109,8 @@ public class SongHandlerTest {
 
     @Test
     void when_streamSong_success_thenReturns() throws Exception {
-        when(songService.getSong(any(UUID.class)))
-                .thenReturn(Song.builder()
-                        .songContent(SongContent.builder()
-                                .content(new byte[]{1, 2, 3})
-                                .build())
-                        .build());
+        when(songService.getSongContent(any(UUID.class), any(RenditionPreference.class)))
+                .thenReturn(ContentSource.of(new byte[]{1, 2, 3}));
 
         StreamRecorder<brgi.grpc.StreamSongResponse> responseObserver = StreamRecorder.create();
         songHandler.streamSong(brgi.grpc.StreamSongRequest.newBuilder()
@@ -116,9 +122,81 @@ public class SongHandlerTest {
 
     }
 
+    @Test
+    void when_streamSong_largerThanChunk_thenReturnsChunks() throws Exception {
+        streamingConfig.setChunkSizeBytes(1024);
+        var content = new byte[2500];
+        for(int i = 0; i < content.length; i++)
+            content[i] = (byte) i;
+        when(songService.getSongContent(any(UUID.class), any(RenditionPreference.class)))
+                .thenReturn(ContentSource.of(content));
+
+        StreamRecorder<brgi.grpc.StreamSongResponse> responseObserver = StreamRecorder.create();
+        songHandler.streamSong(brgi.grpc.StreamSongRequest.newBuilder()
+                .setSongId(UUID.randomUUID().toString()).build(), responseObserver);
+        assertTrue(responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS));
+
+        var actual = responseObserver.getValues();
+        assertEquals(3, actual.size());
+        assertEquals(0, actual.get(0).getOffset());
+        assertEquals(1024, actual.get(1).getOffset());
+        assertEquals(2048, actual.get(2).getOffset());
+        assertEquals(452, actual.get(2).getContent().size());
+        assertEquals(2, actual.get(2).getSequenceNumber());
+        assertEquals(2500, actual.get(2).getTotalSize());
+
+        var reassembled = actual.stream()
+                .map(brgi.grpc.StreamSongResponse::getContent)
+                .reduce(ByteString.EMPTY, ByteString::concat);
+        assertEquals(ByteString.copyFrom(content), reassembled);
+    }
+
+    @Test
+    void when_streamSong_withOffsetAndLength_thenReturnsWindow() throws Exception {
+        var content = new byte[5000];
+        for(int i = 0; i < content.length; i++)
+            content[i] = (byte) i;
+        when(songService.getSongContent(any(UUID.class), any(RenditionPreference.class)))
+                .thenReturn(ContentSource.of(content));
+
+        StreamRecorder<brgi.grpc.StreamSongResponse> responseObserver = StreamRecorder.create();
+        songHandler.streamSong(brgi.grpc.StreamSongRequest.newBuilder()
+                .setSongId(UUID.randomUUID().toString())
+                .setOffset(1000)
+                .setLength(3000)
+                .setChunkSize(2000).build(), responseObserver);
+        assertTrue(responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS));
+
+        var actual = responseObserver.getValues();
+        assertEquals(2, actual.size());
+        assertEquals(1000, actual.get(0).getOffset());
+        assertEquals(3000, actual.get(1).getOffset());
+        assertEquals(1000, actual.get(1).getContent().size());
+        assertEquals(5000, actual.get(1).getTotalSize());
+
+        var reassembled = actual.stream()
+                .map(brgi.grpc.StreamSongResponse::getContent)
+                .reduce(ByteString.EMPTY, ByteString::concat);
+        assertEquals(ByteString.copyFrom(content, 1000, 3000), reassembled);
+    }
+
+    @Test
+    void when_streamSong_offsetPastEnd_thenThrows() throws Exception {
+        when(songService.getSongContent(any(UUID.class), any(RenditionPreference.class)))
+                .thenReturn(ContentSource.of(new byte[]{1, 2, 3}));
+
+        StreamRecorder<brgi.grpc.StreamSongResponse> responseObserver = StreamRecorder.create();
+        songHandler.streamSong(brgi.grpc.StreamSongRequest.newBuilder()
+                .setSongId(UUID.randomUUID().toString())
+                .setOffset(4).build(), responseObserver);
+        responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS);
+
+        assertTrue(responseObserver.getError() instanceof ClientException);
+    }
+
     @Test
     void when_streamSong_fails_thenThrows() throws Exception {
-        when(songService.getSong(any(UUID.class)))
+        when(songService.getSongContent(any(UUID.class), any(RenditionPreference.class)))
                 .thenThrow(new RuntimeException());
 
         StreamRecorder<brgi.grpc.StreamSongResponse> responseObserver = StreamRecorder.create();
@@ -211,4 +289,24 @@ public class SongHandlerTest {
         var actual = responseObserver.getError();
         assertTrue(actual instanceof RuntimeException);
     }
+
+    @Test
+    void when_uploadSong_fails_thenReturnsErrorAndCountsIt() throws Exception {
+        var upload = Mockito.mock(SongContentService.Upload.class);
+        when(songService.startUpload("flac")).thenReturn(upload);
+        when(upload.complete(any())).thenThrow(new ClientException("mismatch"));
+
+        StreamRecorder<brgi.grpc.AddSongResponse> responseObserver = StreamRecorder.create();
+        var requestObserver = songHandler.uploadSong(responseObserver);
+        requestObserver.onNext(brgi.grpc.UploadSongRequest.newBuilder()
+                .setSong(brgi.grpc.Song.newBuilder().setCodec("flac"))
+                .build());
+        requestObserver.onCompleted();
+
+        responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS);
+
+        assertTrue(responseObserver.getError() instanceof ClientException);
+        Mockito.verify(serviceMetrics).incrementErrorCount("upload_song");
+        Mockito.verify(upload).close();
+    }
 }
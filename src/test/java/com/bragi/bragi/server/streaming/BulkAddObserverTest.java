@@ -0,0 +1,127 @@
+package com.bragi.bragi.server.streaming;
+
+import brgi.grpc.BulkAddResponse;
+import brgi.grpc.BulkAddResult;
+import io.grpc.internal.testing.StreamRecorder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkAddObserverTest {
+
+    private static List<BulkAddResult> succeedAll(List<String> batch){
+        var results = new ArrayList<BulkAddResult>();
+        for(var i = 0; i < batch.size(); i++)
+            results.add(BulkAddResult.newBuilder().setIndex(i).setSuccess(true).setId(batch.get(i)).build());
+        return results;
+    }
+
+    @Test
+    void when_itemsStreamed_thenWritesInBatches() throws Exception {
+        StreamRecorder<BulkAddResponse> responseObserver = StreamRecorder.create();
+        var batches = new ArrayList<List<String>>();
+
+        var observer = new BulkAddObserver<String, String>(responseObserver,
+                2,
+                Function.identity(),
+                batch-> {
+                    batches.add(batch);
+                    return succeedAll(batch);
+                },
+                e-> fail(e));
+
+        List.of("a", "b", "c", "d", "e").forEach(observer::onNext);
+        assertEquals(2, batches.size());
+        observer.onCompleted();
+
+        assertTrue(responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d"), List.of("e")), batches);
+        var response = responseObserver.getValues().get(0);
+        assertEquals(5, response.getSucceeded());
+        assertEquals(0, response.getFailed());
+        for(var i = 0; i < 5; i++)
+            assertEquals(i, response.getResult(i).getIndex());
+        assertEquals("d", response.getResult(3).getId());
+    }
+
+    @Test
+    void when_prepareFails_thenReportsItemAndKeepsStreamOrder() throws Exception {
+        StreamRecorder<BulkAddResponse> responseObserver = StreamRecorder.create();
+
+        var observer = new BulkAddObserver<String, String>(responseObserver,
+                10,
+                item-> {
+                    if(item.equals("bad"))
+                        throw new IllegalArgumentException("bad item");
+                    return item;
+                },
+                BulkAddObserverTest::succeedAll,
+                e-> fail(e));
+
+        List.of("a", "bad", "c").forEach(observer::onNext);
+        observer.onCompleted();
+
+        assertTrue(responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS));
+        var response = responseObserver.getValues().get(0);
+        assertEquals(2, response.getSucceeded());
+        assertEquals(1, response.getFailed());
+        assertEquals("a", response.getResult(0).getId());
+        assertFalse(response.getResult(1).getSuccess());
+        assertEquals("bad item", response.getResult(1).getError());
+        assertEquals(2, response.getResult(2).getIndex());
+        assertEquals("c", response.getResult(2).getId());
+    }
+
+    @Test
+    void when_storeBatchFails_thenCallsOnErrorAndIgnoresRest() {
+        StreamRecorder<BulkAddResponse> responseObserver = StreamRecorder.create();
+        var error = new AtomicReference<Throwable>();
+        var calls = new ArrayList<List<String>>();
+
+        var observer = new BulkAddObserver<String, String>(responseObserver,
+                1,
+                Function.identity(),
+                batch-> {
+                    calls.add(batch);
+                    throw new IllegalStateException("database down");
+                },
+                error::set);
+
+        observer.onNext("a");
+        observer.onNext("b");
+        observer.onCompleted();
+
+        assertTrue(error.get() instanceof IllegalStateException);
+        assertEquals(1, calls.size());
+        assertTrue(responseObserver.getValues().isEmpty());
+    }
+
+    @Test
+    void when_clientCancels_thenDropsPendingBatch() {
+        StreamRecorder<BulkAddResponse> responseObserver = StreamRecorder.create();
+
+        var observer = new BulkAddObserver<String, String>(responseObserver,
+                10,
+                Function.identity(),
+                batch-> fail("batch should not be written"),
+                e-> fail(e));
+
+        observer.onNext("a");
+        observer.onError(new RuntimeException("cancelled"));
+        observer.onCompleted();
+
+        assertTrue(responseObserver.getValues().isEmpty());
+    }
+
+    @Test
+    void when_invalidBatchSize_thenThrows() {
+        assertThrows(IllegalArgumentException.class, ()-> new BulkAddObserver<String, String>(StreamRecorder.create(),
+                0, Function.identity(), BulkAddObserverTest::succeedAll, e->{}));
+    }
+}
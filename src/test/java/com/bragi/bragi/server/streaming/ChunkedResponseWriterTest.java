@@ -0,0 +1,135 @@
+package com.bragi.bragi.server.streaming;
+
+import com.bragi.bragi.storage.ContentSource;
+import com.google.protobuf.ByteString;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkedResponseWriterTest {
+
+    @Mock
+    private ServerCallStreamObserver<ByteString> responseObserver;
+
+    @Test
+    void when_start_notReady_thenWaitsForOnReady() {
+        when(responseObserver.isReady()).thenReturn(false);
+
+        new ChunkedResponseWriter<>(responseObserver,
+                ContentSource.of(new byte[]{1, 2, 3, 4, 5}),
+                2,
+                (chunk, offset, sequenceNumber, totalSize)-> chunk,
+                e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        verify(responseObserver, never()).onNext(any());
+
+        when(responseObserver.isReady()).thenReturn(true, false);
+        onReady.getValue().run();
+        verify(responseObserver, times(1)).onNext(ByteString.copyFrom(new byte[]{1, 2}));
+
+        when(responseObserver.isReady()).thenReturn(true);
+        onReady.getValue().run();
+        verify(responseObserver).onNext(ByteString.copyFrom(new byte[]{3, 4}));
+        verify(responseObserver).onNext(ByteString.copyFrom(new byte[]{5}));
+        verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    void when_cancelled_thenStopsWriting() {
+        new ChunkedResponseWriter<>(responseObserver,
+                ContentSource.of(new byte[]{1, 2, 3, 4, 5}),
+                2,
+                (chunk, offset, sequenceNumber, totalSize)-> chunk,
+                e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        var onCancel = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        verify(responseObserver).setOnCancelHandler(onCancel.capture());
+
+        onCancel.getValue().run();
+        onReady.getValue().run();
+
+        verify(responseObserver, never()).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+    }
+
+    @Test
+    void when_read_fails_thenCallsOnError() {
+        when(responseObserver.isReady()).thenReturn(true);
+        var error = new AtomicReference<Throwable>();
+
+        new ChunkedResponseWriter<>(responseObserver,
+                new ContentSource() {
+                    @Override
+                    public long size() {
+                        return 10;
+                    }
+
+                    @Override
+                    public ByteString read(long offset, int length) throws IOException {
+                        throw new IOException("cannot read");
+                    }
+                },
+                2,
+                (chunk, offset, sequenceNumber, totalSize)-> chunk,
+                error::set)
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+
+        assertTrue(error.get() instanceof IOException);
+        verify(responseObserver, never()).onCompleted();
+    }
+
+    @Test
+    void when_invalidChunkSize_thenThrows() {
+        assertThrows(IllegalArgumentException.class, ()-> new ChunkedResponseWriter<>(responseObserver,
+                ContentSource.of(new byte[0]), 0, (chunk, offset, sequenceNumber, totalSize)-> chunk, e->{}));
+    }
+
+    @Test
+    void when_window_thenWritesOnlyWindow() {
+        when(responseObserver.isReady()).thenReturn(true);
+
+        new ChunkedResponseWriter<>(responseObserver,
+                ContentSource.of(new byte[]{1, 2, 3, 4, 5}),
+                1,
+                10,
+                2,
+                (chunk, offset, sequenceNumber, totalSize)-> chunk,
+                e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+
+        verify(responseObserver).onNext(ByteString.copyFrom(new byte[]{2, 3}));
+        verify(responseObserver).onNext(ByteString.copyFrom(new byte[]{4, 5}));
+        verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    void when_invalidWindow_thenThrows() {
+        assertThrows(IllegalArgumentException.class, ()-> new ChunkedResponseWriter<>(responseObserver,
+                ContentSource.of(new byte[0]), -1, 0, 2, (chunk, offset, sequenceNumber, totalSize)-> chunk, e->{}));
+    }
+}
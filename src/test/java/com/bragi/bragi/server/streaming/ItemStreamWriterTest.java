@@ -0,0 +1,109 @@
+package com.bragi.bragi.server.streaming;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ItemStreamWriterTest {
+
+    @Mock
+    private ServerCallStreamObserver<String> responseObserver;
+
+    @Test
+    void when_ready_thenWritesAllItemsAndCloses() {
+        when(responseObserver.isReady()).thenReturn(true);
+        var closed = new AtomicBoolean();
+
+        new ItemStreamWriter<>(responseObserver, Stream.of("a", "b").onClose(()-> closed.set(true)), e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+
+        InOrder inOrder = inOrder(responseObserver);
+        inOrder.verify(responseObserver).onNext("a");
+        inOrder.verify(responseObserver).onNext("b");
+        inOrder.verify(responseObserver).onCompleted();
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void when_notReady_thenOnlyPullsWhatIsSent() {
+        when(responseObserver.isReady()).thenReturn(true, false);
+        var pulled = new AtomicInteger();
+
+        new ItemStreamWriter<>(responseObserver,
+                Stream.of("a", "b", "c").peek(item-> pulled.incrementAndGet()),
+                e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+        verify(responseObserver, times(1)).onNext(any());
+        assertEquals(1, pulled.get());
+
+        when(responseObserver.isReady()).thenReturn(true);
+        onReady.getValue().run();
+        verify(responseObserver, times(3)).onNext(any());
+        verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    void when_cancelled_thenClosesStream() {
+        var closed = new AtomicBoolean();
+
+        new ItemStreamWriter<>(responseObserver, Stream.of("a").onClose(()-> closed.set(true)), e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        var onCancel = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        verify(responseObserver).setOnCancelHandler(onCancel.capture());
+        onCancel.getValue().run();
+        onReady.getValue().run();
+
+        assertTrue(closed.get());
+        verify(responseObserver, never()).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+    }
+
+    @Test
+    void when_streamFails_thenCallsOnError() {
+        when(responseObserver.isReady()).thenReturn(true);
+        var error = new AtomicReference<Throwable>();
+        var cause = new IllegalStateException("database down");
+
+        new ItemStreamWriter<>(responseObserver,
+                Stream.of("a", "b").map(item-> {
+                    if(item.equals("b"))
+                        throw cause;
+                    return item;
+                }),
+                error::set)
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+
+        assertSame(cause, error.get());
+        verify(responseObserver).onNext("a");
+        verify(responseObserver, never()).onCompleted();
+    }
+}
@@ -0,0 +1,128 @@
+package com.bragi.bragi.server.streaming;
+
+import brgi.grpc.AddSongResponse;
+import brgi.grpc.UploadSongRequest;
+import com.bragi.bragi.error.ClientException;
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.service.SongContentService;
+import com.google.protobuf.ByteString;
+import io.grpc.internal.testing.StreamRecorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SongUploadObserverTest {
+
+    @Mock
+    private SongContentService.Upload upload;
+
+    private static UploadSongRequest song(String sha256){
+        return UploadSongRequest.newBuilder()
+                .setSong(brgi.grpc.Song.newBuilder().setTitle("title").setCodec("flac"))
+                .setSha256(sha256)
+                .build();
+    }
+
+    private static UploadSongRequest chunk(byte[] bytes){
+        return UploadSongRequest.newBuilder()
+                .setChunk(ByteString.copyFrom(bytes))
+                .build();
+    }
+
+    @Test
+    void when_uploadCompleted_thenWritesChunksAndStoresSong() throws Exception {
+        StreamRecorder<AddSongResponse> responseObserver = StreamRecorder.create();
+        var songContent = SongContent.builder().hash("hash").size(3L).build();
+        var stored = new AtomicReference<brgi.grpc.Song>();
+        when(upload.complete("abc")).thenReturn(songContent);
+
+        var observer = new SongUploadObserver(responseObserver,
+                song-> {
+                    assertEquals("flac", song.getCodec());
+                    return upload;
+                },
+                (song, content)-> {
+                    assertSame(songContent, content);
+                    stored.set(song);
+                    return AddSongResponse.newBuilder().setSongId("id").build();
+                },
+                e-> fail(e));
+
+        observer.onNext(song("abc"));
+        observer.onNext(chunk(new byte[]{1, 2}));
+        observer.onNext(chunk(new byte[]{3}));
+        observer.onCompleted();
+
+        assertTrue(responseObserver.awaitCompletion(1000, TimeUnit.MILLISECONDS));
+        assertEquals("id", responseObserver.getValues().get(0).getSongId());
+        assertEquals("title", stored.get().getTitle());
+        verify(upload).write(ByteString.copyFrom(new byte[]{1, 2}));
+        verify(upload).write(ByteString.copyFrom(new byte[]{3}));
+    }
+
+    @Test
+    void when_chunkBeforeSong_thenFails() {
+        StreamRecorder<AddSongResponse> responseObserver = StreamRecorder.create();
+        var error = new AtomicReference<Throwable>();
+
+        var observer = new SongUploadObserver(responseObserver,
+                song-> upload,
+                (song, content)-> fail("song should not be stored"),
+                error::set);
+
+        observer.onNext(chunk(new byte[]{1}));
+        observer.onNext(song(""));
+        observer.onCompleted();
+
+        assertTrue(error.get() instanceof ClientException);
+        assertTrue(responseObserver.getValues().isEmpty());
+        verifyNoInteractions(upload);
+    }
+
+    @Test
+    void when_hashMismatch_thenDiscardsUpload() {
+        StreamRecorder<AddSongResponse> responseObserver = StreamRecorder.create();
+        var error = new AtomicReference<Throwable>();
+        when(upload.complete("abc")).thenThrow(new ClientException("mismatch"));
+
+        var observer = new SongUploadObserver(responseObserver,
+                song-> upload,
+                (song, content)-> fail("song should not be stored"),
+                error::set);
+
+        observer.onNext(song("abc"));
+        observer.onNext(chunk(new byte[]{1}));
+        observer.onCompleted();
+
+        assertTrue(error.get() instanceof ClientException);
+        verify(upload).close();
+    }
+
+    @Test
+    void when_clientCancels_thenDiscardsUpload() {
+        StreamRecorder<AddSongResponse> responseObserver = StreamRecorder.create();
+
+        var observer = new SongUploadObserver(responseObserver,
+                song-> upload,
+                (song, content)-> fail("song should not be stored"),
+                e-> fail(e));
+
+        observer.onNext(song(""));
+        observer.onNext(chunk(new byte[]{1}));
+        observer.onError(new RuntimeException("cancelled"));
+        observer.onCompleted();
+
+        verify(upload).close();
+        verify(upload, never()).complete(any());
+        assertTrue(responseObserver.getValues().isEmpty());
+    }
+}
@@ -0,0 +1,227 @@
+package com.bragi.bragi.server.streaming;
+
+import com.bragi.bragi.storage.ContentSource;
+import com.google.protobuf.ByteString;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TrackStreamWriterTest {
+
+    @Mock
+    private ServerCallStreamObserver<String> responseObserver;
+
+    private static final List<ContentSource> TRACKS = List.of(
+            ContentSource.of(new byte[]{1, 2, 3}),
+            ContentSource.of(new byte[0]),
+            ContentSource.of(new byte[]{4}));
+
+    private static String describe(ByteString chunk, int trackIndex, long offset, long trackSize){
+        return trackIndex + ":" + offset + ":" + trackSize + ":" + chunk.size();
+    }
+
+    //runs prefetches only when asked to, so tests control when a track finishes opening
+    private static class ManualExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runNext(){
+            tasks.remove(0).run();
+        }
+    }
+
+    @Test
+    void when_ready_thenWritesTracksInOrder() {
+        when(responseObserver.isReady()).thenReturn(true);
+
+        new TrackStreamWriter<>(responseObserver,
+                TRACKS.size(),
+                TRACKS::get,
+                2,
+                1,
+                Runnable::run,
+                TrackStreamWriterTest::describe,
+                e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+
+        InOrder inOrder = inOrder(responseObserver);
+        inOrder.verify(responseObserver).onNext("0:0:3:2");
+        inOrder.verify(responseObserver).onNext("0:2:3:1");
+        inOrder.verify(responseObserver).onNext("1:0:0:0");
+        inOrder.verify(responseObserver).onNext("2:0:1:1");
+        inOrder.verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    void when_notReady_thenWaitsForOnReady() {
+        when(responseObserver.isReady()).thenReturn(true, false);
+
+        new TrackStreamWriter<>(responseObserver,
+                TRACKS.size(),
+                TRACKS::get,
+                2,
+                1,
+                Runnable::run,
+                TrackStreamWriterTest::describe,
+                e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+        verify(responseObserver, times(1)).onNext(any());
+
+        when(responseObserver.isReady()).thenReturn(true);
+        onReady.getValue().run();
+        verify(responseObserver, times(4)).onNext(any());
+        verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    void when_trackStillOpening_thenResumesOnceOpen() {
+        when(responseObserver.isReady()).thenReturn(true);
+        var executor = new ManualExecutor();
+
+        new TrackStreamWriter<>(responseObserver,
+                TRACKS.size(),
+                TRACKS::get,
+                4,
+                1,
+                executor,
+                TrackStreamWriterTest::describe,
+                e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+
+        //the first track and one prefetch are opening, the last track is not requested yet
+        assertEquals(2, executor.tasks.size());
+        verify(responseObserver, never()).onNext(any());
+
+        executor.runNext();
+        verify(responseObserver).onNext("0:0:3:3");
+        executor.runNext();
+        executor.runNext();
+        verify(responseObserver).onNext("1:0:0:0");
+        verify(responseObserver).onNext("2:0:1:1");
+        verify(responseObserver).onCompleted();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1})
+    void when_sendingTrack_thenOnlyPrefetchTracksOpen(int prefetchTracks) {
+        when(responseObserver.isReady()).thenReturn(true, true, false);
+        var executor = new ManualExecutor();
+
+        new TrackStreamWriter<>(responseObserver,
+                TRACKS.size(),
+                TRACKS::get,
+                2,
+                prefetchTracks,
+                executor,
+                TrackStreamWriterTest::describe,
+                e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+        executor.runNext();
+
+        //the first track is being sent, only the prefetched ones are left opening
+        verify(responseObserver).onNext("0:0:3:2");
+        assertEquals(prefetchTracks, executor.tasks.size());
+    }
+
+    @Test
+    void when_cancelled_thenStopsWriting() {
+        var opened = new ArrayList<Integer>();
+
+        new TrackStreamWriter<>(responseObserver,
+                TRACKS.size(),
+                index-> {
+                    opened.add(index);
+                    return TRACKS.get(index);
+                },
+                2,
+                1,
+                Runnable::run,
+                TrackStreamWriterTest::describe,
+                e-> fail(e))
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        var onCancel = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        verify(responseObserver).setOnCancelHandler(onCancel.capture());
+
+        onCancel.getValue().run();
+        onReady.getValue().run();
+
+        assertTrue(opened.isEmpty());
+        verify(responseObserver, never()).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+    }
+
+    @Test
+    void when_open_fails_thenCallsOnError() {
+        when(responseObserver.isReady()).thenReturn(true);
+        var error = new AtomicReference<Throwable>();
+        var cause = new IllegalStateException("cannot open");
+
+        new TrackStreamWriter<>(responseObserver,
+                TRACKS.size(),
+                index-> {
+                    if(index == 1)
+                        throw cause;
+                    return TRACKS.get(index);
+                },
+                2,
+                0,
+                Runnable::run,
+                TrackStreamWriterTest::describe,
+                error::set)
+                .start();
+
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+
+        assertSame(cause, error.get());
+        verify(responseObserver, times(2)).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+    }
+
+    @Test
+    void when_invalidChunkSize_thenThrows() {
+        assertThrows(IllegalArgumentException.class, ()-> new TrackStreamWriter<>(responseObserver,
+                1, TRACKS::get, 0, 1, Runnable::run, TrackStreamWriterTest::describe, e->{}));
+    }
+}
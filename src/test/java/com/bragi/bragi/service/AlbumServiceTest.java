@@ -1,18 +1,28 @@
 package com.bragi.bragi.service;
 
+import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Album;
 import com.bragi.bragi.model.Artist;
 import com.bragi.bragi.model.Song;
 import com.bragi.bragi.model.SongContent;
 import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.repository.ReactiveDataAccessService;
+import com.bragi.bragi.service.config.ContentCacheConfig;
+import com.bragi.bragi.service.config.PagingConfig;
+import com.bragi.bragi.storage.ContentCache;
+import com.bragi.bragi.storage.SongContentStore;
+import com.google.protobuf.ByteString;
 import org.checkerframework.checker.units.qual.A;
 import org.junit.Before;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.sql.Timestamp;
 import java.time.Instant;
@@ -31,11 +41,18 @@ class AlbumServiceTest {
     @Mock
     DataAccessService dataAccessService;
 
+    @Mock
+    ReactiveDataAccessService reactiveDataAccessService;
+
+    @Mock
+    SongContentStore songContentStore;
+
     private AlbumService albumService;
 
     @BeforeEach
     void setUp(){
-        albumService = new AlbumService(dataAccessService);
+        albumService = new AlbumService(dataAccessService, reactiveDataAccessService, new SongContentService(songContentStore,
+                new ContentCache(new ContentCacheConfig(), Mockito.mock(ServiceMetrics.class))), new PagingConfig());
     }
 
     @Test
@@ -98,12 +115,8 @@ class AlbumServiceTest {
     }
     @Test
     void when_getSongs_success_thenReturns() {
-        when(dataAccessService.getAlbumByExternalId(any())).thenReturn(Album
-                .builder()
-                .id(1L)
-                .externalId(UUID.randomUUID())
-                        .songs(Set.of(Song.builder().build()))
-                .build());
+        when(dataAccessService.getSongsByAlbumExternalId(any(), eq(false)))
+                .thenReturn(List.of(Song.builder().build()));
 
         var songs = albumService.getSongs(UUID.randomUUID());
         assertEquals(1, songs.size());
@@ -112,7 +125,7 @@ class AlbumServiceTest {
 
     @Test
     void when_getSongs_fails_thenThrows() {
-        when(dataAccessService.getAlbumByExternalId(any())).thenThrow(new RuntimeException());
+        when(dataAccessService.getSongsByAlbumExternalId(any(), anyBoolean())).thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
             var songs = albumService.getSongs(UUID.randomUUID());
@@ -180,20 +193,11 @@ class AlbumServiceTest {
 
     @Test
     void when_getArtists_success_thenReturns(){
-        when(dataAccessService.getAlbumByExternalId(any())).thenReturn(Album
-                .builder()
-                .id(1L)
-                .title("hey world")
-                .date(Timestamp.from(Instant.now()))
+        when(dataAccessService.getArtistsByAlbumExternalId(any())).thenReturn(List.of(Artist.builder()
                 .externalId(UUID.randomUUID())
-                .songs(Set.of(Song.builder()
-                        .externalId(UUID.randomUUID()).build()))
-                .artists(Set.of(Artist.builder()
-                        .externalId(UUID.randomUUID())
-                                .timeStarted(Timestamp.from(Instant.now()))
-                                .name("hej")
-                        .build()))
-                .build());
+                .timeStarted(Timestamp.from(Instant.now()))
+                .name("hej")
+                .build()));
 
         var response = albumService.getArtists(brgi.grpc.GetArtistsRequest.newBuilder()
                 .setAlbumId(UUID.randomUUID().toString()).build());
@@ -203,8 +207,8 @@ class AlbumServiceTest {
     }
 
     @Test
-    void when_getArtists_failsAtGetAlbumExternalId_thenThrows(){
-        when(dataAccessService.getAlbumByExternalId(any()))
+    void when_getArtists_failsAtGetArtistsByAlbumExternalId_thenThrows(){
+        when(dataAccessService.getArtistsByAlbumExternalId(any()))
                 .thenThrow(new RuntimeException("Cant access db"));
 
         assertThrows(RuntimeException.class, ()->{
@@ -225,39 +229,58 @@ class AlbumServiceTest {
 
     @Test
     void when_getAllSongs_success_thenReturns(){
-        when(dataAccessService.getAlbumByExternalId(any())).thenReturn(Album
-                .builder()
-                .id(1L)
-                .title("hey world")
-                .date(Timestamp.from(Instant.now()))
-                .externalId(UUID.randomUUID())
-                .songs(Set.of(Song.builder()
+        when(dataAccessService.getSongsByAlbumExternalId(any(), eq(false))).thenReturn(List.of(Song.builder()
+                .songContent(SongContent.builder()
+                        .content(new byte[]{1, 2, 3})
+                        .build())
+                .album(Album.builder().externalId(UUID.randomUUID()).build())
+                .artists(Set.of(Artist.builder()
                         .externalId(UUID.randomUUID())
-                                .songContent(SongContent.builder()
-                                        .content(new byte[]{1, 2, 3})
-                                        .build())
-                                .album(Album.builder().externalId(UUID.randomUUID()).build())
-                                .title("hey")
-                                .dateReleased(Timestamp.from(Instant.now()))
-                                .externalId(UUID.randomUUID())
+                        .timeStarted(Timestamp.from(Instant.now()))
+                        .name("hej")
                         .build()))
+                .title("hey")
+                .dateReleased(Timestamp.from(Instant.now()))
+                .externalId(UUID.randomUUID())
+                .build()));
+
+        var response = albumService.getAllSongs(brgi.grpc.GetAllSongsRequest.newBuilder()
+                        .setAlbumId(UUID.randomUUID().toString())
+                .build());
+
+        assertEquals(1, response.getSongList().size());
+        assertTrue(response.getSong(0).getContent().isEmpty());
+    }
+
+    @Test
+    void when_getAllSongs_includeContent_thenReturnsContent(){
+        when(dataAccessService.getSongsByAlbumExternalId(any(), eq(true))).thenReturn(List.of(Song.builder()
+                .songContent(SongContent.builder()
+                        .content(new byte[]{1, 2, 3})
+                        .build())
+                .album(Album.builder().externalId(UUID.randomUUID()).build())
                 .artists(Set.of(Artist.builder()
                         .externalId(UUID.randomUUID())
                         .timeStarted(Timestamp.from(Instant.now()))
                         .name("hej")
                         .build()))
-                .build());
+                .title("hey")
+                .dateReleased(Timestamp.from(Instant.now()))
+                .externalId(UUID.randomUUID())
+                .build()));
 
         var response = albumService.getAllSongs(brgi.grpc.GetAllSongsRequest.newBuilder()
                         .setAlbumId(UUID.randomUUID().toString())
+                        .setIncludeContent(true)
                 .build());
 
         assertEquals(1, response.getSongList().size());
+        assertEquals(ByteString.copyFrom(new byte[]{1, 2, 3}), response.getSong(0).getContent());
     }
 
     @Test
     void when_getAllSongs_dataAccessFails_thenThrows(){
-        when(dataAccessService.getAlbumByExternalId(any()))
+        when(dataAccessService.getSongsByAlbumExternalId(any(), anyBoolean()))
                 .thenThrow(new RuntimeException("Cant access data source"));
 
         assertThrows(RuntimeException.class, ()->{
@@ -280,29 +303,58 @@ class AlbumServiceTest {
 
     @Test
     void when_findAllAlbums_success_thenReturns(){
-        when(dataAccessService.findAllAlbums(any()))
-                .thenReturn(Page.empty());
-        List<Album> albumPage = albumService.findAllAlbums(1, 1, "desc");
-        assertTrue(albumPage.isEmpty());
+        when(dataAccessService.findAllAlbums(any(), anyInt()))
+                .thenReturn(List.of());
+        var albumPage = albumService.findAllAlbums(null, 1, "desc");
+        assertTrue(albumPage.items().isEmpty());
+        assertFalse(albumPage.hasNext());
 
     }
     @Test
     void when_findAllAlbums_invalidSort_thenThrows(){
         assertThrows(RuntimeException.class, ()->{
-            albumService.findAllAlbums(1, 1, "invalid");
+            albumService.findAllAlbums(null, 1, "invalid");
         });
     }
 
     @Test
     void when_findAllArtists_dataAccessFails_thenThrows(){
-        when(dataAccessService.findAllAlbums(any()))
+        when(dataAccessService.findAllAlbums(any(), anyInt()))
                 .thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
-            albumService.findAllAlbums(1, 1, "desc");
+            albumService.findAllAlbums(null, 1, "desc");
         });
     }
 
+    @Test
+    void when_findAlbums_success_thenReturns(){
+        when(reactiveDataAccessService.findAllAlbums(any(), anyInt()))
+                .thenReturn(Flux.just(Album.builder().id(1L).build()));
+
+        StepVerifier.create(albumService.findAlbums(null, 1, "desc"))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void when_findAlbums_invalidSort_thenErrors(){
+        StepVerifier.create(albumService.findAlbums(null, 1, "invalid"))
+                .expectError(RuntimeException.class)
+                .verify();
+    }
+
+    @Test
+    void when_findAlbum_notFound_thenErrors(){
+        var uuid = UUID.randomUUID();
+        when(reactiveDataAccessService.getAlbumByExternalId(uuid))
+                .thenReturn(Mono.error(new NoSuchElementException()));
+
+        StepVerifier.create(albumService.findAlbum(uuid.toString()))
+                .expectError(NoSuchElementException.class)
+                .verify();
+    }
+
     @Test
     void when_getAlbumById_success_thenReturns(){
         var uuid = UUID.randomUUID();
@@ -1,18 +1,27 @@
 package com.bragi.bragi.service;
 
+import com.bragi.bragi.metrics.ServiceMetrics;
 import com.bragi.bragi.model.Album;
 import com.bragi.bragi.model.Artist;
 import com.bragi.bragi.model.Song;
 import com.bragi.bragi.model.SongContent;
 import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.repository.ReactiveDataAccessService;
+import com.bragi.bragi.service.config.ContentCacheConfig;
+import com.bragi.bragi.service.config.PagingConfig;
+import com.bragi.bragi.storage.ContentCache;
+import com.bragi.bragi.storage.SongContentStore;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.sql.Time;
 import java.sql.Timestamp;
@@ -21,8 +30,14 @@ import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,12 +46,19 @@ class ArtistServiceTest {
     @Mock
     private DataAccessService dataAccessService;
 
+    @Mock
+    private ReactiveDataAccessService reactiveDataAccessService;
+
+    @Mock
+    private SongContentStore songContentStore;
+
     private ArtistService artistService;
 
 
     @BeforeEach
     void setUp() {
-        artistService = new ArtistService(dataAccessService);
+        artistService = new ArtistService(dataAccessService, reactiveDataAccessService, new SongContentService(songContentStore,
+                new ContentCache(new ContentCacheConfig(), Mockito.mock(ServiceMetrics.class))), new PagingConfig());
     }
 
     @AfterEach
@@ -66,6 +88,21 @@ class ArtistServiceTest {
         });
     }
 
+    @Test
+    void when_storeAll_success_thenSavesOneBatch() {
+        when(dataAccessService.saveAllArtists(any())).thenAnswer(invocation-> invocation.getArgument(0));
+
+        var results = artistService.storeAll(List.of(
+                brgi.grpc.AddArtistRequest.newBuilder().setArtist(brgi.grpc.Artist.newBuilder().setName("one")).build(),
+                brgi.grpc.AddArtistRequest.newBuilder().setArtist(brgi.grpc.Artist.newBuilder().setName("two")).build()));
+
+        verify(dataAccessService).saveAllArtists(argThat(artists-> artists.size() == 2));
+        verify(dataAccessService, never()).saveArtist(any());
+        assertEquals(2, results.size());
+        assertEquals(1, results.get(1).getIndex());
+        assertTrue(results.stream().allMatch(brgi.grpc.BulkAddResult::getSuccess));
+    }
+
     @Test
     void when_getArtist_success_thenReturns() {
         var externalId = UUID.randomUUID();
@@ -100,14 +137,9 @@ class ArtistServiceTest {
 
     @Test
     void when_getSongs_success_thenReturns() {
-        when(dataAccessService.getArtistByExternalId(any()))
-                .thenReturn(Artist.builder()
-                        .id(1L)
-                        .name("hey world")
-                        .timeStarted(Timestamp.from(Instant.now()))
-                        .songs(Set.of(Song.builder()
-                                .externalId(UUID.randomUUID()).build()))
-                        .build());
+        when(dataAccessService.getSongsByArtistExternalId(any(), eq(false)))
+                .thenReturn(List.of(Song.builder()
+                        .externalId(UUID.randomUUID()).build()));
 
         var songs = artistService.getSongs(UUID.randomUUID());
 
@@ -116,7 +148,7 @@ class ArtistServiceTest {
 
     @Test
     void when_getSongs_fails_thenThrows() {
-        when(dataAccessService.getArtistByExternalId(any()))
+        when(dataAccessService.getSongsByArtistExternalId(any(), anyBoolean()))
                 .thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
@@ -126,19 +158,12 @@ class ArtistServiceTest {
 
     @Test
     void when_getAllAlbums_success_thenReturns() {
-        when(dataAccessService.getArtistByExternalId(any()))
-                .thenReturn(Artist.builder()
-                        .id(1L)
-                        .name("hey world")
-                        .timeStarted(Timestamp.from(Instant.now()))
-                        .songs(Set.of(Song.builder()
-                                .externalId(UUID.randomUUID()).build()))
-                        .albums(Set.of(Album.builder()
-                                        .date(Timestamp.from(Instant.now()))
-                                        .title("title")
-                                .externalId(UUID.randomUUID())
-                                .build()))
-                        .build());
+        when(dataAccessService.getAlbumsByArtistExternalId(any()))
+                .thenReturn(List.of(Album.builder()
+                        .date(Timestamp.from(Instant.now()))
+                        .title("title")
+                        .externalId(UUID.randomUUID())
+                        .build()));
 
         var response = artistService.getAllAlbums(brgi.grpc.GetAllAlbumsRequest.newBuilder()
                 .setArtistId(UUID.randomUUID().toString()).build());
@@ -148,7 +173,7 @@ class ArtistServiceTest {
 
     @Test
     void when_getAllAlbums_fails_thenThrows() {
-        when(dataAccessService.getArtistByExternalId(any()))
+        when(dataAccessService.getAlbumsByArtistExternalId(any()))
                 .thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
@@ -159,36 +184,24 @@ class ArtistServiceTest {
 
     @Test
     void when_getAllSongs_success_thenReturns() {
-        when(dataAccessService.getArtistByExternalId(any()))
-                .thenReturn(Artist.builder()
-                        .id(1L)
-                        .name("hey world")
-                        .timeStarted(Timestamp.from(Instant.now()))
-                        .songs(Set.of(Song.builder()
-                                        .album(Album.builder()
-                                                .externalId(UUID.randomUUID()).build())
-                                        .title("hey world")
-                                        .dateReleased(Timestamp.from(Instant.now()))
-                                        .songContent(SongContent.builder()
-                                                .content(new byte[]{1, 2, 3})
-                                                .build())
-                                .externalId(UUID.randomUUID()).build()))
-                        .albums(Set.of(Album.builder()
-                                .date(Timestamp.from(Instant.now()))
-                                .title("title")
-                                .externalId(UUID.randomUUID())
-                                .build()))
-                        .build());
+        when(dataAccessService.getSongsByArtistExternalId(any(), eq(false)))
+                .thenReturn(List.of(Song.builder()
+                        .album(Album.builder()
+                                .externalId(UUID.randomUUID()).build())
+                        .title("hey world")
+                        .dateReleased(Timestamp.from(Instant.now()))
+                        .externalId(UUID.randomUUID()).build()));
 
         var response = artistService.getAllSongs(brgi.grpc.GetAllSongsRequest.newBuilder()
                 .setArtistId(UUID.randomUUID().toString()).build());
 
         assertEquals(1, response.getSongList().size());
+        assertTrue(response.getSong(0).getContent().isEmpty());
     }
 
     @Test
     void when_getAllSongs_fails_thenThrows() {
-        when(dataAccessService.getArtistByExternalId(any()))
+        when(dataAccessService.getSongsByArtistExternalId(any(), anyBoolean()))
                 .thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
@@ -245,29 +258,58 @@ class ArtistServiceTest {
 
     @Test
     void when_findAllArtists_success_thenReturns(){
-        when(dataAccessService.findAllArtists(any()))
-                .thenReturn(Page.empty());
-        List<Artist> artistPage = artistService.findAllArtists(1, 1, "desc");
-        assertTrue(artistPage.isEmpty());
+        when(dataAccessService.findAllArtists(any(), anyInt()))
+                .thenReturn(List.of());
+        var artistPage = artistService.findAllArtists(null, 1, "desc");
+        assertTrue(artistPage.items().isEmpty());
+        assertFalse(artistPage.hasNext());
 
     }
     @Test
     void when_findAllArtists_invalidSort_thenThrows(){
         assertThrows(RuntimeException.class, ()->{
-            artistService.findAllArtists(1, 1, "invalid");
+            artistService.findAllArtists(null, 1, "invalid");
         });
     }
 
     @Test
     void when_findAllArtists_dataAccessFails_thenThrows(){
-        when(dataAccessService.findAllArtists(any()))
+        when(dataAccessService.findAllArtists(any(), anyInt()))
                 .thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
-            artistService.findAllArtists(1, 1, "desc");
+            artistService.findAllArtists(null, 1, "desc");
         });
     }
 
+    @Test
+    void when_findArtists_success_thenReturns(){
+        when(reactiveDataAccessService.findAllArtists(any(), anyInt()))
+                .thenReturn(Flux.just(Artist.builder().id(1L).build()));
+
+        StepVerifier.create(artistService.findArtists(null, 1, "desc"))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void when_findArtists_invalidSort_thenErrors(){
+        StepVerifier.create(artistService.findArtists(null, 1, "invalid"))
+                .expectError(RuntimeException.class)
+                .verify();
+    }
+
+    @Test
+    void when_findArtist_notFound_thenErrors(){
+        var uuid = UUID.randomUUID();
+        when(reactiveDataAccessService.getArtistByExternalId(uuid))
+                .thenReturn(Mono.error(new NoSuchElementException()));
+
+        StepVerifier.create(artistService.findArtist(uuid.toString()))
+                .expectError(NoSuchElementException.class)
+                .verify();
+    }
+
     @Test
     void when_getArtistById_success_thenReturns(){
         var uuid = UUID.randomUUID();
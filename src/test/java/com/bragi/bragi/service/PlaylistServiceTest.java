@@ -0,0 +1,139 @@
+package com.bragi.bragi.service;
+
+import com.bragi.bragi.error.ClientException;
+import com.bragi.bragi.model.Song;
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.model.SongRendition;
+import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.service.config.SegmentConfig;
+import com.bragi.bragi.service.utils.RenditionPreference;
+import com.bragi.bragi.storage.ContentSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlaylistServiceTest {
+
+    private static final String ORIGINAL = "a".repeat(64);
+    private static final String LOW = "b".repeat(64);
+
+    @Mock
+    private DataAccessService dataAccessService;
+
+    @Mock
+    private SongContentService songContentService;
+
+    private PlaylistService playlistService;
+
+    private final SongContent songContent = SongContent.builder().id(7L).hash(ORIGINAL).size(5000L).build();
+
+    @BeforeEach
+    void setUp() {
+        var segmentConfig = new SegmentConfig();
+        segmentConfig.setTargetDurationSeconds(1);
+        segmentConfig.setOriginalBitrateKbps(16);
+        playlistService = new PlaylistService(dataAccessService, songContentService, segmentConfig);
+    }
+
+    @Test
+    void when_masterPlaylist_thenListsRenditionsAndOriginal() {
+        var songId = UUID.randomUUID();
+        when(dataAccessService.getSongContentByExternalId(songId)).thenReturn(songContent);
+        when(dataAccessService.getRenditions(7L)).thenReturn(List.of(SongRendition.builder().bitrateKbps(8).build()));
+
+        assertEquals("#EXTM3U\n#EXT-X-VERSION:3\n" +
+                "#EXT-X-STREAM-INF:BANDWIDTH=8000\nmedia.m3u8?quality=high&maxBitrate=8\n" +
+                "#EXT-X-STREAM-INF:BANDWIDTH=16000\nmedia.m3u8\n", playlistService.masterPlaylist(songId));
+    }
+
+    @Test
+    void when_mediaPlaylist_original_thenSegmentsOriginal() {
+        var songId = UUID.randomUUID();
+        when(dataAccessService.getSongContentByExternalId(songId)).thenReturn(songContent);
+
+        var playlist = playlistService.mediaPlaylist(songId, RenditionPreference.ORIGINAL);
+
+        assertEquals("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:1\n#EXT-X-MEDIA-SEQUENCE:0\n#EXT-X-PLAYLIST-TYPE:VOD\n" +
+                "#EXTINF:1.000,\n/media/segments/" + ORIGINAL + "/2000/0\n" +
+                "#EXTINF:1.000,\n/media/segments/" + ORIGINAL + "/2000/1\n" +
+                "#EXTINF:0.500,\n/media/segments/" + ORIGINAL + "/2000/2\n" +
+                "#EXT-X-ENDLIST\n", playlist);
+        verify(dataAccessService, never()).getRenditions(anyLong());
+    }
+
+    @Test
+    void when_mediaPlaylist_lowQuality_thenSegmentsRendition() {
+        var songId = UUID.randomUUID();
+        when(dataAccessService.getSongContentByExternalId(songId)).thenReturn(songContent);
+        when(dataAccessService.getRenditions(7L)).thenReturn(List.of(SongRendition.builder()
+                .bitrateKbps(8).hash(LOW).size(1500L).build()));
+
+        var playlist = playlistService.mediaPlaylist(songId, RenditionPreference.of("low", 0));
+
+        assertTrue(playlist.contains("#EXTINF:1.024,\n/media/segments/" + LOW + "/1024/0\n"));
+        assertTrue(playlist.contains("#EXTINF:0.476,\n/media/segments/" + LOW + "/1024/1\n"));
+        assertFalse(playlist.contains(ORIGINAL));
+    }
+
+    @Test
+    void when_mediaPlaylist_legacyContent_thenThrows() {
+        var songId = UUID.randomUUID();
+        when(dataAccessService.getSongContentByExternalId(songId)).thenReturn(SongContent.builder().content(new byte[]{1}).build());
+
+        assertThrows(ClientException.class, ()-> playlistService.mediaPlaylist(songId, RenditionPreference.ORIGINAL));
+    }
+
+    @Test
+    void when_albumPlaylist_thenJoinsTracksInOrder() {
+        var albumId = UUID.randomUUID();
+        var second = SongContent.builder().id(8L).hash(LOW).size(1000L).build();
+        when(dataAccessService.getSongsByAlbumExternalId(albumId, true)).thenReturn(List.of(
+                Song.builder().id(2L).songContent(second).build(),
+                Song.builder().id(3L).songContent(SongContent.builder().id(9L).content(new byte[]{1}).build()).build(),
+                Song.builder().id(1L).songContent(songContent).build()));
+        when(dataAccessService.getRenditions(List.of(7L, 8L))).thenReturn(Map.of());
+
+        var playlist = playlistService.albumPlaylist(albumId, RenditionPreference.of("low", 0));
+
+        var firstTrack = playlist.indexOf(ORIGINAL);
+        var discontinuity = playlist.indexOf("#EXT-X-DISCONTINUITY\n");
+        var secondTrack = playlist.indexOf(LOW);
+        assertTrue(firstTrack < discontinuity && discontinuity < secondTrack);
+        assertEquals(playlist.indexOf("#EXT-X-DISCONTINUITY"), playlist.lastIndexOf("#EXT-X-DISCONTINUITY"));
+    }
+
+    @Test
+    void when_getSegment_thenSlicesContent() throws Exception {
+        when(songContentService.exists(ORIGINAL)).thenReturn(true);
+        when(songContentService.open(ORIGINAL, null)).thenReturn(ContentSource.of(new byte[2500]));
+
+        assertEquals(1024, playlistService.getSegment(ORIGINAL, 1024, 1).size());
+        assertEquals(452, playlistService.getSegment(ORIGINAL, 1024, 2).size());
+        assertThrows(NoSuchElementException.class, ()-> playlistService.getSegment(ORIGINAL, 1024, 3));
+    }
+
+    @Test
+    void when_getSegment_invalid_thenThrows() {
+        assertThrows(ClientException.class, ()-> playlistService.getSegment("../etc/passwd", 1024, 0));
+        assertThrows(ClientException.class, ()-> playlistService.getSegment(ORIGINAL, 10, 0));
+        assertThrows(ClientException.class, ()-> playlistService.getSegment(ORIGINAL, 1024, -1));
+        verifyNoInteractions(songContentService);
+    }
+
+    @Test
+    void when_getSegment_missingContent_thenThrows() {
+        assertThrows(NoSuchElementException.class, ()-> playlistService.getSegment(ORIGINAL, 1024, 0));
+    }
+}
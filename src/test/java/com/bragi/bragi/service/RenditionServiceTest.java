@@ -0,0 +1,156 @@
+package com.bragi.bragi.service;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.model.SongRendition;
+import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.service.config.RenditionConfig;
+import com.bragi.bragi.storage.ContentWriter;
+import com.bragi.bragi.storage.MappedContentSource;
+import com.bragi.bragi.storage.SongContentStore;
+import com.bragi.bragi.storage.StoredContent;
+import com.bragi.bragi.transcode.Transcoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RenditionServiceTest {
+
+    @Mock
+    private Transcoder flacTranscoder;
+
+    @Mock
+    private Transcoder fallbackTranscoder;
+
+    @Mock
+    private SongContentStore songContentStore;
+
+    @Mock
+    private DataAccessService dataAccessService;
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    @Mock
+    private ContentWriter contentWriter;
+
+    private RenditionConfig renditionConfig;
+
+    private RenditionService renditionService;
+
+    private final SongContent songContent = SongContent.builder()
+            .id(1L)
+            .hash("original")
+            .codec("audio/flac")
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        renditionConfig = new RenditionConfig();
+        renditionConfig.setBitratesKbps(List.of(64, 128));
+        renditionService = new RenditionService(renditionConfig, List.of(flacTranscoder, fallbackTranscoder),
+                songContentStore, dataAccessService, serviceMetrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        renditionService.teardown();
+    }
+
+    @Test
+    void when_render_thenStoresEveryBitrate() throws IOException {
+        when(flacTranscoder.supports("audio/flac")).thenReturn(true);
+        when(flacTranscoder.transcode(any(), anyInt(), eq(contentWriter))).thenReturn("audio/aac");
+        when(songContentStore.newWriter()).thenReturn(contentWriter);
+        when(songContentStore.open("original")).thenReturn(new MappedContentSource(ByteBuffer.allocate(0), "original", Instant.now()));
+        when(contentWriter.commit(null)).thenReturn(new StoredContent("low", 8), new StoredContent("high", 16));
+        when(dataAccessService.saveAllRenditions(anyList())).thenAnswer(invocation-> invocation.getArgument(0));
+
+        var renditions = renditionService.render(songContent);
+
+        assertEquals(List.of(64, 128), renditions.stream().map(SongRendition::getBitrateKbps).toList());
+        assertEquals(List.of("low", "high"), renditions.stream().map(SongRendition::getHash).toList());
+        assertEquals("audio/aac", renditions.get(0).getCodec());
+        assertSame(songContent, renditions.get(1).getSongContent());
+        verify(flacTranscoder).transcode(any(), eq(64), eq(contentWriter));
+        verify(flacTranscoder).transcode(any(), eq(128), eq(contentWriter));
+        verify(contentWriter, times(2)).close();
+        verifyNoInteractions(fallbackTranscoder);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void when_renderFailsForOneBitrate_thenStoresTheRest() throws IOException {
+        when(flacTranscoder.supports("audio/flac")).thenReturn(true);
+        when(flacTranscoder.transcode(any(), eq(64), eq(contentWriter))).thenThrow(new IOException("encoder crashed"));
+        when(flacTranscoder.transcode(any(), eq(128), eq(contentWriter))).thenReturn("audio/aac");
+        when(songContentStore.newWriter()).thenReturn(contentWriter);
+        when(songContentStore.open("original")).thenReturn(new MappedContentSource(ByteBuffer.allocate(0), "original", Instant.now()));
+        when(contentWriter.commit(null)).thenReturn(new StoredContent("high", 16));
+        when(dataAccessService.saveAllRenditions(anyList())).thenAnswer(invocation-> invocation.getArgument(0));
+
+        var renditions = renditionService.render(songContent);
+
+        assertEquals(1, renditions.size());
+        assertEquals(128, renditions.get(0).getBitrateKbps());
+        verify(serviceMetrics).incrementErrorCount(RenditionService.NAME);
+        var saved = ArgumentCaptor.forClass(List.class);
+        verify(dataAccessService).saveAllRenditions(saved.capture());
+        assertEquals(1, saved.getValue().size());
+    }
+
+    @Test
+    void when_render_noTranscoderSupportsCodec_thenStoresNothing() {
+        var renditions = renditionService.render(songContent);
+
+        assertTrue(renditions.isEmpty());
+        verifyNoInteractions(songContentStore, dataAccessService);
+    }
+
+    @Test
+    void when_schedule_disabled_thenDoesNothing() {
+        renditionService.schedule(songContent);
+
+        verifyNoInteractions(flacTranscoder, fallbackTranscoder, songContentStore);
+    }
+
+    @Test
+    void when_schedule_enabled_thenRendersInBackground() throws IOException {
+        renditionConfig.setEnabled(true);
+        when(flacTranscoder.supports("audio/flac")).thenReturn(true);
+        when(flacTranscoder.transcode(any(), anyInt(), eq(contentWriter))).thenReturn("audio/aac");
+        when(songContentStore.newWriter()).thenReturn(contentWriter);
+        when(songContentStore.open("original")).thenReturn(new MappedContentSource(ByteBuffer.allocate(0), "original", Instant.now()));
+        when(contentWriter.commit(null)).thenReturn(new StoredContent("rendition", 8));
+
+        renditionService.schedule(songContent);
+
+        verify(dataAccessService, timeout(1000)).saveAllRenditions(anyList());
+    }
+
+    @Test
+    void when_schedule_legacyContent_thenDoesNothing() {
+        renditionConfig.setEnabled(true);
+
+        renditionService.schedule(SongContent.builder().content(new byte[]{1}).build());
+
+        verifyNoInteractions(flacTranscoder, fallbackTranscoder, songContentStore);
+    }
+}
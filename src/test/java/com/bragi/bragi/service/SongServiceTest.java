@@ -1,9 +1,17 @@
 package com.bragi.bragi.service;
 
+import com.bragi.bragi.error.ClientException;
 import com.bragi.bragi.model.Album;
 import com.bragi.bragi.model.Artist;
 import com.bragi.bragi.model.Song;
+import com.bragi.bragi.model.SongContent;
+import com.bragi.bragi.model.SongRendition;
 import com.bragi.bragi.repository.DataAccessService;
+import com.bragi.bragi.repository.ReactiveDataAccessService;
+import com.bragi.bragi.service.config.PagingConfig;
+import com.bragi.bragi.service.utils.PageCursor;
+import com.bragi.bragi.service.utils.RenditionPreference;
+import com.bragi.bragi.storage.ContentSource;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Timestamp;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,13 +19,15 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
@@ -33,11 +43,20 @@ class SongServiceTest {
     @Mock
     DataAccessService dataAccessService;
 
+    @Mock
+    ReactiveDataAccessService reactiveDataAccessService;
+
+    @Mock
+    SongContentService songContentService;
+
+    @Mock
+    RenditionService renditionService;
+
     SongService songService;
 
     @BeforeEach
     void setUp() {
-        songService = new SongService(dataAccessService);
+        songService = new SongService(dataAccessService, reactiveDataAccessService, songContentService, renditionService, new PagingConfig());
     }
 
     @Test
@@ -160,14 +179,12 @@ class SongServiceTest {
     @Test
     void when_getSongAlbum_success_thenReturns() {
         var albumId = UUID.randomUUID();
-        when(dataAccessService.getSongByExternalId(any()))
-                .thenReturn(Song.builder()
-                        .album(Album
-                                .builder()
-                                .title("hey")
-                                .date(java.sql.Timestamp.from(Instant.now()))
-                                .externalId(albumId)
-                                .build())
+        when(dataAccessService.getAlbumBySongExternalId(any()))
+                .thenReturn(Album
+                        .builder()
+                        .title("hey")
+                        .date(java.sql.Timestamp.from(Instant.now()))
+                        .externalId(albumId)
                         .build());
 
         var result = songService.getSongAlbum(brgi.grpc.GetSongAlbumRequest
@@ -179,9 +196,9 @@ class SongServiceTest {
     }
 
     @Test
-    void when_getSongAlbum_getSongByExternalId_throws_thenThrows() {
+    void when_getSongAlbum_getAlbumBySongExternalId_throws_thenThrows() {
         var albumId = UUID.randomUUID();
-        when(dataAccessService.getSongByExternalId(any()))
+        when(dataAccessService.getAlbumBySongExternalId(any()))
                 .thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
@@ -198,14 +215,12 @@ class SongServiceTest {
     @Test
     void when_getSongsArtists_success_thenReturns() {
         var artistId = UUID.randomUUID();
-        when(dataAccessService.getSongByExternalId(any()))
-                .thenReturn(Song.builder()
-                        .artists(Set.of(Artist.builder()
-                                        .timeStarted(java.sql.Timestamp.from(Instant.now()))
-                                        .name("hey")
-                                        .externalId(artistId)
-                                .build()))
-                        .build());
+        when(dataAccessService.getArtistsBySongExternalId(any()))
+                .thenReturn(List.of(Artist.builder()
+                        .timeStarted(java.sql.Timestamp.from(Instant.now()))
+                        .name("hey")
+                        .externalId(artistId)
+                        .build()));
 
         var result = songService.getSongsArtists(brgi.grpc.GetArtistsRequest.newBuilder()
                 .setSongId(UUID.randomUUID().toString()).build());
@@ -218,7 +233,7 @@ class SongServiceTest {
     @Test
     void when_getSongsArtists_throws_thenThrows() {
         var artistId = UUID.randomUUID();
-        when(dataAccessService.getSongByExternalId(any()))
+        when(dataAccessService.getArtistsBySongExternalId(any()))
                 .thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
@@ -266,31 +281,183 @@ class SongServiceTest {
 
     @Test
     void when_findAllSongs_success_thenReturns(){
-        when(dataAccessService.findAllSongs(any()))
-                .thenReturn(Page.empty());
-        var songs = songService.findAllSongs(1, 1, "desc");
-        assertTrue(songs.isEmpty());
+        when(dataAccessService.findAllSongs(any(), anyInt()))
+                .thenReturn(List.of());
+        var songs = songService.findAllSongs(null, 1, "desc");
+        assertTrue(songs.items().isEmpty());
+
+    }
 
+    @Test
+    void when_findAllSongs_morePages_thenReturnsCursorAfterLastSong(){
+        when(dataAccessService.findAllSongs(PageCursor.first(false), 3))
+                .thenReturn(List.of(Song.builder().id(9L).build(), Song.builder().id(8L).build(), Song.builder().id(5L).build()));
+
+        var page = songService.findAllSongs(null, 2, "desc");
+
+        assertEquals(2, page.items().size());
+        assertEquals(new PageCursor(8L, false), PageCursor.decode(page.nextCursor()));
+    }
+
+    @Test
+    void when_findAllSongs_withCursor_thenKeepsCursorOrder(){
+        when(dataAccessService.findAllSongs(new PageCursor(8L, false), 3))
+                .thenReturn(List.of(Song.builder().id(5L).build()));
+
+        var page = songService.findAllSongs(new PageCursor(8L, false).encode(), 2, "asc");
+
+        assertEquals(1, page.items().size());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void when_findAllSongs_invalidCursor_thenThrows(){
+        assertThrows(ClientException.class, ()-> songService.findAllSongs("not-a-cursor", 2, "asc"));
+        verifyNoInteractions(dataAccessService);
+    }
+
+    @Test
+    void when_listSongs_thenReturnsNextPageToken(){
+        when(dataAccessService.findAllSongs(PageCursor.first(true), 2))
+                .thenReturn(List.of(song(1L), song(2L)));
+
+        var response = songService.listSongs(brgi.grpc.ListSongsRequest.newBuilder().setPageSize(1).build());
+
+        assertEquals(1, response.getSongCount());
+        assertEquals(new PageCursor(1L, true), PageCursor.decode(response.getNextPageToken()));
+    }
+
+    @Test
+    void when_exportSongs_thenLoadsNextPageOnlyWhenConsumed(){
+        var pagingConfig = new PagingConfig();
+        pagingConfig.setExportBatchSize(2);
+        songService = new SongService(dataAccessService, reactiveDataAccessService, songContentService, renditionService, pagingConfig);
+        when(dataAccessService.findAllSongs(PageCursor.first(true), 3))
+                .thenReturn(List.of(song(1L), song(2L), song(3L)));
+        when(dataAccessService.findAllSongs(new PageCursor(2L, true), 3))
+                .thenReturn(List.of(song(3L)));
+
+        var iterator = songService.exportSongs(brgi.grpc.ExportSongsRequest.getDefaultInstance()).iterator();
+        iterator.next();
+        iterator.next();
+        verify(dataAccessService, never()).findAllSongs(new PageCursor(2L, true), 3);
+
+        iterator.next();
+        assertFalse(iterator.hasNext());
+        verify(dataAccessService).findAllSongs(new PageCursor(2L, true), 3);
+    }
+
+    @Test
+    void when_exportSongsReactive_thenEmitsEveryPage(){
+        var pagingConfig = new PagingConfig();
+        pagingConfig.setExportBatchSize(1);
+        songService = new SongService(dataAccessService, reactiveDataAccessService, songContentService, renditionService, pagingConfig);
+        when(reactiveDataAccessService.findAllSongs(PageCursor.first(false), 2))
+                .thenReturn(Flux.just(song(9L), song(5L)));
+        when(reactiveDataAccessService.findAllSongs(new PageCursor(9L, false), 2))
+                .thenReturn(Flux.just(song(5L)));
+
+        StepVerifier.create(songService.exportSongs("desc").map(Song::getId))
+                .expectNext(9L, 5L)
+                .verifyComplete();
+    }
+
+    @Test
+    void when_getSongContent_withQuality_thenOpensRendition(){
+        var songId = UUID.randomUUID();
+        var songContent = SongContent.builder().id(7L).hash("original").build();
+        var low = SongRendition.builder().bitrateKbps(64).hash("low").build();
+        var high = SongRendition.builder().bitrateKbps(256).hash("high").build();
+        var contentSource = ContentSource.of(new byte[]{1});
+        when(dataAccessService.getSongContentByExternalId(songId)).thenReturn(songContent);
+        when(dataAccessService.getRenditions(7L)).thenReturn(List.of(low, high));
+        when(songContentService.open(low)).thenReturn(contentSource);
+
+        assertSame(contentSource, songService.getSongContent(songId, RenditionPreference.of("low", 0)));
+        verify(songContentService, never()).open(any(SongContent.class));
+    }
+
+    @Test
+    void when_getSongContent_original_thenSkipsRenditions(){
+        var songId = UUID.randomUUID();
+        var songContent = SongContent.builder().id(7L).hash("original").build();
+        var contentSource = ContentSource.of(new byte[]{1});
+        when(dataAccessService.getSongContentByExternalId(songId)).thenReturn(songContent);
+        when(songContentService.open(songContent)).thenReturn(contentSource);
+
+        assertSame(contentSource, songService.getSongContent(songId, RenditionPreference.ORIGINAL));
+        verify(dataAccessService, never()).getRenditions(anyLong());
+    }
+
+    @Test
+    void when_getSongContent_noRenditions_thenOpensOriginal(){
+        var songId = UUID.randomUUID();
+        var songContent = SongContent.builder().id(7L).hash("original").build();
+        var contentSource = ContentSource.of(new byte[]{1});
+        when(dataAccessService.getSongContentByExternalId(songId)).thenReturn(songContent);
+        when(dataAccessService.getRenditions(7L)).thenReturn(List.of());
+        when(songContentService.open(songContent)).thenReturn(contentSource);
+
+        assertSame(contentSource, songService.getSongContent(songId, RenditionPreference.of("high", 128)));
+    }
+
+    private static Song song(long id){
+        return Song.builder()
+                .id(id)
+                .externalId(UUID.randomUUID())
+                .title("title")
+                .dateReleased(new java.sql.Timestamp(0))
+                .album(Album.builder().externalId(UUID.randomUUID()).build())
+                .artists(Set.of())
+                .build();
     }
     @Test
     void when_findAllArtists_invalidSort_thenThrows(){
         assertThrows(RuntimeException.class, ()->{
-            songService.findAllSongs(1, 1, "invalid");
+            songService.findAllSongs(null, 1, "invalid");
         });
     }
 
     @Test
     void when_findAllArtists_dataAccessFails_thenThrows(){
-        when(dataAccessService.findAllSongs(any()))
+        when(dataAccessService.findAllSongs(any(), anyInt()))
                 .thenThrow(new RuntimeException());
 
         assertThrows(RuntimeException.class, ()->{
-            songService.findAllSongs(1, 1, "desc");
+            songService.findAllSongs(null, 1, "desc");
         });
     }
 
     @Test
-    void when_storeWithFile_success_thenReturns() throws IOException {
+    void when_findSongs_success_thenReturns(){
+        when(reactiveDataAccessService.findAllSongs(any(), anyInt()))
+                .thenReturn(Flux.just(Song.builder().id(1L).build()));
+
+        StepVerifier.create(songService.findSongs(null, 1, "desc"))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void when_findSongs_invalidSort_thenErrors(){
+        StepVerifier.create(songService.findSongs(null, 1, "invalid"))
+                .expectError(RuntimeException.class)
+                .verify();
+    }
+
+    @Test
+    void when_findSong_notFound_thenErrors(){
+        var uuid = UUID.randomUUID();
+        when(reactiveDataAccessService.getSongByExternalId(uuid))
+                .thenReturn(Mono.error(new NoSuchElementException()));
+
+        StepVerifier.create(songService.findSong(uuid))
+                .expectError(NoSuchElementException.class)
+                .verify();
+    }
+
+    @Test
+    void when_storeWithContent_success_thenReturns() {
         when(dataAccessService.getAlbumByExternalId(any())).thenReturn(Album.builder().build());
         when(dataAccessService.getArtistByExternalId(any())).thenReturn(Artist.builder().build());
         var songToAdd = com.bragi.bragi.rest.dto.Song.builder()
@@ -300,48 +467,22 @@ class SongServiceTest {
                                         .album(UUID.randomUUID())
                                                 .artists(Set.of(UUID.randomUUID()))
                                                         .build();
-        MultipartFile multipartFile = mock(MockMultipartFile.class);
-        when(multipartFile.getBytes()).thenReturn(new byte[]{1, 2, 3});
-        when(dataAccessService.saveSong(any())).thenReturn(Song.builder().id(1L).externalId(UUID.randomUUID()).build());
-
-        songService.store(songToAdd, multipartFile);
-
-    }
-
-    @Test
-    void when_storeWithFile_cantAccessFile_thenThrows() throws IOException {
-        lenient().when(dataAccessService.getAlbumByExternalId(any())).thenReturn(Album.builder().build());
-        lenient().when(dataAccessService.getArtistByExternalId(any())).thenReturn(Artist.builder().build());
-
-        MultipartFile multipartFile = mock(MockMultipartFile.class);
-        when(multipartFile.getBytes()).thenThrow(new IOException());
-
-
-        var songToAdd = com.bragi.bragi.rest.dto.Song.builder()
-                .dateReleased(java.sql.Timestamp.from(Instant.now()))
-                .duration(1000L)
-                .title("hello")
-                .album(UUID.randomUUID())
-                .artists(Set.of(UUID.randomUUID()))
-                .build();
-        lenient().when(dataAccessService.saveSong(any())).thenReturn(Song.builder().id(1L).externalId(UUID.randomUUID()).build());
-
-        assertThrows(RuntimeException.class, ()->{
-            songService.store(songToAdd, multipartFile);
-        });
+        var songContent = SongContent.builder().hash("hash").size(3L).build();
+        when(dataAccessService.saveSong(any())).thenReturn(Song.builder().id(1L).externalId(UUID.randomUUID())
+                .songContent(songContent).build());
 
+        songService.store(songToAdd, songContent);
 
+        verify(dataAccessService).saveSong(argThat(song-> song.getSongContent() == songContent));
+        verify(songContentService, never()).store(any(), any());
+        verify(renditionService).schedule(songContent);
     }
 
     @Test
-    void when_storeWithFile_cantGetArtists_thenThrows() throws IOException {
+    void when_storeWithContent_cantGetArtists_thenThrows() {
         lenient().when(dataAccessService.getAlbumByExternalId(any())).thenReturn(Album.builder().build());
         when(dataAccessService.getArtistByExternalId(any())).thenThrow(new RuntimeException());
 
-        MultipartFile multipartFile = mock(MockMultipartFile.class);
-        lenient().when(multipartFile.getBytes()).thenReturn(new byte[]{1, 2, 3});
-
-
         var songToAdd = com.bragi.bragi.rest.dto.Song.builder()
                 .dateReleased(java.sql.Timestamp.from(Instant.now()))
                 .duration(1000L)
@@ -349,24 +490,18 @@ class SongServiceTest {
                 .album(UUID.randomUUID())
                 .artists(Set.of(UUID.randomUUID()))
                 .build();
-        lenient().when(dataAccessService.saveSong(any())).thenReturn(Song.builder().id(1L).externalId(UUID.randomUUID()).build());
 
         assertThrows(RuntimeException.class, ()->{
-            songService.store(songToAdd, multipartFile);
+            songService.store(songToAdd, SongContent.builder().hash("hash").build());
         });
-
-
+        verify(dataAccessService, never()).saveSong(any());
     }
 
     @Test
-    void when_storeWithFile_cantGetAlbum_thenThrows() throws IOException {
+    void when_storeWithContent_cantGetAlbum_thenThrows() {
         when(dataAccessService.getAlbumByExternalId(any())).thenThrow(new RuntimeException());
         lenient().when(dataAccessService.getArtistByExternalId(any())).thenReturn(Artist.builder().build());
 
-        MultipartFile multipartFile = mock(MockMultipartFile.class);
-        when(multipartFile.getBytes()).thenReturn(new byte[]{1, 2, 3});
-
-
         var songToAdd = com.bragi.bragi.rest.dto.Song.builder()
                 .dateReleased(java.sql.Timestamp.from(Instant.now()))
                 .duration(1000L)
@@ -374,12 +509,36 @@ class SongServiceTest {
                 .album(UUID.randomUUID())
                 .artists(Set.of(UUID.randomUUID()))
                 .build();
-        lenient().when(dataAccessService.saveSong(any())).thenReturn(Song.builder().id(1L).externalId(UUID.randomUUID()).build());
 
         assertThrows(RuntimeException.class, ()->{
-            songService.store(songToAdd, multipartFile);
+            songService.store(songToAdd, SongContent.builder().hash("hash").build());
         });
+        verify(dataAccessService, never()).saveSong(any());
+    }
 
+    @Test
+    void when_storeUploadedSong_thenSavesWithUploadedContent() {
+        var album = Album.builder().externalId(UUID.randomUUID()).build();
+        var artist = Artist.builder().externalId(UUID.randomUUID()).build();
+        when(dataAccessService.getAlbumByExternalId(album.getExternalId())).thenReturn(album);
+        when(dataAccessService.getArtistByExternalId(artist.getExternalId())).thenReturn(artist);
+        var externalId = UUID.randomUUID();
+        when(dataAccessService.saveSong(any())).thenReturn(Song.builder().id(1L).externalId(externalId).build());
+        var songContent = SongContent.builder().hash("hash").size(3L).codec("flac").build();
+
+        var response = songService.store(brgi.grpc.Song.newBuilder()
+                .setTitle("hello")
+                .setAlbumId(album.getExternalId().toString())
+                .addArtistId(artist.getExternalId().toString())
+                .build(), songContent);
+
+        assertEquals(externalId.toString(), response.getSongId());
+        assertEquals("hello", response.getSong().getTitle());
+        verify(dataAccessService).saveSong(argThat(song-> song.getSongContent() == songContent
+                && song.getAlbum() == album
+                && song.getArtists().contains(artist)
+                && song.getExternalId() != null));
+        verify(songContentService, never()).store(any(), any());
     }
 
     @Test
@@ -410,7 +569,100 @@ class SongServiceTest {
         });
     }
 
+    @Test
+    void when_prepareBulk_thenStoresContentAndDropsIt() {
+        var songContent = SongContent.builder().hash("hash").size(3L).build();
+        when(songContentService.store(any(), any())).thenReturn(songContent);
 
+        var bulkSong = songService.prepareBulk(brgi.grpc.AddSongRequest.newBuilder()
+                .setSong(brgi.grpc.Song.newBuilder()
+                        .setTitle("title")
+                        .setContent(ByteString.copyFrom(new byte[]{1, 2, 3})))
+                .build());
 
+        assertSame(songContent, bulkSong.songContent());
+        assertTrue(bulkSong.song().getContent().isEmpty());
+        assertEquals("title", bulkSong.song().getTitle());
+    }
 
-}
\ No newline at end of file
+    @Test
+    void when_storeAll_thenResolvesReferencesOnceAndReportsPerItem() {
+        var artistId = UUID.randomUUID();
+        var albumId = UUID.randomUUID();
+        var missingArtistId = UUID.randomUUID();
+        when(dataAccessService.getArtistsByExternalIds(Set.of(artistId, missingArtistId)))
+                .thenReturn(Map.of(artistId, Artist.builder().externalId(artistId).build()));
+        when(dataAccessService.getAlbumsByExternalIds(Set.of(albumId)))
+                .thenReturn(Map.of(albumId, Album.builder().externalId(albumId).build()));
+        when(dataAccessService.saveAllSongs(any())).thenAnswer(invocation-> invocation.getArgument(0));
+
+        var results = songService.storeAll(List.of(
+                bulkSong(albumId.toString(), artistId.toString()),
+                bulkSong(albumId.toString(), missingArtistId.toString()),
+                bulkSong("not-a-uuid", artistId.toString())));
+
+        verify(dataAccessService, times(1)).getArtistsByExternalIds(any());
+        verify(dataAccessService, times(1)).getAlbumsByExternalIds(any());
+        verify(dataAccessService).saveAllSongs(argThat(songs-> songs.size() == 1));
+        assertTrue(results.get(0).getSuccess());
+        assertFalse(results.get(0).getId().isEmpty());
+        assertFalse(results.get(1).getSuccess());
+        assertTrue(results.get(1).getError().contains(missingArtistId.toString()));
+        assertFalse(results.get(2).getSuccess());
+    }
+
+    @Test
+    void when_storeAll_batchFails_thenSavesOneAtATime() {
+        var artistId = UUID.randomUUID();
+        var albumId = UUID.randomUUID();
+        when(dataAccessService.getArtistsByExternalIds(any()))
+                .thenReturn(Map.of(artistId, Artist.builder().externalId(artistId).build()));
+        when(dataAccessService.getAlbumsByExternalIds(any()))
+                .thenReturn(Map.of(albumId, Album.builder().externalId(albumId).build()));
+        when(dataAccessService.saveAllSongs(any())).thenThrow(new RuntimeException("constraint violated"));
+        when(dataAccessService.saveSong(any()))
+                .thenAnswer(invocation-> invocation.getArgument(0))
+                .thenThrow(new RuntimeException("duplicate song"));
+
+        var results = songService.storeAll(List.of(
+                bulkSong(albumId.toString(), artistId.toString()),
+                bulkSong(albumId.toString(), artistId.toString())));
+
+        verify(dataAccessService, times(2)).saveSong(any());
+        assertTrue(results.get(0).getSuccess());
+        assertFalse(results.get(1).getSuccess());
+        assertEquals("duplicate song", results.get(1).getError());
+    }
+
+    @Test
+    void when_storeAll_savedOneAtATime_thenSchedulesSavedContent() {
+        var artistId = UUID.randomUUID();
+        var albumId = UUID.randomUUID();
+        var mergedContent = SongContent.builder().id(2L).hash("hash").build();
+        when(dataAccessService.getArtistsByExternalIds(any()))
+                .thenReturn(Map.of(artistId, Artist.builder().externalId(artistId).build()));
+        when(dataAccessService.getAlbumsByExternalIds(any()))
+                .thenReturn(Map.of(albumId, Album.builder().externalId(albumId).build()));
+        when(dataAccessService.saveAllSongs(any())).thenThrow(new RuntimeException("constraint violated"));
+        when(dataAccessService.saveSong(any())).thenAnswer(invocation-> Song.builder()
+                .externalId(invocation.<Song>getArgument(0).getExternalId())
+                .songContent(mergedContent)
+                .build());
+        var bulkSong = bulkSong(albumId.toString(), artistId.toString());
+
+        var results = songService.storeAll(List.of(bulkSong));
+
+        assertTrue(results.get(0).getSuccess());
+        verify(renditionService).schedule(mergedContent);
+        verify(renditionService, never()).schedule(bulkSong.songContent());
+    }
+
+    private static SongService.BulkSong bulkSong(String albumId, String artistId){
+        return new SongService.BulkSong(brgi.grpc.Song.newBuilder()
+                .setTitle("title")
+                .setAlbumId(albumId)
+                .addArtistId(artistId)
+                .setReleaseDate(Timestamp.newBuilder().build())
+                .build(), SongContent.builder().hash("hash").build());
+    }
+}
@@ -0,0 +1,43 @@
+package com.bragi.bragi.service.utils;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorPageTest {
+
+    private static final Map<String, CursorPage<Integer>> PAGES = Map.of(
+            "first", new CursorPage<>(List.of(1, 2), "second"),
+            "second", new CursorPage<>(List.of(3), null));
+
+    private static CursorPage<Integer> page(String cursor){
+        return PAGES.get(cursor == null ? "first" : cursor);
+    }
+
+    @Test
+    void when_walk_thenEmitsEveryPageInOrder() {
+        StepVerifier.create(CursorPage.walk(cursor-> Mono.just(page(cursor))))
+                .expectNext(1, 2, 3)
+                .verifyComplete();
+    }
+
+    @Test
+    void when_walkBlocking_thenLoadsNextPageOnlyWhenConsumed() {
+        var fetched = new ArrayList<String>();
+
+        var items = CursorPage.walkBlocking(cursor-> {
+            fetched.add(cursor);
+            return page(cursor);
+        });
+
+        assertEquals(1, fetched.size());
+        assertEquals(List.of(1, 2, 3), items.toList());
+        assertEquals(2, fetched.size());
+    }
+}
@@ -0,0 +1,54 @@
+package com.bragi.bragi.service.utils;
+
+import com.bragi.bragi.error.ClientException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void when_encoded_thenDecodesToSameCursor() {
+        var cursor = new PageCursor(42L, false);
+
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void when_noToken_thenStartsFromSort() {
+        assertEquals(PageCursor.first(true), PageCursor.resolve(null, "asc"));
+        assertEquals(PageCursor.first(false), PageCursor.resolve("", "desc"));
+    }
+
+    @Test
+    void when_token_thenIgnoresSort() {
+        var cursor = new PageCursor(7L, false);
+
+        assertEquals(cursor, PageCursor.resolve(cursor.encode(), "asc"));
+    }
+
+    @Test
+    void when_invalidSort_thenThrows() {
+        assertThrows(ClientException.class, ()-> PageCursor.resolve(null, "sideways"));
+    }
+
+    @Test
+    void when_invalidToken_thenThrows() {
+        assertThrows(ClientException.class, ()-> PageCursor.decode("%%%"));
+        assertThrows(ClientException.class, ()-> PageCursor.decode(new PageCursor(1L, true).encode().substring(2)));
+    }
+
+    @Test
+    void when_extraRowFetched_thenPageHasNextCursor() {
+        var cursor = PageCursor.first(true);
+
+        var page = CursorPage.of(List.of(1L, 2L, 3L), 2, cursor, Long::longValue);
+        var lastPage = CursorPage.of(List.of(4L), 2, cursor, Long::longValue);
+
+        assertEquals(List.of(1L, 2L), page.items());
+        assertEquals(new PageCursor(2L, true), PageCursor.decode(page.nextCursor()));
+        assertFalse(lastPage.hasNext());
+    }
+}
@@ -0,0 +1,68 @@
+package com.bragi.bragi.service.utils;
+
+import com.bragi.bragi.error.ClientException;
+import com.bragi.bragi.model.SongRendition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenditionPreferenceTest {
+
+    private static final List<SongRendition> RENDITIONS = List.of(rendition(64), rendition(128), rendition(256));
+
+    private static SongRendition rendition(int bitrateKbps){
+        return SongRendition.builder().bitrateKbps(bitrateKbps).hash("hash" + bitrateKbps).build();
+    }
+
+    private static int selected(String quality, int maxBitrateKbps){
+        return RenditionPreference.of(quality, maxBitrateKbps).select(RENDITIONS).orElseThrow().getBitrateKbps();
+    }
+
+    @Test
+    void when_original_thenSelectsNoRendition() {
+        assertTrue(RenditionPreference.ORIGINAL.isOriginal());
+        assertTrue(RenditionPreference.of("original", 0).select(RENDITIONS).isEmpty());
+    }
+
+    @Test
+    void when_quality_thenSelectsFromAllRenditions() {
+        assertEquals(64, selected("low", 0));
+        assertEquals(128, selected("MEDIUM", 0));
+        assertEquals(256, selected("high", 0));
+    }
+
+    @Test
+    void when_maxBitrate_thenSelectsWithinIt() {
+        assertEquals(128, selected("original", 200));
+        assertEquals(128, selected("high", 128));
+        assertEquals(64, selected("low", 200));
+    }
+
+    @Test
+    void when_maxBitrateBelowAll_thenSelectsLowest() {
+        assertEquals(64, selected("high", 32));
+    }
+
+    @Test
+    void when_noRenditions_thenSelectsOriginal() {
+        assertTrue(RenditionPreference.of("low", 64).select(List.of()).isEmpty());
+    }
+
+    @Test
+    void when_fromGrpc_thenMapsQuality() {
+        var preference = RenditionPreference.of(brgi.grpc.StreamSongRequest.newBuilder()
+                .setQuality(brgi.grpc.Quality.MEDIUM)
+                .setMaxBitrateKbps(96)
+                .build());
+
+        assertEquals(new RenditionPreference(RenditionPreference.Quality.MEDIUM, 96), preference);
+    }
+
+    @Test
+    void when_invalid_thenThrows() {
+        assertThrows(ClientException.class, ()-> RenditionPreference.of("lossless", 0));
+        assertThrows(ClientException.class, ()-> RenditionPreference.of("low", -1));
+    }
+}
@@ -0,0 +1,106 @@
+package com.bragi.bragi.service.utils;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SingleFlightTest {
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    private SingleFlight<String, String> singleFlight;
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setUp() {
+        singleFlight = new SingleFlight<>("test", serviceMetrics);
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void when_concurrentLoads_thenShareOne() throws Exception {
+        var loads = new AtomicInteger();
+        var release = new CountDownLatch(1);
+
+        var first = executorService.submit(()-> singleFlight.execute("key", ()-> {
+            loads.incrementAndGet();
+            await(release);
+            return "value";
+        }));
+        verify(serviceMetrics, timeout(1000)).incrementSingleFlightOriginating("test");
+        var second = executorService.submit(()-> singleFlight.execute("key", ()-> {
+            loads.incrementAndGet();
+            return "other";
+        }));
+        verify(serviceMetrics, timeout(1000)).incrementSingleFlightCoalesced("test");
+        release.countDown();
+
+        assertEquals("value", first.get(1, TimeUnit.SECONDS));
+        assertEquals("value", second.get(1, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void when_loadFails_thenWaitersSeeSameError() throws Exception {
+        var release = new CountDownLatch(1);
+
+        var first = executorService.submit(()-> singleFlight.execute("key", ()-> {
+            await(release);
+            throw new NoSuchElementException("missing");
+        }));
+        verify(serviceMetrics, timeout(1000)).incrementSingleFlightOriginating("test");
+        var second = executorService.submit(()-> singleFlight.execute("key", ()-> "other"));
+        verify(serviceMetrics, timeout(1000)).incrementSingleFlightCoalesced("test");
+        release.countDown();
+
+        var firstError = assertThrows(ExecutionException.class, ()-> first.get(1, TimeUnit.SECONDS));
+        var secondError = assertThrows(ExecutionException.class, ()-> second.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(NoSuchElementException.class, firstError.getCause());
+        assertSame(firstError.getCause(), secondError.getCause());
+    }
+
+    @Test
+    void when_sequentialLoads_thenEachRuns() {
+        var loads = new AtomicInteger();
+
+        singleFlight.execute("key", ()-> "value" + loads.incrementAndGet());
+        var value = singleFlight.execute("key", ()-> "value" + loads.incrementAndGet());
+
+        assertEquals("value2", value);
+        verify(serviceMetrics, times(2)).incrementSingleFlightOriginating("test");
+        verify(serviceMetrics, never()).incrementSingleFlightCoalesced(any());
+    }
+
+    private static void await(CountDownLatch latch){
+        try{
+            latch.await();
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.bragi.bragi.storage;
+
+import com.bragi.bragi.metrics.ServiceMetrics;
+import com.bragi.bragi.service.config.ContentCacheConfig;
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ContentCacheTest {
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    private ContentCacheConfig contentCacheConfig;
+
+    @BeforeEach
+    void setUp() {
+        contentCacheConfig = new ContentCacheConfig();
+    }
+
+    @Test
+    void when_getOnce_thenServesLoadedContentWithoutCopy() throws IOException {
+        var contentCache = new ContentCache(contentCacheConfig, serviceMetrics);
+        var loaded = ContentSource.of(new byte[]{1, 2, 3, 4});
+
+        var contentSource = contentCache.get("hash", hash -> loaded);
+
+        assertSame(loaded, contentSource);
+        assertEquals(0, contentCache.getSizeBytes());
+    }
+
+    @Test
+    void when_missedAgain_thenCopiesOffHeapAndServesHits() throws Exception {
+        var contentCache = new ContentCache(contentCacheConfig, serviceMetrics, Runnable::run);
+        var opens = new AtomicInteger();
+        ContentCache.Loader loader = hash -> {
+            opens.incrementAndGet();
+            return ContentSource.of(new byte[]{1, 2, 3, 4});
+        };
+
+        contentCache.get("hash", loader);
+        contentCache.get("hash", loader);
+        var contentSource = contentCache.get("hash", loader);
+
+        assertEquals(2, opens.get());
+        assertEquals(4, contentSource.size());
+        assertEquals("hash", contentSource.hash());
+        assertEquals(ByteString.copyFrom(new byte[]{2, 3}), contentSource.read(1, 2));
+        assertTrue(contentSource.read(0, 4).asReadOnlyByteBuffer().isDirect());
+        awaitTrue(()-> contentCache.getSizeBytes() == 4);
+        verify(serviceMetrics).incrementCacheHits("content", 1);
+        verify(serviceMetrics).registerCacheSize(eq("content"), any());
+    }
+
+    @Test
+    void when_missedAgain_thenServesLoadedContentWhileCopying() throws Exception {
+        var promotions = new ArrayList<Runnable>();
+        var contentCache = new ContentCache(contentCacheConfig, serviceMetrics, promotions::add);
+        var loaded = ContentSource.of(new byte[]{1, 2, 3, 4});
+
+        contentCache.get("hash", hash -> loaded);
+        var missed = contentCache.get("hash", hash -> loaded);
+        contentCache.get("hash", hash -> loaded);
+
+        assertSame(loaded, missed);
+        assertEquals(1, promotions.size());
+        assertEquals(0, contentCache.getSizeBytes());
+
+        promotions.get(0).run();
+        var contentSource = contentCache.get("hash", hash -> fail("should be cached"));
+
+        assertTrue(contentSource.read(0, 4).asReadOnlyByteBuffer().isDirect());
+        awaitTrue(()-> contentCache.getSizeBytes() == 4);
+    }
+
+    @Test
+    void when_promotionRejected_thenServesLoadedContent() throws IOException {
+        var contentCache = new ContentCache(contentCacheConfig, serviceMetrics, task -> {
+            throw new RejectedExecutionException();
+        });
+        var loaded = ContentSource.of(new byte[]{1, 2, 3, 4});
+
+        contentCache.get("hash", hash -> loaded);
+        var contentSource = contentCache.get("hash", hash -> loaded);
+
+        assertSame(loaded, contentSource);
+        assertEquals(0, contentCache.getSizeBytes());
+    }
+
+    @Test
+    void when_contentOverEntryLimit_thenNotAdmitted() throws IOException {
+        contentCacheConfig.setMaximumEntryBytes(2);
+        var contentCache = new ContentCache(contentCacheConfig, serviceMetrics);
+        var opens = new AtomicInteger();
+        ContentCache.Loader loader = hash -> {
+            opens.incrementAndGet();
+            return ContentSource.of(new byte[]{1, 2, 3});
+        };
+
+        contentCache.get("hash", loader);
+        contentCache.get("hash", loader);
+        contentCache.get("hash", loader);
+
+        assertEquals(3, opens.get());
+        assertEquals(0, contentCache.getSizeBytes());
+    }
+
+    @Test
+    void when_loaderFails_thenPropagates() {
+        var contentCache = new ContentCache(contentCacheConfig, serviceMetrics);
+
+        assertThrows(IOException.class, ()-> contentCache.get("hash", hash -> {
+            throw new IOException();
+        }));
+        assertEquals(0, contentCache.getSizeBytes());
+    }
+
+    @Test
+    void when_disabled_thenAlwaysOpens() throws IOException {
+        contentCacheConfig.setEnabled(false);
+        var contentCache = new ContentCache(contentCacheConfig, serviceMetrics);
+        var opens = new AtomicInteger();
+        ContentCache.Loader loader = hash -> {
+            opens.incrementAndGet();
+            return ContentSource.of(new byte[]{1});
+        };
+
+        contentCache.get("hash", loader);
+        contentCache.get("hash", loader);
+
+        assertEquals(2, opens.get());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(!condition.getAsBoolean()){
+            if(System.nanoTime() > deadline)
+                fail("condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.bragi.bragi.storage;
+
+import brgi.grpc.StreamSongResponse;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams one MB of audio the way the song handler does, a chunk at a time into
+ * {@link StreamSongResponse}s serialised into a transport buffer, so {@code gc.alloc.rate.norm}
+ * reads as bytes allocated per streamed MB. The {@code copy} benchmarks are the paths that went
+ * through {@link ByteString#copyFrom}; the others are what is served now. Not run by surefire,
+ * start it from {@link #main} or with {@code org.openjdk.jmh.Main} on the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentReadBenchmark {
+
+    private static final int TRACK_BYTES = 1024 * 1024;
+
+    @Param({"65536"})
+    private int chunkSize;
+
+    private byte[] heapContent;
+    private ByteBuffer offHeapContent;
+    private ContentSource heapSource;
+    private ContentSource offHeapSource;
+    private ByteBuffer transport;
+
+    @Setup
+    public void setup(){
+        heapContent = new byte[TRACK_BYTES];
+        ThreadLocalRandom.current().nextBytes(heapContent);
+        offHeapContent = ByteBuffer.allocateDirect(TRACK_BYTES).put(heapContent).flip();
+        heapSource = ContentSource.of(heapContent);
+        offHeapSource = new MappedContentSource(offHeapContent, "hash", Instant.now());
+        transport = ByteBuffer.allocateDirect(chunkSize + 64);
+    }
+
+    @Benchmark
+    public void copyHeap(Blackhole blackhole) throws IOException {
+        for(var offset = 0; offset < TRACK_BYTES; offset += chunkSize)
+            send(ByteString.copyFrom(heapContent, offset, chunkSize), blackhole);
+    }
+
+    @Benchmark
+    public void copyOffHeap(Blackhole blackhole) throws IOException {
+        for(var offset = 0; offset < TRACK_BYTES; offset += chunkSize)
+            send(ByteString.copyFrom(offHeapContent.slice(offset, chunkSize)), blackhole);
+    }
+
+    @Benchmark
+    public void wrapHeap(Blackhole blackhole) throws IOException {
+        stream(heapSource, blackhole);
+    }
+
+    @Benchmark
+    public void wrapOffHeap(Blackhole blackhole) throws IOException {
+        stream(offHeapSource, blackhole);
+    }
+
+    private void stream(ContentSource contentSource, Blackhole blackhole) throws IOException {
+        for(var offset = 0; offset < TRACK_BYTES; offset += chunkSize)
+            send(contentSource.read(offset, chunkSize), blackhole);
+    }
+
+    //serialising is the one copy every path makes, from the chunk into the transport's buffer
+    private void send(ByteString chunk, Blackhole blackhole) throws IOException {
+        transport.clear();
+        var output = CodedOutputStream.newInstance(transport);
+        StreamSongResponse.newBuilder()
+                .setContent(chunk)
+                .build()
+                .writeTo(output);
+        output.flush();
+        blackhole.consume(transport.position());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContentReadBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
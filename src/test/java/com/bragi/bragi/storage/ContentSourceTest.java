@@ -0,0 +1,42 @@
+package com.bragi.bragi.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentSourceTest {
+
+    @Test
+    void when_readFromBytes_thenWrapsWithoutCopy() throws Exception {
+        var content = new byte[]{1, 2, 3, 4};
+        var chunk = ContentSource.of(content).read(1, 2);
+
+        content[1] = 9;
+
+        assertEquals(2, chunk.size());
+        assertEquals(9, chunk.byteAt(0));
+        assertEquals(3, chunk.byteAt(1));
+    }
+
+    @Test
+    void when_contentNull_thenEmpty() throws Exception {
+        var contentSource = ContentSource.of(null);
+
+        assertEquals(0, contentSource.size());
+        assertTrue(contentSource.read(0, 0).isEmpty());
+    }
+
+    @Test
+    void when_slice_thenReadsWindowOfContent() throws Exception {
+        var contentSource = new MappedContentSource(java.nio.ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5}),
+                "hash", null, java.nio.file.Path.of("content"));
+
+        var slice = ContentSource.slice(contentSource, 1, 3);
+
+        assertEquals(3, slice.size());
+        assertEquals(4, slice.read(2, 1).byteAt(0));
+        assertEquals("hash-1-3", slice.hash());
+        assertEquals(1, slice.fileOffset());
+        assertThrows(IllegalArgumentException.class, ()-> ContentSource.slice(contentSource, 3, 3));
+    }
+}
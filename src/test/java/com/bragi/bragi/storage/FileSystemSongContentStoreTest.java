@@ -0,0 +1,189 @@
+package com.bragi.bragi.storage;
+
+import com.bragi.bragi.service.config.StorageConfig;
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemSongContentStoreTest {
+
+    @TempDir
+    Path root;
+
+    private FileSystemSongContentStore songContentStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        var storageConfig = new StorageConfig();
+        storageConfig.setRootDirectory(root.toString());
+        songContentStore = new FileSystemSongContentStore(storageConfig);
+    }
+
+    @Test
+    void when_put_thenStoresByHash() throws IOException {
+        var storedContent = songContentStore.put(new ByteArrayInputStream("hello".getBytes()));
+
+        assertEquals("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824", storedContent.getHash());
+        assertEquals(5, storedContent.getSize());
+        assertTrue(Files.exists(root.resolve("2c").resolve("f2").resolve(storedContent.getHash())));
+        assertTrue(songContentStore.exists(storedContent.getHash()));
+    }
+
+    @Test
+    void when_put_sameContent_thenSameBlob() throws IOException {
+        var first = songContentStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        var second = songContentStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        assertEquals(first, second);
+        try(var files = Files.list(root.resolve("tmp"))){
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void when_put_alreadyStored_thenTouchesBlob() throws IOException {
+        var first = songContentStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        var path = root.resolve(first.getHash().substring(0, 2)).resolve(first.getHash().substring(2, 4)).resolve(first.getHash());
+        var stale = Instant.now().minus(2, ChronoUnit.DAYS);
+        Files.setLastModifiedTime(path, FileTime.from(stale));
+
+        songContentStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        assertTrue(songContentStore.lastModified(first.getHash()).isAfter(stale));
+    }
+
+    @Test
+    void when_deleteIfUnmodifiedSince_stale_thenRemoved() throws IOException {
+        var storedContent = songContentStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        Files.setLastModifiedTime(songContentStore.pathFor(storedContent.getHash()),
+                FileTime.from(Instant.now().minus(2, ChronoUnit.DAYS)));
+
+        assertTrue(songContentStore.deleteIfUnmodifiedSince(storedContent.getHash(), Instant.now().minus(1, ChronoUnit.DAYS)));
+        assertFalse(songContentStore.exists(storedContent.getHash()));
+        assertFalse(songContentStore.deleteIfUnmodifiedSince(storedContent.getHash(), Instant.now()));
+        try(var files = Files.list(root.resolve("tmp"))){
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void when_deleteIfUnmodifiedSince_storedAgain_thenKept() throws IOException {
+        var storedContent = songContentStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        Files.setLastModifiedTime(songContentStore.pathFor(storedContent.getHash()),
+                FileTime.from(Instant.now().minus(2, ChronoUnit.DAYS)));
+        songContentStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        assertFalse(songContentStore.deleteIfUnmodifiedSince(storedContent.getHash(), Instant.now().minus(1, ChronoUnit.DAYS)));
+        assertTrue(songContentStore.exists(storedContent.getHash()));
+        try(var files = Files.list(root.resolve("tmp"))){
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void when_list_thenReturnsStoredContent() throws IOException {
+        var first = songContentStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        var second = songContentStore.put(new ByteArrayInputStream(new byte[]{4}));
+        Files.writeString(root.resolve("tmp").resolve("upload"), "partial");
+
+        try(var contents = songContentStore.list()){
+            assertEquals(Set.of(first, second), contents.collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    void when_open_thenReadsSlices() throws IOException {
+        var storedContent = songContentStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}));
+
+        var contentSource = songContentStore.open(storedContent.getHash());
+
+        assertEquals(5, contentSource.size());
+        assertEquals(ByteString.copyFrom(new byte[]{2, 3, 4}), contentSource.read(1, 3));
+        assertEquals(5, Files.size(contentSource.file()));
+    }
+
+    @Test
+    void when_open_empty_thenReturnsEmpty() throws IOException {
+        var storedContent = songContentStore.put(new ByteArrayInputStream(new byte[0]));
+
+        assertEquals(0, songContentStore.open(storedContent.getHash()).size());
+    }
+
+    @Test
+    void when_open_missing_thenThrows() {
+        assertThrows(IOException.class, ()-> songContentStore.open("a".repeat(64)));
+    }
+
+    @Test
+    void when_open_invalidHash_thenThrows() {
+        assertThrows(IllegalArgumentException.class, ()-> songContentStore.open("../../etc/passwd"));
+    }
+
+    @Test
+    void when_delete_thenRemoved() throws IOException {
+        var storedContent = songContentStore.put(new ByteArrayInputStream(new byte[]{1}));
+
+        songContentStore.delete(storedContent.getHash());
+
+        assertFalse(songContentStore.exists(storedContent.getHash()));
+    }
+
+    @Test
+    void when_writer_committed_thenStoresByHash() throws IOException {
+        StoredContent storedContent;
+        try(var writer = songContentStore.newWriter()){
+            writer.write(ByteBuffer.wrap("hel".getBytes()));
+            writer.write(ByteBuffer.wrap("lo".getBytes()));
+            assertEquals(5, writer.size());
+            storedContent = writer.commit("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824");
+        }
+
+        assertEquals(songContentStore.put(new ByteArrayInputStream("hello".getBytes())), storedContent);
+        assertTrue(songContentStore.exists(storedContent.getHash()));
+        try(var files = Files.list(root.resolve("tmp"))){
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void when_writer_hashMismatch_thenStoresNothing() throws IOException {
+        var existing = songContentStore.put(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        try(var writer = songContentStore.newWriter()){
+            writer.write(ByteBuffer.wrap(new byte[]{4, 5, 6}));
+            assertThrows(IllegalArgumentException.class, ()-> writer.commit(existing.getHash()));
+        }
+
+        assertEquals(3, songContentStore.open(existing.getHash()).size());
+        assertEquals(ByteString.copyFrom(new byte[]{1, 2, 3}), songContentStore.open(existing.getHash()).read(0, 3));
+        try(var files = Files.list(root.resolve("tmp"))){
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void when_writer_closedWithoutCommit_thenDiscards() throws IOException {
+        var writer = songContentStore.newWriter();
+        writer.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        writer.close();
+
+        assertThrows(IOException.class, ()-> writer.write(ByteBuffer.wrap(new byte[]{4})));
+        try(var files = Files.list(root.resolve("tmp"))){
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.bragi.bragi.transcode;
+
+import com.bragi.bragi.service.config.StreamingConfig;
+import com.bragi.bragi.storage.ContentSource;
+import com.bragi.bragi.storage.ContentWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PassThroughTranscoderTest {
+
+    @Test
+    void when_transcode_thenCopiesContentInChunks() throws IOException {
+        var streamingConfig = new StreamingConfig();
+        streamingConfig.setChunkSizeBytes(1024);
+        var content = new byte[2500];
+        for(var i = 0; i < content.length; i++)
+            content[i] = (byte) i;
+        var written = new ByteArrayOutputStream();
+        var target = mock(ContentWriter.class);
+        doAnswer(invocation-> Channels.newChannel(written).write(invocation.getArgument(0, ByteBuffer.class)))
+                .when(target).write(any());
+
+        var codec = new PassThroughTranscoder(streamingConfig)
+                .transcode(ContentSource.withCodec(ContentSource.of(content), "audio/flac"), 128, target);
+
+        assertEquals("audio/flac", codec);
+        assertArrayEquals(content, written.toByteArray());
+        verify(target, times(3)).write(any());
+        verify(target, never()).commit(any());
+    }
+
+    @Test
+    void when_supports_thenAcceptsAnyCodec() {
+        var transcoder = new PassThroughTranscoder(new StreamingConfig());
+
+        assertTrue(transcoder.supports("audio/flac"));
+        assertTrue(transcoder.supports(null));
+    }
+}